@@ -0,0 +1,43 @@
+package uk.tw.energy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.MeterReadings;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = App.class,
+        properties = "web.mode=async")
+public class AsyncEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Test
+    public void shouldPriceOffloadedComparisonsAsInServletMode() throws JsonProcessingException {
+        String smartMeterId = "bob";
+        MeterReadings readings = new MeterReadingsBuilder().setSmartMeterId(smartMeterId).generateElectricityReadings(20).build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity("/readings/store", new HttpEntity<>(mapper.writeValueAsString(readings), headers), String.class);
+
+        ResponseEntity<Map> response = restTemplate.getForEntity("/price-plans/compare-all/" + smartMeterId, Map.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsKeys("pricePlanId", "pricePlanComparisons");
+    }
+}
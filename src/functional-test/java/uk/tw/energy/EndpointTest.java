@@ -8,6 +8,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -64,6 +65,20 @@ public class EndpointTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void givenUnchangedReadingsShouldAnswerConditionalGetWithNotModified() throws JsonProcessingException {
+        String smartMeterId = "bob";
+        populateMeterReadingsForMeter(smartMeterId);
+        ResponseEntity<String> first = restTemplate.getForEntity("/price-plans/compare-all/" + smartMeterId, String.class);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(first.getHeaders().getETag());
+        ResponseEntity<String> second = restTemplate.exchange("/price-plans/compare-all/" + smartMeterId,
+                HttpMethod.GET, new HttpEntity<String>(headers), String.class);
+
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
     private HttpEntity<String> getStringHttpEntity(Object object) throws JsonProcessingException {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
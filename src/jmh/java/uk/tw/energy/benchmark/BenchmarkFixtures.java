@@ -0,0 +1,41 @@
+package uk.tw.energy.benchmark;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.generator.ElectricityReadingsGenerator;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static String smartMeterId(int index) {
+        return "smart-meter-" + index;
+    }
+
+    static List<PricePlan> pricePlans(int planCount) {
+        List<PricePlan> pricePlans = new ArrayList<>(planCount);
+        for (int i = 0; i < planCount; i++) {
+            pricePlans.add(new PricePlan("price-plan-" + i, "supplier-" + i, BigDecimal.valueOf(i + 1), emptyList()));
+        }
+        return pricePlans;
+    }
+
+    static MeterReadingService meterReadingService(int meterCount, int readingsPerMeter) {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        ElectricityReadingsGenerator generator = new ElectricityReadingsGenerator();
+        for (int i = 0; i < meterCount; i++) {
+            List<ElectricityReading> readings = generator.generate(readingsPerMeter);
+            meterReadingService.storeReadings(smartMeterId(i), readings);
+        }
+        return meterReadingService;
+    }
+}
@@ -0,0 +1,53 @@
+package uk.tw.energy.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.generator.ElectricityReadingsGenerator;
+import uk.tw.energy.service.AnomalyDetector;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores batches of {@code batchSize} readings for randomly chosen meters out of {@code meterCount}, with or without
+ * an {@link AnomalyDetector} watching them. The store is rebuilt every iteration so it does not grow without bound
+ * across the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IngestBenchmark {
+
+    @Param({"10", "1000"})
+    public int batchSize;
+
+    @Param({"10", "100000"})
+    public int meterCount;
+
+    @Param({"false", "true"})
+    public boolean detectAnomalies;
+
+    private MeterReadingService meterReadingService;
+    private List<ElectricityReading> batch;
+
+    @Setup(Level.Trial)
+    public void generateBatch() {
+        batch = new ElectricityReadingsGenerator().generate(batchSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStore() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        if (detectAnomalies) {
+            new AnomalyDetector(meterReadingService);
+        }
+    }
+
+    @Benchmark
+    public void storeReadings() {
+        meterReadingService.storeReadings(BenchmarkFixtures.smartMeterId(ThreadLocalRandom.current().nextInt(meterCount)), batch);
+    }
+}
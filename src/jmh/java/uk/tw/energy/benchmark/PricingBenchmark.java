@@ -0,0 +1,62 @@
+package uk.tw.energy.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.tw.energy.service.PricePlanService;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price plan comparisons against a store of meters holding readings 10 seconds apart and ending now. Every invocation
+ * prices a randomly chosen meter.
+ * <p>
+ * {@code store} is {@code <meters>x<readings per meter>}. The shapes are listed rather than crossed, as a thousand
+ * meters of 100000 readings each would not fit in a default heap; 10 meters of 100000 cover long histories instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PricingBenchmark {
+
+    @Param({"10x1000", "1000x1000", "10x100000"})
+    public String store;
+
+    @Param({"3", "30"})
+    public int planCount;
+
+    private PricePlanService pricePlanService;
+    private LocalDate today;
+    private int meterCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] shape = store.split("x");
+        meterCount = Integer.parseInt(shape[0]);
+        pricePlanService = new PricePlanService(BenchmarkFixtures.pricePlans(planCount),
+                BenchmarkFixtures.meterReadingService(meterCount, Integer.parseInt(shape[1])));
+        today = LocalDate.now();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> compareAll() {
+        return pricePlanService.getConsumptionCostOfElectricityReadingsForEachPricePlan(randomMeter());
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> lastWeek() {
+        return pricePlanService.getConsumptionCostOfElectricityReadingsForLastWeek(randomMeter(), today);
+    }
+
+    @Benchmark
+    public Map<DayOfWeek, Map<String, BigDecimal>> daysOfWeek() {
+        return pricePlanService.getConsumptionCostOfElectricityReadingsDaysOfWeekForEachPricePlanWithOutLimit(randomMeter(), today);
+    }
+
+    private String randomMeter() {
+        return BenchmarkFixtures.smartMeterId(ThreadLocalRandom.current().nextInt(meterCount));
+    }
+}
@@ -0,0 +1,47 @@
+package uk.tw.energy.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import uk.tw.energy.SeedingApplicationDataConfiguration;
+import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.generator.ElectricityReadingsGenerator;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson binding of {@link MeterReadings} with the application's own object mapper, as done for every
+ * {@code /readings/store} request body and {@code /readings/read} response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadingsSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int readingsPerMeter;
+
+    private ObjectMapper objectMapper;
+    private MeterReadings meterReadings;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new SeedingApplicationDataConfiguration().objectMapper(Jackson2ObjectMapperBuilder.json());
+        meterReadings = new MeterReadings(BenchmarkFixtures.smartMeterId(0),
+                new ElectricityReadingsGenerator().generate(readingsPerMeter));
+        json = objectMapper.writeValueAsBytes(meterReadings);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(meterReadings);
+    }
+
+    @Benchmark
+    public MeterReadings deserialize() throws IOException {
+        return objectMapper.readValue(json, MeterReadings.class);
+    }
+}
@@ -0,0 +1,46 @@
+package uk.tw.energy.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import uk.tw.energy.domain.LoadShift;
+import uk.tw.energy.domain.SimulationScenario;
+import uk.tw.energy.service.TariffSimulationService;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * One what-if over a single meter holding {@code readingsPerMeter} readings 10 seconds apart - a year's worth at the
+ * largest setting - moving a fifth of its evening load into the night.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TariffSimulationBenchmark {
+
+    @Param({"8640", "3153600"})
+    public int readingsPerMeter;
+
+    @Param({"3", "30"})
+    public int planCount;
+
+    private TariffSimulationService tariffSimulationService;
+    private SimulationScenario scenario;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tariffSimulationService = new TariffSimulationService(BenchmarkFixtures.pricePlans(planCount),
+                BenchmarkFixtures.meterReadingService(1, readingsPerMeter));
+        scenario = new SimulationScenario(null, null, singletonList(new LoadShift(
+                new LoadShift.Band(LocalTime.of(17, 0), LocalTime.of(21, 0)),
+                new LoadShift.Band(LocalTime.MIDNIGHT, LocalTime.of(7, 0)),
+                BigDecimal.valueOf(20))));
+    }
+
+    @Benchmark
+    public TariffSimulationService.Simulation simulate() {
+        return tariffSimulationService.simulate(BenchmarkFixtures.smartMeterId(0), scenario);
+    }
+}
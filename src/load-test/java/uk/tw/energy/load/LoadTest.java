@@ -0,0 +1,92 @@
+package uk.tw.energy.load;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import uk.tw.energy.App;
+import uk.tw.energy.generator.FleetGenerator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays a mix of store and price plan traffic against the API at a fixed request rate and reports throughput, error
+ * rate and latency percentiles per endpoint.
+ * <p>
+ * Unless {@code --url} points at a running instance, the application is started in-process on a random port and seeded
+ * with a synthetic fleet of {@code --meters} meters, which are also the meters the traffic is spread over. Options (all
+ * optional, shown with their defaults):
+ * <pre>
+ * --rate=200          requests per second
+ * --duration=60       seconds measured
+ * --warmup=10         seconds sent before measuring, at the same rate
+ * --mix=store=20,compare-all=30,recommend=20,cost-dayofweek=20,read=10
+ * --meters=100        meters the traffic is spread over
+ * --seed-days=1       days of readings seeded per meter for the in-process application
+ * --readings=10       readings per store request
+ * --upload-delay=0    milliseconds each store request stalls half way through its body, like a meter on a slow link
+ * --web-mode=servlet  web.mode of the in-process application: servlet, or async for the non-blocking web tier
+ * --concurrency=256   maximum requests in flight
+ * --timeout=10000     connect and read timeout in milliseconds
+ * --seed=42
+ * --url=              base URL of an already running instance seeded with the same fleet
+ * --out=build/reports/load-test
+ * </pre>
+ * Exits with a non-zero status if any request failed.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "200"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        TrafficMix mix = TrafficMix.parse(options.getOrDefault("mix", "store=20,compare-all=30,recommend=20,cost-dayofweek=20,read=10"));
+        int meters = Integer.parseInt(options.getOrDefault("meters", "100"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "256"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path out = Paths.get(options.getOrDefault("out", "build/reports/load-test"));
+
+        // HttpURLConnection only keeps a handful of idle connections per host alive by default
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            context = SpringApplication.run(App.class,
+                    "--server.port=0",
+                    "--seeding.fleet.meters=" + meters,
+                    "--seeding.fleet.days=" + options.getOrDefault("seed-days", "1"),
+                    "--seeding.fleet.seed=" + seed,
+                    "--web.mode=" + options.getOrDefault("web-mode", "servlet"));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        long errors;
+        try {
+            OpenLoopDriver driver = new OpenLoopDriver(baseUrl, mix, FleetGenerator::smartMeterId, meters,
+                    Integer.parseInt(options.getOrDefault("readings", "10")),
+                    Long.parseLong(options.getOrDefault("upload-delay", "0")), concurrency,
+                    Integer.parseInt(options.getOrDefault("timeout", "10000")), seed);
+            System.out.printf("Sending %.0f requests/s of %s to %s%n", rate, mix, baseUrl);
+            if (!warmup.isZero()) {
+                driver.run(rate, warmup);
+            }
+            LoadTestResults results = driver.run(rate, duration);
+            results.print(System.out);
+            results.writeTo(out);
+            System.out.println("Latency distributions written to " + out.toAbsolutePath());
+            errors = results.totalErrors();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(errors > 0 ? 1 : 0);
+    }
+}
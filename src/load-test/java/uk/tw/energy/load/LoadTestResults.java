@@ -0,0 +1,128 @@
+package uk.tw.energy.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and error counts per operation. Latencies are in nanoseconds, measured from when a request was
+ * scheduled to be sent rather than when it actually was, so time spent queued behind a slow server is included.
+ */
+final class LoadTestResults {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Map<Operation, ConcurrentHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private volatile long elapsedNanos;
+
+    LoadTestResults() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, boolean failed) {
+        latencies.get(operation).recordValue(Math.max(latencyNanos, 1));
+        if (failed) {
+            errors.get(operation).increment();
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void print(PrintStream out) {
+        out.printf(Locale.ROOT, "%-24s %10s %10s %8s %10s %10s %10s %10s%n",
+                "operation", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            if (latencies.get(operation).getTotalCount() > 0) {
+                printRow(out, operation.getLabel(), latencies.get(operation), errors.get(operation).sum());
+            }
+        }
+        printRow(out, "all", total(), totalErrors());
+    }
+
+    /**
+     * Writes a JSON summary, plus the full latency distribution of every operation in milliseconds (HdrHistogram's
+     * {@code .hgrm} format), to {@code directory}.
+     */
+    void writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        StringBuilder json = new StringBuilder("{\n  \"elapsedSeconds\": ")
+                .append(String.format(Locale.ROOT, "%.3f", seconds()))
+                .append(",\n  \"operations\": {");
+        String separator = "\n";
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                json.append(separator).append(jsonRow(operation.getLabel(), histogram, errors.get(operation).sum()));
+                separator = ",\n";
+                writeDistribution(directory.resolve(operation.getLabel() + ".hgrm"), histogram);
+            }
+        }
+        Histogram total = total();
+        json.append(separator).append(jsonRow("all", total, totalErrors())).append("\n  }\n}\n");
+        writeDistribution(directory.resolve("all.hgrm"), total);
+        Files.write(directory.resolve("summary.json"), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    long totalErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Histogram total() {
+        Histogram total = new Histogram(3);
+        latencies.values().forEach(total::add);
+        return total;
+    }
+
+    private void printRow(PrintStream out, String label, Histogram histogram, long errorCount) {
+        out.printf(Locale.ROOT, "%-24s %10d %10.1f %7.2f%% %10.2f %10.2f %10.2f %10.2f%n",
+                label, histogram.getTotalCount(), throughput(histogram), 100 * errorRate(histogram, errorCount),
+                millisAt(histogram, 50.0), millisAt(histogram, 99.0), millisAt(histogram, 99.9),
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private String jsonRow(String label, Histogram histogram, long errorCount) {
+        return String.format(Locale.ROOT,
+                "    \"%s\": {\"requests\": %d, \"throughput\": %.3f, \"errors\": %d, \"errorRate\": %.5f, "
+                        + "\"p50Millis\": %.3f, \"p99Millis\": %.3f, \"p999Millis\": %.3f, \"maxMillis\": %.3f}",
+                label, histogram.getTotalCount(), throughput(histogram), errorCount, errorRate(histogram, errorCount),
+                millisAt(histogram, 50.0), millisAt(histogram, 99.0), millisAt(histogram, 99.9),
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+
+    private double throughput(Histogram histogram) {
+        return seconds() > 0 ? histogram.getTotalCount() / seconds() : 0;
+    }
+
+    private double seconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    private static double errorRate(Histogram histogram, long errorCount) {
+        return histogram.getTotalCount() > 0 ? (double) errorCount / histogram.getTotalCount() : 0;
+    }
+
+    private static double millisAt(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+}
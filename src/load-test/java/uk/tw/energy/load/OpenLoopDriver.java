@@ -0,0 +1,160 @@
+package uk.tw.energy.load;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.generator.ElectricityReadingsGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Sends requests on a fixed schedule, whether or not earlier requests have completed. Each request's latency is taken
+ * from the moment it was due to be sent, so a stalled server shows up as latency for every request it held up instead of
+ * as a silent drop in the request rate (coordinated omission).
+ */
+final class OpenLoopDriver {
+
+    private final String baseUrl;
+    private final TrafficMix mix;
+    private final IntFunction<String> smartMeterIds;
+    private final int meters;
+    private final int readingsPerStore;
+    private final long uploadDelayMillis;
+    private final int concurrency;
+    private final int timeoutMillis;
+    private final SplittableRandom random;
+
+    OpenLoopDriver(String baseUrl, TrafficMix mix, IntFunction<String> smartMeterIds, int meters, int readingsPerStore,
+                   long uploadDelayMillis, int concurrency, int timeoutMillis, long seed) {
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.smartMeterIds = smartMeterIds;
+        this.meters = meters;
+        this.readingsPerStore = readingsPerStore;
+        this.uploadDelayMillis = uploadDelayMillis;
+        this.concurrency = concurrency;
+        this.timeoutMillis = timeoutMillis;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Sends {@code ratePerSecond} requests a second for {@code duration}, then waits for outstanding requests to finish.
+     */
+    LoadTestResults run(double ratePerSecond, Duration duration) throws InterruptedException {
+        LoadTestResults results = new LoadTestResults();
+        ExecutorService senders = Executors.newFixedThreadPool(concurrency, daemonThreads());
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long durationNanos = duration.toNanos();
+        long start = System.nanoTime();
+        for (long request = 0; ; request++) {
+            long offset = (long) (request * intervalNanos);
+            if (offset >= durationNanos) {
+                break;
+            }
+            long scheduledAt = start + offset;
+            for (long wait = scheduledAt - System.nanoTime(); wait > 0; wait = scheduledAt - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = mix.next(random);
+            String smartMeterId = smartMeterIds.apply(random.nextInt(meters));
+            senders.execute(() -> send(operation, smartMeterId, scheduledAt, results));
+        }
+        senders.shutdown();
+        if (!senders.awaitTermination(timeoutMillis + durationNanos / 1_000_000, TimeUnit.MILLISECONDS)) {
+            senders.shutdownNow();
+        }
+        results.setElapsedNanos(System.nanoTime() - start);
+        return results;
+    }
+
+    private void send(Operation operation, String smartMeterId, long scheduledAt, LoadTestResults results) {
+        boolean failed;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + operation.pathFor(smartMeterId)).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            if (operation.isWrite()) {
+                byte[] body = storeRequestBody(smartMeterId);
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    writeBody(out, body);
+                }
+            }
+            int status = connection.getResponseCode();
+            drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+            failed = status >= 400;
+        } catch (IOException e) {
+            failed = true;
+        }
+        results.record(operation, System.nanoTime() - scheduledAt, failed);
+    }
+
+    // a slow meter sends the first half of its body, stalls, then sends the rest
+    private void writeBody(OutputStream out, byte[] body) throws IOException {
+        if (uploadDelayMillis <= 0) {
+            out.write(body);
+            return;
+        }
+        out.write(body, 0, body.length / 2);
+        out.flush();
+        try {
+            Thread.sleep(uploadDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading", e);
+        }
+        out.write(body, body.length / 2, body.length - body.length / 2);
+    }
+
+    private byte[] storeRequestBody(String smartMeterId) {
+        List<ElectricityReading> readings = new ElectricityReadingsGenerator().generate(readingsPerStore, Instant.now());
+        StringBuilder body = new StringBuilder(64 + 48 * readings.size())
+                .append("{\"smartMeterId\":\"").append(smartMeterId).append("\",\"electricityReadings\":[");
+        for (int i = 0; i < readings.size(); i++) {
+            ElectricityReading reading = readings.get(i);
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"time\":").append(reading.getTime().getEpochSecond())
+                    .append(",\"reading\":").append(reading.getReading().toPlainString()).append('}');
+        }
+        return body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // reading the body to the end lets HttpURLConnection reuse the connection
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "load-driver-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
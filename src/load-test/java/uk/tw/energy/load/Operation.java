@@ -0,0 +1,47 @@
+package uk.tw.energy.load;
+
+/**
+ * The kinds of request the load driver can send, named as they are in a traffic mix.
+ */
+enum Operation {
+
+    STORE("store", "/readings/store"),
+    READ("read", "/readings/read/"),
+    COMPARE_ALL("compare-all", "/price-plans/compare-all/"),
+    RECOMMEND("recommend", "/price-plans/recommend/"),
+    COST_LAST_WEEK("cost-lastweek", "/price-plans/cost-lastweek/"),
+    COST_DAY_OF_WEEK("cost-dayofweek", "/price-plans/cost-dayofweek/"),
+    COST_DAYS_OF_WEEK("cost-compare-daysofweek", "/price-plans/cost-compare/daysofweek/");
+
+    private final String label;
+    private final String path;
+
+    Operation(String label, String path) {
+        this.label = label;
+        this.path = path;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    boolean isWrite() {
+        return this == STORE;
+    }
+
+    String pathFor(String smartMeterId) {
+        if (isWrite()) {
+            return path;
+        }
+        return this == RECOMMEND ? path + smartMeterId + "?limit=2" : path + smartMeterId;
+    }
+
+    static Operation fromLabel(String label) {
+        for (Operation operation : values()) {
+            if (operation.label.equals(label)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation '" + label + "'");
+    }
+}
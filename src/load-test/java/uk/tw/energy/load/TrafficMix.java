@@ -0,0 +1,66 @@
+package uk.tw.energy.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted choice of operations, parsed from e.g. {@code store=20,compare-all=40,recommend=40}.
+ */
+final class TrafficMix {
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private TrafficMix(Map<Operation, Integer> weights) {
+        operations = new Operation[weights.size()];
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        int i = 0;
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            total += weight.getValue();
+            operations[i] = weight.getKey();
+            cumulativeWeights[i] = total;
+            i++;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Traffic mix needs at least one operation with a positive weight");
+        }
+    }
+
+    static TrafficMix parse(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] labelAndWeight = entry.trim().split("=", 2);
+            int weight = labelAndWeight.length > 1 ? Integer.parseInt(labelAndWeight[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for '" + labelAndWeight[0] + "'");
+            }
+            if (weight > 0) {
+                weights.merge(Operation.fromLabel(labelAndWeight[0].trim()), weight, Integer::sum);
+            }
+        }
+        return new TrafficMix(weights);
+    }
+
+    Operation next(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < operations.length; i++) {
+            mix.append(i == 0 ? "" : ",").append(operations[i].getLabel()).append('=').append(cumulativeWeights[i] - previous);
+            previous = cumulativeWeights[i];
+        }
+        return mix.toString();
+    }
+}
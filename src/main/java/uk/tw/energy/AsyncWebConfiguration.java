@@ -0,0 +1,75 @@
+package uk.tw.energy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import uk.tw.energy.controller.NonBlockingUploadFilter;
+import uk.tw.energy.controller.OffloadingHandlerAdapter;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The non-blocking web tier, switched on with {@code web.mode=async}: store bodies are collected without a request
+ * thread and {@link uk.tw.energy.controller.Offloaded} handlers, the price plan comparisons, are run on a bounded pool
+ * of {@code web.async.pricing-threads} threads (one per core by default) with room for
+ * {@code web.async.pricing-queue} more. Everything else is served as before.
+ * <p>
+ * Experimental: it is left out of the documented configuration until the load test's servlet and async runs have been
+ * compared. Store bodies over {@code web.async.max-upload-bytes} are refused with 413 and uploads taking longer than
+ * {@code web.async.upload-timeout-millis} with 408; comparisons finding the pool's queue full are answered with 503
+ * and counted by {@code price-plans.pricing.rejected}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "web.mode", havingValue = "async")
+public class AsyncWebConfiguration {
+
+    // not a bean, which would stand in for Spring Boot's own task executor
+    private final ExecutorService pricingPool;
+
+    public AsyncWebConfiguration(@Value("${web.async.pricing-threads:0}") int pricingThreads,
+                                 @Value("${web.async.pricing-queue:1000}") int pricingQueue) {
+        int threads = pricingThreads > 0 ? pricingThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.pricingPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(pricingQueue), runnable -> {
+            Thread thread = new Thread(runnable, "pricing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public FilterRegistrationBean<NonBlockingUploadFilter> nonBlockingUploadFilter(
+            @Value("${web.async.max-upload-bytes:16777216}") long maxUploadBytes,
+            @Value("${web.async.upload-timeout-millis:60000}") long uploadTimeoutMillis) {
+        FilterRegistrationBean<NonBlockingUploadFilter> registration =
+                new FilterRegistrationBean<>(new NonBlockingUploadFilter(maxUploadBytes, uploadTimeoutMillis));
+        registration.addUrlPatterns("/readings/store");
+        registration.setAsyncSupported(true);
+        return registration;
+    }
+
+    @Bean
+    public WebMvcRegistrations offloadingRegistrations(MeterRegistry meterRegistry) {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new OffloadingHandlerAdapter(pricingPool, meterRegistry);
+            }
+        };
+    }
+
+    @PreDestroy
+    public void stop() {
+        pricingPool.shutdownNow();
+    }
+}
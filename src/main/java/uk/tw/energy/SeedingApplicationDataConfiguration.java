@@ -2,6 +2,10 @@ package uk.tw.energy;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -9,21 +13,49 @@ import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.PricePlan;
 import uk.tw.energy.generator.ElectricityReadingsGenerator;
+import uk.tw.energy.generator.FleetGenerator;
+import uk.tw.energy.importer.BulkReadingImporter;
+import uk.tw.energy.importer.ImportSummary;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.SeedingWarmUp;
+import uk.tw.energy.shard.ShardRouter;
 
 import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyList;
 
 @Configuration
 public class SeedingApplicationDataConfiguration {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeedingApplicationDataConfiguration.class);
+
     private static final String MOST_EVIL_PRICE_PLAN_ID = "price-plan-0";
     private static final String RENEWABLES_PRICE_PLAN_ID = "price-plan-1";
     private static final String STANDARD_PRICE_PLAN_ID = "price-plan-2";
+    private static final String[] PRICE_PLAN_IDS = {MOST_EVIL_PRICE_PLAN_ID, RENEWABLES_PRICE_PLAN_ID, STANDARD_PRICE_PLAN_ID};
+
+    // optional synthetic fleet on top of the trial users, e.g. for load and soak testing
+    @Value("${seeding.fleet.meters:0}")
+    private int fleetMeters;
+    @Value("${seeding.fleet.days:1}")
+    private int fleetDays;
+    @Value("${seeding.fleet.seed:42}")
+    private long fleetSeed;
+    // comma separated files or directories to bulk import on start-up, e.g. historical data for a new region
+    @Value("${import.on-startup:}")
+    private String importOnStartup;
+    // followers get their readings from the primary's log instead
+    @Value("${replication.role:primary}")
+    private String replicationRole;
 
     @Bean
     public List<PricePlan> pricePlans() {
@@ -34,16 +66,6 @@ public class SeedingApplicationDataConfiguration {
         return pricePlans;
     }
 
-    @Bean
-    public Map<String, List<ElectricityReading>> perMeterElectricityReadings() {
-        final Map<String, List<ElectricityReading>> readings = new HashMap<>();
-        final ElectricityReadingsGenerator electricityReadingsGenerator = new ElectricityReadingsGenerator();
-        smartMeterToPricePlanAccounts()
-                .keySet()
-                .forEach(smartMeterId -> readings.put(smartMeterId, electricityReadingsGenerator.generate(20)));
-        return readings;
-    }
-
     @Bean
     public Map<String, String> smartMeterToPricePlanAccounts() {
         final Map<String, String> smartMeterToPricePlanAccounts = new HashMap<>();
@@ -52,9 +74,64 @@ public class SeedingApplicationDataConfiguration {
         smartMeterToPricePlanAccounts.put("smart-meter-2", MOST_EVIL_PRICE_PLAN_ID);
         smartMeterToPricePlanAccounts.put("smart-meter-3", STANDARD_PRICE_PLAN_ID);
         smartMeterToPricePlanAccounts.put("smart-meter-4", RENEWABLES_PRICE_PLAN_ID);
+        for (int meterIndex = 0; meterIndex < fleetMeters; meterIndex++) {
+            smartMeterToPricePlanAccounts.put(FleetGenerator.smartMeterId(meterIndex), PRICE_PLAN_IDS[meterIndex % PRICE_PLAN_IDS.length]);
+        }
         return smartMeterToPricePlanAccounts;
     }
 
+    /**
+     * Lists the meters this node seeds - the accounts' meters it owns, each with a few recent readings or, for fleet
+     * meters, the synthetic fleet's days of readings - and leaves their readings to be generated when they are first
+     * used or by the warm-up, so start-up does not wait for them however many there are.
+     */
+    @Bean
+    public SeedingWarmUp seeding(MeterReadingService meterReadingService, ShardRouter shardRouter,
+                                 @Value("${seeding.warm-up:true}") boolean warmUp,
+                                 @Value("${seeding.warm-up-threads:0}") int warmUpThreads) {
+        List<String> smartMeterIds = smartMeterToPricePlanAccounts().keySet().stream()
+                .filter(smartMeterId -> !isFollower() && shardRouter.isLocal(smartMeterId))
+                .collect(Collectors.toList());
+        ElectricityReadingsGenerator electricityReadingsGenerator = new ElectricityReadingsGenerator();
+        Instant now = Instant.now();
+        // every shard generates the same fleet and keeps the meters it owns
+        FleetGenerator fleetGenerator = fleetMeters > 0
+                ? new FleetGenerator(fleetSeed, fleetMeters, now.minus(Duration.ofDays(fleetDays)), now,
+                        Duration.ofSeconds(10), 8640, ZoneId.systemDefault())
+                : null;
+        return new SeedingWarmUp(meterReadingService, smartMeterIds, smartMeterId -> {
+            int fleetIndex = FleetGenerator.meterIndexOf(smartMeterId);
+            if (fleetGenerator == null || fleetIndex < 0) {
+                return electricityReadingsGenerator.generate(20);
+            }
+            List<ElectricityReading> readings = new ArrayList<>();
+            fleetGenerator.generateMeter(fleetIndex, (fleetMeterId, batch) -> readings.addAll(batch));
+            return readings;
+        }, !warmUp ? 0 : warmUpThreads > 0 ? warmUpThreads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Bean
+    public ApplicationRunner seedingWarmUp(SeedingWarmUp seeding) {
+        return args -> seeding.start();
+    }
+
+    @Bean
+    public ApplicationRunner startupImport(BulkReadingImporter bulkReadingImporter) {
+        return args -> {
+            if (importOnStartup.isEmpty() || isFollower()) {
+                return;
+            }
+            for (String path : importOnStartup.split(",")) {
+                ImportSummary summary = bulkReadingImporter.importPath(Paths.get(path.trim()));
+                LOGGER.info("{}: {}", path.trim(), summary);
+            }
+        };
+    }
+
+    private boolean isFollower() {
+        return "follower".equals(replicationRole);
+    }
+
     @Bean
     @Primary
     public ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
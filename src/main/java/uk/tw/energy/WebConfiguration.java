@@ -0,0 +1,55 @@
+package uk.tw.energy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import uk.tw.energy.controller.IngestAdmissionInterceptor;
+import uk.tw.energy.controller.MeterVersionETagInterceptor;
+import uk.tw.energy.controller.ReadReplicaInterceptor;
+import uk.tw.energy.controller.ShardRoutingInterceptor;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    private static final List<String> WEB_MODES = Arrays.asList("servlet", "async");
+
+    private final ReadReplicaInterceptor readReplicaInterceptor;
+    private final IngestAdmissionInterceptor ingestAdmissionInterceptor;
+    private final ShardRoutingInterceptor shardRoutingInterceptor;
+    private final MeterVersionETagInterceptor meterVersionETagInterceptor;
+
+    public WebConfiguration(ReadReplicaInterceptor readReplicaInterceptor,
+                            IngestAdmissionInterceptor ingestAdmissionInterceptor,
+                            ShardRoutingInterceptor shardRoutingInterceptor,
+                            MeterVersionETagInterceptor meterVersionETagInterceptor,
+                            @Value("${web.mode:servlet}") String webMode) {
+        // a misspelt mode would otherwise quietly serve everything on request threads
+        if (!WEB_MODES.contains(webMode)) {
+            throw new IllegalArgumentException("Unknown web.mode '" + webMode + "', expected one of " + WEB_MODES);
+        }
+        this.readReplicaInterceptor = readReplicaInterceptor;
+        this.ingestAdmissionInterceptor = ingestAdmissionInterceptor;
+        this.shardRoutingInterceptor = shardRoutingInterceptor;
+        this.meterVersionETagInterceptor = meterVersionETagInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // interceptors run in registration order: send writes to the primary first, then turn away stores over the
+        // client or concurrency limits before anything reads their body, then send other shards' meters away before
+        // anything reads the store
+        registry.addInterceptor(readReplicaInterceptor)
+                .addPathPatterns("/readings/**", "/shard/**");
+        registry.addInterceptor(ingestAdmissionInterceptor)
+                .addPathPatterns("/readings/store");
+        registry.addInterceptor(shardRoutingInterceptor)
+                .addPathPatterns("/readings/**", "/price-plans/**");
+        registry.addInterceptor(meterVersionETagInterceptor)
+                .addPathPatterns("/readings/read/**", "/price-plans/**")
+                .excludePathPatterns("/price-plans/*/*/stream");
+    }
+}
@@ -0,0 +1,189 @@
+package uk.tw.energy.admission;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a store request may go ahead, so that a few meters re-sending their history cannot starve everyone
+ * else. A request is turned away, before its readings go anywhere near the store, when:
+ * <ul>
+ *     <li>it carries more than {@code admission.max-batch-readings} readings,</li>
+ *     <li>its meter has sent more than {@code admission.meter.requests-per-second}, with bursts of
+ *     {@code admission.meter.burst},</li>
+ *     <li>its client has sent more than {@code admission.client.requests-per-second}, with bursts of
+ *     {@code admission.client.burst}, or</li>
+ *     <li>{@code admission.max-concurrent-stores} store requests are already in progress.</li>
+ * </ul>
+ * Each limit is off when set to 0. Only the batch size is limited by default.
+ */
+@Component
+public class IngestAdmission implements MeterBinder {
+
+    public enum Reason {
+        BATCH_SIZE("batch-size"), METER_RATE("meter-rate"), CLIENT_RATE("client-rate"), CONCURRENCY("concurrency");
+
+        private final String tag;
+
+        Reason(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Why a request was turned away, and how long the sender should wait before trying again.
+     */
+    public static final class Rejection {
+
+        private final Reason reason;
+        private final long retryAfterSeconds;
+
+        Rejection(Reason reason, long retryAfterSeconds) {
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * 413 for a batch that will never be admitted as it is, 429 otherwise.
+         */
+        public HttpStatus getStatus() {
+            return reason == Reason.BATCH_SIZE ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.TOO_MANY_REQUESTS;
+        }
+
+        /**
+         * Whole seconds to wait before retrying, or 0 if retrying the same request will not help.
+         */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final int maxBatchReadings;
+    private final TokenBuckets meterBuckets;
+    private final TokenBuckets clientBuckets;
+    private final int maxConcurrentStores;
+    private final long sweepIntervalSeconds;
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final Map<Reason, LongAdder> rejected = new EnumMap<>(Reason.class);
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public IngestAdmission(@Value("${admission.max-batch-readings:10000}") int maxBatchReadings,
+                           @Value("${admission.meter.requests-per-second:0}") double meterRequestsPerSecond,
+                           @Value("${admission.meter.burst:10}") int meterBurst,
+                           @Value("${admission.client.requests-per-second:0}") double clientRequestsPerSecond,
+                           @Value("${admission.client.burst:100}") int clientBurst,
+                           @Value("${admission.max-concurrent-stores:0}") int maxConcurrentStores,
+                           @Value("${admission.sweep-interval-seconds:60}") long sweepIntervalSeconds) {
+        this.maxBatchReadings = maxBatchReadings;
+        this.meterBuckets = meterRequestsPerSecond > 0 ? new TokenBuckets(meterRequestsPerSecond, meterBurst) : null;
+        this.clientBuckets = clientRequestsPerSecond > 0 ? new TokenBuckets(clientRequestsPerSecond, clientBurst) : null;
+        this.maxConcurrentStores = maxConcurrentStores;
+        this.sweepIntervalSeconds = sweepIntervalSeconds;
+        for (Reason reason : Reason.values()) {
+            rejected.put(reason, new LongAdder());
+        }
+    }
+
+    public static IngestAdmission unlimited() {
+        return new IngestAdmission(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (meterBuckets == null && clientBuckets == null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "admission-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> evictIdle(System.nanoTime()),
+                sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Reason reason : Reason.values()) {
+            FunctionCounter.builder("readings.ingest.throttled", rejected.get(reason), LongAdder::sum)
+                    .description("Store requests turned away by admission control")
+                    .tag("reason", reason.tag)
+                    .register(registry);
+        }
+        Gauge.builder("readings.ingest.in-progress", inProgress, AtomicInteger::get)
+                .description("Store requests admitted and not yet answered")
+                .register(registry);
+    }
+
+    /**
+     * Admits a store request from {@code client} into the store path, or returns why not. Requests forwarded by
+     * another shard pass a null client, so that they only count towards the concurrency limit. Every admitted request
+     * must be followed by {@link #exit()}.
+     */
+    public Rejection enter(String client) {
+        if (inProgress.incrementAndGet() > maxConcurrentStores && maxConcurrentStores > 0) {
+            inProgress.decrementAndGet();
+            return reject(Reason.CONCURRENCY, 0);
+        }
+        long waitNanos = clientBuckets == null || client == null ? 0 : clientBuckets.tryAcquire(client, System.nanoTime());
+        if (waitNanos > 0) {
+            inProgress.decrementAndGet();
+            return reject(Reason.CLIENT_RATE, waitNanos);
+        }
+        return null;
+    }
+
+    public void exit() {
+        inProgress.decrementAndGet();
+    }
+
+    public Rejection checkBatchSize(int readings) {
+        return maxBatchReadings > 0 && readings > maxBatchReadings ? reject(Reason.BATCH_SIZE, -1) : null;
+    }
+
+    public Rejection admitMeter(String smartMeterId) {
+        long waitNanos = meterBuckets == null ? 0 : meterBuckets.tryAcquire(smartMeterId, System.nanoTime());
+        return waitNanos > 0 ? reject(Reason.METER_RATE, waitNanos) : null;
+    }
+
+    /**
+     * Forgets the meters and clients whose buckets have refilled by {@code nowNanos}.
+     */
+    public int evictIdle(long nowNanos) {
+        return (meterBuckets == null ? 0 : meterBuckets.evictFull(nowNanos))
+                + (clientBuckets == null ? 0 : clientBuckets.evictFull(nowNanos));
+    }
+
+    private Rejection reject(Reason reason, long waitNanos) {
+        rejected.get(reason).increment();
+        long retryAfterSeconds = waitNanos < 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return new Rejection(reason, retryAfterSeconds);
+    }
+}
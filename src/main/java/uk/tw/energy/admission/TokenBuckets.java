@@ -0,0 +1,73 @@
+package uk.tw.energy.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One token bucket per key, refilled at {@code ratePerSecond} up to {@code burst} tokens, without locks.
+ * <p>
+ * Each bucket is kept as a single {@code long}, the time at which it would be full again (the generic cell rate
+ * algorithm), and taken from with a compare-and-set. A key that has not been seen, or whose bucket has refilled, needs
+ * no state at all, so {@link #evictFull} can drop it and only keys that are actually being throttled stay in memory.
+ * Times are {@link System#nanoTime()} values.
+ */
+public final class TokenBuckets {
+
+    private static final long NEVER_USED = Long.MIN_VALUE;
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final Map<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+
+    public TokenBuckets(double ratePerSecond, long burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token buckets need a positive rate and a burst of at least one token");
+        }
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = nanosPerToken * burst;
+    }
+
+    /**
+     * Takes a token from {@code key}'s bucket, returning 0 if there was one, or otherwise how many nanoseconds until
+     * there will be.
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        AtomicLong bucket = fullAt.get(key);
+        if (bucket == null) {
+            bucket = fullAt.computeIfAbsent(key, ignored -> new AtomicLong(NEVER_USED));
+        }
+        while (true) {
+            long current = bucket.get();
+            long from = current == NEVER_USED || current - nowNanos < 0 ? nowNanos : current;
+            long next = from + nanosPerToken;
+            long overdraft = next - nowNanos - burstNanos;
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (bucket.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that have refilled by {@code nowNanos} and returns how many were dropped. A token taken from a
+     * bucket while it is being dropped is forgotten, so a key can at most get one extra burst.
+     */
+    public int evictFull(long nowNanos) {
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLong> bucket : fullAt.entrySet()) {
+            long current = bucket.getValue().get();
+            if ((current == NEVER_USED || current - nowNanos <= 0) && fullAt.remove(bucket.getKey(), bucket.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return fullAt.size();
+    }
+}
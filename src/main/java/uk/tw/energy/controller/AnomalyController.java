@@ -0,0 +1,40 @@
+package uk.tw.energy.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.domain.ReadingAnomaly;
+import uk.tw.energy.service.AnomalyDetector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/anomalies")
+public class AnomalyController {
+
+    private final AnomalyDetector anomalyDetector;
+
+    public AnomalyController(AnomalyDetector anomalyDetector) {
+        this.anomalyDetector = anomalyDetector;
+    }
+
+    /**
+     * The most recent anomalies raised on this node, newest first, optionally for one meter or of one type
+     * ({@code SPIKE}, {@code STUCK} or {@code GAP}).
+     */
+    @GetMapping
+    public ResponseEntity recentAnomalies(@RequestParam(required = false) String smartMeterId,
+                                          @RequestParam(required = false) ReadingAnomaly.Type type,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1) {
+            Map<String, String> wrongResponse = new HashMap<>(1);
+            wrongResponse.put("Message", "limit must be at least 1");
+            return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(anomalyDetector.getRecent(smartMeterId, type, limit));
+    }
+}
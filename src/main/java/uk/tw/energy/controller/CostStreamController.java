@@ -0,0 +1,73 @@
+package uk.tw.energy.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.CostStreamService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static uk.tw.energy.controller.PricePlanComparatorController.PRICE_PLAN_COMPARISONS_KEY;
+import static uk.tw.energy.controller.PricePlanComparatorController.PRICE_PLAN_ID_KEY;
+import static uk.tw.energy.controller.PricePlanComparatorController.checkNullOrBlank;
+
+@RestController
+@RequestMapping("/price-plans")
+public class CostStreamController {
+
+    static final String COST_EVENT_NAME = "cost";
+    private final CostStreamService costStreamService;
+    private final AccountService accountService;
+    private final long streamTimeoutMillis;
+    private final String day_of_week = "day of week";
+    private final String consumptions = "consumptions";
+
+    public CostStreamController(CostStreamService costStreamService, AccountService accountService,
+                                @Value("${price-plans.stream.timeout-millis:1800000}") long streamTimeoutMillis) {
+        this.costStreamService = costStreamService;
+        this.accountService = accountService;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+    }
+
+    @GetMapping(path = "/cost-dayofweek/{smartMeterId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCostDayOfWeek(@PathVariable String smartMeterId) {
+        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
+        if (checkNullOrBlank(pricePlanId)) {
+            Map<String, String> wrongResponse = new HashMap<>(1);
+            wrongResponse.put("Message", "This smartMeterId does not exsit, please check or login it");
+            return new ResponseEntity(wrongResponse, HttpStatus.BAD_REQUEST);
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Runnable unsubscribe = costStreamService.subscribe(smartMeterId, costs -> {
+            try {
+                emitter.send(SseEmitter.event().name(COST_EVENT_NAME).data(toEvent(pricePlanId, costs)));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    private Map<String, Object> toEvent(String pricePlanId, Map<String, BigDecimal> costs) {
+        Map<String, Object> event = new HashMap<>();
+        event.put(consumptions, costs.get(pricePlanId));
+        event.put(PRICE_PLAN_ID_KEY, pricePlanId);
+        event.put(PRICE_PLAN_COMPARISONS_KEY, costs);
+        event.put(day_of_week, LocalDate.now().getDayOfWeek());
+        return event;
+    }
+}
@@ -0,0 +1,124 @@
+package uk.tw.energy.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.tw.energy.exporter.BillingExportService;
+import uk.tw.energy.exporter.ExportJob;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bulk exports of this node's readings for billing runs. An export is started with {@code POST /exports}, polled at
+ * the returned location, and its file downloaded from {@code /exports/{id}/data} once complete.
+ */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private final BillingExportService billingExportService;
+
+    public ExportController(BillingExportService billingExportService) {
+        this.billingExportService = billingExportService;
+    }
+
+    /**
+     * Exports readings from the start of {@code from} to the start of {@code to}, in the system time zone like the
+     * price plan costs, of the meters on {@code pricePlanId}. Every parameter is optional; without {@code from} the
+     * export starts from the earliest readings still kept raw.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> startExport(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                           @RequestParam(required = false) String pricePlanId) throws IOException {
+        Instant fromInstant = from == null ? billingExportService.getEarliestFrom() : from.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant toInstant = to == null ? Instant.MAX : to.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        if (!fromInstant.isBefore(toInstant)) {
+            return message("from must be before to", HttpStatus.BAD_REQUEST);
+        }
+        ExportJob job;
+        try {
+            job = billingExportService.submit(fromInstant, toInstant, pricePlanId);
+        } catch (IllegalArgumentException e) {
+            return message(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/exports/" + job.getId()))
+                .body(describe(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> exportStatus(@PathVariable String id) {
+        ExportJob job = billingExportService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(describe(job));
+    }
+
+    @GetMapping("/{id}/data")
+    public ResponseEntity downloadExport(@PathVariable String id) {
+        ExportJob job = billingExportService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != ExportJob.Status.COMPLETE) {
+            return message("Export is " + job.getStatus(), HttpStatus.CONFLICT);
+        }
+        StreamingResponseBody body = out -> billingExportService.transferTo(job, Channels.newChannel(out));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(job.getBytes())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFile().getFileName() + "\"")
+                .body(body);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity deleteExport(@PathVariable String id) throws IOException {
+        if (billingExportService.getJob(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!billingExportService.delete(id)) {
+            return message("Export is still running", HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    private static Map<String, Object> describe(ExportJob job) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", job.getId());
+        description.put("status", job.getStatus());
+        description.put("from", job.getFrom());
+        description.put("to", job.getTo());
+        description.put("pricePlanId", job.getPricePlanId());
+        description.put("meters", job.getMeters());
+        description.put("readings", job.getReadings());
+        description.put("bytes", job.getBytes());
+        description.put("skippedMeters", job.getSkippedMeters());
+        description.put("partialMeters", job.getPartialMeters());
+        description.put("warnings", job.getWarnings());
+        description.put("error", job.getError());
+        return description;
+    }
+
+    private static ResponseEntity<Map<String, Object>> message(String message, HttpStatus status) {
+        Map<String, Object> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", message);
+        return new ResponseEntity<>(wrongResponse, status);
+    }
+}
@@ -0,0 +1,88 @@
+package uk.tw.energy.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.service.FleetDemandService;
+import uk.tw.energy.shard.ShardUnavailableException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/demand")
+public class FleetDemandController {
+
+    private final FleetDemandService fleetDemandService;
+
+    public FleetDemandController(FleetDemandService fleetDemandService) {
+        this.fleetDemandService = fleetDemandService;
+    }
+
+    /**
+     * The demand curve of every meter, across all shards, in [from, to), by default the last hour, in buckets of
+     * {@code bucketSeconds} (a multiple of 10), optionally broken down by price plan.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> demand(@RequestParam(required = false) Instant from,
+                                                      @RequestParam(required = false) Instant to,
+                                                      @RequestParam(defaultValue = "60") long bucketSeconds,
+                                                      @RequestParam(defaultValue = "false") boolean byPricePlan) {
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofHours(1)) : from;
+        if (!start.isBefore(end)) {
+            return badRequest("Expected from before to");
+        }
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand;
+        try {
+            demand = fleetDemandService.getFleetDemand(start, end, Duration.ofSeconds(bucketSeconds));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        } catch (ShardUnavailableException e) {
+            Map<String, Object> unavailableResponse = new HashMap<>(1);
+            unavailableResponse.put("Message", e.getMessage());
+            return new ResponseEntity<>(unavailableResponse, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        List<Map<String, Object>> buckets = new ArrayList<>(demand.size());
+        demand.forEach((bucketStart, byPlan) -> buckets.add(toBucket(bucketStart, byPlan, bucketSeconds, byPricePlan)));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", start);
+        response.put("to", end);
+        response.put("bucketSeconds", bucketSeconds);
+        response.put("buckets", buckets);
+        return ResponseEntity.ok(response);
+    }
+
+    private static Map<String, Object> toBucket(Instant start, Map<String, FleetDemandService.Demand> byPlan,
+                                                long bucketSeconds, boolean byPricePlan) {
+        FleetDemandService.Demand total = null;
+        Map<String, Object> pricePlans = new LinkedHashMap<>();
+        for (Map.Entry<String, FleetDemandService.Demand> plan : byPlan.entrySet()) {
+            total = total == null ? plan.getValue() : total.plus(plan.getValue());
+            pricePlans.put(plan.getKey(), plan.getValue().getKilowatts());
+        }
+        Map<String, Object> bucket = new LinkedHashMap<>();
+        bucket.put("start", start);
+        bucket.put("end", start.plusSeconds(bucketSeconds));
+        bucket.put("demand", total == null ? null : total.getKilowatts());
+        bucket.put("readings", total == null ? 0 : total.getReadings());
+        if (byPricePlan) {
+            bucket.put("pricePlans", pricePlans);
+        }
+        return bucket;
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", message);
+        return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+    }
+}
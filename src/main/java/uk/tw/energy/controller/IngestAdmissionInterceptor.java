@@ -0,0 +1,63 @@
+package uk.tw.energy.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import uk.tw.energy.admission.IngestAdmission;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Applies the per-client and concurrency limits of {@link IngestAdmission} to store requests before their body is
+ * read, so a request over a limit is answered with an empty 429 without deserializing anything. Limits that depend on
+ * the readings themselves are applied by {@link MeterReadingController}.
+ */
+@Component
+public class IngestAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_ATTRIBUTE = IngestAdmissionInterceptor.class.getName() + ".admitted";
+
+    private final IngestAdmission ingestAdmission;
+    private final ShardRouter shardRouter;
+
+    public IngestAdmissionInterceptor(IngestAdmission ingestAdmission) {
+        this(ingestAdmission, ShardRouter.standalone());
+    }
+
+    @Autowired
+    public IngestAdmissionInterceptor(IngestAdmission ingestAdmission, ShardRouter shardRouter) {
+        this.ingestAdmission = ingestAdmission;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+        // another shard forwarding readings speaks for many clients, so it is only held to the concurrency limit; anyone
+        // else claiming to be one is held to the client limit like any other
+        boolean forwarded = request.getHeader(ShardClient.FORWARDED_HEADER) != null && shardRouter.isPeerAddress(request.getRemoteAddr());
+        String client = forwarded ? null : request.getRemoteAddr();
+        IngestAdmission.Rejection rejection = ingestAdmission.enter(client);
+        if (rejection != null) {
+            response.setStatus(rejection.getStatus().value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfterSeconds()));
+            return false;
+        }
+        request.setAttribute(ADMITTED_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED_ATTRIBUTE) != null) {
+            request.setAttribute(ADMITTED_ATTRIBUTE, null);
+            ingestAdmission.exit();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package uk.tw.energy.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.service.LoadProfileService;
+import uk.tw.energy.shard.ShardUnavailableException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/readings")
+public class LoadProfileController {
+
+    private static final String DEFAULT_QUANTILES = "0.5,0.95,0.99";
+    private final LoadProfileService loadProfileService;
+
+    public LoadProfileController(LoadProfileService loadProfileService) {
+        this.loadProfileService = loadProfileService;
+    }
+
+    @GetMapping("/percentiles/{smartMeterId}")
+    public ResponseEntity<Map<String, Object>> meterPercentiles(@PathVariable String smartMeterId,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                @RequestParam(value = "quantiles", defaultValue = DEFAULT_QUANTILES) List<Double> quantiles) {
+        if (from.isAfter(to) || !areValid(quantiles)) {
+            return badRequest();
+        }
+        Map<LocalDate, QuantileSketch> sketches = loadProfileService.getDailyLoadProfile(smartMeterId, from, to);
+        if (sketches.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> days = new LinkedHashMap<>();
+        sketches.forEach((day, sketch) -> days.put(day.toString(), percentilesOf(sketch, quantiles)));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("smartMeterId", smartMeterId);
+        response.put("days", days);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/percentiles")
+    public ResponseEntity<Map<String, Object>> fleetPercentiles(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                @RequestParam(value = "pricePlanId", required = false) String pricePlanId,
+                                                                @RequestParam(value = "quantiles", defaultValue = DEFAULT_QUANTILES) List<Double> quantiles) {
+        if (from.isAfter(to) || !areValid(quantiles)) {
+            return badRequest();
+        }
+        QuantileSketch sketch;
+        try {
+            sketch = loadProfileService.getFleetLoadProfile(from, to, pricePlanId);
+        } catch (ShardUnavailableException e) {
+            Map<String, Object> unavailableResponse = new HashMap<>(1);
+            unavailableResponse.put("Message", e.getMessage());
+            return new ResponseEntity<>(unavailableResponse, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (sketch.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", from.toString());
+        response.put("to", to.toString());
+        response.put(PricePlanComparatorController.PRICE_PLAN_ID_KEY, pricePlanId);
+        response.putAll(percentilesOf(sketch, quantiles));
+        return ResponseEntity.ok(response);
+    }
+
+    static Map<String, Object> percentilesOf(QuantileSketch sketch, List<Double> quantiles) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("count", sketch.getCount());
+        for (Double quantile : quantiles) {
+            String label = "p" + BigDecimal.valueOf(quantile * 100).stripTrailingZeros().toPlainString();
+            percentiles.put(label, BigDecimal.valueOf(sketch.quantile(quantile)).setScale(4, RoundingMode.HALF_UP));
+        }
+        return percentiles;
+    }
+
+    private static boolean areValid(List<Double> quantiles) {
+        return quantiles.stream().allMatch(quantile -> quantile != null && quantile >= 0 && quantile <= 1);
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest() {
+        Map<String, Object> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", "Expected from not after to and quantiles between 0 and 1");
+        return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,39 +1,118 @@
 package uk.tw.energy.controller;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import uk.tw.energy.admission.IngestAdmission;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.MeterReadings;
 import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+import uk.tw.energy.shard.ShardUnavailableException;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 @RestController
 @RequestMapping("/readings")
-public class MeterReadingController {
+public class MeterReadingController implements MeterBinder {
 
     private final MeterReadingService meterReadingService;
+    private final ShardRouter shardRouter;
+    private final ShardClient shardClient;
+    private final IngestAdmission ingestAdmission;
+    private final LongAdder rejectedBatches = new LongAdder();
 
     public MeterReadingController(MeterReadingService meterReadingService) {
+        this(meterReadingService, IngestAdmission.unlimited());
+    }
+
+    public MeterReadingController(MeterReadingService meterReadingService, IngestAdmission ingestAdmission) {
+        this(meterReadingService, ShardRouter.standalone(), null, ingestAdmission);
+    }
+
+    @Autowired
+    public MeterReadingController(MeterReadingService meterReadingService, ShardRouter shardRouter, ShardClient shardClient,
+                                  IngestAdmission ingestAdmission) {
         this.meterReadingService = meterReadingService;
+        this.shardRouter = shardRouter;
+        this.shardClient = shardClient;
+        this.ingestAdmission = ingestAdmission;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("readings.ingest.rejected", rejectedBatches, LongAdder::sum)
+                .description("Store requests rejected before reaching the store")
+                .register(registry);
+    }
+
+    public ResponseEntity storeReadings(MeterReadings meterReadings) {
+        return storeReadings(meterReadings, false);
     }
 
+    /**
+     * Stores readings for a meter this node owns and forwards the rest to their owner, unless they were forwarded here
+     * already - owners can briefly disagree while nodes are joining, and the readings must not bounce between them.
+     * Only another node of the shard can say it forwarded readings; the header is ignored from any other address.
+     * Oversized batches are refused before forwarding, and the meter's rate limit is applied by the node storing them.
+     */
     @PostMapping("/store")
-    public ResponseEntity storeReadings(@RequestBody MeterReadings meterReadings) {
+    public ResponseEntity storeReadings(@RequestBody MeterReadings meterReadings,
+                                        @RequestHeader(value = ShardClient.FORWARDED_HEADER, required = false) String forwardedBy,
+                                        HttpServletRequest request) {
+        return storeReadings(meterReadings, forwardedBy != null && shardRouter.isPeerAddress(request.getRemoteAddr()));
+    }
+
+    private ResponseEntity storeReadings(MeterReadings meterReadings, boolean forwarded) {
         if (!isMeterReadingsValid(meterReadings)) {
+            rejectedBatches.increment();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
-        meterReadingService.storeReadings(meterReadings.getSmartMeterId(), meterReadings.getElectricityReadings());
+        IngestAdmission.Rejection oversized = ingestAdmission.checkBatchSize(meterReadings.getElectricityReadings().size());
+        if (oversized != null) {
+            return ResponseEntity.status(oversized.getStatus()).build();
+        }
+        String smartMeterId = meterReadings.getSmartMeterId();
+        if (!forwarded && !shardRouter.isLocal(smartMeterId)) {
+            try {
+                return ResponseEntity.status(shardClient.forwardReadings(shardRouter.ownerOf(smartMeterId), shardRouter.getSelf(), meterReadings)).build();
+            } catch (ShardUnavailableException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+        IngestAdmission.Rejection throttled = ingestAdmission.admitMeter(smartMeterId);
+        if (throttled != null) {
+            return ResponseEntity.status(throttled.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(throttled.getRetryAfterSeconds()))
+                    .build();
+        }
+        meterReadingService.storeReadings(smartMeterId, meterReadings.getElectricityReadings());
         return ResponseEntity.ok().build();
     }
 
     private boolean isMeterReadingsValid(MeterReadings meterReadings) {
         String smartMeterId = meterReadings.getSmartMeterId();
         List<ElectricityReading> electricityReadings = meterReadings.getElectricityReadings();
-        return smartMeterId != null && !smartMeterId.isEmpty()
-                && electricityReadings != null && !electricityReadings.isEmpty();
+        if (smartMeterId == null || smartMeterId.isEmpty() || electricityReadings == null || electricityReadings.isEmpty()) {
+            return false;
+        }
+        // checked before anything is stored: a reading the index cannot take would leave the meter half updated
+        for (ElectricityReading electricityReading : electricityReadings) {
+            if (electricityReading.getTime() == null || electricityReading.getReading() == null
+                    || electricityReading.getReading().signum() < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @GetMapping("/read/{smartMeterId}")
@@ -0,0 +1,51 @@
+package uk.tw.energy.controller;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/meterstore}: size of the reading store and the meters holding the most readings. Per-meter counts
+ * are kept out of the metrics themselves, where one series per meter would not scale with the fleet.
+ */
+@Component
+@Endpoint(id = "meterstore")
+public class MeterStoreEndpoint {
+
+    static final int LARGEST_METERS = 10;
+
+    private final MeterReadingService meterReadingService;
+
+    public MeterStoreEndpoint(MeterReadingService meterReadingService) {
+        this.meterReadingService = meterReadingService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> meterStore() {
+        Map<String, Integer> largestMeters = new LinkedHashMap<>();
+        meterReadingService.getSmartMeterIds().stream()
+                .map(smartMeterId -> new AbstractMap.SimpleImmutableEntry<>(smartMeterId, readingCount(smartMeterId)))
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(LARGEST_METERS)
+                .forEach(meter -> largestMeters.put(meter.getKey(), meter.getValue()));
+
+        Map<String, Object> store = new LinkedHashMap<>();
+        store.put("meters", meterReadingService.getSmartMeterIds().size());
+        store.put("readings", meterReadingService.getStoredReadingsCount());
+        store.put("estimatedBytes", meterReadingService.getEstimatedMemoryBytes());
+        store.put("largestMeters", largestMeters);
+        return store;
+    }
+
+    private int readingCount(String smartMeterId) {
+        List<ElectricityReading> readings = meterReadingService.getReadings(smartMeterId);
+        return readings == null ? 0 : readings.size();
+    }
+}
@@ -0,0 +1,94 @@
+package uk.tw.energy.controller;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.PricePlanService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers conditional GETs for per-meter resources before the controller runs. The ETag is derived from the meter's
+ * data version and the price plans it is compared against, so a matching {@code If-None-Match} is answered with 304
+ * without reading the store, pricing or serializing anything.
+ */
+@Component
+public class MeterVersionETagInterceptor implements HandlerInterceptor, MeterBinder {
+
+    static final String SMART_METER_ID_VARIABLE = "smartMeterId";
+    private static final String PRICE_PLANS_PATH = "/price-plans/";
+
+    // versions restart from zero with the process, so the ETag must not survive a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final MeterReadingService meterReadingService;
+    private final PricePlanService pricePlanService;
+    private final AccountService accountService;
+    private final LongAdder notModifiedRequests = new LongAdder();
+    private final LongAdder modifiedRequests = new LongAdder();
+
+    public MeterVersionETagInterceptor(MeterReadingService meterReadingService, PricePlanService pricePlanService,
+                                       AccountService accountService) {
+        this.meterReadingService = meterReadingService;
+        this.pricePlanService = pricePlanService;
+        this.accountService = accountService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String smartMeterId = smartMeterIdOf(request);
+        if (smartMeterId == null) {
+            return true;
+        }
+        boolean notModified = new ServletWebRequest(request, response).checkNotModified(eTagFor(request.getRequestURI(), smartMeterId));
+        if (request.getHeader("If-None-Match") != null) {
+            (notModified ? notModifiedRequests : modifiedRequests).increment();
+        }
+        return !notModified;
+    }
+
+    String eTagFor(String requestUri, String smartMeterId) {
+        StringBuilder eTag = new StringBuilder("\"")
+                .append(epoch).append('-')
+                .append(meterReadingService.getVersion(smartMeterId));
+        if (requestUri.contains(PRICE_PLANS_PATH)) {
+            // price plan comparisons are windowed relative to today, so they also change at midnight
+            eTag.append('-').append(accountService.getPricePlanIdForSmartMeterId(smartMeterId))
+                    .append('-').append(Integer.toHexString(pricePlanService.getPricePlansVersion()))
+                    .append('-').append(LocalDate.now());
+        }
+        return eTag.append('"').toString();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        conditionalRequests(registry, "not-modified", notModifiedRequests);
+        conditionalRequests(registry, "modified", modifiedRequests);
+    }
+
+    private static void conditionalRequests(MeterRegistry registry, String outcome, LongAdder requests) {
+        FunctionCounter.builder("readings.conditional.requests", requests, LongAdder::sum)
+                .description("Conditional GETs for per-meter resources, by whether the client's copy was still current")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String smartMeterIdOf(HttpServletRequest request) {
+        Map<String, String> uriVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return uriVariables == null ? null : uriVariables.get(SMART_METER_ID_VARIABLE);
+    }
+}
@@ -0,0 +1,194 @@
+package uk.tw.energy.controller;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Collects store request bodies without holding a request thread while they arrive, for {@code web.mode=async}.
+ * <p>
+ * With blocking reads a meter on a slow link holds one of Tomcat's request threads for as long as it takes to send its
+ * readings, so a few hundred slow uploads leave no threads for anything else. This filter starts async processing and
+ * reads the body through a {@link ReadListener} whenever the container has data for it. Once the body is complete the
+ * request is dispatched again with the collected bytes, so it goes through the interceptors and
+ * {@link MeterReadingController} exactly as before but only needs a thread while the readings are stored.
+ */
+public class NonBlockingUploadFilter extends OncePerRequestFilter {
+
+    private static final int READ_BUFFER_BYTES = 8192;
+
+    private final long maxBodyBytes;
+    private final long timeoutMillis;
+
+    public NonBlockingUploadFilter(long maxBodyBytes, long timeoutMillis) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !request.isAsyncSupported();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodyBytes) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        CollectedBodyRequest collected = new CollectedBodyRequest(request);
+        AsyncContext async = request.startAsync(collected, response);
+        async.setTimeout(timeoutMillis);
+        async.addListener(new UploadTimeout());
+        ServletInputStream in = request.getInputStream();
+        in.setReadListener(new BodyCollector(in, collected, async, contentLength));
+    }
+
+    private final class BodyCollector implements ReadListener {
+
+        private final ServletInputStream in;
+        private final CollectedBodyRequest request;
+        private final AsyncContext async;
+        private final ByteArrayOutputStream body;
+        private final byte[] buffer = new byte[READ_BUFFER_BYTES];
+        private boolean rejected;
+
+        BodyCollector(ServletInputStream in, CollectedBodyRequest request, AsyncContext async, long contentLength) {
+            this.in = in;
+            this.request = request;
+            this.async = async;
+            this.body = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : READ_BUFFER_BYTES);
+        }
+
+        // called by the container, one call at a time, whenever more of the body can be read without blocking
+        @Override
+        public void onDataAvailable() throws IOException {
+            int read;
+            while (!rejected && in.isReady() && (read = in.read(buffer)) != -1) {
+                if (body.size() + read > maxBodyBytes) {
+                    // the length was not declared up front, so the limit is only found out part way through
+                    rejected = true;
+                    ((HttpServletResponse) async.getResponse()).setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                    async.complete();
+                    return;
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (!rejected) {
+                request.setBody(body.toByteArray());
+                async.dispatch();
+            }
+        }
+
+        // the client went away or the connection failed; there is nobody left to answer
+        @Override
+        public void onError(Throwable error) {
+            async.complete();
+        }
+    }
+
+    private static final class UploadTimeout implements AsyncListener {
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            ((HttpServletResponse) event.getAsyncContext().getResponse()).setStatus(HttpServletResponse.SC_REQUEST_TIMEOUT);
+            event.getAsyncContext().complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * The original request, with its body replaced by the bytes collected for it.
+     */
+    static final class CollectedBodyRequest extends HttpServletRequestWrapper {
+
+        private volatile byte[] body = new byte[0];
+
+        CollectedBodyRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        void setBody(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("The body has already been read");
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
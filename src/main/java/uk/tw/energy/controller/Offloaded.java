@@ -0,0 +1,17 @@
+package uk.tw.energy.controller;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks handlers, or every handler of a controller, to be run on the pricing pool rather than the request thread when
+ * {@code web.mode=async} (see {@link OffloadingHandlerAdapter}). Has no effect in the default servlet mode.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Offloaded {
+}
@@ -0,0 +1,91 @@
+package uk.tw.energy.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs {@link Offloaded} handlers on a bounded pool of pricing threads when {@code web.mode=async}, so the same
+ * controllers serve both web modes.
+ * <p>
+ * Arguments are still resolved on the request thread. The handler itself is then queued on the pool and a
+ * {@link DeferredResult} returned in its place, which hands the request thread back to Tomcat; Spring MVC writes
+ * whatever the handler returns once it has run, exactly as if it had returned it directly. Once the pool's queue is
+ * full further requests are turned away with 503 rather than queued without limit.
+ */
+public class OffloadingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    private final ExecutorService pricingPool;
+    private final Counter rejected;
+
+    public OffloadingHandlerAdapter(ExecutorService pricingPool, MeterRegistry meterRegistry) {
+        this.pricingPool = pricingPool;
+        this.rejected = Counter.builder("price-plans.pricing.rejected")
+                .description("Price plan comparisons turned away because the pricing pool was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        return isOffloaded(handlerMethod) ? new OffloadedHandlerMethod(handlerMethod) : super.createInvocableHandlerMethod(handlerMethod);
+    }
+
+    static boolean isOffloaded(HandlerMethod handlerMethod) {
+        return handlerMethod.hasMethodAnnotation(Offloaded.class)
+                || AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), Offloaded.class);
+    }
+
+    DeferredResult<Object> offload(Callable<Object> handler) {
+        DeferredResult<Object> result = new DeferredResult<>();
+        try {
+            pricingPool.execute(() -> {
+                try {
+                    result.setResult(handler.call());
+                } catch (Exception e) {
+                    result.setErrorResult(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.setResult(busy());
+        }
+        return result;
+    }
+
+    private static ResponseEntity<Map<String, String>> busy() {
+        Map<String, String> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", "Too many price plan comparisons in progress, please retry shortly");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(wrongResponse);
+    }
+
+    /**
+     * Returns a {@link DeferredResult} for the handler's return value, which Spring MVC picks up by the type of the
+     * value returned rather than the type the handler declares.
+     */
+    private final class OffloadedHandlerMethod extends ServletInvocableHandlerMethod {
+
+        OffloadedHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+        }
+
+        @Override
+        protected Object doInvoke(Object... args) {
+            return offload(() -> OffloadedHandlerMethod.super.doInvoke(args));
+        }
+    }
+}
@@ -18,6 +18,7 @@ import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/price-plans")
+@Offloaded
 public class PricePlanComparatorController {
 
     public final static String PRICE_PLAN_ID_KEY = "pricePlanId";
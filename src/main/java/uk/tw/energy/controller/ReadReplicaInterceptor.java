@@ -0,0 +1,46 @@
+package uk.tw.energy.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * On a follower ({@code replication.role=follower}) every write belongs to the primary: it is redirected there with
+ * 307, which keeps the method and body, or refused if no {@code replication.primary-url} is configured. Readings stored
+ * directly on a follower would never reach the primary or the other followers.
+ */
+@Component
+public class ReadReplicaInterceptor implements HandlerInterceptor {
+
+    static final String FOLLOWER = "follower";
+
+    private final boolean follower;
+    private final String primaryUrl;
+
+    public ReadReplicaInterceptor(@Value("${replication.role:primary}") String role,
+                                  @Value("${replication.primary-url:}") String primaryUrl) {
+        this.follower = FOLLOWER.equals(role);
+        this.primaryUrl = primaryUrl.endsWith("/") ? primaryUrl.substring(0, primaryUrl.length() - 1) : primaryUrl;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!follower || "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        if (primaryUrl.isEmpty()) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED.value());
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+        } else {
+            String query = request.getQueryString();
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION, primaryUrl + request.getRequestURI() + (query == null ? "" : "?" + query));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+package uk.tw.energy.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uk.tw.energy.domain.ReadingsSummary;
+import uk.tw.energy.domain.TimeBucket;
+import uk.tw.energy.service.PricePlanService;
+import uk.tw.energy.service.ReadingAggregationService;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/readings")
+public class ReadingAggregateController {
+
+    static final List<String> FUNCTIONS = Arrays.asList("count", "sum", "avg", "min", "max", "cost");
+    private final ReadingAggregationService readingAggregationService;
+    private final PricePlanService pricePlanService;
+
+    public ReadingAggregateController(ReadingAggregationService readingAggregationService, PricePlanService pricePlanService) {
+        this.readingAggregationService = readingAggregationService;
+        this.pricePlanService = pricePlanService;
+    }
+
+    @GetMapping("/aggregate/{smartMeterId}")
+    public ResponseEntity<Map<String, Object>> aggregateReadings(@PathVariable String smartMeterId,
+                                                                 @RequestParam Instant from,
+                                                                 @RequestParam Instant to,
+                                                                 @RequestParam(value = "bucket", defaultValue = "day") String bucket,
+                                                                 @RequestParam(value = "zone", required = false) String zone,
+                                                                 @RequestParam(value = "functions", defaultValue = "count,sum,avg,min,max") List<String> functions,
+                                                                 @RequestParam(value = "pricePlanIds", required = false) List<String> pricePlanIds) {
+        TimeBucket timeBucket;
+        ZoneId zoneId;
+        try {
+            timeBucket = TimeBucket.valueOf(bucket.toUpperCase(Locale.ROOT));
+            zoneId = zone == null ? ZoneId.systemDefault() : ZoneId.of(zone);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return badRequest("Unknown bucket or zone, buckets are " + Arrays.toString(TimeBucket.values()));
+        }
+        if (!from.isBefore(to) || !FUNCTIONS.containsAll(functions)) {
+            return badRequest("Expected from before to and functions among " + FUNCTIONS);
+        }
+        Map<ZonedDateTime, ReadingsSummary> aggregates;
+        try {
+            aggregates = readingAggregationService.aggregate(smartMeterId, from, to, timeBucket, zoneId);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        if (aggregates.values().stream().allMatch(ReadingsSummary::isEmpty)) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Map<String, Object>> buckets = new ArrayList<>(aggregates.size());
+        aggregates.forEach((start, summary) -> buckets.add(toBucket(start, timeBucket.next(start), summary, functions, pricePlanIds)));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("smartMeterId", smartMeterId);
+        response.put("bucket", timeBucket);
+        response.put("zone", zoneId.getId());
+        response.put("buckets", buckets);
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> toBucket(ZonedDateTime start, ZonedDateTime end, ReadingsSummary summary,
+                                         List<String> functions, List<String> pricePlanIds) {
+        Map<String, Object> bucket = new LinkedHashMap<>();
+        bucket.put("start", start.toOffsetDateTime());
+        bucket.put("end", end.toOffsetDateTime());
+        for (String function : functions) {
+            bucket.put(function, valueOf(function, summary, pricePlanIds));
+        }
+        return bucket;
+    }
+
+    private Object valueOf(String function, ReadingsSummary summary, List<String> pricePlanIds) {
+        if ("count".equals(function)) {
+            return summary.getCount();
+        }
+        if (summary.isEmpty()) {
+            return null;
+        }
+        switch (function) {
+            case "sum":
+                return summary.getSum();
+            case "avg":
+                return summary.getAverageReading();
+            case "min":
+                return summary.getMin();
+            case "max":
+                return summary.getMax();
+            default:
+                return costsOf(summary, pricePlanIds);
+        }
+    }
+
+    private Map<String, BigDecimal> costsOf(ReadingsSummary summary, List<String> pricePlanIds) {
+        if (summary.getFirst().equals(summary.getLast())) {
+            return null;
+        }
+        Map<String, BigDecimal> costs = pricePlanService.getConsumptionCostForEachPricePlan(summary);
+        if (pricePlanIds == null) {
+            return costs;
+        }
+        return costs.entrySet().stream()
+                .filter(cost -> pricePlanIds.contains(cost.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", message);
+        return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+    }
+}
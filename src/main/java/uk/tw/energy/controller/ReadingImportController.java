@@ -0,0 +1,64 @@
+package uk.tw.energy.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.importer.BulkReadingImporter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bulk import of readings files already on this node's disk. Only files under {@code import.directory} can be
+ * imported; the endpoint is disabled when it is not set.
+ */
+@RestController
+@RequestMapping("/readings")
+public class ReadingImportController {
+
+    private final BulkReadingImporter bulkReadingImporter;
+    private final Path importDirectory;
+
+    public ReadingImportController(BulkReadingImporter bulkReadingImporter,
+                                   @Value("${import.directory:}") String importDirectory) {
+        this.bulkReadingImporter = bulkReadingImporter;
+        this.importDirectory = importDirectory.isEmpty() ? null : Paths.get(importDirectory).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Imports a file, or every {@code .csv} and {@code .ndjson} file in a directory, given relative to
+     * {@code import.directory}.
+     */
+    @PostMapping("/import")
+    public ResponseEntity importReadings(@RequestParam String path) throws IOException {
+        if (importDirectory == null) {
+            return message("Import is not enabled on this node", HttpStatus.NOT_FOUND);
+        }
+        Path target = importDirectory.resolve(path).normalize();
+        if (!target.startsWith(importDirectory)) {
+            return message("Path must be within the import directory", HttpStatus.BAD_REQUEST);
+        }
+        if (!Files.exists(target)) {
+            return message("No such file or directory: " + path, HttpStatus.NOT_FOUND);
+        }
+        try {
+            return ResponseEntity.ok(bulkReadingImporter.importPath(target));
+        } catch (IllegalArgumentException e) {
+            return message(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> message(String message, HttpStatus status) {
+        Map<String, String> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", message);
+        return new ResponseEntity<>(wrongResponse, status);
+    }
+}
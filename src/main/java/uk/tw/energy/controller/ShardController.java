@@ -0,0 +1,102 @@
+package uk.tw.energy.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import uk.tw.energy.service.FleetDemandService;
+import uk.tw.energy.service.LoadProfileService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.shard.DemandTotals;
+import uk.tw.energy.shard.MeterHandover;
+import uk.tw.energy.shard.SketchBins;
+import uk.tw.energy.shard.ShardRebalancer;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Node-to-node endpoints: this node's share of fleet-wide queries, and shard membership.
+ */
+@RestController
+@RequestMapping("/shard")
+public class ShardController {
+
+    private final LoadProfileService loadProfileService;
+    private final FleetDemandService fleetDemandService;
+    private final MeterReadingService meterReadingService;
+    private final ShardRouter shardRouter;
+    private final ShardRebalancer shardRebalancer;
+
+    public ShardController(LoadProfileService loadProfileService, FleetDemandService fleetDemandService,
+                           MeterReadingService meterReadingService, ShardRouter shardRouter, ShardRebalancer shardRebalancer) {
+        this.loadProfileService = loadProfileService;
+        this.fleetDemandService = fleetDemandService;
+        this.meterReadingService = meterReadingService;
+        this.shardRouter = shardRouter;
+        this.shardRebalancer = shardRebalancer;
+    }
+
+    @GetMapping("/load-profile")
+    public ResponseEntity<SketchBins> localLoadProfile(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                       @RequestParam(value = "pricePlanId", required = false) String pricePlanId) {
+        return ResponseEntity.ok(SketchBins.of(loadProfileService.getLocalFleetLoadProfile(from, to, pricePlanId)));
+    }
+
+    @GetMapping("/demand")
+    public ResponseEntity<DemandTotals> localDemand(@RequestParam Instant from, @RequestParam Instant to,
+                                                    @RequestParam long bucketSeconds) {
+        try {
+            return ResponseEntity.ok(DemandTotals.of(fleetDemandService.getDemand(from, to, Duration.ofSeconds(bucketSeconds)),
+                    bucketSeconds / FleetDemandService.SLOT.getSeconds()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/nodes")
+    public ResponseEntity<Map<String, Object>> nodes() {
+        Map<String, Object> nodes = new LinkedHashMap<>();
+        nodes.put("self", shardRouter.getSelf());
+        nodes.put("nodes", shardRouter.getNodes());
+        return ResponseEntity.ok(nodes);
+    }
+
+    /**
+     * Replaces the shard membership on this node and hands over the meters it no longer owns. Send the same list to
+     * every node, existing nodes included.
+     */
+    @PutMapping("/nodes")
+    public ResponseEntity<Map<String, Object>> rebalance(@RequestBody List<String> nodes) {
+        try {
+            return ResponseEntity.ok(shardRebalancer.rebalance(nodes));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> wrongResponse = new HashMap<>(1);
+            wrongResponse.put("Message", e.getMessage());
+            return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Takes a meter handed over by the node that used to own it, compacted summaries included. This is not
+     * {@code /readings/store}: a handover carries the meter's whole history, which is far beyond the batch size and
+     * rate limits meant for meters sending readings.
+     */
+    @PostMapping("/handover")
+    public ResponseEntity<Map<String, Object>> handover(@RequestBody MeterHandover meterHandover) {
+        if (meterHandover.getSmartMeterId() == null || meterHandover.getSmartMeterId().isEmpty()) {
+            Map<String, Object> wrongResponse = new HashMap<>(1);
+            wrongResponse.put("Message", "Expected a smart meter id");
+            return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+        }
+        meterReadingService.adopt(meterHandover.getSmartMeterId(), meterHandover.toHistory());
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,50 @@
+package uk.tw.energy.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.tw.energy.shard.ShardRouter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Redirects requests for a meter owned by another node to that node with 307, which keeps the method, before anything
+ * reads this node's store. Registered after the read-replica and admission interceptors, which only look at the
+ * request, and ahead of those that read the store.
+ */
+@Component
+public class ShardRoutingInterceptor implements HandlerInterceptor {
+
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingInterceptor(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!shardRouter.isSharded()) {
+            return true;
+        }
+        String smartMeterId = smartMeterIdOf(request);
+        if (smartMeterId == null || shardRouter.isLocal(smartMeterId)) {
+            return true;
+        }
+        String query = request.getQueryString();
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION,
+                shardRouter.ownerOf(smartMeterId) + request.getRequestURI() + (query == null ? "" : "?" + query));
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String smartMeterIdOf(HttpServletRequest request) {
+        Map<String, String> uriVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return uriVariables == null ? null : uriVariables.get(MeterVersionETagInterceptor.SMART_METER_ID_VARIABLE);
+    }
+}
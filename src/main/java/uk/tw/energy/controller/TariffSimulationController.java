@@ -0,0 +1,82 @@
+package uk.tw.energy.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.domain.SimulationScenario;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.TariffSimulationService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/price-plans")
+public class TariffSimulationController {
+
+    static final String PRICING = "Energy at each plan's rate for its time of week, with peak time multipliers; "
+            + "not comparable with compare-all, which costs the average reading over the hours spanned at the unit rate";
+
+    private final TariffSimulationService tariffSimulationService;
+    private final AccountService accountService;
+
+    public TariffSimulationController(TariffSimulationService tariffSimulationService, AccountService accountService) {
+        this.tariffSimulationService = tariffSimulationService;
+        this.accountService = accountService;
+    }
+
+    /**
+     * What the meter's readings would have cost on every price plan with some of its load moved to other times of
+     * day, next to what they did cost, cheapest simulated plan first.
+     */
+    @PostMapping("/simulate/{smartMeterId}")
+    public ResponseEntity<Map<String, Object>> simulate(@PathVariable String smartMeterId,
+                                                        @RequestBody SimulationScenario scenario) {
+        if (scenario.getFrom() != null && scenario.getTo() != null && !scenario.getFrom().isBefore(scenario.getTo())) {
+            return badRequest("Expected from before to");
+        }
+        TariffSimulationService.Simulation simulation;
+        try {
+            simulation = tariffSimulationService.simulate(smartMeterId, scenario);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        if (simulation == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Map<String, Object>> comparisons = new ArrayList<>(simulation.getSimulatedCosts().size());
+        simulation.getSimulatedCosts().forEach((planName, simulatedCost) -> {
+            BigDecimal baselineCost = simulation.getBaselineCosts().get(planName);
+            Map<String, Object> comparison = new LinkedHashMap<>();
+            comparison.put(PricePlanComparatorController.PRICE_PLAN_ID_KEY, planName);
+            comparison.put("baselineCost", baselineCost);
+            comparison.put("simulatedCost", simulatedCost);
+            comparison.put("saving", baselineCost.subtract(simulatedCost));
+            comparisons.add(comparison);
+        });
+        comparisons.sort(Comparator.comparing(comparison -> (BigDecimal) comparison.get("simulatedCost")));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("smartMeterId", smartMeterId);
+        response.put(PricePlanComparatorController.PRICE_PLAN_ID_KEY, accountService.getPricePlanIdForSmartMeterId(smartMeterId));
+        response.put("kilowattHours", simulation.getKilowattHours());
+        response.put("shiftedKilowattHours", simulation.getShiftedKilowattHours());
+        response.put("pricing", PRICING);
+        response.put(PricePlanComparatorController.PRICE_PLAN_COMPARISONS_KEY, comparisons);
+        return ResponseEntity.ok(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> wrongResponse = new HashMap<>(1);
+        wrongResponse.put("Message", message);
+        return new ResponseEntity<>(wrongResponse, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,59 @@
+package uk.tw.energy.domain;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+/**
+ * Moves {@code percent} of the energy used in one band of the day to the next occurrence of another band, spread evenly
+ * over it - for example 20% of the energy used from 17:00 to 21:00 into 00:00 to 07:00 that night.
+ */
+public class LoadShift {
+
+    private Band from;
+    private Band to;
+    private BigDecimal percent;
+
+    public LoadShift() { }
+
+    public LoadShift(Band from, Band to, BigDecimal percent) {
+        this.from = from;
+        this.to = to;
+        this.percent = percent;
+    }
+
+    public Band getFrom() {
+        return from;
+    }
+
+    public Band getTo() {
+        return to;
+    }
+
+    public BigDecimal getPercent() {
+        return percent;
+    }
+
+    /**
+     * The times of day in [start, end), running past midnight if {@code start} is after {@code end}.
+     */
+    public static class Band {
+
+        private LocalTime start;
+        private LocalTime end;
+
+        public Band() { }
+
+        public Band(LocalTime start, LocalTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public LocalTime getStart() {
+            return start;
+        }
+
+        public LocalTime getEnd() {
+            return end;
+        }
+    }
+}
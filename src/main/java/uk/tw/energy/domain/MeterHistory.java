@@ -0,0 +1,68 @@
+package uk.tw.energy.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything held for one meter, as moved between nodes: its raw readings and what compaction left of older ones -
+ * per-hour summaries before {@code minutesFrom}, per-minute summaries before {@code rawFrom} - plus the quantile sketch
+ * of each day. Summaries are keyed by the start of their hour or minute. Each reading is counted in exactly one of the
+ * readings, minute summaries or hour summaries, and in its day's sketch.
+ */
+public class MeterHistory {
+
+    private final List<ElectricityReading> readings;
+    private final Map<Instant, ReadingsSummary> hourSummaries;
+    private final Map<Instant, ReadingsSummary> minuteSummaries;
+    private final Map<LocalDate, QuantileSketch> daySketches;
+    private final Instant rawFrom;
+    private final Instant minutesFrom;
+
+    public MeterHistory(List<ElectricityReading> readings, Map<Instant, ReadingsSummary> hourSummaries,
+                        Map<Instant, ReadingsSummary> minuteSummaries, Map<LocalDate, QuantileSketch> daySketches,
+                        Instant rawFrom, Instant minutesFrom) {
+        this.readings = Collections.unmodifiableList(readings);
+        this.hourSummaries = Collections.unmodifiableMap(hourSummaries);
+        this.minuteSummaries = Collections.unmodifiableMap(minuteSummaries);
+        this.daySketches = Collections.unmodifiableMap(daySketches);
+        this.rawFrom = rawFrom;
+        this.minutesFrom = minutesFrom;
+    }
+
+    public List<ElectricityReading> getReadings() {
+        return readings;
+    }
+
+    public Map<Instant, ReadingsSummary> getHourSummaries() {
+        return hourSummaries;
+    }
+
+    public Map<Instant, ReadingsSummary> getMinuteSummaries() {
+        return minuteSummaries;
+    }
+
+    public Map<LocalDate, QuantileSketch> getDaySketches() {
+        return daySketches;
+    }
+
+    /**
+     * Start of the first minute still held as raw readings, or null if the meter was never compacted.
+     */
+    public Instant getRawFrom() {
+        return rawFrom;
+    }
+
+    /**
+     * Start of the first hour still held as minute summaries, or null if the meter was never compacted.
+     */
+    public Instant getMinutesFrom() {
+        return minutesFrom;
+    }
+
+    public boolean isEmpty() {
+        return readings.isEmpty() && hourSummaries.isEmpty() && minuteSummaries.isEmpty();
+    }
+}
@@ -3,6 +3,7 @@ package uk.tw.energy.domain;
 import java.math.BigDecimal;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 
 public class PricePlan {
@@ -33,21 +34,45 @@ public class PricePlan {
 
     public BigDecimal getPrice(LocalDateTime dateTime) {
         return peakTimeMultipliers.stream()
-                .filter(multiplier -> multiplier.dayOfWeek.equals(dateTime.getDayOfWeek()))
+                .filter(multiplier -> multiplier.appliesAt(dateTime))
                 .findFirst()
                 .map(multiplier -> unitRate.multiply(multiplier.multiplier))
                 .orElse(unitRate);
     }
 
 
-    static class PeakTimeMultiplier {
+    /**
+     * Multiplies the unit rate on one day of the week, either all day or only in [from, to) on that day. A band whose
+     * {@code from} is after its {@code to} runs past midnight into the next day.
+     */
+    public static class PeakTimeMultiplier {
 
         DayOfWeek dayOfWeek;
         BigDecimal multiplier;
+        LocalTime from;
+        LocalTime to;
 
         public PeakTimeMultiplier(DayOfWeek dayOfWeek, BigDecimal multiplier) {
             this.dayOfWeek = dayOfWeek;
             this.multiplier = multiplier;
         }
+
+        public PeakTimeMultiplier(DayOfWeek dayOfWeek, LocalTime from, LocalTime to, BigDecimal multiplier) {
+            this(dayOfWeek, multiplier);
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean appliesAt(LocalDateTime dateTime) {
+            if (from == null) {
+                return dayOfWeek.equals(dateTime.getDayOfWeek());
+            }
+            LocalTime time = dateTime.toLocalTime();
+            if (!from.isAfter(to)) {
+                return dayOfWeek.equals(dateTime.getDayOfWeek()) && !time.isBefore(from) && time.isBefore(to);
+            }
+            return dayOfWeek.equals(dateTime.getDayOfWeek()) && !time.isBefore(from)
+                    || dayOfWeek.plus(1).equals(dateTime.getDayOfWeek()) && time.isBefore(to);
+        }
     }
 }
@@ -0,0 +1,184 @@
+package uk.tw.energy.domain;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch over non-negative values with bounded relative error (logarithmic bins, as in DDSketch).
+ * Anything lower is counted as zero.
+ * <p>
+ * A value v is counted in bin ceil(log(v) / log(gamma)), so any quantile is estimated within {@code relativeAccuracy}
+ * of the true value. Bins are kept in one contiguous array covering only the range actually seen; if that range grows
+ * beyond {@code maxBins}, the lowest bins are collapsed together, which only costs accuracy at the very low end.
+ * Sketches with the same parameters merge exactly, so per-meter sketches can be combined into fleet-wide ones.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 1024;
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+    private long[] bins = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1 || maxBins < 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1) and at least one bin is required");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+    }
+
+    /**
+     * Counts {@code value}. Values too small to index, negative ones included, are counted in the zero bin rather than
+     * refused, so a reading that slipped past validation cannot fail a store half way through updating a meter.
+     */
+    public void add(double value) {
+        count++;
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount++;
+            return;
+        }
+        increment((int) Math.ceil(Math.log(value) / logGamma), 1);
+    }
+
+    /**
+     * Rebuilds a sketch from the state exposed by its getters, e.g. after it has been sent to another node.
+     */
+    public static QuantileSketch fromBins(double relativeAccuracy, int maxBins, int binOffset, long[] bins, long zeroCount) {
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy, maxBins);
+        sketch.count = zeroCount;
+        sketch.zeroCount = zeroCount;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] != 0) {
+                sketch.count += bins[i];
+                sketch.increment(binOffset + i, bins[i]);
+            }
+        }
+        return sketch;
+    }
+
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Only sketches with the same relative accuracy can be merged");
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.bins.length; i++) {
+            if (other.bins[i] != 0) {
+                increment(other.offset + i, other.bins[i]);
+            }
+        }
+        return this;
+    }
+
+    public QuantileSketch copy() {
+        return new QuantileSketch(relativeAccuracy, maxBins).merge(this);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public int getMaxBins() {
+        return maxBins;
+    }
+
+    /**
+     * Bin index of the first entry of {@link #getBins()}.
+     */
+    public int getBinOffset() {
+        return offset;
+    }
+
+    public long[] getBins() {
+        return bins.clone();
+    }
+
+    /**
+     * Length of {@link #getBins()}, without copying them.
+     */
+    public int getBinCount() {
+        return bins.length;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Estimates the value at quantile {@code q} in [0, 1].
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (seen > rank) {
+                return 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, offset + bins.length - 1) / (gamma + 1);
+    }
+
+    private void increment(int index, long by) {
+        if (bins.length == 0) {
+            bins = new long[1];
+            offset = index;
+        } else if (index < offset) {
+            if (offset + bins.length - index > maxBins) {
+                // below everything kept: count it in the lowest bin rather than widen past the limit
+                index = offset;
+            } else {
+                grow(index, offset + bins.length - 1);
+            }
+        } else if (index >= offset + bins.length) {
+            grow(offset, index);
+        }
+        bins[index - offset] += by;
+    }
+
+    private void grow(int lowest, int highest) {
+        int newLowest = Math.max(lowest, highest - maxBins + 1);
+        long[] grown = new long[highest - newLowest + 1];
+        for (int i = 0; i < bins.length; i++) {
+            int target = Math.max(offset + i, newLowest) - newLowest;
+            grown[target] += bins[i];
+        }
+        bins = grown;
+        offset = newLowest;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", offset=" + offset + ", bins=" + Arrays.toString(bins) + '}';
+    }
+}
@@ -0,0 +1,64 @@
+package uk.tw.energy.domain;
+
+import java.time.Instant;
+
+/**
+ * Something unusual about a meter's readings, noticed as they were stored.
+ */
+public class ReadingAnomaly {
+
+    public enum Type {
+        /** a reading far outside the meter's recent range */
+        SPIKE,
+        /** the same reading, over and over, for longer than a working meter would give it */
+        STUCK,
+        /** readings missing for longer than the meter's cadence allows */
+        GAP
+    }
+
+    private final Type type;
+    private final String smartMeterId;
+    private final Instant time;
+    private final double reading;
+    private final double expected;
+    private final String description;
+
+    public ReadingAnomaly(Type type, String smartMeterId, Instant time, double reading, double expected, String description) {
+        this.type = type;
+        this.smartMeterId = smartMeterId;
+        this.time = time;
+        this.reading = reading;
+        this.expected = expected;
+        this.description = description;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getSmartMeterId() {
+        return smartMeterId;
+    }
+
+    /**
+     * When the reading that gave the anomaly away was taken.
+     */
+    public Instant getTime() {
+        return time;
+    }
+
+    public double getReading() {
+        return reading;
+    }
+
+    /**
+     * What the reading was expected to be, e.g. the meter's recent average for a spike.
+     */
+    public double getExpected() {
+        return expected;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
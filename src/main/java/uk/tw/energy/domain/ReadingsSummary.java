@@ -0,0 +1,106 @@
+package uk.tw.energy.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Sum, count and time span of a set of readings - everything a price plan needs to cost them - plus their extremes.
+ * Summaries can be built up one reading at a time and merged, so costs and aggregates can be maintained without
+ * holding on to the readings themselves.
+ */
+public class ReadingsSummary {
+
+    private BigDecimal sum = BigDecimal.ZERO;
+    private long count;
+    private Instant first;
+    private Instant last;
+    private BigDecimal min;
+    private BigDecimal max;
+
+    public ReadingsSummary() {
+    }
+
+    public ReadingsSummary(BigDecimal sum, long count, Instant first, Instant last, BigDecimal min, BigDecimal max) {
+        this.sum = sum;
+        this.count = count;
+        this.first = first;
+        this.last = last;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static ReadingsSummary of(Iterable<ElectricityReading> electricityReadings) {
+        ReadingsSummary summary = new ReadingsSummary();
+        for (ElectricityReading electricityReading : electricityReadings) {
+            summary.add(electricityReading);
+        }
+        return summary;
+    }
+
+    public ReadingsSummary add(ElectricityReading electricityReading) {
+        BigDecimal reading = electricityReading.getReading();
+        sum = sum.add(reading);
+        count++;
+        min = min == null || reading.compareTo(min) < 0 ? reading : min;
+        max = max == null || reading.compareTo(max) > 0 ? reading : max;
+        Instant time = electricityReading.getTime();
+        if (first == null || time.isBefore(first)) {
+            first = time;
+        }
+        if (last == null || time.isAfter(last)) {
+            last = time;
+        }
+        return this;
+    }
+
+    public ReadingsSummary merge(ReadingsSummary other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        sum = sum.add(other.sum);
+        count += other.count;
+        first = first == null || other.first.isBefore(first) ? other.first : first;
+        last = last == null || other.last.isAfter(last) ? other.last : last;
+        min = min == null || other.min.compareTo(min) < 0 ? other.min : min;
+        max = max == null || other.max.compareTo(max) > 0 ? other.max : max;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Instant getFirst() {
+        return first;
+    }
+
+    public Instant getLast() {
+        return last;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public BigDecimal getAverageReading() {
+        return sum.divide(BigDecimal.valueOf(count), RoundingMode.HALF_UP);
+    }
+
+    public BigDecimal getTimeElapsedInHours() {
+        return BigDecimal.valueOf(Duration.between(first, last).getSeconds() / 3600.0);
+    }
+}
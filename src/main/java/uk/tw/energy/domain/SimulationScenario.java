@@ -0,0 +1,35 @@
+package uk.tw.energy.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A what-if for one meter: its readings taken in [from, to), either end open if null, with {@code shifts} applied in
+ * order.
+ */
+public class SimulationScenario {
+
+    private Instant from;
+    private Instant to;
+    private List<LoadShift> shifts;
+
+    public SimulationScenario() { }
+
+    public SimulationScenario(Instant from, Instant to, List<LoadShift> shifts) {
+        this.from = from;
+        this.to = to;
+        this.shifts = shifts;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public List<LoadShift> getShifts() {
+        return shifts;
+    }
+}
@@ -0,0 +1,45 @@
+package uk.tw.energy.domain;
+
+import java.time.DayOfWeek;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar buckets that readings can be aggregated into. Buckets follow the wall clock of the zone they are computed
+ * in, so days and months stay aligned to local midnight across daylight saving changes.
+ */
+public enum TimeBucket {
+
+    MINUTE, HOUR, DAY, WEEK, MONTH;
+
+    public ZonedDateTime startOf(ZonedDateTime time) {
+        switch (this) {
+            case MINUTE:
+                return time.truncatedTo(ChronoUnit.MINUTES);
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return time.toLocalDate().atStartOfDay(time.getZone());
+            case WEEK:
+                return time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay(time.getZone());
+            default:
+                return time.toLocalDate().withDayOfMonth(1).atStartOfDay(time.getZone());
+        }
+    }
+
+    public ZonedDateTime next(ZonedDateTime start) {
+        switch (this) {
+            case MINUTE:
+                return start.plusMinutes(1);
+            case HOUR:
+                return start.plusHours(1);
+            case DAY:
+                return start.toLocalDate().plusDays(1).atStartOfDay(start.getZone());
+            case WEEK:
+                return start.toLocalDate().plusWeeks(1).atStartOfDay(start.getZone());
+            default:
+                return start.toLocalDate().plusMonths(1).atStartOfDay(start.getZone());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package uk.tw.energy.exporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.ReadingCompactor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the readings of every meter in this store, optionally limited to a time range and a price plan, to a
+ * columnar file for billing runs (see {@link ColumnarReadingsWriter}).
+ * <p>
+ * Exports run one at a time on a background thread and read each meter from a snapshot, so ingestion never waits for
+ * them. Finished files are sent with {@link FileChannel#transferTo}, leaving the copying to the operating system where
+ * the target channel allows it.
+ * <p>
+ * Only raw readings are exported, so with retention on, ranges starting before the raw cutoff are refused. A meter
+ * compacted past the start of the range while the export waited to run is still exported, and counted as partial.
+ * <p>
+ * Exports are forgotten and their files deleted {@code export.retention-hours} after they finish, on the export
+ * thread between exports. Export files left in the directory by an earlier run are deleted once they are as old.
+ */
+@Service
+public class BillingExportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BillingExportService.class);
+    private static final String EXTENSION = ".joie";
+
+    private final MeterReadingService meterReadingService;
+    private final AccountService accountService;
+    private final ReadingCompactor readingCompactor;
+    private final Path directory;
+    private final Duration retention;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "billing-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BillingExportService(MeterReadingService meterReadingService, AccountService accountService, String directory) {
+        this(meterReadingService, accountService, null, directory);
+    }
+
+    public BillingExportService(MeterReadingService meterReadingService, AccountService accountService,
+                                ReadingCompactor readingCompactor, String directory) {
+        this(meterReadingService, accountService, readingCompactor, directory, 24);
+    }
+
+    @Autowired
+    public BillingExportService(MeterReadingService meterReadingService, AccountService accountService,
+                                ReadingCompactor readingCompactor,
+                                @Value("${export.directory:${java.io.tmpdir}/joi-exports}") String directory,
+                                @Value("${export.retention-hours:24}") long retentionHours) {
+        if (retentionHours < 1) {
+            throw new IllegalArgumentException("export.retention-hours must be at least 1");
+        }
+        this.meterReadingService = meterReadingService;
+        this.accountService = accountService;
+        this.readingCompactor = readingCompactor;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @PostConstruct
+    public void start() {
+        exporter.scheduleWithFixedDelay(() -> expireFinished(Instant.now()), 0, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        exporter.shutdownNow();
+    }
+
+    /**
+     * The earliest time an export can start from: the raw cutoff with retention on, otherwise the epoch.
+     */
+    public Instant getEarliestFrom() {
+        Instant rawCutoff = readingCompactor == null ? null : readingCompactor.getRawCutoff(Instant.now());
+        return rawCutoff == null ? Instant.EPOCH : rawCutoff;
+    }
+
+    /**
+     * Starts exporting readings taken in [from, to) of the meters on {@code pricePlanId}, or of every meter if it is
+     * null.
+     *
+     * @throws IllegalArgumentException if {@code from} is before {@link #getEarliestFrom()}
+     */
+    public ExportJob submit(Instant from, Instant to, String pricePlanId) throws IOException {
+        Instant earliestFrom = getEarliestFrom();
+        if (from.isBefore(earliestFrom)) {
+            throw new IllegalArgumentException("Readings before " + earliestFrom + " are only kept as summaries and cannot be exported");
+        }
+        Files.createDirectories(directory);
+        String id = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(id, from, to, pricePlanId, directory.resolve(id + EXTENSION));
+        jobs.put(id, job);
+        exporter.execute(() -> run(job));
+        return job;
+    }
+
+    public ExportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public Collection<ExportJob> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * Forgets an export and deletes its file; an export still running is left alone.
+     */
+    public boolean delete(String id) throws IOException {
+        ExportJob job = jobs.get(id);
+        if (job == null || job.getStatus() == ExportJob.Status.RUNNING || !jobs.remove(id, job)) {
+            return false;
+        }
+        Files.deleteIfExists(job.getFile());
+        return true;
+    }
+
+    /**
+     * Forgets the exports that finished more than the retention period before {@code now} and deletes their files,
+     * along with any other export files in the directory last written that long ago. Returns how many files were
+     * deleted.
+     */
+    int expireFinished(Instant now) {
+        Instant expiry = now.minus(retention);
+        int deleted = 0;
+        for (ExportJob job : jobs.values()) {
+            Instant finishedAt = job.getFinishedAt();
+            if (finishedAt != null && finishedAt.isBefore(expiry) && jobs.remove(job.getId(), job)) {
+                deleted += deleteQuietly(job.getFile()) ? 1 : 0;
+            }
+        }
+        if (!Files.isDirectory(directory)) {
+            return deleted;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String id = file.getFileName().toString();
+                if (!jobs.containsKey(id.substring(0, id.length() - EXTENSION.length()))
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(expiry)) {
+                    deleted += deleteQuietly(file) ? 1 : 0;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not look for expired exports in {}", directory, e);
+        }
+        return deleted;
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete expired export {}", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Sends a complete export's file to {@code target}.
+     */
+    public void transferTo(ExportJob job, WritableByteChannel target) throws IOException {
+        try (FileChannel file = FileChannel.open(job.getFile(), StandardOpenOption.READ)) {
+            long size = file.size();
+            for (long position = 0; position < size; ) {
+                position += file.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    private void run(ExportJob job) {
+        try (OutputStream out = Files.newOutputStream(job.getFile())) {
+            export(job, out);
+        } catch (IOException | RuntimeException e) {
+            job.fail(e.getMessage());
+            return;
+        }
+        try {
+            job.complete(Files.size(job.getFile()));
+        } catch (IOException e) {
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void export(ExportJob job, OutputStream out) throws IOException {
+        List<String> smartMeterIds = new ArrayList<>(meterReadingService.getSmartMeterIds());
+        smartMeterIds.sort(Comparator.naturalOrder());
+        int meters = 0;
+        long readings = 0;
+        try (ColumnarReadingsWriter writer = new ColumnarReadingsWriter(out, job.getFrom(), job.getTo())) {
+            for (String smartMeterId : smartMeterIds) {
+                String meterPricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
+                if (job.getPricePlanId() != null && !job.getPricePlanId().equals(meterPricePlanId)) {
+                    continue;
+                }
+                List<ElectricityReading> meterReadings = meterReadingService.getReadings(smartMeterId);
+                if (meterReadings == null) {
+                    continue;
+                }
+                Instant rawFrom = meterReadingService.getRawFrom(smartMeterId);
+                if (rawFrom != null && rawFrom.isAfter(job.getFrom())
+                        && !meterReadingService.summarize(smartMeterId, job.getFrom(), min(rawFrom, job.getTo())).isEmpty()) {
+                    job.partial(smartMeterId, rawFrom);
+                }
+                List<ElectricityReading> inRange = copyInRange(meterReadings, job.getFrom(), job.getTo());
+                if (inRange.isEmpty()) {
+                    continue;
+                }
+                inRange.sort(Comparator.comparing(ElectricityReading::getTime));
+                try {
+                    writer.writeMeter(smartMeterId, meterPricePlanId, inRange);
+                } catch (IllegalArgumentException e) {
+                    job.skipped(smartMeterId, e.getMessage());
+                    continue;
+                }
+                meters++;
+                readings += inRange.size();
+                job.progress(meters, readings);
+            }
+        }
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static List<ElectricityReading> copyInRange(List<ElectricityReading> readings, Instant from, Instant to) {
+        List<ElectricityReading> inRange = new ArrayList<>();
+        for (ElectricityReading reading : readings) {
+            if (!reading.getTime().isBefore(from) && reading.getTime().isBefore(to)) {
+                inRange.add(reading);
+            }
+        }
+        return inRange;
+    }
+}
@@ -0,0 +1,127 @@
+package uk.tw.energy.exporter;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an export written by {@link ColumnarReadingsWriter} one meter at a time, e.g. in a billing run.
+ */
+public final class ColumnarReadingsReader implements Closeable {
+
+    private final DataInputStream in;
+    private final int version;
+    private final Instant from;
+    private final Instant to;
+
+    public ColumnarReadingsReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if (this.in.readInt() != ColumnarReadingsWriter.MAGIC) {
+            throw new IOException("Not a readings export");
+        }
+        this.version = this.in.readInt();
+        if (version < 1 || version > ColumnarReadingsWriter.VERSION) {
+            throw new IOException("Unsupported readings export version " + version);
+        }
+        this.from = Instant.ofEpochSecond(this.in.readLong());
+        this.to = Instant.ofEpochSecond(this.in.readLong());
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the next meter in the export, or null after the last one.
+     */
+    public MeterExport next() throws IOException {
+        if (in.readByte() == 0) {
+            return null;
+        }
+        String smartMeterId = in.readUTF();
+        String pricePlanId = in.readUTF();
+        int count = in.readInt();
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = i == 0 ? in.readLong() : times[i - 1] + readVarLong();
+        }
+        long[] nanos = new long[count];
+        for (int i = 0; version > 1 && i < count; i++) {
+            nanos[i] = readVarLong();
+        }
+        byte[] scales = new byte[count];
+        in.readFully(scales);
+        long[] unscaled = new long[count];
+        for (int i = 0; i < count; i++) {
+            unscaled[i] = readVarLong();
+        }
+        List<ElectricityReading> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal reading = version > 1 && unscaled[i] == ColumnarReadingsWriter.LARGE_VALUE
+                    ? new BigDecimal(readLargeValue(), scales[i])
+                    : BigDecimal.valueOf(unscaled[i], scales[i]);
+            readings.add(new ElectricityReading(Instant.ofEpochSecond(times[i], nanos[i]), reading));
+        }
+        return new MeterExport(smartMeterId, pricePlanId.isEmpty() ? null : pricePlanId, readings);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private BigInteger readLargeValue() throws IOException {
+        byte[] bytes = new byte[(int) readVarLong()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    private long readVarLong() throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+    }
+
+    public static final class MeterExport {
+
+        private final String smartMeterId;
+        private final String pricePlanId;
+        private final List<ElectricityReading> readings;
+
+        MeterExport(String smartMeterId, String pricePlanId, List<ElectricityReading> readings) {
+            this.smartMeterId = smartMeterId;
+            this.pricePlanId = pricePlanId;
+            this.readings = readings;
+        }
+
+        public String getSmartMeterId() {
+            return smartMeterId;
+        }
+
+        public String getPricePlanId() {
+            return pricePlanId;
+        }
+
+        public List<ElectricityReading> getReadings() {
+            return readings;
+        }
+    }
+}
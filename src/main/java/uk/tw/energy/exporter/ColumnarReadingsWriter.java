@@ -0,0 +1,115 @@
+package uk.tw.energy.exporter;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes readings in the columnar export format read by {@link ColumnarReadingsReader}:
+ * <pre>
+ * header:  magic "JOIE", version, from and to (epoch seconds)
+ * meter:   1, smartMeterId, pricePlanId ("" if none), reading count,
+ *          times     - first time, then the gap to each next time, in epoch seconds
+ *          nanos     - nanosecond of each time
+ *          scales    - one byte per reading
+ *          readings  - unscaled values, or {@link Long#MIN_VALUE} for one that does not fit in a long
+ *          large     - each of those in turn: its length, then its two's-complement bytes
+ * end:     0
+ * </pre>
+ * Strings are modified UTF-8 as written by {@link DataOutputStream#writeUTF}; gaps, nanos, unscaled values and lengths
+ * are zig-zag varints, so readings taken at a steady interval on whole seconds cost two or three bytes per time and a
+ * few bytes per value. Version 1 had neither nanos nor large values.
+ */
+final class ColumnarReadingsWriter implements Closeable {
+
+    static final int MAGIC = 0x4A4F4945;
+    static final int VERSION = 2;
+    static final long LARGE_VALUE = Long.MIN_VALUE;
+
+    private final DataOutputStream out;
+
+    ColumnarReadingsWriter(OutputStream out, Instant from, Instant to) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeLong(from.getEpochSecond());
+        this.out.writeLong(to.getEpochSecond());
+    }
+
+    /**
+     * Writes one meter's readings, which must be in time order. A meter that cannot be written is refused before any of
+     * it is, so the export can go on without it.
+     *
+     * @throws IllegalArgumentException if a reading has more decimal places than fit in a byte
+     */
+    void writeMeter(String smartMeterId, String pricePlanId, List<ElectricityReading> readings) throws IOException {
+        byte[] scales = new byte[readings.size()];
+        for (int i = 0; i < readings.size(); i++) {
+            scales[i] = scaleOf(readings.get(i).getReading());
+        }
+        out.writeByte(1);
+        out.writeUTF(smartMeterId);
+        out.writeUTF(pricePlanId == null ? "" : pricePlanId);
+        out.writeInt(readings.size());
+        long previous = 0;
+        for (int i = 0; i < readings.size(); i++) {
+            long time = readings.get(i).getTime().getEpochSecond();
+            if (i == 0) {
+                out.writeLong(time);
+            } else {
+                writeVarLong(time - previous);
+            }
+            previous = time;
+        }
+        for (ElectricityReading reading : readings) {
+            writeVarLong(reading.getTime().getNano());
+        }
+        out.write(scales);
+        List<BigInteger> large = new ArrayList<>();
+        for (ElectricityReading reading : readings) {
+            BigInteger unscaled = reading.getReading().unscaledValue();
+            if (unscaled.bitLength() < Long.SIZE && unscaled.longValue() != LARGE_VALUE) {
+                writeVarLong(unscaled.longValue());
+            } else {
+                writeVarLong(LARGE_VALUE);
+                large.add(unscaled);
+            }
+        }
+        for (BigInteger unscaled : large) {
+            byte[] bytes = unscaled.toByteArray();
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeByte(0);
+        out.close();
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static byte scaleOf(BigDecimal reading) {
+        if (reading.scale() < Byte.MIN_VALUE || reading.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Reading has too many decimal places to export: " + reading);
+        }
+        return (byte) reading.scale();
+    }
+}
@@ -0,0 +1,141 @@
+package uk.tw.energy.exporter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A billing export being written to, or written to, a file by {@link BillingExportService}.
+ */
+public class ExportJob {
+
+    public enum Status { RUNNING, COMPLETE, FAILED }
+
+    static final int MAX_WARNINGS = 100;
+
+    private final String id;
+    private final Instant from;
+    private final Instant to;
+    private final String pricePlanId;
+    private final Path file;
+    private volatile Status status = Status.RUNNING;
+    private volatile int meters;
+    private volatile long readings;
+    private volatile long bytes;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile int skippedMeters;
+    private volatile int partialMeters;
+    private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+    ExportJob(String id, Instant from, Instant to, String pricePlanId, Path file) {
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.pricePlanId = pricePlanId;
+        this.file = file;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public String getPricePlanId() {
+        return pricePlanId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getMeters() {
+        return meters;
+    }
+
+    public long getReadings() {
+        return readings;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * When the export completed or failed, or null while it runs.
+     */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Meters left out of the export because they could not be written.
+     */
+    public int getSkippedMeters() {
+        return skippedMeters;
+    }
+
+    /**
+     * Meters exported without their readings from early in the range, which are only kept as summaries by now.
+     */
+    public int getPartialMeters() {
+        return partialMeters;
+    }
+
+    /**
+     * Why meters were skipped or are partial, for the first {@value #MAX_WARNINGS} of them.
+     */
+    public List<String> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    void skipped(String smartMeterId, String reason) {
+        skippedMeters++;
+        warn(smartMeterId + " skipped: " + reason);
+    }
+
+    void partial(String smartMeterId, Instant rawFrom) {
+        partialMeters++;
+        warn(smartMeterId + " has only summaries before " + rawFrom);
+    }
+
+    private void warn(String warning) {
+        if (warnings.size() < MAX_WARNINGS) {
+            warnings.add(warning);
+        }
+    }
+
+    void progress(int meters, long readings) {
+        this.meters = meters;
+        this.readings = readings;
+    }
+
+    void complete(long bytes) {
+        this.bytes = bytes;
+        this.finishedAt = Instant.now();
+        this.status = Status.COMPLETE;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+}
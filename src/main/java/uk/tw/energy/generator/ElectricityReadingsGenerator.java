@@ -6,25 +6,40 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
 public class ElectricityReadingsGenerator {
 
+    private final Random readingRandomiser;
+
+    public ElectricityReadingsGenerator() {
+        this(new Random());
+    }
+
+    public ElectricityReadingsGenerator(long seed) {
+        this(new Random(seed));
+    }
+
+    private ElectricityReadingsGenerator(Random readingRandomiser) {
+        this.readingRandomiser = readingRandomiser;
+    }
+
     public List<ElectricityReading> generate(int number) {
-        List<ElectricityReading> readings = new ArrayList<>();
-        Instant now = Instant.now();
+        return generate(number, Instant.now());
+    }
 
-        Random readingRandomiser = new Random();
-        for (int i = 0; i < number; i++) {
+    /**
+     * Generates {@code number} readings 10 seconds apart, in time order, the last one taken at {@code end}.
+     */
+    public List<ElectricityReading> generate(int number, Instant end) {
+        List<ElectricityReading> readings = new ArrayList<>(number);
+        for (int i = number - 1; i >= 0; i--) {
             double positiveRandomValue = Math.abs(readingRandomiser.nextGaussian());
             BigDecimal randomReading = BigDecimal.valueOf(positiveRandomValue).setScale(4, RoundingMode.CEILING);
-            ElectricityReading electricityReading = new ElectricityReading(now.minusSeconds(i * 10), randomReading);
+            ElectricityReading electricityReading = new ElectricityReading(end.minusSeconds(i * 10L), randomReading);
             readings.add(electricityReading);
         }
-
-        readings.sort(Comparator.comparing(ElectricityReading::getTime));
         return readings;
     }
 }
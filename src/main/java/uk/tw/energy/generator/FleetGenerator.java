@@ -0,0 +1,252 @@
+package uk.tw.energy.generator;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generates a reproducible synthetic fleet of smart meters with household-like daily load shapes: a per-meter base
+ * load, morning and evening peaks that move later at weekends, and multiplicative noise.
+ * <p>
+ * Every meter draws from its own random stream derived from the seed and its index, so the readings of a meter do
+ * not depend on how many cores generate the fleet or in which order. Readings are produced in time order, a batch at
+ * a time, and handed straight to a sink, so memory use does not grow with the size of the fleet.
+ */
+public class FleetGenerator {
+
+    public static final String SMART_METER_ID_PREFIX = "fleet-meter-";
+    public static final String CSV_HEADER = "smartMeterId,time,reading";
+    private static final long SEED_MIXER = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final int meterCount;
+    private final Instant from;
+    private final Instant to;
+    private final Duration interval;
+    private final int batchSize;
+    private final ZoneRules zoneRules;
+
+    public FleetGenerator(long seed, int meterCount, Instant from, Instant to, Duration interval, int batchSize, ZoneId zone) {
+        if (meterCount < 0 || !from.isBefore(to) || interval.isZero() || interval.isNegative() || batchSize < 1) {
+            throw new IllegalArgumentException("Expected a non-negative meter count, from before to, a positive interval and batch size");
+        }
+        this.seed = seed;
+        this.meterCount = meterCount;
+        this.from = from;
+        this.to = to;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.zoneRules = zone.getRules();
+    }
+
+    /**
+     * Writes a synthetic fleet to files, e.g.
+     * {@code --meters=1000000 --days=7 --to=2022-05-09 --seed=42 --format=csv --partitions=16 --out=build/fleet}.
+     * The readings end at the start of the {@code to} day in {@code zone}, UTC by default, so the same arguments write
+     * the same files whenever and wherever they are run.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        int days = Integer.parseInt(options.getOrDefault("days", "1"));
+        ZoneId zone = ZoneId.of(options.getOrDefault("zone", "UTC"));
+        Instant to = LocalDate.parse(options.getOrDefault("to", "2022-05-09")).atStartOfDay(zone).toInstant();
+        FleetGenerator generator = new FleetGenerator(
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                Integer.parseInt(options.getOrDefault("meters", "1000")),
+                to.minus(Duration.ofDays(days)), to,
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("interval", "10"))),
+                8640, zone);
+        Path out = Paths.get(options.getOrDefault("out", "build/fleet"));
+        int partitions = Integer.parseInt(options.getOrDefault("partitions", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        List<Path> files = "ndjson".equals(options.get("format"))
+                ? generator.writeNdjson(out, partitions)
+                : generator.writeCsv(out, partitions);
+        System.out.println("Wrote " + files.size() + " files to " + out.toAbsolutePath());
+    }
+
+    public static String smartMeterId(int meterIndex) {
+        return SMART_METER_ID_PREFIX + meterIndex;
+    }
+
+    /**
+     * The index of the fleet meter called {@code smartMeterId}, or -1 if it is not named like one.
+     */
+    public static int meterIndexOf(String smartMeterId) {
+        if (!smartMeterId.startsWith(SMART_METER_ID_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(smartMeterId.substring(SMART_METER_ID_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Generates every meter in parallel, handing each batch of readings to {@code sink} as it is produced. The sink is
+     * called concurrently for different meters, but always in time order for any one meter.
+     */
+    public void generate(BiConsumer<String, List<ElectricityReading>> sink) {
+        IntStream.range(0, meterCount).parallel().forEach(meterIndex -> generateMeter(meterIndex, sink));
+    }
+
+    public void generateMeter(int meterIndex, BiConsumer<String, List<ElectricityReading>> sink) {
+        SplittableRandom random = new SplittableRandom(seed ^ (meterIndex + 1) * SEED_MIXER);
+        LoadShape loadShape = new LoadShape(random);
+        String smartMeterId = smartMeterId(meterIndex);
+        List<ElectricityReading> batch = new ArrayList<>(batchSize);
+        for (Instant time = from; time.isBefore(to); time = time.plus(interval)) {
+            batch.add(new ElectricityReading(time, loadShape.readingAt(time, random)));
+            if (batch.size() == batchSize) {
+                sink.accept(smartMeterId, batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(smartMeterId, batch);
+        }
+    }
+
+    /**
+     * Writes the fleet as CSV ({@value #CSV_HEADER}, time as epoch seconds) into {@code partitions} files in
+     * {@code directory}, one writer per file so the files are written in parallel. Meters are assigned to files
+     * round-robin; each meter's readings end up in one file, in time order.
+     */
+    public List<Path> writeCsv(Path directory, int partitions) throws IOException {
+        return write(directory, partitions, "csv", (writer, smartMeterId, batch) -> {
+            for (ElectricityReading reading : batch) {
+                writer.write(smartMeterId);
+                writer.write(',');
+                writer.write(Long.toString(reading.getTime().getEpochSecond()));
+                writer.write(',');
+                writer.write(reading.getReading().toPlainString());
+                writer.write('\n');
+            }
+        });
+    }
+
+    /**
+     * Writes the fleet as newline-delimited JSON, one {@code MeterReadings} document per batch, in the same shape as
+     * the body of {@code POST /readings/store}.
+     */
+    public List<Path> writeNdjson(Path directory, int partitions) throws IOException {
+        return write(directory, partitions, "ndjson", (writer, smartMeterId, batch) -> {
+            writer.write("{\"smartMeterId\":\"");
+            writer.write(smartMeterId);
+            writer.write("\",\"electricityReadings\":[");
+            for (int i = 0; i < batch.size(); i++) {
+                ElectricityReading reading = batch.get(i);
+                writer.write(i == 0 ? "{\"time\":" : ",{\"time\":");
+                writer.write(Long.toString(reading.getTime().getEpochSecond()));
+                writer.write(",\"reading\":");
+                writer.write(reading.getReading().toPlainString());
+                writer.write('}');
+            }
+            writer.write("]}\n");
+        });
+    }
+
+    private List<Path> write(Path directory, int partitions, String extension, BatchWriter batchWriter) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            files.add(directory.resolve(String.format("fleet-%05d.%s", partition, extension)));
+        }
+        try {
+            IntStream.range(0, partitions).parallel().forEach(partition -> {
+                try (Writer writer = new BufferedWriter(Files.newBufferedWriter(files.get(partition), StandardCharsets.UTF_8), 1 << 16)) {
+                    if ("csv".equals(extension)) {
+                        writer.write(CSV_HEADER);
+                        writer.write('\n');
+                    }
+                    for (int meterIndex = partition; meterIndex < meterCount; meterIndex += partitions) {
+                        generateMeter(meterIndex, (smartMeterId, batch) -> {
+                            try {
+                                batchWriter.write(writer, smartMeterId, batch);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files;
+    }
+
+    private interface BatchWriter {
+        void write(Writer writer, String smartMeterId, List<ElectricityReading> batch) throws IOException;
+    }
+
+    private final class LoadShape {
+
+        private final double baseLoad;
+        private final double morningPeak;
+        private final double eveningPeak;
+        private final double noise;
+
+        LoadShape(SplittableRandom random) {
+            baseLoad = 0.15 + random.nextDouble() * 0.45;
+            morningPeak = 0.5 + random.nextDouble() * 1.5;
+            eveningPeak = 1.0 + random.nextDouble() * 2.5;
+            noise = 0.05 + random.nextDouble() * 0.2;
+        }
+
+        BigDecimal readingAt(Instant time, SplittableRandom random) {
+            long localSeconds = time.getEpochSecond() + zoneRules.getOffset(time).getTotalSeconds();
+            double hourOfDay = Math.floorMod(localSeconds, 86_400L) / 3600.0;
+            boolean weekend = isWeekend(Math.floorDiv(localSeconds, 86_400L));
+            double load = baseLoad
+                    + peak(hourOfDay, weekend ? 9.5 : 7.5, 1.0, morningPeak)
+                    + peak(hourOfDay, weekend ? 19.5 : 19.0, 1.5, eveningPeak);
+            double noisyLoad = load * (1 + noise * gaussian(random));
+            return BigDecimal.valueOf(Math.max(0.0001, Math.round(noisyLoad * 10_000) / 10_000.0));
+        }
+
+        private double peak(double hourOfDay, double centre, double width, double height) {
+            double distance = hourOfDay - centre;
+            return height * Math.exp(-distance * distance / (2 * width * width));
+        }
+
+        private boolean isWeekend(long epochDay) {
+            // 1970-01-01 was a Thursday
+            DayOfWeek dayOfWeek = DayOfWeek.THURSDAY.plus(Math.floorMod(epochDay, 7));
+            return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+        }
+
+        private double gaussian(SplittableRandom random) {
+            // Box-Muller; SplittableRandom has no nextGaussian
+            double u = 1 - random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package uk.tw.energy.importer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads historical readings from local CSV or NDJSON files (see {@link ReadingChunkParser}) at disk speed rather than
+ * HTTP speed.
+ * <p>
+ * Files are imported one after another, so only one file's readings are held in memory at a time. Each is split into
+ * chunks on line boundaries, and the chunks are memory-mapped and parsed in parallel into primitive per-meter
+ * columns. The columns of each meter are then concatenated in file order, sorted by time and deduplicated - the last
+ * reading in the file for a time wins, and times the meter already has, from earlier files included, are left
+ * alone - and stored as a single batch. Readings from before the meter's raw cutoff are left alone too and counted as
+ * duplicates: that period is only kept as summaries, which cannot tell which of its readings they already hold. Meters this node does not own are skipped, so every shard can import the same
+ * files.
+ */
+@Service
+public class BulkReadingImporter {
+
+    static final long DEFAULT_CHUNK_BYTES = 64L << 20;
+    private static final int BOUNDARY_SCAN_BYTES = 1 << 16;
+
+    private final MeterReadingService meterReadingService;
+    private final ShardRouter shardRouter;
+    private final long chunkBytes;
+
+    @Autowired
+    public BulkReadingImporter(MeterReadingService meterReadingService, ShardRouter shardRouter) {
+        this(meterReadingService, shardRouter, DEFAULT_CHUNK_BYTES);
+    }
+
+    public BulkReadingImporter(MeterReadingService meterReadingService) {
+        this(meterReadingService, ShardRouter.standalone(), DEFAULT_CHUNK_BYTES);
+    }
+
+    BulkReadingImporter(MeterReadingService meterReadingService, ShardRouter shardRouter, long chunkBytes) {
+        this.meterReadingService = meterReadingService;
+        this.shardRouter = shardRouter;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Imports a file, or every {@code .csv} and {@code .ndjson} file directly in a directory.
+     */
+    public ImportSummary importPath(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return importFiles(Collections.singletonList(path));
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return importFiles(files.filter(file -> formatOf(file) != null).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a file is neither {@code .csv} nor {@code .ndjson}
+     */
+    public ImportSummary importFiles(List<Path> files) throws IOException {
+        long start = System.nanoTime();
+        for (Path file : files) {
+            if (formatOf(file) == null) {
+                throw new IllegalArgumentException("Expected a .csv or .ndjson file: " + file.getFileName());
+            }
+        }
+        Set<String> smartMeterIds = new HashSet<>();
+        long records = 0;
+        long imported = 0;
+        long skipped = 0;
+        long rejected = 0;
+        for (Path file : files) {
+            FileImport fileImport = importFile(file);
+            smartMeterIds.addAll(fileImport.smartMeterIds);
+            records += fileImport.records;
+            imported += fileImport.imported;
+            skipped += fileImport.skipped;
+            rejected += fileImport.rejected;
+        }
+        long duplicates = records - imported - skipped;
+        return new ImportSummary(files.size(), smartMeterIds.size(), records, imported, duplicates, skipped,
+                rejected, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private FileImport importFile(Path file) throws IOException {
+        List<Chunk> chunks = split(file);
+        List<ReadingChunkParser> parsed;
+        try {
+            parsed = chunks.parallelStream().map(BulkReadingImporter::parse).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // chunks are in file order, so "the last reading read" is well defined across chunks
+        Map<String, ReadingColumns> meters = new HashMap<>();
+        long records = 0;
+        long rejected = 0;
+        for (ReadingChunkParser chunk : parsed) {
+            records += chunk.getRecords();
+            rejected += chunk.getRejected();
+            chunk.getMeters().forEach((smartMeterId, columns) -> {
+                ReadingColumns existing = meters.putIfAbsent(smartMeterId, columns);
+                if (existing != null) {
+                    existing.append(columns);
+                }
+            });
+        }
+        parsed.clear();
+
+        LongAdder imported = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        meters.entrySet().parallelStream().forEach(meter -> {
+            if (!shardRouter.isLocal(meter.getKey())) {
+                skipped.add(meter.getValue().size());
+                return;
+            }
+            imported.add(load(meter.getKey(), meter.getValue()));
+        });
+        return new FileImport(meters.keySet(), records, imported.sum(), skipped.sum(), rejected);
+    }
+
+    private int load(String smartMeterId, ReadingColumns columns) {
+        List<ElectricityReading> stored = meterReadingService.getReadings(smartMeterId);
+        long[] existingTimes = new long[stored == null ? 0 : stored.size()];
+        for (int i = 0; i < existingTimes.length; i++) {
+            existingTimes[i] = stored.get(i).getTime().getEpochSecond();
+        }
+        Arrays.sort(existingTimes);
+        List<ElectricityReading> readings = columns.toSortedDistinctReadings(existingTimes);
+        Instant rawFrom = meterReadingService.getRawFrom(smartMeterId);
+        if (rawFrom != null) {
+            int first = 0;
+            while (first < readings.size() && readings.get(first).getTime().isBefore(rawFrom)) {
+                first++;
+            }
+            readings = readings.subList(first, readings.size());
+        }
+        if (!readings.isEmpty()) {
+            meterReadingService.storeReadings(smartMeterId, readings);
+        }
+        return readings.size();
+    }
+
+    /**
+     * Splits a file into chunks of about {@link #chunkBytes}, each ending just after a line break.
+     */
+    private List<Chunk> split(Path file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        String format = formatOf(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+            long chunkStart = 0;
+            while (chunkStart < size) {
+                long chunkEnd = nextLineStart(channel, Math.min(size, chunkStart + chunkBytes) - 1, size, scan);
+                chunks.add(new Chunk(file, format, chunkStart, chunkEnd));
+                chunkStart = chunkEnd;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Offset just after the first line break at or after {@code offset}, or the end of the file.
+     */
+    private static long nextLineStart(FileChannel channel, long offset, long size, ByteBuffer scan) throws IOException {
+        for (long block = offset; block < size; block += scan.limit()) {
+            scan.clear();
+            if (channel.read(scan, block) <= 0) {
+                break;
+            }
+            scan.flip();
+            for (int i = 0; i < scan.limit(); i++) {
+                if (scan.get(i) == '\n') {
+                    return block + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static ReadingChunkParser parse(Chunk chunk) {
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+            ReadingChunkParser parser = new ReadingChunkParser(bytes);
+            return "csv".equals(chunk.format) ? parser.parseCsv() : parser.parseNdjson();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return "csv";
+        }
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? "ndjson" : null;
+    }
+
+    private static final class FileImport {
+
+        final Set<String> smartMeterIds;
+        final long records;
+        final long imported;
+        final long skipped;
+        final long rejected;
+
+        FileImport(Set<String> smartMeterIds, long records, long imported, long skipped, long rejected) {
+            this.smartMeterIds = smartMeterIds;
+            this.records = records;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.rejected = rejected;
+        }
+    }
+
+    private static final class Chunk {
+
+        final Path file;
+        final String format;
+        final long start;
+        final long end;
+
+        Chunk(Path file, String format, long start, long end) {
+            this.file = file;
+            this.format = format;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package uk.tw.energy.importer;
+
+/**
+ * Outcome of a bulk import. Every parsed record is either imported, a duplicate of a reading at the same time
+ * (within the import or already stored), or skipped because its meter belongs to another shard.
+ */
+public class ImportSummary {
+
+    private final int files;
+    private final int meters;
+    private final long records;
+    private final long imported;
+    private final long duplicates;
+    private final long skipped;
+    private final long rejectedLines;
+    private final long elapsedMillis;
+
+    public ImportSummary(int files, int meters, long records, long imported, long duplicates, long skipped,
+                         long rejectedLines, long elapsedMillis) {
+        this.files = files;
+        this.meters = meters;
+        this.records = records;
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.skipped = skipped;
+        this.rejectedLines = rejectedLines;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public int getMeters() {
+        return meters;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getRejectedLines() {
+        return rejectedLines;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d of %d records for %d meters from %d files in %d ms (%d duplicates, %d for other shards, %d lines rejected)",
+                imported, records, meters, files, elapsedMillis, duplicates, skipped, rejectedLines);
+    }
+}
@@ -0,0 +1,333 @@
+package uk.tw.energy.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses one chunk of whole lines of an import file straight from its (memory-mapped) bytes into per-meter
+ * {@link ReadingColumns}. Two formats are understood, the same ones the fleet generator writes:
+ * <ul>
+ * <li>CSV: {@code smartMeterId,time,reading} per line, with an optional header line;</li>
+ * <li>NDJSON: one {@code MeterReadings} JSON object per line, as posted to {@code /readings/store}.</li>
+ * </ul>
+ * Times are whole epoch seconds, which NDJSON may also give as ISO-8601 strings such as {@code "2024-01-08T17:00:00Z"},
+ * and readings plain non-negative decimals of up to 18 digits. Lines that do not parse are counted and
+ * skipped. A parser is used by one thread for one chunk.
+ */
+final class ReadingChunkParser {
+
+    private static final int MAX_DIGITS = 18;
+    private static final byte[] CSV_HEADER_START = "smartMeterId,".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer bytes;
+    private final Map<String, ReadingColumns> meters = new HashMap<>();
+    private final ReadingColumns lineReadings = new ReadingColumns();
+    private long records;
+    private long rejected;
+    // consecutive records are usually for the same meter: only decode its id when it changes
+    private byte[] lastSmartMeterId = new byte[0];
+    private ReadingColumns lastColumns;
+    // result of the last parsed number
+    private long unscaled;
+    private int scale;
+    private int position;
+
+    ReadingChunkParser(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    Map<String, ReadingColumns> getMeters() {
+        return meters;
+    }
+
+    long getRecords() {
+        return records;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    ReadingChunkParser parseCsv() {
+        int limit = bytes.limit();
+        for (int lineStart = 0; lineStart < limit; ) {
+            int lineEnd = lineEnd(lineStart, limit);
+            if (lineEnd > lineStart && !startsWith(lineStart, lineEnd, CSV_HEADER_START)) {
+                if (parseCsvLine(lineStart, lineEnd)) {
+                    records++;
+                } else {
+                    rejected++;
+                }
+            }
+            lineStart = nextLine(lineEnd, limit);
+        }
+        return this;
+    }
+
+    ReadingChunkParser parseNdjson() {
+        int limit = bytes.limit();
+        for (int lineStart = 0; lineStart < limit; ) {
+            int lineEnd = lineEnd(lineStart, limit);
+            position = lineStart;
+            skipWhitespace(lineEnd);
+            if (position < lineEnd) {
+                lineReadings.clear();
+                String smartMeterId = parseNdjsonLine(lineEnd);
+                if (smartMeterId != null) {
+                    meters.computeIfAbsent(smartMeterId, id -> new ReadingColumns()).append(lineReadings);
+                    records += lineReadings.size();
+                } else {
+                    rejected++;
+                }
+            }
+            lineStart = nextLine(lineEnd, limit);
+        }
+        return this;
+    }
+
+    private boolean parseCsvLine(int lineStart, int lineEnd) {
+        int firstComma = indexOf(',', lineStart, lineEnd);
+        int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, lineEnd);
+        if (secondComma < 0 || firstComma == lineStart) {
+            return false;
+        }
+        position = firstComma + 1;
+        if (!parseNumber(secondComma) || position != secondComma || scale != 0) {
+            return false;
+        }
+        long time = unscaled;
+        position = secondComma + 1;
+        if (!parseNumber(lineEnd) || position != lineEnd || unscaled < 0) {
+            return false;
+        }
+        columnsFor(lineStart, firstComma).add(time, unscaled, scale);
+        return true;
+    }
+
+    /**
+     * Parses {@code {"smartMeterId":"...","electricityReadings":[{"time":...,"reading":...},...]}} in any key order
+     * into {@link #lineReadings}, returning the meter id or null if the line is malformed.
+     */
+    private String parseNdjsonLine(int lineEnd) {
+        String smartMeterId = null;
+        if (!expect('{', lineEnd)) {
+            return null;
+        }
+        do {
+            String key = parseString(lineEnd);
+            if (key == null || !expect(':', lineEnd)) {
+                return null;
+            }
+            skipWhitespace(lineEnd);
+            if ("smartMeterId".equals(key)) {
+                smartMeterId = parseString(lineEnd);
+            } else if ("electricityReadings".equals(key)) {
+                if (!parseReadingsArray(lineEnd)) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        } while (expect(',', lineEnd));
+        return expect('}', lineEnd) ? smartMeterId : null;
+    }
+
+    private boolean parseReadingsArray(int lineEnd) {
+        if (!expect('[', lineEnd)) {
+            return false;
+        }
+        if (expect(']', lineEnd)) {
+            return true;
+        }
+        do {
+            long time = Long.MIN_VALUE;
+            boolean hasReading = false;
+            long readingUnscaled = 0;
+            int readingScale = 0;
+            if (!expect('{', lineEnd)) {
+                return false;
+            }
+            do {
+                String key = parseString(lineEnd);
+                if (key == null || !expect(':', lineEnd)) {
+                    return false;
+                }
+                skipWhitespace(lineEnd);
+                if ("time".equals(key) && position < lineEnd && bytes.get(position) == '"') {
+                    time = parseIsoTime(lineEnd);
+                    if (time == Long.MIN_VALUE) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (!parseNumber(lineEnd)) {
+                    return false;
+                }
+                if ("time".equals(key) && scale == 0) {
+                    time = unscaled;
+                } else if ("reading".equals(key)) {
+                    hasReading = true;
+                    readingUnscaled = unscaled;
+                    readingScale = scale;
+                } else {
+                    return false;
+                }
+            } while (expect(',', lineEnd));
+            if (!expect('}', lineEnd) || time == Long.MIN_VALUE || !hasReading || readingUnscaled < 0) {
+                return false;
+            }
+            lineReadings.add(time, readingUnscaled, readingScale);
+        } while (expect(',', lineEnd));
+        return expect(']', lineEnd);
+    }
+
+    /**
+     * Parses a plain decimal at {@link #position} into {@link #unscaled} and {@link #scale}, stopping at the first
+     * character that cannot be part of it.
+     */
+    private boolean parseNumber(int end) {
+        boolean negative = position < end && bytes.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; position < end; position++) {
+            byte b = bytes.get(position);
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    return false;
+                }
+                value = value * 10 + (b - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0 || fractionDigits == 0) {
+            return false;
+        }
+        unscaled = negative ? -value : value;
+        scale = Math.max(fractionDigits, 0);
+        return true;
+    }
+
+    private String parseString(int lineEnd) {
+        if (!expect('"', lineEnd)) {
+            return null;
+        }
+        int start = position;
+        for (; position < lineEnd; position++) {
+            byte b = bytes.get(position);
+            if (b == '\\') {
+                // escapes never occur in meter ids or keys the application writes
+                return null;
+            }
+            if (b == '"') {
+                String value = decode(start, position);
+                position++;
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an ISO-8601 date-time string with an offset, e.g. {@code "2024-01-08T17:00:00Z"}, into epoch seconds, or
+     * returns {@link Long#MIN_VALUE} if it is not one or is not a whole second.
+     */
+    private long parseIsoTime(int lineEnd) {
+        String text = parseString(lineEnd);
+        if (text == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            OffsetDateTime time = OffsetDateTime.parse(text);
+            return time.getNano() == 0 ? time.toEpochSecond() : Long.MIN_VALUE;
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private boolean expect(char expected, int lineEnd) {
+        skipWhitespace(lineEnd);
+        if (position < lineEnd && bytes.get(position) == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace(int lineEnd) {
+        while (position < lineEnd && (bytes.get(position) == ' ' || bytes.get(position) == '\t')) {
+            position++;
+        }
+    }
+
+    private ReadingColumns columnsFor(int start, int end) {
+        if (lastColumns == null || !equalsBytes(start, end, lastSmartMeterId)) {
+            lastSmartMeterId = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                lastSmartMeterId[i - start] = bytes.get(i);
+            }
+            lastColumns = meters.computeIfAbsent(new String(lastSmartMeterId, StandardCharsets.UTF_8), id -> new ReadingColumns());
+        }
+        return lastColumns;
+    }
+
+    private String decode(int start, int end) {
+        byte[] value = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            value[i - start] = bytes.get(i);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private boolean equalsBytes(int start, int end, byte[] other) {
+        if (end - start != other.length) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) != other[i - start]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(int start, int end, byte[] prefix) {
+        return end - start >= prefix.length && equalsBytes(start, start + prefix.length, prefix);
+    }
+
+    private int indexOf(char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (bytes.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * End of the line starting at {@code lineStart}, excluding its line terminator.
+     */
+    private int lineEnd(int lineStart, int limit) {
+        int newline = indexOf('\n', lineStart, limit);
+        int end = newline < 0 ? limit : newline;
+        return end > lineStart && bytes.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private int nextLine(int lineEnd, int limit) {
+        int newline = indexOf('\n', lineEnd, limit);
+        return newline < 0 ? limit : newline + 1;
+    }
+}
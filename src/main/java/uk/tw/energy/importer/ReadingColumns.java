@@ -0,0 +1,134 @@
+package uk.tw.energy.importer;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * One meter's parsed readings held as primitive columns - epoch seconds, and each reading as an unscaled value and
+ * scale - so that parsing allocates no objects per record. Readings are only materialised once they have been sorted
+ * and deduplicated.
+ */
+final class ReadingColumns {
+
+    // times and positions are packed into one long so a primitive sort keeps equal times in record order
+    private static final int POSITION_BITS = 29;
+    private static final long MAX_PACKED_TIME = 1L << (63 - POSITION_BITS);
+
+    private long[] times;
+    private long[] unscaled;
+    private byte[] scales;
+    private int size;
+
+    ReadingColumns() {
+        times = new long[16];
+        unscaled = new long[16];
+        scales = new byte[16];
+    }
+
+    void add(long epochSecond, long unscaledReading, int scale) {
+        if (size == times.length) {
+            grow(size + 1);
+        }
+        times[size] = epochSecond;
+        unscaled[size] = unscaledReading;
+        scales[size] = (byte) scale;
+        size++;
+    }
+
+    /**
+     * Appends {@code other}'s readings after this one's, as if they had been read later.
+     */
+    void append(ReadingColumns other) {
+        if (size + other.size > times.length) {
+            grow(size + other.size);
+        }
+        System.arraycopy(other.times, 0, times, size, other.size);
+        System.arraycopy(other.unscaled, 0, unscaled, size, other.size);
+        System.arraycopy(other.scales, 0, scales, size, other.size);
+        size += other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the readings in time order with one reading per time - the last one read - skipping any time in
+     * {@code existingTimes}, which must be sorted.
+     */
+    List<ElectricityReading> toSortedDistinctReadings(long[] existingTimes) {
+        int[] order = sortedOrder();
+        List<ElectricityReading> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int position = order[i];
+            boolean lastForItsTime = i + 1 == size || times[order[i + 1]] != times[position];
+            if (lastForItsTime && Arrays.binarySearch(existingTimes, times[position]) < 0) {
+                readings.add(new ElectricityReading(Instant.ofEpochSecond(times[position]),
+                        BigDecimal.valueOf(unscaled[position], scales[position])));
+            }
+        }
+        return readings;
+    }
+
+    private int[] sortedOrder() {
+        int[] order = new int[size];
+        if (isSorted()) {
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+        if (size < 1 << POSITION_BITS && timesFitPacked()) {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = times[i] << POSITION_BITS | i;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) (packed[i] & ((1L << POSITION_BITS) - 1));
+            }
+            return order;
+        }
+        // stable, so equal times stay in record order
+        return IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparingLong(position -> times[position]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private boolean isSorted() {
+        for (int i = 1; i < size; i++) {
+            if (times[i] < times[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean timesFitPacked() {
+        for (int i = 0; i < size; i++) {
+            if (times[i] < 0 || times[i] >= MAX_PACKED_TIME) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, times.length * 2);
+        times = Arrays.copyOf(times, capacity);
+        unscaled = Arrays.copyOf(unscaled, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+    }
+}
@@ -0,0 +1,259 @@
+package uk.tw.energy.replication;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line format of the reading log, one line per change to the store:
+ * <pre>
+ * H &lt;epoch&gt;                                            first line, identifies one run of the primary
+ * B &lt;storedAtMillis&gt; &lt;smartMeterId&gt; &lt;time&gt;=&lt;reading&gt;;...   a batch, in the order it was stored
+ * A &lt;storedAtMillis&gt; &lt;smartMeterId&gt; &lt;readings&gt; &lt;rawFrom&gt; &lt;minutesFrom&gt; &lt;hours&gt; &lt;minutes&gt; &lt;days&gt;
+ *                                                     a meter's whole history, adopted or as of a snapshot
+ * C &lt;storedAtMillis&gt; &lt;smartMeterId&gt; &lt;rawCutoff&gt; &lt;minuteCutoff&gt;   a meter was compacted
+ * R &lt;storedAtMillis&gt; &lt;smartMeterId&gt;                     a meter was evicted or handed over
+ * </pre>
+ * Fields are tab separated, times are ISO-8601 instants, with {@code -} for none, and meter ids are URL-encoded.
+ * Summaries are {@code <epochSecond>=<sum>,<count>,<first>,<last>,<min>,<max>} and day sketches
+ * {@code <epochDay>=<relativeAccuracy>,<maxBins>,<binOffset>,<zeroCount>,<bin>:<bin>...}, each list separated by
+ * {@code ;}. A plain text line is cheaper to write than JSON on the ingest path, and easy to inspect with standard
+ * tools.
+ */
+final class ReadingLogFormat {
+
+    static final char HEADER = 'H';
+    static final char BATCH = 'B';
+    static final char HISTORY = 'A';
+    static final char COMPACTED = 'C';
+    static final char REMOVED = 'R';
+    private static final String NONE = "-";
+    private static final String ENCODING = "UTF-8";
+
+    private ReadingLogFormat() {
+    }
+
+    static String header(String epoch) {
+        return HEADER + "\t" + epoch + "\n";
+    }
+
+    static String batch(long storedAtMillis, String smartMeterId, List<ElectricityReading> readings) {
+        StringBuilder line = start(BATCH, storedAtMillis, smartMeterId, 40 * readings.size());
+        appendReadings(line, readings);
+        return line.append('\n').toString();
+    }
+
+    static String history(long storedAtMillis, String smartMeterId, MeterHistory history) {
+        StringBuilder line = start(HISTORY, storedAtMillis, smartMeterId,
+                40 * history.getReadings().size() + 100 * (history.getHourSummaries().size() + history.getMinuteSummaries().size()));
+        appendReadings(line, history.getReadings());
+        line.append('\t').append(instant(history.getRawFrom())).append('\t').append(instant(history.getMinutesFrom())).append('\t');
+        appendSummaries(line, history.getHourSummaries());
+        line.append('\t');
+        appendSummaries(line, history.getMinuteSummaries());
+        line.append('\t');
+        String separator = "";
+        for (Map.Entry<LocalDate, QuantileSketch> day : history.getDaySketches().entrySet()) {
+            QuantileSketch sketch = day.getValue();
+            line.append(separator).append(day.getKey().toEpochDay()).append('=').append(sketch.getRelativeAccuracy())
+                    .append(',').append(sketch.getMaxBins()).append(',').append(sketch.getBinOffset())
+                    .append(',').append(sketch.getZeroCount()).append(',');
+            long[] bins = sketch.getBins();
+            for (int i = 0; i < bins.length; i++) {
+                line.append(i == 0 ? "" : ":").append(bins[i]);
+            }
+            separator = ";";
+        }
+        return line.append('\n').toString();
+    }
+
+    static String compacted(long storedAtMillis, String smartMeterId, Instant rawCutoff, Instant minuteCutoff) {
+        return start(COMPACTED, storedAtMillis, smartMeterId, 48)
+                .append(rawCutoff).append('\t').append(minuteCutoff).append('\n').toString();
+    }
+
+    static String removed(long storedAtMillis, String smartMeterId) {
+        StringBuilder line = start(REMOVED, storedAtMillis, smartMeterId, 0);
+        // no fields after the meter id
+        line.setLength(line.length() - 1);
+        return line.append('\n').toString();
+    }
+
+    /**
+     * Parses a line, throwing {@link IllegalArgumentException} if it is not one this format writes.
+     */
+    static Entry parse(String line) {
+        String[] fields = line.split("\t", -1);
+        char type = fields[0].length() == 1 ? fields[0].charAt(0) : 0;
+        if (type == HEADER && fields.length == 2) {
+            return new Entry(type, fields[1], 0, null, null, null, null, null);
+        }
+        try {
+            if (type == BATCH && fields.length == 4) {
+                return new Entry(type, null, Long.parseLong(fields[1]), decode(fields[2]), parseReadings(fields[3]), null, null, null);
+            }
+            if (type == HISTORY && fields.length == 9) {
+                MeterHistory history = new MeterHistory(parseReadings(fields[3]), parseSummaries(fields[6]),
+                        parseSummaries(fields[7]), parseSketches(fields[8]), parseInstant(fields[4]), parseInstant(fields[5]));
+                return new Entry(type, null, Long.parseLong(fields[1]), decode(fields[2]), null, history, null, null);
+            }
+            if (type == COMPACTED && fields.length == 5) {
+                return new Entry(type, null, Long.parseLong(fields[1]), decode(fields[2]), null, null,
+                        Instant.parse(fields[3]), Instant.parse(fields[4]));
+            }
+            if (type == REMOVED && fields.length == 3) {
+                return new Entry(type, null, Long.parseLong(fields[1]), decode(fields[2]), null, null, null, null);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not a reading log line: " + line, e);
+        }
+        throw new IllegalArgumentException("Not a reading log line: " + line);
+    }
+
+    private static StringBuilder start(char type, long storedAtMillis, String smartMeterId, int capacity) {
+        return new StringBuilder(48 + capacity)
+                .append(type).append('\t').append(storedAtMillis).append('\t').append(encode(smartMeterId)).append('\t');
+    }
+
+    private static void appendReadings(StringBuilder line, List<ElectricityReading> readings) {
+        for (int i = 0; i < readings.size(); i++) {
+            ElectricityReading reading = readings.get(i);
+            line.append(i == 0 ? "" : ";").append(reading.getTime()).append('=').append(reading.getReading().toPlainString());
+        }
+    }
+
+    private static void appendSummaries(StringBuilder line, Map<Instant, ReadingsSummary> summaries) {
+        String separator = "";
+        for (Map.Entry<Instant, ReadingsSummary> entry : summaries.entrySet()) {
+            ReadingsSummary summary = entry.getValue();
+            line.append(separator).append(entry.getKey().getEpochSecond()).append('=')
+                    .append(summary.getSum().toPlainString()).append(',').append(summary.getCount())
+                    .append(',').append(instant(summary.getFirst())).append(',').append(instant(summary.getLast()))
+                    .append(',').append(decimal(summary.getMin())).append(',').append(decimal(summary.getMax()));
+            separator = ";";
+        }
+    }
+
+    private static List<ElectricityReading> parseReadings(String field) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        if (field.isEmpty()) {
+            return readings;
+        }
+        for (String pair : field.split(";")) {
+            int separator = pair.indexOf('=');
+            readings.add(new ElectricityReading(Instant.parse(pair.substring(0, separator)), new BigDecimal(pair.substring(separator + 1))));
+        }
+        return readings;
+    }
+
+    private static Map<Instant, ReadingsSummary> parseSummaries(String field) {
+        Map<Instant, ReadingsSummary> summaries = new LinkedHashMap<>();
+        if (field.isEmpty()) {
+            return summaries;
+        }
+        for (String entry : field.split(";")) {
+            int separator = entry.indexOf('=');
+            String[] parts = entry.substring(separator + 1).split(",", -1);
+            summaries.put(Instant.ofEpochSecond(Long.parseLong(entry.substring(0, separator))),
+                    new ReadingsSummary(new BigDecimal(parts[0]), Long.parseLong(parts[1]), parseInstant(parts[2]),
+                            parseInstant(parts[3]), parseDecimal(parts[4]), parseDecimal(parts[5])));
+        }
+        return summaries;
+    }
+
+    private static Map<LocalDate, QuantileSketch> parseSketches(String field) {
+        Map<LocalDate, QuantileSketch> sketches = new LinkedHashMap<>();
+        if (field.isEmpty()) {
+            return sketches;
+        }
+        for (String entry : field.split(";")) {
+            int separator = entry.indexOf('=');
+            String[] parts = entry.substring(separator + 1).split(",", -1);
+            String[] binFields = parts[4].isEmpty() ? new String[0] : parts[4].split(":");
+            long[] bins = new long[binFields.length];
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] = Long.parseLong(binFields[i]);
+            }
+            sketches.put(LocalDate.ofEpochDay(Long.parseLong(entry.substring(0, separator))),
+                    QuantileSketch.fromBins(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]), bins, Long.parseLong(parts[3])));
+        }
+        return sketches;
+    }
+
+    private static String instant(Instant instant) {
+        return instant == null ? NONE : instant.toString();
+    }
+
+    private static String decimal(BigDecimal decimal) {
+        return decimal == null ? NONE : decimal.toPlainString();
+    }
+
+    private static Instant parseInstant(String field) {
+        return NONE.equals(field) ? null : Instant.parse(field);
+    }
+
+    private static BigDecimal parseDecimal(String field) {
+        return NONE.equals(field) ? null : new BigDecimal(field);
+    }
+
+    private static String encode(String smartMeterId) {
+        try {
+            return URLEncoder.encode(smartMeterId, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String smartMeterId) {
+        try {
+            return URLDecoder.decode(smartMeterId, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A parsed line: a header, with only {@code epoch} set, or a change to one meter - a batch of {@code readings}, a
+     * {@code history}, compaction {@code rawCutoff} and {@code minuteCutoff}, or a removal.
+     */
+    static final class Entry {
+
+        final char type;
+        final String epoch;
+        final long storedAtMillis;
+        final String smartMeterId;
+        final List<ElectricityReading> readings;
+        final MeterHistory history;
+        final Instant rawCutoff;
+        final Instant minuteCutoff;
+
+        Entry(char type, String epoch, long storedAtMillis, String smartMeterId, List<ElectricityReading> readings,
+              MeterHistory history, Instant rawCutoff, Instant minuteCutoff) {
+            this.type = type;
+            this.epoch = epoch;
+            this.storedAtMillis = storedAtMillis;
+            this.smartMeterId = smartMeterId;
+            this.readings = readings;
+            this.history = history;
+            this.rawCutoff = rawCutoff;
+            this.minuteCutoff = minuteCutoff;
+        }
+
+        boolean isHeader() {
+            return type == HEADER;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package uk.tw.energy.replication;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import uk.tw.energy.service.MeterReadingService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Follower side of replication: tails the primary's reading log and applies each change - stored batches, adopted
+ * meters, compactions and removals - to this instance's own store, in the order the primary made them. Reads are then
+ * served here exactly as on the primary, including the version based ETags and cost streams that hang off the store.
+ * Followers do not compact on their own schedule; they compact when the primary did.
+ * <p>
+ * If the primary restarts it starts a new log; the follower notices the new header, drops what it holds and replays the
+ * new log from the top.
+ */
+@Component
+@ConditionalOnProperty(name = "replication.role", havingValue = "follower")
+public class ReadingLogTailer implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadingLogTailer.class);
+    private static final int INITIAL_BUFFER_BYTES = 1 << 20;
+
+    private final MeterReadingService meterReadingService;
+    private final Path path;
+    private final long pollMillis;
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile long position;
+    private volatile long lastAppliedStoredAtMillis;
+    private volatile boolean caughtUp;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private String epoch;
+    private Thread tailer;
+
+    public ReadingLogTailer(MeterReadingService meterReadingService,
+                            @Value("${replication.log.path}") String logPath,
+                            @Value("${replication.poll-millis:50}") long pollMillis) {
+        this.meterReadingService = meterReadingService;
+        this.path = Paths.get(logPath).toAbsolutePath();
+        this.pollMillis = pollMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        tailer = new Thread(this::tailUntilStopped, "reading-log-tailer");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        tailer.interrupt();
+        tailer.join(5_000);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("replication.lag", this, ReadingLogTailer::getLagMillis)
+                .description("Age of the oldest batch stored on the primary but not yet applied here")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("replication.lag.bytes", this, ReadingLogTailer::getLagBytes)
+                .description("Bytes of the reading log not yet applied here")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("replication.applied.batches", applied, LongAdder::sum)
+                .description("Changes applied from the reading log")
+                .register(registry);
+        FunctionCounter.builder("replication.skipped.lines", skipped, LongAdder::sum)
+                .description("Reading log lines skipped because they could not be parsed or applied")
+                .register(registry);
+    }
+
+    /**
+     * Zero when every batch in the log has been applied; otherwise how long ago the primary stored the last applied
+     * batch, which bounds the age of the oldest unapplied one.
+     */
+    public long getLagMillis() {
+        if (caughtUp || lastAppliedStoredAtMillis == 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - lastAppliedStoredAtMillis);
+    }
+
+    public long getLagBytes() {
+        try {
+            return Math.max(0, Files.size(path) - position);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void tailUntilStopped() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (tailOnce() == 0) {
+                    Thread.sleep(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException e) {
+                // the primary may be rotating the log: try again on the next poll
+                sleepQuietly();
+            }
+        }
+    }
+
+    /**
+     * Applies every complete line appended since the last call and returns how many changes were applied. A line still
+     * being written is left for the next call.
+     */
+    int tailOnce() throws IOException {
+        int batches = 0;
+        try (FileChannel log = FileChannel.open(path, StandardOpenOption.READ)) {
+            String logEpoch = readEpoch(log);
+            if (logEpoch == null) {
+                return 0;
+            }
+            if (!logEpoch.equals(epoch)) {
+                if (epoch != null) {
+                    dropAll();
+                }
+                epoch = logEpoch;
+                position = 0;
+            }
+            long size = log.size();
+            while (position < size) {
+                buffer.clear();
+                int read = log.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == '\n') {
+                        if (apply(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8))) {
+                            batches++;
+                        }
+                        // advance line by line, so a failure part way through a read never applies a batch twice
+                        position += i + 1 - lineStart;
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0) {
+                    if (read < buffer.capacity()) {
+                        break;
+                    }
+                    // a single line longer than the buffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                }
+            }
+            caughtUp = position == log.size();
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return batches;
+    }
+
+    /**
+     * Applies one line of the log, returning whether it was a change to the store. A line that cannot be parsed or
+     * applied is skipped and counted rather than retried, as it would fail the same way every time.
+     */
+    private boolean apply(String line) {
+        ReadingLogFormat.Entry entry;
+        try {
+            entry = ReadingLogFormat.parse(line);
+            if (entry.isHeader()) {
+                return false;
+            }
+            switch (entry.type) {
+                case ReadingLogFormat.BATCH:
+                    if (!entry.readings.isEmpty()) {
+                        meterReadingService.storeReadings(entry.smartMeterId, entry.readings);
+                    }
+                    break;
+                case ReadingLogFormat.HISTORY:
+                    meterReadingService.adopt(entry.smartMeterId, entry.history);
+                    break;
+                case ReadingLogFormat.COMPACTED:
+                    meterReadingService.compact(entry.smartMeterId, entry.rawCutoff, entry.minuteCutoff);
+                    break;
+                default:
+                    meterReadingService.evict(entry.smartMeterId);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            skipped.increment();
+            LOGGER.warn("Skipping a reading log line that could not be applied", e);
+            return false;
+        }
+        lastAppliedStoredAtMillis = entry.storedAtMillis;
+        applied.increment();
+        return true;
+    }
+
+    private static String readEpoch(FileChannel log) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(64);
+        int read = log.read(head, 0);
+        for (int i = 0; i < read; i++) {
+            if (head.get(i) == '\n') {
+                return ReadingLogFormat.parse(new String(head.array(), 0, i, StandardCharsets.UTF_8)).epoch;
+            }
+        }
+        return null;
+    }
+
+    private void dropAll() {
+        for (String smartMeterId : new ArrayList<>(meterReadingService.getSmartMeterIds())) {
+            meterReadingService.evict(smartMeterId);
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package uk.tw.energy.replication;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.MeterReadingsListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Appends every change to the store - stored batches, meters adopted from other nodes, compacted, evicted or handed
+ * over - to the reading log at {@code replication.log.path} for followers to tail. The log starts with a snapshot of
+ * the store as it was when the primary started, each meter's whole history including what compaction left of it, so a
+ * follower replaying it from the top ends up holding the same as the primary.
+ * <p>
+ * Changes are handed to a writer thread rather than written on the ingest path, which only pays for an enqueue while it
+ * holds the meter's lock. The writer flushes after every group of changes it drains, so followers see a batch within a
+ * flush of it being stored.
+ * <p>
+ * At most {@code replication.log.max-pending} changes wait for the writer. One that finds the queue full is dropped
+ * rather than holding up ingestion, and a write that fails is not retried on its own: either way the log no longer
+ * holds everything, so the writer starts it afresh - a new header and a new snapshot - and followers replay it as they
+ * would after a restart of the primary. Failed attempts are retried with a growing delay from
+ * {@code replication.log.retry-millis}, and reported as this health indicator going down.
+ */
+@Component
+@ConditionalOnExpression("'${replication.log.path:}' != '' and '${replication.role:primary}' == 'primary'")
+public class ReadingLogWriter implements MeterReadingsListener, MeterBinder, HealthIndicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadingLogWriter.class);
+    private static final PendingChange STOP = new PendingChange(0, null, null);
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    private final MeterReadingService meterReadingService;
+    private final Path path;
+    private final long retryMillis;
+    private final BlockingQueue<PendingChange> pending;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // per meter, the sequence of the last change already in the snapshot the current log started with; writer only
+    private final Map<String, Long> snapshotSequences = new HashMap<>();
+    private final List<PendingChange> changes = new ArrayList<>();
+    // set when a change had to be dropped, so the log must be started afresh
+    private volatile boolean behind;
+    // the last failure to write the log, until it is written again
+    private volatile String failure;
+    private Writer out;
+    private Thread writer;
+
+    public ReadingLogWriter(MeterReadingService meterReadingService, String logPath) throws IOException {
+        this(meterReadingService, logPath, 100_000, 1_000);
+    }
+
+    @Autowired
+    public ReadingLogWriter(MeterReadingService meterReadingService,
+                            @Value("${replication.log.path}") String logPath,
+                            @Value("${replication.log.max-pending:100000}") int maxPending,
+                            @Value("${replication.log.retry-millis:1000}") long retryMillis) throws IOException {
+        if (maxPending < 1 || retryMillis < 1) {
+            throw new IllegalArgumentException("Expected room for at least one pending change and a positive retry delay");
+        }
+        this.meterReadingService = meterReadingService;
+        this.path = Paths.get(logPath).toAbsolutePath();
+        this.retryMillis = retryMillis;
+        this.pending = new ArrayBlockingQueue<>(maxPending);
+        Files.createDirectories(path.getParent());
+        // nothing is served before the application context is ready, so the snapshot cannot race with stores
+        startLog();
+        meterReadingService.addListener(this);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::writeUntilStopped, "reading-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void onReadingsStored(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        long storedAtMillis = System.currentTimeMillis();
+        enqueue(smartMeterId, () -> ReadingLogFormat.batch(storedAtMillis, smartMeterId, electricityReadings));
+    }
+
+    @Override
+    public void onMeterAdopted(String smartMeterId, MeterHistory history) {
+        long storedAtMillis = System.currentTimeMillis();
+        enqueue(smartMeterId, () -> ReadingLogFormat.history(storedAtMillis, smartMeterId, history));
+    }
+
+    @Override
+    public void onMeterCompacted(String smartMeterId, Instant rawCutoff, Instant minuteCutoff) {
+        long storedAtMillis = System.currentTimeMillis();
+        enqueue(smartMeterId, () -> ReadingLogFormat.compacted(storedAtMillis, smartMeterId, rawCutoff, minuteCutoff));
+    }
+
+    @Override
+    public void onMeterRemoved(String smartMeterId) {
+        long storedAtMillis = System.currentTimeMillis();
+        enqueue(smartMeterId, () -> ReadingLogFormat.removed(storedAtMillis, smartMeterId));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("replication.log.batches", written, LongAdder::sum)
+                .description("Changes appended to the reading log")
+                .register(registry);
+        FunctionCounter.builder("replication.log.dropped", dropped, LongAdder::sum)
+                .description("Changes that found the writer's queue full, each restarting the log")
+                .register(registry);
+        FunctionCounter.builder("replication.log.failures", failures, LongAdder::sum)
+                .description("Failed attempts to write the reading log")
+                .register(registry);
+        Gauge.builder("replication.log.pending", pending, BlockingQueue::size)
+                .description("Changes not yet appended to the reading log")
+                .register(registry);
+    }
+
+    @Override
+    public Health health() {
+        String lastFailure = failure;
+        Health.Builder health = lastFailure == null ? Health.up() : Health.down().withDetail("error", lastFailure);
+        return health.withDetail("pending", pending.size())
+                .withDetail("dropped", dropped.sum())
+                .withDetail("failures", failures.sum())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            // never started: write what is queued on this thread
+            while (!pending.isEmpty() && writePending(0)) {
+                // keep draining
+            }
+            closeQuietly();
+            return;
+        }
+        if (!pending.offer(STOP, 5, TimeUnit.SECONDS)) {
+            writer.interrupt();
+        }
+        writer.join(5_000);
+    }
+
+    private void writeUntilStopped() {
+        long delay = retryMillis;
+        try {
+            while (writePending(TimeUnit.SECONDS.toMillis(1))) {
+                if (failure == null) {
+                    delay = retryMillis;
+                } else {
+                    Thread.sleep(delay);
+                    delay = Math.min(delay * 2, MAX_RETRY_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // called under the meter's lock, so a meter's changes are numbered in the order they were made
+    private void enqueue(String smartMeterId, Supplier<String> line) {
+        if (!pending.offer(new PendingChange(sequence.incrementAndGet(), smartMeterId, line))) {
+            dropped.increment();
+            behind = true;
+        }
+    }
+
+    /**
+     * Writes the changes queued within {@code timeoutMillis}, first starting the log afresh if it is missing changes.
+     * Returns false once the writer has been stopped.
+     */
+    boolean writePending(long timeoutMillis) throws InterruptedException {
+        try {
+            if (out == null || behind) {
+                startLog();
+            }
+            PendingChange first = pending.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return true;
+            }
+            changes.add(first);
+            pending.drainTo(changes);
+            for (PendingChange change : changes) {
+                if (change == STOP) {
+                    closeQuietly();
+                    return false;
+                }
+                Long snapshotSequence = snapshotSequences.get(change.smartMeterId);
+                if (snapshotSequence == null || change.sequence > snapshotSequence) {
+                    out.write(change.line.get());
+                    written.increment();
+                }
+            }
+            out.flush();
+            changes.clear();
+            failure = null;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            failure = e.toString();
+            LOGGER.warn("Could not write the reading log at {}, starting it afresh", path, e);
+            closeQuietly();
+            // whatever was not written is in the snapshot the log starts with next
+            boolean stopped = changes.contains(STOP);
+            changes.clear();
+            return !stopped;
+        }
+    }
+
+    /**
+     * Truncates the log and writes a new header and a snapshot of every meter. Changes queued for a meter before its
+     * snapshot was taken are in it, and are skipped when they reach the writer.
+     */
+    private void startLog() throws IOException {
+        behind = false;
+        closeQuietly();
+        out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        out.write(ReadingLogFormat.header(UUID.randomUUID().toString()));
+        snapshotSequences.clear();
+        long now = System.currentTimeMillis();
+        for (String smartMeterId : meterReadingService.getSmartMeterIds()) {
+            String snapshot = meterReadingService.readHistoryConsistently(smartMeterId, history -> {
+                snapshotSequences.put(smartMeterId, sequence.get());
+                return history.isEmpty() ? null : ReadingLogFormat.history(now, smartMeterId, history);
+            });
+            if (snapshot != null) {
+                out.write(snapshot);
+            }
+        }
+        out.flush();
+        failure = null;
+    }
+
+    private void closeQuietly() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close the reading log", e);
+        }
+        out = null;
+    }
+
+    private static final class PendingChange {
+
+        final long sequence;
+        final String smartMeterId;
+        // formatted on the writer thread
+        final Supplier<String> line;
+
+        PendingChange(long sequence, String smartMeterId, Supplier<String> line) {
+            this.sequence = sequence;
+            this.smartMeterId = smartMeterId;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package uk.tw.energy.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.ReadingAnomaly;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches readings as they are stored and raises a {@link ReadingAnomaly} for:
+ * <ul>
+ *     <li>spikes - a reading more than {@code anomaly.spike-deviations} standard deviations, and at least
+ *     {@code anomaly.spike-min-change} kW, away from the meter's exponentially weighted average,</li>
+ *     <li>stuck meters - {@code anomaly.stuck-readings} identical readings in a row, and</li>
+ *     <li>gaps - more than {@code anomaly.gap-seconds} between consecutive readings.</li>
+ * </ul>
+ * Each meter keeps a fixed handful of numbers - the weighted average and variance, the last reading and how often it
+ * has repeated - updated in place on the ingesting thread under the meter's lock, so a reading costs a few arithmetic
+ * operations and allocates nothing unless it raises an anomaly. The most recent {@code anomaly.recent-alerts}
+ * anomalies are kept for {@link #getRecent}.
+ * <p>
+ * Readings a meter was seeded with, or that came with it from another node, are history rather than news: they only
+ * bring the meter's numbers up to date, without raising anything. A meter's numbers are dropped once it is no longer
+ * held here.
+ */
+@Service
+public class AnomalyDetector implements MeterReadingsListener, MeterBinder {
+
+    private final double alpha;
+    private final double spikeDeviations;
+    private final double spikeMinChange;
+    private final long warmupReadings;
+    private final int stuckReadings;
+    private final long gapMillis;
+    private final Map<String, MeterState> meters = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<ReadingAnomaly> recent;
+    private final AtomicLong raised = new AtomicLong();
+    private final Map<ReadingAnomaly.Type, LongAdder> raisedByType = new EnumMap<>(ReadingAnomaly.Type.class);
+
+    @Autowired
+    public AnomalyDetector(MeterReadingService meterReadingService,
+                           @Value("${anomaly.alpha:0.05}") double alpha,
+                           @Value("${anomaly.spike-deviations:6}") double spikeDeviations,
+                           @Value("${anomaly.spike-min-change:0.5}") double spikeMinChange,
+                           @Value("${anomaly.warmup-readings:30}") long warmupReadings,
+                           @Value("${anomaly.stuck-readings:360}") int stuckReadings,
+                           @Value("${anomaly.gap-seconds:60}") long gapSeconds,
+                           @Value("${anomaly.recent-alerts:1000}") int recentAlerts) {
+        if (alpha <= 0 || alpha >= 1) {
+            throw new IllegalArgumentException("anomaly.alpha must be between 0 and 1");
+        }
+        if (recentAlerts < 1) {
+            throw new IllegalArgumentException("anomaly.recent-alerts must be at least 1");
+        }
+        this.alpha = alpha;
+        this.spikeDeviations = spikeDeviations;
+        this.spikeMinChange = spikeMinChange;
+        this.warmupReadings = warmupReadings;
+        this.stuckReadings = stuckReadings;
+        this.gapMillis = gapSeconds * 1000;
+        this.recent = new AtomicReferenceArray<>(recentAlerts);
+        for (ReadingAnomaly.Type type : ReadingAnomaly.Type.values()) {
+            raisedByType.put(type, new LongAdder());
+        }
+        meterReadingService.addListener(this);
+    }
+
+    public AnomalyDetector(MeterReadingService meterReadingService) {
+        this(meterReadingService, 0.05, 6, 0.5, 30, 360, 60, 1000);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ReadingAnomaly.Type type : ReadingAnomaly.Type.values()) {
+            FunctionCounter.builder("readings.anomalies", raisedByType.get(type), LongAdder::sum)
+                    .description("Anomalies raised while storing readings")
+                    .tag("type", type.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void onReadingsStored(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        observeAll(smartMeterId, electricityReadings, true);
+    }
+
+    @Override
+    public void onMeterSeeded(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        observeAll(smartMeterId, electricityReadings, false);
+    }
+
+    @Override
+    public void onMeterAdopted(String smartMeterId, MeterHistory history) {
+        observeAll(smartMeterId, history.getReadings(), false);
+    }
+
+    @Override
+    public void onMeterRemoved(String smartMeterId) {
+        meters.remove(smartMeterId);
+    }
+
+    /**
+     * The most recent anomalies, newest first, optionally only those of one meter or type. Anomalies raised while this
+     * runs may or may not be included.
+     */
+    public List<ReadingAnomaly> getRecent(String smartMeterId, ReadingAnomaly.Type type, int limit) {
+        List<ReadingAnomaly> anomalies = new ArrayList<>();
+        long newest = raised.get() - 1;
+        long oldest = Math.max(0, newest - recent.length() + 1);
+        for (long n = newest; n >= oldest && anomalies.size() < limit; n--) {
+            ReadingAnomaly anomaly = recent.get((int) (n % recent.length()));
+            if (anomaly != null
+                    && (smartMeterId == null || smartMeterId.equals(anomaly.getSmartMeterId()))
+                    && (type == null || type == anomaly.getType())) {
+                anomalies.add(anomaly);
+            }
+        }
+        return anomalies;
+    }
+
+    private void observeAll(String smartMeterId, List<ElectricityReading> electricityReadings, boolean alerting) {
+        MeterState state = meters.get(smartMeterId);
+        if (state == null) {
+            state = meters.computeIfAbsent(smartMeterId, id -> new MeterState());
+        }
+        for (int i = 0; i < electricityReadings.size(); i++) {
+            ElectricityReading reading = electricityReadings.get(i);
+            observe(smartMeterId, state, reading.getTime().toEpochMilli(), reading.getReading().doubleValue(), alerting);
+        }
+    }
+
+    // a spike is judged on the value alone, so late readings still count; gaps and repeats only make sense in order
+    private void observe(String smartMeterId, MeterState state, long timeMillis, double value, boolean alerting) {
+        double deviation = value - state.mean;
+        if (state.samples >= warmupReadings
+                && Math.abs(deviation) > spikeMinChange
+                && deviation * deviation > spikeDeviations * spikeDeviations * state.variance) {
+            if (!state.spiking) {
+                state.spiking = true;
+                raise(alerting, ReadingAnomaly.Type.SPIKE, smartMeterId, timeMillis, value, state.mean,
+                        String.format("%.3f kW against a recent average of %.3f kW", value, state.mean));
+            }
+        } else {
+            state.spiking = false;
+        }
+        if (state.samples == 0) {
+            state.mean = value;
+        } else {
+            double increment = alpha * deviation;
+            state.mean += increment;
+            state.variance = (1 - alpha) * (state.variance + deviation * increment);
+        }
+        state.samples++;
+
+        if (timeMillis <= state.lastMillis) {
+            return;
+        }
+        if (state.lastMillis != Long.MIN_VALUE && timeMillis - state.lastMillis > gapMillis) {
+            raise(alerting, ReadingAnomaly.Type.GAP, smartMeterId, timeMillis, value, state.lastValue,
+                    "No readings for " + (timeMillis - state.lastMillis) / 1000 + "s");
+        }
+        if (state.lastMillis != Long.MIN_VALUE && value == state.lastValue) {
+            if (++state.repeats == stuckReadings - 1) {
+                raise(alerting, ReadingAnomaly.Type.STUCK, smartMeterId, timeMillis, value, state.mean,
+                        "The last " + stuckReadings + " readings were all " + value + " kW");
+            }
+        } else {
+            state.repeats = 0;
+        }
+        state.lastMillis = timeMillis;
+        state.lastValue = value;
+    }
+
+    private void raise(boolean alerting, ReadingAnomaly.Type type, String smartMeterId, long timeMillis, double value,
+                       double expected, String description) {
+        if (!alerting) {
+            return;
+        }
+        ReadingAnomaly anomaly = new ReadingAnomaly(type, smartMeterId, Instant.ofEpochMilli(timeMillis),
+                value, expected, description);
+        long n = raised.getAndIncrement();
+        recent.set((int) (n % recent.length()), anomaly);
+        raisedByType.get(type).increment();
+    }
+
+    /**
+     * Only ever touched while the meter's lock is held, which also publishes it to the next thread to store for it.
+     */
+    private static final class MeterState {
+        double mean;
+        double variance;
+        long samples;
+        boolean spiking;
+        long lastMillis = Long.MIN_VALUE;
+        double lastValue;
+        int repeats;
+    }
+}
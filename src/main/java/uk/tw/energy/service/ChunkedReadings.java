@@ -0,0 +1,136 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One meter's readings as an append-only run of fixed-size chunks, read through immutable snapshots.
+ * <p>
+ * A {@link #snapshot()} is a list over the chunks and the length published when it was taken, so taking one neither
+ * locks nor copies. Writers, serialised by the meter's lock, only ever fill slots past the published length and then
+ * publish the new length, so a snapshot never changes once taken however much is appended after it. Arrays a
+ * snapshot can see are never written to again: the spine is replaced rather than updated when a chunk it shares is
+ * swapped, and compaction builds new chunks.
+ */
+final class ChunkedReadings {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // most meters hold far fewer readings than a chunk, so the first chunk starts small and grows
+    private static final int FIRST_CHUNK_SIZE = 16;
+    // array header and compressed reference, on a 64-bit JVM
+    private static final long ARRAY_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;
+
+    // written only under the meter's lock, and only read there or through a published snapshot
+    private ElectricityReading[][] chunks = new ElectricityReading[1][];
+    private int size;
+    private volatile Snapshot published = new Snapshot(chunks, 0);
+
+    List<ElectricityReading> snapshot() {
+        return published;
+    }
+
+    /**
+     * Appends a batch and publishes it to new snapshots. Callers must hold the meter's lock.
+     */
+    void append(List<ElectricityReading> readings) {
+        for (ElectricityReading reading : readings) {
+            int chunk = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            ensureSlot(chunk, offset);
+            chunks[chunk][offset] = reading;
+            size++;
+        }
+        published = new Snapshot(chunks, size);
+    }
+
+    /**
+     * Drops readings taken before {@code cutoff}, returning how many were dropped. Snapshots taken earlier keep
+     * them. Callers must hold the meter's lock.
+     */
+    int removeTakenBefore(Instant cutoff) {
+        Snapshot current = published;
+        int kept = 0;
+        for (ElectricityReading reading : current) {
+            if (!reading.getTime().isBefore(cutoff)) {
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return 0;
+        }
+        chunks = new ElectricityReading[1][];
+        size = 0;
+        for (ElectricityReading reading : current) {
+            if (!reading.getTime().isBefore(cutoff)) {
+                int chunk = size >>> CHUNK_SHIFT;
+                int offset = size & CHUNK_MASK;
+                ensureSlot(chunk, offset);
+                chunks[chunk][offset] = reading;
+                size++;
+            }
+        }
+        published = new Snapshot(chunks, size);
+        return current.size() - kept;
+    }
+
+    /**
+     * Heap held by the latest snapshot: its readings at {@code bytesPerReading} each, and the chunks and spine
+     * referencing them, empty slots included.
+     */
+    long estimatedBytes(long bytesPerReading) {
+        Snapshot current = published;
+        long bytes = ARRAY_BYTES + current.chunks.length * REFERENCE_BYTES;
+        for (ElectricityReading[] chunk : current.chunks) {
+            if (chunk != null) {
+                bytes += ARRAY_BYTES + chunk.length * REFERENCE_BYTES;
+            }
+        }
+        return bytes + current.size * bytesPerReading;
+    }
+
+    private void ensureSlot(int chunk, int offset) {
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        ElectricityReading[] current = chunks[chunk];
+        if (current == null) {
+            chunks[chunk] = new ElectricityReading[chunk == 0 ? FIRST_CHUNK_SIZE : CHUNK_SIZE];
+        } else if (offset == current.length) {
+            // published snapshots may share the spine and read this slot, so swap in a new spine
+            chunks = Arrays.copyOf(chunks, chunks.length);
+            chunks[chunk] = Arrays.copyOf(current, Math.min(CHUNK_SIZE, current.length * 2));
+        }
+    }
+
+    private static final class Snapshot extends AbstractList<ElectricityReading> implements RandomAccess {
+
+        private final ElectricityReading[][] chunks;
+        private final int size;
+
+        Snapshot(ElectricityReading[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public ElectricityReading get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package uk.tw.energy.service;
+
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Pushes today's running cost of a meter, for every price plan, to subscribers whenever readings are stored for it.
+ * <p>
+ * Only meters with subscribers keep state: a running summary of today's readings that each stored batch is folded
+ * into, so an update costs the size of the batch rather than a rescan of the meter's history. Costs are taken over
+ * the same window as {@link PricePlanService#getConsumptionCostOfElectricityReadingsDayOfWeek} for today, from the
+ * start of the day to the end of the current second: readings stamped later than that are held back until the clock
+ * has passed them, so both agree. Updates are delivered
+ * on a small shared pool, and a subscriber that is still busy with a previous update only ever has the latest one
+ * pending - slow consumers skip intermediate updates instead of buffering them.
+ */
+@Service
+public class CostStreamService implements MeterReadingsListener {
+
+    private final MeterReadingService meterReadingService;
+    private final PricePlanService pricePlanService;
+    private final Map<String, MeterCostStream> streams = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+
+    public CostStreamService(MeterReadingService meterReadingService, PricePlanService pricePlanService) {
+        this.meterReadingService = meterReadingService;
+        this.pricePlanService = pricePlanService;
+        this.dispatcher = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "cost-stream-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterReadingService.addListener(this);
+    }
+
+    /**
+     * Subscribes to today's costs for a meter. The subscriber is sent the current costs straight away and then after
+     * every stored batch; the returned handle cancels the subscription.
+     */
+    public Runnable subscribe(String smartMeterId, Consumer<Map<String, BigDecimal>> consumer) {
+        Subscriber subscriber = new Subscriber(consumer);
+        MeterCostStream stream = streams.compute(smartMeterId, (id, existing) -> {
+            MeterCostStream meterStream = existing != null ? existing : new MeterCostStream();
+            meterStream.subscribers.add(subscriber);
+            return meterStream;
+        });
+        subscriber.offer(stream.initialise(smartMeterId));
+        return () -> streams.computeIfPresent(smartMeterId, (id, meterStream) -> {
+            meterStream.subscribers.remove(subscriber);
+            return meterStream.subscribers.isEmpty() ? null : meterStream;
+        });
+    }
+
+    @Override
+    public void onReadingsStored(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        MeterCostStream stream = streams.get(smartMeterId);
+        if (stream == null) {
+            return;
+        }
+        Map<String, BigDecimal> costs = stream.apply(smartMeterId, electricityReadings);
+        for (Subscriber subscriber : stream.subscribers) {
+            subscriber.offer(costs);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private Map<String, BigDecimal> costsOf(ReadingsSummary summary) {
+        if (summary.isEmpty() || summary.getFirst().equals(summary.getLast())) {
+            return Collections.emptyMap();
+        }
+        return pricePlanService.getConsumptionCostForEachPricePlan(summary);
+    }
+
+    private final class MeterCostStream {
+
+        private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        private LocalDate day;
+        private ReadingsSummary today;
+        // today's readings stamped after the end of the second they were folded in, oldest first
+        private final List<ElectricityReading> ahead = new ArrayList<>();
+
+        Map<String, BigDecimal> initialise(String smartMeterId) {
+            // same lock order as the ingest path: the meter's readings first, then this stream
+            return meterReadingService.readConsistently(smartMeterId, readings -> {
+                synchronized (this) {
+                    if (today == null || !LocalDate.now().equals(day)) {
+                        rescan(readings);
+                    }
+                    return costsOf(today);
+                }
+            });
+        }
+
+        synchronized Map<String, BigDecimal> apply(String smartMeterId, List<ElectricityReading> electricityReadings) {
+            if (today == null || !LocalDate.now().equals(day)) {
+                // first batch of a new day: it is already in the store, so the rescan includes it. The ingesting
+                // thread holds the meter's readings lock, so reading them consistently here cannot block
+                meterReadingService.readConsistently(smartMeterId, this::rescan);
+                return costsOf(today);
+            }
+            Instant end = PricePlanService.endOfThisSecond();
+            while (!ahead.isEmpty() && !ahead.get(0).getTime().isAfter(end)) {
+                today.add(ahead.remove(0));
+            }
+            fold(electricityReadings, end);
+            return costsOf(today);
+        }
+
+        private ReadingsSummary rescan(List<ElectricityReading> readings) {
+            day = LocalDate.now();
+            today = new ReadingsSummary();
+            ahead.clear();
+            fold(readings, PricePlanService.endOfThisSecond());
+            return today;
+        }
+
+        private void fold(List<ElectricityReading> electricityReadings, Instant end) {
+            Instant startOfDay = day.atStartOfDay(ZoneId.systemDefault()).toInstant();
+            Instant startOfNextDay = day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            for (ElectricityReading electricityReading : electricityReadings) {
+                if (!isWithin(electricityReading, startOfDay, startOfNextDay)) {
+                    continue;
+                }
+                if (electricityReading.getTime().isAfter(end)) {
+                    int index = 0;
+                    while (index < ahead.size() && !ahead.get(index).getTime().isAfter(electricityReading.getTime())) {
+                        index++;
+                    }
+                    ahead.add(index, electricityReading);
+                } else {
+                    today.add(electricityReading);
+                }
+            }
+        }
+
+        private boolean isWithin(ElectricityReading electricityReading, Instant begin, Instant end) {
+            Instant time = electricityReading.getTime();
+            return !time.isBefore(begin) && time.isBefore(end);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final Consumer<Map<String, BigDecimal>> consumer;
+        private final AtomicReference<Map<String, BigDecimal>> pending = new AtomicReference<>();
+        private final AtomicBoolean dispatching = new AtomicBoolean();
+
+        Subscriber(Consumer<Map<String, BigDecimal>> consumer) {
+            this.consumer = consumer;
+        }
+
+        void offer(Map<String, BigDecimal> costs) {
+            pending.set(costs);
+            if (dispatching.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Map<String, BigDecimal> costs;
+                while ((costs = pending.getAndSet(null)) != null) {
+                    try {
+                        consumer.accept(costs);
+                    } catch (RuntimeException e) {
+                        // a failing subscriber is cancelled by its owner; keep the dispatcher thread alive
+                    }
+                }
+                dispatching.set(false);
+            } while (pending.get() != null && dispatching.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package uk.tw.energy.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Total demand of every meter, per price plan, over the last {@code demand.window-hours} hours, kept up to date on
+ * each node for its own meters as readings are stored and gathered from every shard when asked.
+ * <p>
+ * Readings are added to 10-second slots in a ring per price plan. A slot holds a striped sum of the readings in watts
+ * and how many there were, so concurrent ingest threads adding to the same slot do not contend. Slots are recycled by
+ * swapping in a fresh one for the new time, so an add racing with the swap can only land in the slot being discarded.
+ * Each meter is counted at most once per slot, by the first reading it sends for the slot, so a slot's sum is the
+ * fleet's demand at that time even when readings are resent or arrive out of order, and a longer bucket's demand is the
+ * average over its slots. Which slots a meter has been counted in is kept as a bit per slot of the window, 1 KB a meter
+ * for the default 24 hours, against the 750 KB its readings for a day take in the store. Readings of a meter handed over
+ * from another node are not counted again here, as that node's slots still hold them.
+ */
+@Service
+public class FleetDemandService implements MeterReadingsListener {
+
+    public static final String NO_PRICE_PLAN = "none";
+    public static final int MAX_BUCKETS = 10_000;
+    public static final Duration SLOT = Duration.ofSeconds(10);
+    // readings stamped a little ahead of this node's clock are still accepted, anything further is a broken clock
+    private static final long MAX_CLOCK_SKEW_MILLIS = 60_000;
+    private static final long SLOT_MILLIS = SLOT.toMillis();
+
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+    private final ShardClient shardClient;
+    private final int slots;
+    private final Map<String, AtomicReferenceArray<Slot>> rings = new ConcurrentHashMap<>();
+    // each only touched by listener calls, which hold the meter's lock
+    private final Map<String, CountedSlots> countedSlots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FleetDemandService(MeterReadingService meterReadingService, AccountService accountService,
+                              ShardRouter shardRouter, ShardClient shardClient,
+                              @Value("${demand.window-hours:24}") int windowHours) {
+        this(meterReadingService, accountService, shardRouter, shardClient, Duration.ofHours(windowHours));
+    }
+
+    public FleetDemandService(MeterReadingService meterReadingService, AccountService accountService, Duration window) {
+        this(meterReadingService, accountService, ShardRouter.standalone(), null, window);
+    }
+
+    public FleetDemandService(MeterReadingService meterReadingService, AccountService accountService,
+                              ShardRouter shardRouter, ShardClient shardClient, Duration window) {
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+        this.shardClient = shardClient;
+        this.slots = (int) (window.toMillis() / SLOT_MILLIS);
+        meterReadingService.addListener(this);
+    }
+
+    public Duration getWindow() {
+        return SLOT.multipliedBy(slots);
+    }
+
+    @Override
+    public void onReadingsStored(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
+        String ringId = pricePlanId == null ? NO_PRICE_PLAN : pricePlanId;
+        AtomicReferenceArray<Slot> ring = rings.get(ringId);
+        if (ring == null) {
+            ring = rings.computeIfAbsent(ringId, id -> new AtomicReferenceArray<>(slots));
+        }
+        CountedSlots counted = countedSlots.get(smartMeterId);
+        if (counted == null) {
+            counted = countedSlots.computeIfAbsent(smartMeterId, id -> new CountedSlots(slots));
+        }
+        long nowMillis = System.currentTimeMillis();
+        long oldestSlot = Math.floorDiv(nowMillis, SLOT_MILLIS) - slots + 1;
+        long newestSlot = Math.floorDiv(nowMillis + MAX_CLOCK_SKEW_MILLIS, SLOT_MILLIS);
+        for (int i = 0; i < electricityReadings.size(); i++) {
+            ElectricityReading reading = electricityReadings.get(i);
+            long slot = Math.floorDiv(reading.getTime().toEpochMilli(), SLOT_MILLIS);
+            // a resent or second reading in a slot already counted for the meter would count its demand twice
+            if (slot >= oldestSlot && slot <= newestSlot && counted.mark(slot)) {
+                add(ring, slot, Math.round(reading.getReading().doubleValue() * 1000));
+            }
+        }
+    }
+
+    @Override
+    public void onMeterAdopted(String smartMeterId, MeterHistory history) {
+        // counted by the node that handed it over, whose slots still hold the readings
+    }
+
+    @Override
+    public void onMeterRemoved(String smartMeterId) {
+        countedSlots.remove(smartMeterId);
+    }
+
+    /**
+     * As {@link #getDemand}, for the meters of every shard.
+     *
+     * @throws uk.tw.energy.shard.ShardUnavailableException if another shard does not answer
+     */
+    public Map<Instant, Map<String, Demand>> getFleetDemand(Instant from, Instant to, Duration bucket) {
+        Map<Instant, Map<String, Demand>> demand = getDemand(from, to, bucket);
+        if (shardRouter.isSharded()) {
+            for (Map<Instant, Map<String, Demand>> peerDemand : shardClient.gatherDemand(shardRouter.getPeers(), from, to, bucket)) {
+                peerDemand.forEach((start, byPricePlan) -> {
+                    Map<String, Demand> merged = new TreeMap<>(demand.getOrDefault(start, Collections.emptyMap()));
+                    byPricePlan.forEach((pricePlanId, planDemand) -> merged.merge(pricePlanId, planDemand, Demand::plus));
+                    demand.put(start, merged);
+                });
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Demand of the meters stored on this node in [from, to) per bucket of {@code bucket}, which must be a whole number of slots, keyed by bucket start
+     * and then by price plan ({@link #NO_PRICE_PLAN} for meters without one). Buckets are aligned to the epoch and
+     * cover the range; those outside the window, or before any readings, are empty.
+     *
+     * @throws IllegalArgumentException if the range spans more than {@link #MAX_BUCKETS} buckets
+     */
+    public Map<Instant, Map<String, Demand>> getDemand(Instant from, Instant to, Duration bucket) {
+        long slotsPerBucket = bucket.toMillis() / SLOT_MILLIS;
+        if (slotsPerBucket < 1 || bucket.toMillis() % SLOT_MILLIS != 0) {
+            throw new IllegalArgumentException("Buckets must be a whole number of " + SLOT.getSeconds() + "-second slots");
+        }
+        long bucketMillis = bucket.toMillis();
+        long firstBucket = Math.floorDiv(from.toEpochMilli(), bucketMillis);
+        long endBucket = Math.floorDiv(to.toEpochMilli() - 1, bucketMillis) + 1;
+        if (endBucket - firstBucket > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Range spans more than " + MAX_BUCKETS + " buckets");
+        }
+        long newestSlot = Math.floorDiv(System.currentTimeMillis() + MAX_CLOCK_SKEW_MILLIS, SLOT_MILLIS);
+        Map<Instant, Map<String, Demand>> demand = new TreeMap<>();
+        for (long b = firstBucket; b < endBucket; b++) {
+            Map<String, Demand> byPricePlan = new TreeMap<>();
+            for (Map.Entry<String, AtomicReferenceArray<Slot>> ring : rings.entrySet()) {
+                long watts = 0;
+                long readings = 0;
+                for (long slot = b * slotsPerBucket; slot < (b + 1) * slotsPerBucket && slot <= newestSlot; slot++) {
+                    Slot current = ring.getValue().get(indexOf(slot));
+                    if (current != null && current.slot == slot) {
+                        watts += current.watts.sum();
+                        readings += current.readings.sum();
+                    }
+                }
+                if (readings > 0) {
+                    byPricePlan.put(ring.getKey(), new Demand(watts, slotsPerBucket, readings));
+                }
+            }
+            demand.put(Instant.ofEpochMilli(b * bucketMillis), byPricePlan.isEmpty() ? Collections.emptyMap() : byPricePlan);
+        }
+        return demand;
+    }
+
+    private void add(AtomicReferenceArray<Slot> ring, long slot, long watts) {
+        int index = indexOf(slot);
+        while (true) {
+            Slot current = ring.get(index);
+            if (current != null && current.slot == slot) {
+                current.watts.add(watts);
+                current.readings.increment();
+                return;
+            }
+            if (current != null && current.slot > slot) {
+                // the slot has already moved on to a later time; this reading has left the window
+                return;
+            }
+            ring.compareAndSet(index, current, new Slot(slot));
+        }
+    }
+
+    private int indexOf(long slot) {
+        return (int) Math.floorMod(slot, (long) slots);
+    }
+
+    /**
+     * Demand in one bucket: its readings' sum averaged over the bucket's slots.
+     */
+    public static final class Demand {
+
+        private final long watts;
+        private final long slots;
+        private final long readings;
+
+        public Demand(long watts, long slots, long readings) {
+            this.watts = watts;
+            this.slots = slots;
+            this.readings = readings;
+        }
+
+        /**
+         * Sum of the bucket's readings in watts.
+         */
+        public long getWatts() {
+            return watts;
+        }
+
+        public long getSlots() {
+            return slots;
+        }
+
+        /**
+         * Average demand over the bucket in kW.
+         */
+        public BigDecimal getKilowatts() {
+            return BigDecimal.valueOf(watts).divide(BigDecimal.valueOf(slots * 1000), 3, RoundingMode.HALF_UP);
+        }
+
+        public long getReadings() {
+            return readings;
+        }
+
+        public Demand plus(Demand other) {
+            return new Demand(watts + other.watts, slots, readings + other.readings);
+        }
+    }
+
+    /**
+     * The slots of the window a meter has been counted in, a bit each, indexed as in the rings.
+     */
+    private static final class CountedSlots {
+        private final long[] bits;
+        private final int slots;
+        private long newest = Long.MIN_VALUE;
+
+        CountedSlots(int slots) {
+            this.slots = slots;
+            this.bits = new long[(slots + 63) / 64];
+        }
+
+        /**
+         * Marks the slot counted, returning false if it already was or is older than the window behind the newest.
+         */
+        boolean mark(long slot) {
+            if (newest == Long.MIN_VALUE || slot - newest >= slots) {
+                Arrays.fill(bits, 0);
+                newest = slot;
+            } else if (slot > newest) {
+                // the bits of slots the window has moved past now stand for the slots it has moved on to
+                for (long cleared = newest + 1; cleared <= slot; cleared++) {
+                    int index = (int) Math.floorMod(cleared, (long) slots);
+                    bits[index >>> 6] &= ~(1L << index);
+                }
+                newest = slot;
+            } else if (newest - slot >= slots) {
+                return false;
+            }
+            int index = (int) Math.floorMod(slot, (long) slots);
+            long bit = 1L << index;
+            if ((bits[index >>> 6] & bit) != 0) {
+                return false;
+            }
+            bits[index >>> 6] |= bit;
+            return true;
+        }
+    }
+
+    private static final class Slot {
+        final long slot;
+        final LongAdder watts = new LongAdder();
+        final LongAdder readings = new LongAdder();
+
+        Slot(long slot) {
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package uk.tw.energy.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Demand percentiles for capacity planning, answered from the daily quantile sketches each meter maintains at ingest
+ * rather than from raw readings.
+ */
+@Service
+public class LoadProfileService {
+
+    private final MeterReadingService meterReadingService;
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+    private final ShardClient shardClient;
+
+    public LoadProfileService(MeterReadingService meterReadingService, AccountService accountService) {
+        this(meterReadingService, accountService, ShardRouter.standalone(), null);
+    }
+
+    @Autowired
+    public LoadProfileService(MeterReadingService meterReadingService, AccountService accountService,
+                              ShardRouter shardRouter, ShardClient shardClient) {
+        this.meterReadingService = meterReadingService;
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+        this.shardClient = shardClient;
+    }
+
+    public Map<LocalDate, QuantileSketch> getDailyLoadProfile(String smartMeterId, LocalDate from, LocalDate to) {
+        return meterReadingService.getDailySketches(smartMeterId, from, to);
+    }
+
+    /**
+     * Merges the sketches of every meter - or only of meters on {@code pricePlanId}, if given - over the days from
+     * {@code from} to {@code to}, inclusive, across all shards.
+     *
+     * @throws uk.tw.energy.shard.ShardUnavailableException if another shard does not answer
+     */
+    public QuantileSketch getFleetLoadProfile(LocalDate from, LocalDate to, String pricePlanId) {
+        QuantileSketch fleet = getLocalFleetLoadProfile(from, to, pricePlanId);
+        if (shardRouter.isSharded()) {
+            shardClient.gatherLoadProfiles(shardRouter.getPeers(), from, to, pricePlanId).forEach(fleet::merge);
+        }
+        return fleet;
+    }
+
+    /**
+     * As {@link #getFleetLoadProfile} for the meters held by this node. Meters are merged in parallel into per-thread
+     * sketches that are then combined.
+     */
+    public QuantileSketch getLocalFleetLoadProfile(LocalDate from, LocalDate to, String pricePlanId) {
+        return meterReadingService.getSmartMeterIds().parallelStream()
+                .filter(smartMeterId -> pricePlanId == null
+                        || pricePlanId.equals(accountService.getPricePlanIdForSmartMeterId(smartMeterId)))
+                .collect(QuantileSketch::new,
+                        (sketch, smartMeterId) -> meterReadingService.mergeDailySketches(smartMeterId, from, to, sketch),
+                        QuantileSketch::merge);
+    }
+}
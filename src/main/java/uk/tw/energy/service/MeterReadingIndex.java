@@ -0,0 +1,334 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Time index over one meter's readings: per-minute summaries, rolled up into per-hour summaries and an all-time total,
+ * plus a quantile sketch of the readings of each day in the system time zone. It holds no readings itself.
+ * <p>
+ * A range is answered from hour summaries for its whole hours and minute summaries for the whole minutes around them;
+ * only readings in the partial minutes at either end of the range are looked at individually, in the meter's stored
+ * readings. While those were stored in time order they are found by binary search; once a reading has arrived out of
+ * order, by a scan.
+ * <p>
+ * Old data can be {@link #compact compacted} in two tiers: minutes before a cutoff are only answered from their
+ * summary, their raw readings being dropped from the store, and hours before a second cutoff drop their minutes and
+ * keep only the hour summary. A bucket that no
+ * longer holds finer data is counted whole in a range if its first reading falls within it, so ranges aligned to the
+ * resolution left at that age are still summarised exactly.
+ */
+public class MeterReadingIndex {
+
+    private static final long SECONDS_PER_MINUTE = 60;
+    private static final long MINUTES_PER_HOUR = 60;
+    // heap sizes on a 64-bit JVM with compressed references: a tree map entry with its Long key, a summary with its
+    // running sum, and a sketch without its bins. At a reading every 10 seconds a minute's entry and summary come to
+    // about a quarter of the 88 bytes each of its 6 readings takes in the store.
+    private static final long ENTRY_BYTES = 56;
+    private static final long SUMMARY_BYTES = 80;
+    private static final long SKETCH_BYTES = 80;
+
+    private final NavigableMap<Long, ReadingsSummary> minutes = new TreeMap<>();
+    private final NavigableMap<Long, ReadingsSummary> hours = new TreeMap<>();
+    private final NavigableMap<Long, QuantileSketch> days = new TreeMap<>();
+    private final ReadingsSummary total = new ReadingsSummary();
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    // minutes before this hold only their summary, hours before the other only theirs
+    private long rawFromMinute = Long.MIN_VALUE;
+    private long minutesFromHour = Long.MIN_VALUE;
+    // whether every reading so far was taken no earlier than the one added before it, and the latest of them
+    private boolean inTimeOrder = true;
+    private Instant latest;
+
+    public synchronized void add(List<ElectricityReading> electricityReadings) {
+        for (ElectricityReading electricityReading : electricityReadings) {
+            addToSummaries(electricityReading);
+            days.computeIfAbsent(dayOf(electricityReading.getTime()), key -> new QuantileSketch())
+                    .add(electricityReading.getReading().doubleValue());
+        }
+    }
+
+    /**
+     * Takes in a meter's history handed over by another node, compacting this index at least as far as it was there.
+     * Its day sketches are merged as they are rather than rebuilt from its readings, which may no longer be there.
+     */
+    public synchronized void merge(MeterHistory history) {
+        if (history.getRawFrom() != null && history.getMinutesFrom() != null) {
+            compactTo(minuteOf(history.getRawFrom()), Math.floorDiv(minuteOf(history.getMinutesFrom()), MINUTES_PER_HOUR));
+        }
+        history.getHourSummaries().forEach((start, summary) -> {
+            hours.computeIfAbsent(Math.floorDiv(minuteOf(start), MINUTES_PER_HOUR), key -> new ReadingsSummary()).merge(summary);
+            total.merge(summary);
+        });
+        history.getMinuteSummaries().forEach((start, summary) -> {
+            long minute = minuteOf(start);
+            long hour = Math.floorDiv(minute, MINUTES_PER_HOUR);
+            // before the raw cutoff, so any bucket already here holds only its summary
+            if (hour >= minutesFromHour) {
+                minutes.computeIfAbsent(minute, key -> new ReadingsSummary()).merge(summary);
+            }
+            hours.computeIfAbsent(hour, key -> new ReadingsSummary()).merge(summary);
+            total.merge(summary);
+        });
+        for (ElectricityReading electricityReading : history.getReadings()) {
+            addToSummaries(electricityReading);
+        }
+        history.getDaySketches().forEach((day, sketch) ->
+                days.computeIfAbsent(day.toEpochDay(), key -> new QuantileSketch()).merge(sketch));
+    }
+
+    /**
+     * The summaries and sketches held for a meter whose raw readings are {@code readings}, e.g. to hand it to another
+     * node. Raw readings from before the raw cutoff - late ones stored after compaction - are left out, as they are
+     * counted in the summaries already.
+     */
+    public synchronized MeterHistory history(List<ElectricityReading> readings) {
+        Map<LocalDate, QuantileSketch> daySketches = new LinkedHashMap<>();
+        days.forEach((day, sketch) -> daySketches.put(LocalDate.ofEpochDay(day), sketch.copy()));
+        if (rawFromMinute == Long.MIN_VALUE) {
+            return new MeterHistory(readings, new LinkedHashMap<>(), new LinkedHashMap<>(), daySketches, null, null);
+        }
+        Instant rawFrom = startOfMinute(rawFromMinute);
+        List<ElectricityReading> raw = new ArrayList<>(readings.size());
+        for (ElectricityReading electricityReading : readings) {
+            if (!electricityReading.getTime().isBefore(rawFrom)) {
+                raw.add(electricityReading);
+            }
+        }
+        return withSummaries(raw, daySketches);
+    }
+
+    /**
+     * Only what compaction left of the meter's older readings: its hour and minute summaries, in time order, with no
+     * readings or sketches.
+     */
+    public synchronized MeterHistory compacted() {
+        if (rawFromMinute == Long.MIN_VALUE) {
+            return new MeterHistory(Collections.<ElectricityReading>emptyList(), Collections.<Instant, ReadingsSummary>emptyMap(),
+                    Collections.<Instant, ReadingsSummary>emptyMap(), Collections.<LocalDate, QuantileSketch>emptyMap(), null, null);
+        }
+        return withSummaries(Collections.<ElectricityReading>emptyList(), Collections.<LocalDate, QuantileSketch>emptyMap());
+    }
+
+    private MeterHistory withSummaries(List<ElectricityReading> raw, Map<LocalDate, QuantileSketch> daySketches) {
+        Map<Instant, ReadingsSummary> hourSummaries = new LinkedHashMap<>();
+        Map<Instant, ReadingsSummary> minuteSummaries = new LinkedHashMap<>();
+        hours.headMap(minutesFromHour, false).forEach((hour, summary) ->
+                hourSummaries.put(startOfMinute(hour * MINUTES_PER_HOUR), new ReadingsSummary().merge(summary)));
+        minutes.headMap(rawFromMinute, false).forEach((minute, summary) ->
+                minuteSummaries.put(startOfMinute(minute), new ReadingsSummary().merge(summary)));
+        return new MeterHistory(raw, hourSummaries, minuteSummaries, daySketches, startOfMinute(rawFromMinute),
+                startOfMinute(minutesFromHour * MINUTES_PER_HOUR));
+    }
+
+    // every reading appended to the meter's store passes through here, in the order it was appended
+    private void addToSummaries(ElectricityReading electricityReading) {
+        Instant time = electricityReading.getTime();
+        if (latest != null && time.isBefore(latest)) {
+            inTimeOrder = false;
+        } else {
+            latest = time;
+        }
+        long minute = minuteOf(time);
+        long hour = Math.floorDiv(minute, MINUTES_PER_HOUR);
+        // late readings for compacted periods only go into the summaries still kept for them
+        if (hour >= minutesFromHour) {
+            minutes.computeIfAbsent(minute, key -> new ReadingsSummary()).add(electricityReading);
+        }
+        hours.computeIfAbsent(hour, key -> new ReadingsSummary()).add(electricityReading);
+        total.add(electricityReading);
+    }
+
+    /**
+     * Merges the sketches of the days from {@code from} to {@code to}, inclusive, into {@code target}.
+     */
+    public synchronized void mergeSketches(LocalDate from, LocalDate to, QuantileSketch target) {
+        for (QuantileSketch day : days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            target.merge(day);
+        }
+    }
+
+    public synchronized Map<LocalDate, QuantileSketch> sketchesByDay(LocalDate from, LocalDate to) {
+        Map<LocalDate, QuantileSketch> sketches = new LinkedHashMap<>();
+        days.subMap(from.toEpochDay(), true, to.toEpochDay(), true)
+                .forEach((day, sketch) -> sketches.put(LocalDate.ofEpochDay(day), sketch.copy()));
+        return sketches;
+    }
+
+    /**
+     * Answers minutes before {@code rawCutoff} from their summary alone, as their readings are about to be dropped from
+     * the store, and drops the minutes of every hour before {@code minuteCutoff}, both rounded down to a whole minute
+     * and hour. Cutoffs only ever move forward; only the minutes dropped are visited.
+     */
+    public synchronized void compact(Instant rawCutoff, Instant minuteCutoff) {
+        compactTo(minuteOf(rawCutoff), Math.floorDiv(minuteOf(minuteCutoff), MINUTES_PER_HOUR));
+    }
+
+    private void compactTo(long rawCutoffMinute, long minuteCutoffHour) {
+        long newMinutesFromHour = Math.max(minutesFromHour, minuteCutoffHour);
+        long newRawFromMinute = Math.max(rawFromMinute, Math.max(rawCutoffMinute, newMinutesFromHour * MINUTES_PER_HOUR));
+        minutes.headMap(newMinutesFromHour * MINUTES_PER_HOUR, false).clear();
+        rawFromMinute = newRawFromMinute;
+        minutesFromHour = newMinutesFromHour;
+    }
+
+    /**
+     * Heap held by this index. Visits each day sketch; everything else is counted as it changes.
+     */
+    public synchronized long estimatedBytes() {
+        long bytes = (minutes.size() + hours.size()) * (ENTRY_BYTES + SUMMARY_BYTES) + SUMMARY_BYTES;
+        for (QuantileSketch day : days.values()) {
+            bytes += ENTRY_BYTES + SKETCH_BYTES + day.getBinCount() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    public synchronized Instant getRawFrom() {
+        return rawFromMinute == Long.MIN_VALUE ? null : startOfMinute(rawFromMinute);
+    }
+
+    public synchronized ReadingsSummary summarize() {
+        return new ReadingsSummary().merge(total);
+    }
+
+    /**
+     * Summarises the readings taken in [from, to), reading the partial minutes at its ends from {@code readings}: what
+     * the meter's store held, in the order it was stored, when this index last had readings added. A snapshot taken
+     * while a batch is being stored may miss some of the batch's readings at the edges that its summaries count.
+     */
+    public synchronized ReadingsSummary summarize(Instant from, Instant to, List<ElectricityReading> readings) {
+        ReadingsSummary summary = new ReadingsSummary();
+        if (!from.isBefore(to)) {
+            return summary;
+        }
+        if (minuteOf(from) < minutesFromHour * MINUTES_PER_HOUR) {
+            Instant minutesFrom = Instant.ofEpochSecond(minutesFromHour * MINUTES_PER_HOUR * SECONDS_PER_MINUTE);
+            Instant hoursTo = to.isBefore(minutesFrom) ? to : minutesFrom;
+            for (ReadingsSummary hour : hours.subMap(Math.floorDiv(minuteOf(from), MINUTES_PER_HOUR), true, minutesFromHour, false).values()) {
+                if (startsWithin(hour, from, hoursTo)) {
+                    summary.merge(hour);
+                }
+            }
+            if (!to.isAfter(minutesFrom)) {
+                return summary;
+            }
+            from = minutesFrom;
+        }
+        long firstWholeMinute = isMinuteAligned(from) ? minuteOf(from) : minuteOf(from) + 1;
+        long endWholeMinute = minuteOf(to);
+        if (firstWholeMinute >= endWholeMinute) {
+            for (long minute = minuteOf(from); minute <= endWholeMinute; minute++) {
+                addReadingsWithin(summary, minute, from, to, readings);
+            }
+            return summary;
+        }
+        if (!isMinuteAligned(from)) {
+            addReadingsWithin(summary, minuteOf(from), from, to, readings);
+        }
+        long firstWholeHour = Math.floorDiv(firstWholeMinute + MINUTES_PER_HOUR - 1, MINUTES_PER_HOUR);
+        long endWholeHour = Math.floorDiv(endWholeMinute, MINUTES_PER_HOUR);
+        if (firstWholeHour < endWholeHour) {
+            addMinutes(summary, firstWholeMinute, firstWholeHour * MINUTES_PER_HOUR);
+            for (ReadingsSummary hour : hours.subMap(firstWholeHour, true, endWholeHour, false).values()) {
+                summary.merge(hour);
+            }
+            addMinutes(summary, endWholeHour * MINUTES_PER_HOUR, endWholeMinute);
+        } else {
+            addMinutes(summary, firstWholeMinute, endWholeMinute);
+        }
+        if (!isMinuteAligned(to)) {
+            addReadingsWithin(summary, endWholeMinute, from, to, readings);
+        }
+        return summary;
+    }
+
+    private void addMinutes(ReadingsSummary summary, long fromMinute, long toMinute) {
+        for (ReadingsSummary minute : minutes.subMap(fromMinute, true, toMinute, false).values()) {
+            summary.merge(minute);
+        }
+    }
+
+    private void addReadingsWithin(ReadingsSummary summary, long minute, Instant from, Instant to,
+                                   List<ElectricityReading> readings) {
+        ReadingsSummary bucket = minutes.get(minute);
+        if (bucket == null) {
+            return;
+        }
+        if (minute < rawFromMinute) {
+            if (startsWithin(bucket, from, to)) {
+                summary.merge(bucket);
+            }
+            return;
+        }
+        Instant start = startOfMinute(minute);
+        Instant end = startOfMinute(minute + 1);
+        Instant lower = from.isAfter(start) ? from : start;
+        Instant upper = to.isBefore(end) ? to : end;
+        if (!inTimeOrder) {
+            for (ElectricityReading electricityReading : readings) {
+                Instant time = electricityReading.getTime();
+                if (!time.isBefore(lower) && time.isBefore(upper)) {
+                    summary.add(electricityReading);
+                }
+            }
+            return;
+        }
+        for (int i = firstAtOrAfter(readings, lower); i < readings.size(); i++) {
+            ElectricityReading electricityReading = readings.get(i);
+            if (!electricityReading.getTime().isBefore(upper)) {
+                break;
+            }
+            summary.add(electricityReading);
+        }
+    }
+
+    // readings in time order, as stored by a meter that has never sent one out of order
+    private static int firstAtOrAfter(List<ElectricityReading> readings, Instant time) {
+        int low = 0;
+        int high = readings.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (readings.get(middle).getTime().isBefore(time)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean startsWithin(ReadingsSummary bucket, Instant from, Instant to) {
+        return !bucket.isEmpty() && !bucket.getFirst().isBefore(from) && bucket.getFirst().isBefore(to);
+    }
+
+    private long dayOf(Instant time) {
+        return Math.floorDiv(time.getEpochSecond() + zoneRules.getOffset(time).getTotalSeconds(), 86_400L);
+    }
+
+    private static long minuteOf(Instant time) {
+        return Math.floorDiv(time.getEpochSecond(), SECONDS_PER_MINUTE);
+    }
+
+    private static Instant startOfMinute(long minute) {
+        return Instant.ofEpochSecond(minute * SECONDS_PER_MINUTE);
+    }
+
+    private static boolean isMinuteAligned(Instant time) {
+        return time.getNano() == 0 && Math.floorMod(time.getEpochSecond(), SECONDS_PER_MINUTE) == 0;
+    }
+}
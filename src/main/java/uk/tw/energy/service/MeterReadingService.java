@@ -1,29 +1,492 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.domain.ReadingsSummary;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @Service
-public class MeterReadingService {
+public class MeterReadingService implements MeterBinder {
 
-    private final Map<String, List<ElectricityReading>> meterAssociatedReadings;
+    /**
+     * Heap held by one stored reading itself, its Instant and BigDecimal, on a 64-bit JVM with compressed references.
+     * References to it from the store and the time index are counted by the structures holding them.
+     */
+    public static final long ESTIMATED_BYTES_PER_READING = 88;
+
+    private final Map<String, ChunkedReadings> meterAssociatedReadings = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> meterVersions = new ConcurrentHashMap<>();
+    private final Map<String, MeterReadingIndex> meterIndexes = new ConcurrentHashMap<>();
+    // readings stored for a meter since its history was taken to be handed over, each list guarded by the meter's lock
+    private final Map<String, List<ElectricityReading>> handingOff = new ConcurrentHashMap<>();
+    private final List<MeterReadingsListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder storedReadings = new LongAdder();
+    private final Set<String> unseeded = ConcurrentHashMap.newKeySet();
+    private final Set<String> seeding = ConcurrentHashMap.newKeySet();
+    private volatile Function<String, List<ElectricityReading>> seeder;
+    // registered when bound to a registry
+    private volatile DistributionSummary ingestBatchSize;
+    private volatile SampledTimer storeTime = SampledTimer.NONE;
+
+    @Autowired
+    public MeterReadingService() {
+        this(Collections.emptyMap());
+    }
 
     public MeterReadingService(Map<String, List<ElectricityReading>> meterAssociatedReadings) {
-        this.meterAssociatedReadings = meterAssociatedReadings;
+        meterAssociatedReadings.forEach((smartMeterId, readings) -> {
+            ChunkedReadings chunkedReadings = new ChunkedReadings();
+            chunkedReadings.append(readings);
+            this.meterAssociatedReadings.put(smartMeterId, chunkedReadings);
+            indexOf(smartMeterId).add(readings);
+            storedReadings.add(readings.size());
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("readings.meters", meterIndexes, Map::size)
+                .description("Meters with readings in the store")
+                .register(registry);
+        Gauge.builder("readings.stored", storedReadings, LongAdder::sum)
+                .description("Readings in the store")
+                .baseUnit("readings")
+                .register(registry);
+        Gauge.builder("readings.store.memory.estimated", this, MeterReadingService::getEstimatedMemoryBytes)
+                .description("Estimated heap held by stored readings, their time indexes and summaries")
+                .baseUnit("bytes")
+                .register(registry);
+        ingestBatchSize = DistributionSummary.builder("readings.ingest.batch.size")
+                .description("Readings per stored batch")
+                .baseUnit("readings")
+                .publishPercentileHistogram()
+                .register(registry);
+        storeTime = new SampledTimer(Timer.builder("readings.store")
+                .description("Time to store a batch, including waiting for the meter's lock (sampled)")
+                .publishPercentileHistogram()
+                .register(registry), 8);
     }
 
+    /**
+     * Returns an immutable snapshot of a meter's readings in the order they were stored, or null for an unknown meter.
+     * Taking a snapshot neither copies the readings nor waits for writers, and readings stored afterwards do not
+     * appear in it.
+     */
     public List<ElectricityReading> getReadings(String smartMeterId) {
-        return meterAssociatedReadings.get(smartMeterId);
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        return readings == null ? null : readings.snapshot();
+    }
+
+    /**
+     * Summarises all of a meter's readings without scanning them.
+     */
+    public ReadingsSummary summarize(String smartMeterId) {
+        seed(smartMeterId);
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        return index == null ? new ReadingsSummary() : index.summarize();
+    }
+
+    /**
+     * Summarises a meter's readings taken in [from, to) from its time index, looking up only the readings in the
+     * partial minutes at either end.
+     */
+    public ReadingsSummary summarize(String smartMeterId, Instant from, Instant to) {
+        seed(smartMeterId);
+        // taken first: readings are indexed before they are appended, so the index has been given all of these
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        List<ElectricityReading> snapshot = readings == null ? Collections.<ElectricityReading>emptyList() : readings.snapshot();
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        return index == null ? new ReadingsSummary() : index.summarize(from, to, snapshot);
+    }
+
+    /**
+     * Start of the first minute a meter still has raw readings from, or null if none of them have been compacted.
+     */
+    public Instant getRawFrom(String smartMeterId) {
+        seed(smartMeterId);
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        return index == null ? null : index.getRawFrom();
+    }
+
+    /**
+     * What compaction has left of a meter's older readings, as hour and minute summaries, or an empty history if it has
+     * never been compacted. Taken after a {@link #getReadings} snapshot, any raw readings in that snapshot from before
+     * its {@code rawFrom} are counted in these summaries.
+     */
+    public MeterHistory getCompactedHistory(String smartMeterId) {
+        seed(smartMeterId);
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        return index == null ? new MeterReadingIndex().compacted() : index.compacted();
+    }
+
+    /**
+     * Whether a meter has any readings, including ones only kept as summaries after compaction.
+     */
+    public boolean hasReadings(String smartMeterId) {
+        return !summarize(smartMeterId).isEmpty();
+    }
+
+    public long getStoredReadingsCount() {
+        return storedReadings.sum();
+    }
+
+    /**
+     * Adds up what each meter holds: its readings and the chunks referencing them, and its time index of minute
+     * summaries, hour summaries and day sketches. Costs a visit to each meter and each of its day sketches.
+     */
+    public long getEstimatedMemoryBytes() {
+        long bytes = 0;
+        for (ChunkedReadings readings : meterAssociatedReadings.values()) {
+            bytes += readings.estimatedBytes(ESTIMATED_BYTES_PER_READING);
+        }
+        for (MeterReadingIndex index : meterIndexes.values()) {
+            bytes += index.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    public Set<String> getSmartMeterIds() {
+        return Collections.unmodifiableSet(meterIndexes.keySet());
+    }
+
+    /**
+     * Merges the daily quantile sketches of a meter's readings from {@code from} to {@code to}, inclusive, into
+     * {@code target}.
+     */
+    public void mergeDailySketches(String smartMeterId, LocalDate from, LocalDate to, QuantileSketch target) {
+        seed(smartMeterId);
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        if (index != null) {
+            index.mergeSketches(from, to, target);
+        }
+    }
+
+    public Map<LocalDate, QuantileSketch> getDailySketches(String smartMeterId, LocalDate from, LocalDate to) {
+        seed(smartMeterId);
+        MeterReadingIndex index = meterIndexes.get(smartMeterId);
+        return index == null ? Collections.emptyMap() : index.sketchesByDay(from, to);
+    }
+
+    /**
+     * Monotonically increasing version of a meter's readings, bumped on every store. Meters that have never been
+     * written to since startup are at version 0.
+     */
+    public long getVersion(String smartMeterId) {
+        seed(smartMeterId);
+        AtomicLong version = meterVersions.get(smartMeterId);
+        return version == null ? 0L : version.get();
+    }
+
+    /**
+     * Applies {@code reader} to a meter's readings while no batch can be stored for it, so that together with a
+     * {@link MeterReadingsListener} a caller sees every reading exactly once. Unknown meters are read as empty. Readers
+     * that only need a consistent view should use {@link #getReadings}, which never holds up stores.
+     */
+    public <T> T readConsistently(String smartMeterId, Function<List<ElectricityReading>, T> reader) {
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        if (readings == null) {
+            return reader.apply(Collections.emptyList());
+        }
+        synchronized (readings) {
+            return reader.apply(readings.snapshot());
+        }
+    }
+
+    /**
+     * As {@link #readConsistently}, but given everything held for the meter - its raw readings and what compaction left
+     * of older ones - as {@link #handOff} would send it. Unknown meters are read as an empty history.
+     */
+    public <T> T readHistoryConsistently(String smartMeterId, Function<MeterHistory, T> reader) {
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        if (readings != null) {
+            synchronized (readings) {
+                MeterReadingIndex index = meterIndexes.get(smartMeterId);
+                if (meterAssociatedReadings.get(smartMeterId) == readings && index != null) {
+                    return reader.apply(index.history(readings.snapshot()));
+                }
+            }
+        }
+        return reader.apply(new MeterHistory(Collections.<ElectricityReading>emptyList(), Collections.<Instant, ReadingsSummary>emptyMap(),
+                Collections.<Instant, ReadingsSummary>emptyMap(), Collections.<LocalDate, QuantileSketch>emptyMap(), null, null));
+    }
+
+    public void addListener(MeterReadingsListener listener) {
+        listeners.add(listener);
     }
 
     public void storeReadings(String smartMeterId, List<ElectricityReading> electricityReadings) {
-        if (!meterAssociatedReadings.containsKey(smartMeterId)) {
-            meterAssociatedReadings.put(smartMeterId, new ArrayList<>());
+        SampledTimer storeTime = this.storeTime;
+        long start = storeTime.start();
+        seed(smartMeterId);
+        boolean stored = false;
+        while (!stored) {
+            ChunkedReadings readings = meterAssociatedReadings.computeIfAbsent(smartMeterId, id -> new ChunkedReadings());
+            // writers take the meter's lock so listeners observe batches in the order they were appended; readers of
+            // snapshots never do
+            synchronized (readings) {
+                // the meter may have been evicted while we waited for its lock
+                if (meterAssociatedReadings.get(smartMeterId) == readings) {
+                    append(smartMeterId, readings, electricityReadings, false);
+                    stored = true;
+                }
+            }
+        }
+        storedReadings.add(electricityReadings.size());
+        DistributionSummary ingestBatchSize = this.ingestBatchSize;
+        if (ingestBatchSize != null) {
+            ingestBatchSize.record(electricityReadings.size());
+        }
+        storeTime.stop(start);
+    }
+
+    /**
+     * Registers meters whose readings {@code seeder} generates or loads the first time anything reads or stores them,
+     * or when {@link #seed} is called for them. They are not listed by {@link #getSmartMeterIds} until then.
+     */
+    public void seedOnFirstAccess(Collection<String> smartMeterIds, Function<String, List<ElectricityReading>> seeder) {
+        this.seeder = seeder;
+        unseeded.addAll(smartMeterIds);
+    }
+
+    /**
+     * Seeds a meter registered with {@link #seedOnFirstAccess} unless that has already happened, returning whether
+     * this call seeded it. Callers wanting the same meter meanwhile wait for the seeded readings rather than see it
+     * empty.
+     */
+    public boolean seed(String smartMeterId) {
+        if (unseeded.isEmpty() || !unseeded.contains(smartMeterId)) {
+            return false;
+        }
+        while (true) {
+            ChunkedReadings readings = meterAssociatedReadings.computeIfAbsent(smartMeterId, id -> new ChunkedReadings());
+            synchronized (readings) {
+                // a listener of the seeded readings reading the same meter must not seed it again
+                if (!unseeded.contains(smartMeterId) || seeding.contains(smartMeterId)) {
+                    return false;
+                }
+                if (meterAssociatedReadings.get(smartMeterId) != readings) {
+                    continue;
+                }
+                seeding.add(smartMeterId);
+                try {
+                    List<ElectricityReading> seeded = seeder.apply(smartMeterId);
+                    append(smartMeterId, readings, seeded, true);
+                    storedReadings.add(seeded.size());
+                    // only now, so that anyone who saw the meter unseeded waits on its lock for these readings
+                    unseeded.remove(smartMeterId);
+                } finally {
+                    seeding.remove(smartMeterId);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Meters registered with {@link #seedOnFirstAccess} that have not been seeded yet.
+     */
+    public Set<String> getUnseededSmartMeterIds() {
+        return Collections.unmodifiableSet(unseeded);
+    }
+
+    /**
+     * Removes a meter from this store, e.g. once it has been handed to another node, and returns its readings. The
+     * meter's version still moves forward, so ETags issued before the eviction do not match if the meter returns.
+     */
+    public List<ElectricityReading> evict(String smartMeterId) {
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        if (readings == null) {
+            return Collections.emptyList();
+        }
+        synchronized (readings) {
+            if (meterAssociatedReadings.get(smartMeterId) != readings) {
+                return Collections.emptyList();
+            }
+            List<ElectricityReading> evicted = readings.snapshot();
+            remove(smartMeterId, readings, evicted.size());
+            return evicted;
+        }
+    }
+
+    /**
+     * Hands a meter to another node: {@code transfer} is given everything held for it, and once it returns true any
+     * readings stored for the meter while it ran are given to {@code forward}, until none are left and the meter is
+     * removed from this store, as {@link #evict} would. Neither is called under the meter's lock, so reads and stores
+     * are served from here throughout. A transfer that succeeds is not repeated: if forwarding fails, the next call
+     * only forwards what is still left. Returns whether the meter is no longer held here.
+     */
+    public boolean handOff(String smartMeterId, Predicate<MeterHistory> transfer,
+                           Predicate<List<ElectricityReading>> forward) {
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        if (readings == null) {
+            return true;
+        }
+        MeterHistory history = null;
+        synchronized (readings) {
+            if (meterAssociatedReadings.get(smartMeterId) != readings) {
+                return true;
+            }
+            if (!handingOff.containsKey(smartMeterId)) {
+                MeterReadingIndex index = meterIndexes.get(smartMeterId);
+                history = index == null ? null : index.history(readings.snapshot());
+                handingOff.put(smartMeterId, new ArrayList<>());
+            }
+        }
+        if (history != null && !history.isEmpty() && !transfer.test(history)) {
+            synchronized (readings) {
+                // everything stored meanwhile is in the store, and goes with the whole history next time
+                handingOff.remove(smartMeterId);
+            }
+            return false;
         }
-        meterAssociatedReadings.get(smartMeterId).addAll(electricityReadings);
+        while (true) {
+            List<ElectricityReading> late;
+            synchronized (readings) {
+                if (meterAssociatedReadings.get(smartMeterId) != readings) {
+                    return true;
+                }
+                late = handingOff.get(smartMeterId);
+                if (late.isEmpty()) {
+                    remove(smartMeterId, readings, readings.snapshot().size());
+                    return true;
+                }
+                handingOff.put(smartMeterId, new ArrayList<>());
+            }
+            if (!forward.test(late)) {
+                synchronized (readings) {
+                    List<ElectricityReading> left = handingOff.get(smartMeterId);
+                    if (left != null) {
+                        left.addAll(0, late);
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes in a meter handed over by another node, merging its history with anything already stored for it here.
+     */
+    public void adopt(String smartMeterId, MeterHistory history) {
+        seed(smartMeterId);
+        int dropped = 0;
+        boolean adopted = false;
+        while (!adopted) {
+            ChunkedReadings readings = meterAssociatedReadings.computeIfAbsent(smartMeterId, id -> new ChunkedReadings());
+            synchronized (readings) {
+                if (meterAssociatedReadings.get(smartMeterId) == readings) {
+                    indexOf(smartMeterId).merge(history);
+                    readings.append(history.getReadings());
+                    if (history.getRawFrom() != null) {
+                        // readings stored here before the meter arrived may be older than it had been compacted to
+                        dropped = readings.removeTakenBefore(history.getRawFrom());
+                    }
+                    meterVersions.computeIfAbsent(smartMeterId, id -> new AtomicLong()).incrementAndGet();
+                    for (MeterReadingsListener listener : listeners) {
+                        listener.onMeterAdopted(smartMeterId, history);
+                    }
+                    adopted = true;
+                }
+            }
+        }
+        storedReadings.add(history.getReadings().size() - dropped);
+    }
+
+    /**
+     * Drops a meter's raw readings taken before {@code rawCutoff}, and its per-minute summaries before
+     * {@code minuteCutoff}, keeping coarser summaries that still cost and aggregate them. Cutoffs are rounded down to a
+     * whole minute and hour. Only this meter's stores wait while it is compacted. Returns the number of readings
+     * dropped.
+     */
+    public int compact(String smartMeterId, Instant rawCutoff, Instant minuteCutoff) {
+        seed(smartMeterId);
+        ChunkedReadings readings = meterAssociatedReadings.get(smartMeterId);
+        if (readings == null) {
+            return 0;
+        }
+        Instant rawFrom = Instant.ofEpochSecond(Math.floorDiv(rawCutoff.getEpochSecond(), 60L) * 60L);
+        synchronized (readings) {
+            MeterReadingIndex index = meterIndexes.get(smartMeterId);
+            if (index == null) {
+                return 0;
+            }
+            index.compact(rawCutoff, minuteCutoff);
+            int dropped = readings.removeTakenBefore(rawFrom);
+            if (dropped > 0) {
+                // the raw readings served for the meter have changed, its costs have not
+                meterVersions.computeIfAbsent(smartMeterId, id -> new AtomicLong()).incrementAndGet();
+                storedReadings.add(-dropped);
+            }
+            for (MeterReadingsListener listener : listeners) {
+                listener.onMeterCompacted(smartMeterId, rawCutoff, minuteCutoff);
+            }
+            return dropped;
+        }
+    }
+
+    // callers hold the meter's lock
+    private void append(String smartMeterId, ChunkedReadings readings, List<ElectricityReading> electricityReadings,
+                        boolean seeded) {
+        // indexed first, so a snapshot never holds readings its index has not seen
+        indexOf(smartMeterId).add(electricityReadings);
+        readings.append(electricityReadings);
+        List<ElectricityReading> late = handingOff.get(smartMeterId);
+        if (late != null) {
+            late.addAll(electricityReadings);
+        }
+        meterVersions.computeIfAbsent(smartMeterId, id -> new AtomicLong()).incrementAndGet();
+        if (electricityReadings.isEmpty()) {
+            return;
+        }
+        for (MeterReadingsListener listener : listeners) {
+            if (seeded) {
+                listener.onMeterSeeded(smartMeterId, electricityReadings);
+            } else {
+                listener.onReadingsStored(smartMeterId, electricityReadings);
+            }
+        }
+    }
+
+    // callers hold the meter's lock
+    private void remove(String smartMeterId, ChunkedReadings readings, int count) {
+        meterAssociatedReadings.remove(smartMeterId, readings);
+        meterIndexes.remove(smartMeterId);
+        handingOff.remove(smartMeterId);
+        meterVersions.computeIfAbsent(smartMeterId, id -> new AtomicLong()).incrementAndGet();
+        storedReadings.add(-count);
+        for (MeterReadingsListener listener : listeners) {
+            listener.onMeterRemoved(smartMeterId);
+        }
+    }
+
+    private MeterReadingIndex indexOf(String smartMeterId) {
+        return meterIndexes.computeIfAbsent(smartMeterId, id -> new MeterReadingIndex());
     }
 }
@@ -0,0 +1,50 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Notified by {@link MeterReadingService} after a batch of readings has been stored for a meter, and after anything else
+ * that changes what is held for one. Listeners run on the ingesting thread under the meter's lock, so they must be
+ * cheap.
+ */
+public interface MeterReadingsListener {
+
+    /**
+     * A non-empty batch of readings was stored for the meter.
+     */
+    void onReadingsStored(String smartMeterId, List<ElectricityReading> electricityReadings);
+
+    /**
+     * Readings generated or loaded for a meter registered with {@link MeterReadingService#seedOnFirstAccess} were
+     * stored for it, the first time it was accessed. By default they are treated as if they had just been stored.
+     */
+    default void onMeterSeeded(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        onReadingsStored(smartMeterId, electricityReadings);
+    }
+
+    /**
+     * A meter handed over by another node was merged into whatever was held for it here. By default its raw readings
+     * are treated as if they had just been stored.
+     */
+    default void onMeterAdopted(String smartMeterId, MeterHistory history) {
+        if (!history.getReadings().isEmpty()) {
+            onReadingsStored(smartMeterId, history.getReadings());
+        }
+    }
+
+    /**
+     * The meter was compacted with these cutoffs, as given to {@link MeterReadingService#compact}.
+     */
+    default void onMeterCompacted(String smartMeterId, Instant rawCutoff, Instant minuteCutoff) {
+    }
+
+    /**
+     * The meter is no longer held here, having been evicted or handed over.
+     */
+    default void onMeterRemoved(String smartMeterId) {
+    }
+}
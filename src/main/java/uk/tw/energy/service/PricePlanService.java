@@ -1,65 +1,91 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.stereotype.Service;
-import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.domain.ReadingsSummary;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.*;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
-public class PricePlanService {
+public class PricePlanService implements MeterBinder {
 
     private final List<PricePlan> pricePlans;
     private final MeterReadingService meterReadingService;
     private final int secondsToAdd = 86400;
+    private final SingleFlight<WindowKey, Map<String, BigDecimal>> windowCosts = new SingleFlight<>();
+    private final int pricePlansVersion;
+    // registered when bound to a registry
+    private volatile SampledTimer windowComputationTime = SampledTimer.NONE;
+    private volatile DistributionSummary windowReadings;
 
     public PricePlanService(List<PricePlan> pricePlans, MeterReadingService meterReadingService) {
         this.pricePlans = pricePlans;
         this.meterReadingService = meterReadingService;
+        this.pricePlansVersion = pricePlans.stream()
+                .mapToInt(pricePlan -> Objects.hash(pricePlan.getPlanName(), pricePlan.getUnitRate()))
+                .reduce(17, (version, planHash) -> 31 * version + planHash);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pricing.window.requests", windowCosts, SingleFlight::computedCount)
+                .description("Window costings requested, by whether they ran or joined one already in flight")
+                .tag("outcome", "computed")
+                .register(registry);
+        FunctionCounter.builder("pricing.window.requests", windowCosts, SingleFlight::coalescedCount)
+                .description("Window costings requested, by whether they ran or joined one already in flight")
+                .tag("outcome", "coalesced")
+                .register(registry);
+        windowComputationTime = new SampledTimer(Timer.builder("pricing.window.computation")
+                .description("Time to summarise and cost one window of a meter's readings (sampled)")
+                .publishPercentileHistogram()
+                .register(registry), 8);
+        windowReadings = DistributionSummary.builder("pricing.window.readings")
+                .description("Readings covered by each costed window")
+                .baseUnit("readings")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Identifies the set of price plans that costs are computed against; changes whenever a plan or its unit rate does.
+     */
+    public int getPricePlansVersion() {
+        return pricePlansVersion;
     }
 
     public Map<String, BigDecimal> getConsumptionCostOfElectricityReadingsForEachPricePlan(String smartMeterId) {
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        long version = meterReadingService.getVersion(smartMeterId);
 
         Map<String, BigDecimal> result = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return result;
         }
-        result = pricePlans.stream().collect(
-                Collectors.toMap(PricePlan::getPlanName, t -> calculateCost(electricityReadings, t)));
+        result = windowCosts.execute(new WindowKey(smartMeterId, null, null, version),
+                () -> costWindow(() -> meterReadingService.summarize(smartMeterId)));
         return result;
     }
 
 
-    private BigDecimal calculateCost(List<ElectricityReading> electricityReadings, PricePlan pricePlan) {
-        BigDecimal average = calculateAverageReading(electricityReadings);
-        BigDecimal timeElapsed = calculateTimeElapsed(electricityReadings);
-
-        BigDecimal averagedCost = average.divide(timeElapsed, RoundingMode.HALF_UP);
-        return averagedCost.multiply(pricePlan.getUnitRate());
-    }
-
-    private BigDecimal calculateAverageReading(List<ElectricityReading> electricityReadings) {
-        BigDecimal summedReadings = electricityReadings.stream()
-                .map(ElectricityReading::getReading)
-                .reduce(BigDecimal.ZERO, (reading, accumulator) -> reading.add(accumulator));
-
-        return summedReadings.divide(BigDecimal.valueOf(electricityReadings.size()), RoundingMode.HALF_UP);
-    }
-
-    private BigDecimal calculateTimeElapsed(List<ElectricityReading> electricityReadings) {
-        ElectricityReading first = electricityReadings.stream()
-                .min(Comparator.comparing(ElectricityReading::getTime))
-                .get();
-        ElectricityReading last = electricityReadings.stream()
-                .max(Comparator.comparing(ElectricityReading::getTime))
-                .get();
-
-        return BigDecimal.valueOf(Duration.between(first.getTime(), last.getTime()).getSeconds() / 3600.0);
+    /**
+     * Costs readings summarised by {@code summary} against every price plan. The summary must span at least two
+     * distinct reading times.
+     */
+    public Map<String, BigDecimal> getConsumptionCostForEachPricePlan(ReadingsSummary summary) {
+        BigDecimal averagedCost = summary.getAverageReading().divide(summary.getTimeElapsedInHours(), RoundingMode.HALF_UP);
+        return pricePlans.stream().collect(
+                Collectors.toMap(PricePlan::getPlanName, t -> averagedCost.multiply(t.getUnitRate())));
     }
 
     public Map<String, BigDecimal> getConsumptionCostOfElectricityReadingsForLastWeek(String smartMeterId, LocalDate date) {
@@ -68,46 +94,64 @@ public class PricePlanService {
         LocalDate endTime = lastWeek.with(DayOfWeek.SUNDAY);
         Instant beginTimeInstant = beginTime.atStartOfDay(ZoneId.systemDefault()).toInstant();
         Instant endTimeInstant = endTime.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        long version = meterReadingService.getVersion(smartMeterId);
         Map<String, BigDecimal> result = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return result;
         }
-        result = getStringBigDecimalMap(beginTimeInstant, endTimeInstant, electricityReadings);
+        result = getStringBigDecimalMap(smartMeterId, version, beginTimeInstant, endTimeInstant);
         return result;
     }
 
-    private Map<String, BigDecimal> getStringBigDecimalMap(Instant beginTimeInstant, Instant endTimeInstant, List<ElectricityReading> electricityReadings) {
-        Map<String, BigDecimal> result = new HashMap<>();
-        List<ElectricityReading> electricityReadingsForLastWeek = electricityReadings
-                .stream()
-                .filter(x -> x.getTime().compareTo(beginTimeInstant) >= 0 && x.getTime().compareTo(endTimeInstant) <= 0)
-                .collect(Collectors.toList());
-        if (electricityReadingsForLastWeek.isEmpty()) {
-            return result;
-        } else {
-            result = pricePlans.stream().collect(
-                    Collectors.toMap(PricePlan::getPlanName, t -> calculateCost(electricityReadingsForLastWeek, t)));
-            return result;
+    /**
+     * Costs of a meter's readings within [begin, end] for every price plan, served from the meter's time index.
+     * Concurrent requests for the same window at the same meter version - whichever endpoint they come from - share a
+     * single computation.
+     */
+    private Map<String, BigDecimal> getStringBigDecimalMap(String smartMeterId, long version, Instant beginTimeInstant, Instant endTimeInstant) {
+        return windowCosts.execute(new WindowKey(smartMeterId, beginTimeInstant, endTimeInstant, version),
+                () -> costWindow(() -> meterReadingService.summarize(smartMeterId, beginTimeInstant, endTimeInstant.plusNanos(1))));
+    }
+
+    private Map<String, BigDecimal> costWindow(Supplier<ReadingsSummary> window) {
+        SampledTimer windowComputationTime = this.windowComputationTime;
+        long start = windowComputationTime.start();
+        ReadingsSummary summary = window.get();
+        DistributionSummary windowReadings = this.windowReadings;
+        if (windowReadings != null) {
+            windowReadings.record(summary.getCount());
         }
+        Map<String, BigDecimal> costs = summary.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(getConsumptionCostForEachPricePlan(summary));
+        windowComputationTime.stop(start);
+        return costs;
     }
 
     public Map<String, BigDecimal> getConsumptionCostOfElectricityReadingsDayOfWeek(String smartMeterId, LocalDate date) {
         Instant beginTimeOfTheDay = date.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        Instant now = Instant.now();
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        Instant endOfThisSecond = endOfThisSecond();
+        long version = meterReadingService.getVersion(smartMeterId);
         Map<String, BigDecimal> result = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return result;
         }
-        result = getStringBigDecimalMap(beginTimeOfTheDay, now, electricityReadings);
+        result = getStringBigDecimalMap(smartMeterId, version, beginTimeOfTheDay, endOfThisSecond);
         return result;
     }
 
+    /**
+     * Last instant of the current second, the inclusive end of the window a day's costs so far are taken over: up to
+     * the end of the current second rather than the current instant, so concurrent requests share a window.
+     */
+    static Instant endOfThisSecond() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1).minusNanos(1);
+    }
+
     public Map<String, BigDecimal> getConsumptionCostOfElectricityReadingsDaysOfWeek(String smartMeterId, String pricePlanId, LocalDate todayDate) {
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        long version = meterReadingService.getVersion(smartMeterId);
         Map<String, BigDecimal> consumptionsDaysOfWeek = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return consumptionsDaysOfWeek;
         }
         LocalDate startDayDate = todayDate.with(DayOfWeek.MONDAY);
@@ -116,7 +160,7 @@ public class PricePlanService {
             LocalDate beginDate = LocalDate.from(todayDate.minusDays(i));
             Instant beginDateInstant = beginDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
             Instant endDateInstant = beginDateInstant.plusSeconds(secondsToAdd);
-            Map<String, BigDecimal> result = getStringBigDecimalMap(beginDateInstant, endDateInstant, electricityReadings);
+            Map<String, BigDecimal> result = getStringBigDecimalMap(smartMeterId, version, beginDateInstant, endDateInstant);
             if (result.isEmpty()) {
                 consumptionsDaysOfWeek.put(String.valueOf(beginDate.getDayOfWeek()), new BigDecimal(0));
             } else {
@@ -127,9 +171,9 @@ public class PricePlanService {
     }
 
     public Map<DayOfWeek, Map<String, BigDecimal>> getConsumptionCostOfElectricityReadingsDaysOfWeekForEachPricePlan(String smartMeterId, LocalDate todayDate, Integer limit) {
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        long version = meterReadingService.getVersion(smartMeterId);
         Map<DayOfWeek, Map<String, BigDecimal>> consumptionsDaysOfWeek = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return consumptionsDaysOfWeek;
         }
         LocalDate startDayDate = todayDate.with(DayOfWeek.MONDAY);
@@ -138,7 +182,7 @@ public class PricePlanService {
             LocalDate beginDate = LocalDate.from(todayDate.minusDays(i));
             Instant beginDateInstant = beginDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
             Instant endDateInstant = beginDateInstant.plusSeconds(secondsToAdd);
-            Map<String, BigDecimal> result = getStringBigDecimalMap(beginDateInstant, endDateInstant, electricityReadings);
+            Map<String, BigDecimal> result = getStringBigDecimalMap(smartMeterId, version, beginDateInstant, endDateInstant);
             result = result.entrySet().stream().sorted(Map.Entry.comparingByValue()).limit(limit).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (oldValue, newValue) -> oldValue, LinkedHashMap::new));
             consumptionsDaysOfWeek.put(beginDate.getDayOfWeek(), result);
         }
@@ -148,9 +192,9 @@ public class PricePlanService {
     }
 
     public Map<DayOfWeek, Map<String, BigDecimal>> getConsumptionCostOfElectricityReadingsDaysOfWeekForEachPricePlanWithOutLimit(String smartMeterId, LocalDate todayDate) {
-        List<ElectricityReading> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        long version = meterReadingService.getVersion(smartMeterId);
         Map<DayOfWeek, Map<String, BigDecimal>> consumptionsDaysOfWeek = new HashMap<>();
-        if (electricityReadings.isEmpty()) {
+        if (!meterReadingService.hasReadings(smartMeterId)) {
             return consumptionsDaysOfWeek;
         }
         Map<DayOfWeek, Map<String, BigDecimal>> consumptionsDaysOfWeekWithOutDateOrder = new HashMap<>();
@@ -160,11 +204,46 @@ public class PricePlanService {
             LocalDate beginDate = LocalDate.from(todayDate.minusDays(i));
             Instant beginDateInstant = beginDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
             Instant endDateInstant = beginDateInstant.plusSeconds(secondsToAdd);
-            Map<String, BigDecimal> result = getStringBigDecimalMap(beginDateInstant, endDateInstant, electricityReadings);
+            Map<String, BigDecimal> result = getStringBigDecimalMap(smartMeterId, version, beginDateInstant, endDateInstant);
             consumptionsDaysOfWeekWithOutDateOrder.put(beginDate.getDayOfWeek(), result);
         }
         Map<DayOfWeek, Map<String, BigDecimal>> consumptionsDaysOfWeekWithDateOrder = consumptionsDaysOfWeekWithOutDateOrder.entrySet().stream().sorted(Map.Entry.comparingByKey())
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (oldValue, newValue) -> oldValue, LinkedHashMap::new));
         return consumptionsDaysOfWeekWithDateOrder;
     }
+
+    private static final class WindowKey {
+
+        private final String smartMeterId;
+        private final Instant begin;
+        private final Instant end;
+        private final long version;
+
+        WindowKey(String smartMeterId, Instant begin, Instant end, long version) {
+            this.smartMeterId = smartMeterId;
+            this.begin = begin;
+            this.end = end;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WindowKey)) {
+                return false;
+            }
+            WindowKey other = (WindowKey) o;
+            return version == other.version
+                    && smartMeterId.equals(other.smartMeterId)
+                    && Objects.equals(begin, other.begin)
+                    && Objects.equals(end, other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(smartMeterId, begin, end, version);
+        }
+    }
 }
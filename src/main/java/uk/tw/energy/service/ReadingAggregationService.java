@@ -0,0 +1,45 @@
+package uk.tw.energy.service;
+
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ReadingsSummary;
+import uk.tw.energy.domain.TimeBucket;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class ReadingAggregationService {
+
+    public static final int MAX_BUCKETS = 10_000;
+    private final MeterReadingService meterReadingService;
+
+    public ReadingAggregationService(MeterReadingService meterReadingService) {
+        this.meterReadingService = meterReadingService;
+    }
+
+    /**
+     * Summarises a meter's readings in [from, to) per calendar bucket in {@code zone}, keyed by bucket start. The
+     * first and last buckets are clipped to the range.
+     *
+     * @throws IllegalArgumentException if the range spans more than {@link #MAX_BUCKETS} buckets
+     */
+    public Map<ZonedDateTime, ReadingsSummary> aggregate(String smartMeterId, Instant from, Instant to,
+                                                         TimeBucket bucket, ZoneId zone) {
+        Map<ZonedDateTime, ReadingsSummary> buckets = new LinkedHashMap<>();
+        ZonedDateTime start = bucket.startOf(from.atZone(zone));
+        while (start.toInstant().isBefore(to)) {
+            if (buckets.size() == MAX_BUCKETS) {
+                throw new IllegalArgumentException("Range spans more than " + MAX_BUCKETS + " buckets");
+            }
+            ZonedDateTime end = bucket.next(start);
+            Instant bucketFrom = start.toInstant().isBefore(from) ? from : start.toInstant();
+            Instant bucketTo = end.toInstant().isAfter(to) ? to : end.toInstant();
+            buckets.put(start, meterReadingService.summarize(smartMeterId, bucketFrom, bucketTo));
+            start = end;
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,110 @@
+package uk.tw.energy.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies the retention tiers: raw readings are kept for {@code retention.raw-days}, per-minute summaries for
+ * {@code retention.minute-days}, and per-hour summaries for as long as the meter is stored. Meters are compacted one
+ * at a time on a background thread, so ingestion only ever waits for the meter being compacted.
+ * <p>
+ * Retention is off by default; set {@code retention.raw-days} to enable it. Followers never compact on their own: they
+ * compact each meter when the primary's reading log says it did, so they keep holding the same as the primary.
+ */
+@Service
+public class ReadingCompactor implements MeterBinder {
+
+    private final MeterReadingService meterReadingService;
+    private final Duration rawRetention;
+    private final Duration minuteRetention;
+    private final long intervalSeconds;
+    private final boolean follower;
+    private final LongAdder compactedReadings = new LongAdder();
+    private ScheduledExecutorService compactor;
+
+    public ReadingCompactor(MeterReadingService meterReadingService, int rawDays, int minuteDays, long intervalSeconds) {
+        this(meterReadingService, rawDays, minuteDays, intervalSeconds, "primary");
+    }
+
+    @Autowired
+    public ReadingCompactor(MeterReadingService meterReadingService,
+                            @Value("${retention.raw-days:0}") int rawDays,
+                            @Value("${retention.minute-days:30}") int minuteDays,
+                            @Value("${retention.interval-seconds:300}") long intervalSeconds,
+                            @Value("${replication.role:primary}") String replicationRole) {
+        if (rawDays < 0 || (rawDays > 0 && minuteDays < rawDays)) {
+            throw new IllegalArgumentException("Per-minute summaries must be kept at least as long as raw readings");
+        }
+        this.meterReadingService = meterReadingService;
+        this.rawRetention = Duration.ofDays(rawDays);
+        this.minuteRetention = Duration.ofDays(minuteDays);
+        this.intervalSeconds = intervalSeconds;
+        this.follower = "follower".equals(replicationRole);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (rawRetention.isZero() || follower) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reading-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> compactAll(Instant.now()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("readings.compacted", compactedReadings, LongAdder::sum)
+                .description("Raw readings dropped after being compacted into summaries")
+                .baseUnit("readings")
+                .register(registry);
+    }
+
+    /**
+     * The time before which only summaries of readings are kept as of {@code now}, or null if retention is off.
+     */
+    public Instant getRawCutoff(Instant now) {
+        return rawRetention.isZero() ? null : now.minus(rawRetention);
+    }
+
+    /**
+     * Compacts every meter as of {@code now} and returns the number of raw readings dropped.
+     */
+    public long compactAll(Instant now) {
+        if (rawRetention.isZero()) {
+            return 0;
+        }
+        Instant rawCutoff = now.minus(rawRetention);
+        Instant minuteCutoff = now.minus(minuteRetention);
+        long dropped = 0;
+        for (String smartMeterId : new ArrayList<>(meterReadingService.getSmartMeterIds())) {
+            dropped += meterReadingService.compact(smartMeterId, rawCutoff, minuteCutoff);
+        }
+        compactedReadings.add(dropped);
+        return dropped;
+    }
+}
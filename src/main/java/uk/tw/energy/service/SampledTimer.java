@@ -0,0 +1,45 @@
+package uk.tw.energy.service;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a random one in every {@code sampleEvery} calls, so timing can stay switched on in paths that run for every
+ * request. The timer's count is a sample rather than a total; keep a counter or distribution summary next to it where the
+ * total matters.
+ */
+public final class SampledTimer {
+
+    /**
+     * Times nothing, standing in until a timer has been registered.
+     */
+    public static final SampledTimer NONE = new SampledTimer(null, 1);
+
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final Timer timer;
+    private final int sampleEvery;
+
+    public SampledTimer(Timer timer, int sampleEvery) {
+        this.timer = timer;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Returns a start time to hand to {@link #stop(long)}, or a marker that this call is not being sampled.
+     */
+    public long start() {
+        if (timer == null) {
+            return NOT_SAMPLED;
+        }
+        return ThreadLocalRandom.current().nextInt(sampleEvery) == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    public void stop(long start) {
+        if (start != NOT_SAMPLED) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
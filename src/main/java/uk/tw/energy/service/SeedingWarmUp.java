@@ -0,0 +1,106 @@
+package uk.tw.energy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import uk.tw.energy.domain.ElectricityReading;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Seeds meters in the background so that start-up only has to list them.
+ * <p>
+ * The meters are registered with {@link MeterReadingService#seedOnFirstAccess} as soon as this is created, so any
+ * meter asked for before the warm-up reaches it is seeded there and then. {@link #start} then seeds the rest on
+ * {@code threads} threads. As a health indicator it is out of service until every meter is seeded, which keeps the
+ * node out of the readiness group - fleet-wide views such as exports and demand only see seeded meters - without
+ * touching liveness. Meters the warm-up failed to seed are reported rather than waited for, as they would otherwise
+ * keep the node out of service until someone happened to ask for them.
+ */
+public class SeedingWarmUp implements HealthIndicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeedingWarmUp.class);
+
+    private final MeterReadingService meterReadingService;
+    private final int meterCount;
+    private final int threads;
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private volatile ExecutorService workers;
+
+    public SeedingWarmUp(MeterReadingService meterReadingService, Collection<String> smartMeterIds,
+                         Function<String, List<ElectricityReading>> seeder, int threads) {
+        this.meterReadingService = meterReadingService;
+        this.meterCount = smartMeterIds.size();
+        this.threads = threads;
+        meterReadingService.seedOnFirstAccess(smartMeterIds, seeder);
+    }
+
+    /**
+     * Starts seeding every meter not seeded yet, returning at once. Does nothing if there are no threads to seed on,
+     * leaving meters to be seeded when they are first used.
+     */
+    public void start() {
+        if (threads < 1) {
+            return;
+        }
+        List<String> smartMeterIds = new ArrayList<>(meterReadingService.getUnseededSmartMeterIds());
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger(threads);
+        long start = System.nanoTime();
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "seeding-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int worker = 0; worker < threads; worker++) {
+            workers.execute(() -> {
+                int index;
+                while (!Thread.currentThread().isInterrupted() && (index = next.getAndIncrement()) < smartMeterIds.size()) {
+                    try {
+                        meterReadingService.seed(smartMeterIds.get(index));
+                    } catch (RuntimeException e) {
+                        // left unseeded, to be tried again when the meter is first used
+                        failed.add(smartMeterIds.get(index));
+                        LOGGER.warn("Could not seed {}", smartMeterIds.get(index), e);
+                    }
+                }
+                if (running.decrementAndGet() == 0) {
+                    LOGGER.info("Seeded {} meters in {} ms", smartMeterIds.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            });
+        }
+        workers.shutdown();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public Health health() {
+        Set<String> unseededSmartMeterIds = meterReadingService.getUnseededSmartMeterIds();
+        int unseeded = unseededSmartMeterIds.size();
+        // failed meters seeded on first use since are no longer failing
+        int failing = (int) failed.stream().filter(unseededSmartMeterIds::contains).count();
+        Health.Builder health = unseeded == failing || threads < 1 ? Health.up() : Health.outOfService();
+        return health.withDetail("meters", meterCount)
+                .withDetail("unseeded", unseeded)
+                .withDetail("failed", failing)
+                .build();
+    }
+}
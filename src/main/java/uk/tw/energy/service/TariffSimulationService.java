@@ -0,0 +1,321 @@
+package uk.tw.energy.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.LoadShift;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.domain.ReadingsSummary;
+import uk.tw.energy.domain.SimulationScenario;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices a meter's readings against every price plan as they were and as they would have been with some of the load
+ * moved to other times of day.
+ * <p>
+ * Plans price by day of week and time of day only, so a single pass over a snapshot of the readings folds them into
+ * the energy used in each minute of the week. Shifts move energy between those 10080 minutes, and each plan's cost is
+ * the sum of that energy times the plan's rates for the same minutes, which are worked out once up front. Nothing the
+ * pass does depends on how many readings there are beyond reading each one once, and the readings are never copied.
+ * Periods already compacted are folded in from their minute and hour summaries the same way.
+ * <p>
+ * This prices energy, each reading's kW for as long as it holds, at the rate for its time of week. The other price
+ * plan endpoints cost the average reading over the hours spanned at the plan's unit rate, so their costs are not
+ * comparable with these.
+ */
+@Service
+public class TariffSimulationService {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    // a reading's power is taken to hold until the next reading, but not across a longer gap than this
+    private static final long MAX_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final double MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // any Monday will do, as plans only price by day of week and time of day
+    private static final LocalDateTime REFERENCE_MONDAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final MeterReadingService meterReadingService;
+    private final ZoneRules zoneRules;
+    private final String[] planNames;
+    private final double[][] ratesByMinuteOfWeek;
+
+    @Autowired
+    public TariffSimulationService(List<PricePlan> pricePlans, MeterReadingService meterReadingService) {
+        this(pricePlans, meterReadingService, ZoneId.systemDefault());
+    }
+
+    public TariffSimulationService(List<PricePlan> pricePlans, MeterReadingService meterReadingService, ZoneId zone) {
+        this.meterReadingService = meterReadingService;
+        this.zoneRules = zone.getRules();
+        this.planNames = new String[pricePlans.size()];
+        this.ratesByMinuteOfWeek = new double[pricePlans.size()][MINUTES_PER_WEEK];
+        for (int plan = 0; plan < pricePlans.size(); plan++) {
+            planNames[plan] = pricePlans.get(plan).getPlanName();
+            for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+                ratesByMinuteOfWeek[plan][minute] = pricePlans.get(plan).getPrice(REFERENCE_MONDAY.plusMinutes(minute)).doubleValue();
+            }
+        }
+    }
+
+    /**
+     * Prices the meter's readings in the scenario's window with and without its shifts, or returns null for an
+     * unknown meter. Periods already compacted are priced from the summaries kept for them.
+     *
+     * @throws IllegalArgumentException if a shift has a missing or empty band, or a percentage outside (0, 100]
+     */
+    public Simulation simulate(String smartMeterId, SimulationScenario scenario) {
+        List<LoadShift> shifts = scenario.getShifts() == null ? Collections.<LoadShift>emptyList() : scenario.getShifts();
+        shifts.forEach(TariffSimulationService::validate);
+        List<ElectricityReading> readings = meterReadingService.getReadings(smartMeterId);
+        if (readings == null) {
+            return null;
+        }
+        // taken after the snapshot, so whatever the snapshot holds from before its raw cutoff is in these summaries
+        MeterHistory compacted = meterReadingService.getCompactedHistory(smartMeterId);
+        long fromMillis = scenario.getFrom() == null ? Long.MIN_VALUE : scenario.getFrom().toEpochMilli();
+        long toMillis = scenario.getTo() == null ? Long.MAX_VALUE : scenario.getTo().toEpochMilli();
+        double[] baseline = new double[MINUTES_PER_WEEK];
+        WeekClock clock = new WeekClock(zoneRules);
+        long rawFromMillis = compacted.getRawFrom() == null ? Long.MIN_VALUE : compacted.getRawFrom().toEpochMilli();
+        addCompactedEnergy(baseline, clock, compacted, firstRawMillis(readings, rawFromMillis), fromMillis, toMillis);
+        addRawEnergy(baseline, clock, readings, rawFromMillis, fromMillis, toMillis);
+        double[] shifted = baseline.clone();
+        double moved = 0;
+        for (LoadShift shift : shifts) {
+            moved += apply(shift, shifted);
+        }
+        return new Simulation(sum(baseline), moved, costs(baseline), costs(shifted));
+    }
+
+    private static void addRawEnergy(double[] energy, WeekClock clock, List<ElectricityReading> readings,
+                                     long rawFromMillis, long fromMillis, long toMillis) {
+        int size = readings.size();
+        if (size == 0) {
+            return;
+        }
+        ElectricityReading next = readings.get(0);
+        long nextMillis = next.getTime().toEpochMilli();
+        for (int i = 1; i < size; i++) {
+            ElectricityReading reading = next;
+            long millis = nextMillis;
+            next = readings.get(i);
+            nextMillis = next.getTime().toEpochMilli();
+            if (millis < fromMillis || millis >= toMillis || millis < rawFromMillis) {
+                continue;
+            }
+            // readings are in the order they were stored, so one that arrived late ends no interval
+            long interval = Math.min(nextMillis, toMillis) - millis;
+            if (interval > 0 && interval <= MAX_INTERVAL_MILLIS) {
+                energy[clock.minuteOfWeek(millis)] += reading.getReading().doubleValue() * interval / MILLIS_PER_HOUR;
+            }
+        }
+    }
+
+    /**
+     * Adds the energy of compacted periods, taking each hour or minute summary as its average reading held from its
+     * first reading until the next summary's first reading, or the first raw reading after the last, within the same
+     * limit on gaps as raw readings. As a summary can cover many minutes, its energy is spread over those it covers.
+     */
+    private static void addCompactedEnergy(double[] energy, WeekClock clock, MeterHistory compacted,
+                                           long firstRawMillis, long fromMillis, long toMillis) {
+        List<ReadingsSummary> summaries = new ArrayList<>(compacted.getHourSummaries().size() + compacted.getMinuteSummaries().size());
+        // hours all come before the minutes kept, and each map is in time order
+        summaries.addAll(compacted.getHourSummaries().values());
+        summaries.addAll(compacted.getMinuteSummaries().values());
+        summaries.removeIf(ReadingsSummary::isEmpty);
+        for (int i = 0; i < summaries.size(); i++) {
+            ReadingsSummary summary = summaries.get(i);
+            long millis = summary.getFirst().toEpochMilli();
+            long nextMillis = i + 1 < summaries.size() ? summaries.get(i + 1).getFirst().toEpochMilli() : firstRawMillis;
+            if (millis < fromMillis || millis >= toMillis || nextMillis == Long.MAX_VALUE) {
+                continue;
+            }
+            long endMillis = Math.min(nextMillis, toMillis);
+            if (endMillis - millis > 0 && endMillis - millis <= MAX_INTERVAL_MILLIS) {
+                spread(energy, clock, millis, endMillis, summary.getSum().doubleValue() / summary.getCount());
+            }
+        }
+    }
+
+    // the first raw reading stored from the raw cutoff on, which ends the last compacted period
+    private static long firstRawMillis(List<ElectricityReading> readings, long rawFromMillis) {
+        for (ElectricityReading reading : readings) {
+            long millis = reading.getTime().toEpochMilli();
+            if (millis >= rawFromMillis) {
+                return millis;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static void spread(double[] energy, WeekClock clock, long startMillis, long endMillis, double kilowatts) {
+        long millis = startMillis;
+        while (millis < endMillis) {
+            long minuteEnd = Math.min(endMillis, Math.floorDiv(millis, MILLIS_PER_MINUTE) * MILLIS_PER_MINUTE + MILLIS_PER_MINUTE);
+            energy[clock.minuteOfWeek(millis)] += kilowatts * (minuteEnd - millis) / MILLIS_PER_HOUR;
+            millis = minuteEnd;
+        }
+    }
+
+    /**
+     * Moves the shift's share of each day's energy in its source band to the next start of its target band, returning
+     * how much was moved. Every day's share is taken before any is added back, so bands that overlap a neighbouring
+     * day's do not move the same energy twice.
+     */
+    private static double apply(LoadShift shift, double[] energy) {
+        int fromStart = minuteOfDay(shift.getFrom().getStart());
+        int fromLength = lengthInMinutes(shift.getFrom());
+        int toLength = lengthInMinutes(shift.getTo());
+        int delay = Math.floorMod(minuteOfDay(shift.getTo().getStart()) - fromStart, MINUTES_PER_DAY);
+        double share = shift.getPercent().doubleValue() / 100;
+        double[] taken = new double[7];
+        for (int day = 0; day < 7; day++) {
+            int start = day * MINUTES_PER_DAY + fromStart;
+            for (int offset = 0; offset < fromLength; offset++) {
+                int minute = (start + offset) % MINUTES_PER_WEEK;
+                double moved = energy[minute] * share;
+                energy[minute] -= moved;
+                taken[day] += moved;
+            }
+        }
+        for (int day = 0; day < 7; day++) {
+            int start = day * MINUTES_PER_DAY + fromStart + delay;
+            double perMinute = taken[day] / toLength;
+            for (int offset = 0; offset < toLength; offset++) {
+                energy[(start + offset) % MINUTES_PER_WEEK] += perMinute;
+            }
+        }
+        return sum(taken);
+    }
+
+    private Map<String, BigDecimal> costs(double[] energy) {
+        Map<String, BigDecimal> costs = new LinkedHashMap<>();
+        for (int plan = 0; plan < planNames.length; plan++) {
+            double[] rates = ratesByMinuteOfWeek[plan];
+            double cost = 0;
+            for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+                cost += energy[minute] * rates[minute];
+            }
+            costs.put(planNames[plan], scaled(cost));
+        }
+        return costs;
+    }
+
+    private static void validate(LoadShift shift) {
+        if (shift.getFrom() == null || shift.getTo() == null || shift.getPercent() == null) {
+            throw new IllegalArgumentException("Expected every shift to have a from band, a to band and a percent");
+        }
+        if (lengthInMinutes(shift.getFrom()) == 0 || lengthInMinutes(shift.getTo()) == 0) {
+            throw new IllegalArgumentException("Expected every band to have a start and an end at least a minute apart");
+        }
+        if (shift.getPercent().signum() <= 0 || shift.getPercent().compareTo(BigDecimal.valueOf(100)) > 0) {
+            throw new IllegalArgumentException("Expected every percent to be above 0 and at most 100");
+        }
+    }
+
+    private static int lengthInMinutes(LoadShift.Band band) {
+        if (band.getStart() == null || band.getEnd() == null) {
+            return 0;
+        }
+        return Math.floorMod(minuteOfDay(band.getEnd()) - minuteOfDay(band.getStart()), MINUTES_PER_DAY);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static BigDecimal scaled(double value) {
+        return BigDecimal.valueOf(value).setScale(4, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Minutes since Monday midnight, local time, keeping the zone's offset until the next transition rather than
+     * looking it up for every reading.
+     */
+    private static final class WeekClock {
+
+        // 1970-01-01 was a Thursday
+        private static final int EPOCH_MINUTE_OF_WEEK = 3 * MINUTES_PER_DAY;
+
+        private final ZoneRules zoneRules;
+        private long offsetMillis;
+        private long validFromMillis = Long.MAX_VALUE;
+        private long validUntilMillis = Long.MIN_VALUE;
+
+        WeekClock(ZoneRules zoneRules) {
+            this.zoneRules = zoneRules;
+        }
+
+        int minuteOfWeek(long epochMillis) {
+            if (epochMillis < validFromMillis || epochMillis >= validUntilMillis) {
+                Instant instant = Instant.ofEpochMilli(epochMillis);
+                offsetMillis = zoneRules.getOffset(instant).getTotalSeconds() * 1000L;
+                ZoneOffsetTransition previous = zoneRules.previousTransition(instant);
+                ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+                validFromMillis = previous == null ? Long.MIN_VALUE : epochMillis;
+                validUntilMillis = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000;
+            }
+            long localMinutes = Math.floorDiv(epochMillis + offsetMillis, 60_000L);
+            return (int) Math.floorMod(localMinutes + EPOCH_MINUTE_OF_WEEK, (long) MINUTES_PER_WEEK);
+        }
+    }
+
+    /**
+     * Energy used in the window and what it costs on each plan before and after the shifts.
+     */
+    public static final class Simulation {
+
+        private final BigDecimal kilowattHours;
+        private final BigDecimal shiftedKilowattHours;
+        private final Map<String, BigDecimal> baselineCosts;
+        private final Map<String, BigDecimal> simulatedCosts;
+
+        Simulation(double kilowattHours, double shiftedKilowattHours,
+                   Map<String, BigDecimal> baselineCosts, Map<String, BigDecimal> simulatedCosts) {
+            this.kilowattHours = scaled(kilowattHours);
+            this.shiftedKilowattHours = scaled(shiftedKilowattHours);
+            this.baselineCosts = Collections.unmodifiableMap(baselineCosts);
+            this.simulatedCosts = Collections.unmodifiableMap(simulatedCosts);
+        }
+
+        public BigDecimal getKilowattHours() {
+            return kilowattHours;
+        }
+
+        public BigDecimal getShiftedKilowattHours() {
+            return shiftedKilowattHours;
+        }
+
+        public Map<String, BigDecimal> getBaselineCosts() {
+            return baselineCosts;
+        }
+
+        public Map<String, BigDecimal> getSimulatedCosts() {
+            return simulatedCosts;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package uk.tw.energy.shard;
+
+import uk.tw.energy.service.FleetDemandService;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A node's {@link FleetDemandService#getDemand demand} as sent between nodes: the summed watts and reading count of
+ * each bucket and price plan, keyed by the epoch millisecond the bucket starts at, so that shards add up exactly.
+ */
+public class DemandTotals {
+
+    private long slotsPerBucket;
+    private Map<Long, Map<String, Totals>> buckets;
+
+    public DemandTotals() {
+    }
+
+    public static DemandTotals of(Map<Instant, Map<String, FleetDemandService.Demand>> demand, long slotsPerBucket) {
+        DemandTotals demandTotals = new DemandTotals();
+        demandTotals.slotsPerBucket = slotsPerBucket;
+        demandTotals.buckets = new LinkedHashMap<>();
+        demand.forEach((start, byPricePlan) -> {
+            Map<String, Totals> totals = new LinkedHashMap<>();
+            byPricePlan.forEach((pricePlanId, planDemand) -> totals.put(pricePlanId, Totals.of(planDemand)));
+            demandTotals.buckets.put(start.toEpochMilli(), totals);
+        });
+        return demandTotals;
+    }
+
+    public Map<Instant, Map<String, FleetDemandService.Demand>> toDemand() {
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand = new TreeMap<>();
+        if (buckets != null) {
+            buckets.forEach((start, totals) -> {
+                Map<String, FleetDemandService.Demand> byPricePlan = new TreeMap<>();
+                totals.forEach((pricePlanId, planTotals) -> byPricePlan.put(pricePlanId,
+                        new FleetDemandService.Demand(planTotals.watts, slotsPerBucket, planTotals.readings)));
+                demand.put(Instant.ofEpochMilli(start), byPricePlan);
+            });
+        }
+        return demand;
+    }
+
+    public long getSlotsPerBucket() {
+        return slotsPerBucket;
+    }
+
+    public void setSlotsPerBucket(long slotsPerBucket) {
+        this.slotsPerBucket = slotsPerBucket;
+    }
+
+    public Map<Long, Map<String, Totals>> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(Map<Long, Map<String, Totals>> buckets) {
+        this.buckets = buckets;
+    }
+
+    public static class Totals {
+
+        private long watts;
+        private long readings;
+
+        public Totals() {
+        }
+
+        static Totals of(FleetDemandService.Demand demand) {
+            Totals totals = new Totals();
+            totals.watts = demand.getWatts();
+            totals.readings = demand.getReadings();
+            return totals;
+        }
+
+        public long getWatts() {
+            return watts;
+        }
+
+        public void setWatts(long watts) {
+            this.watts = watts;
+        }
+
+        public long getReadings() {
+            return readings;
+        }
+
+        public void setReadings(long readings) {
+            this.readings = readings;
+        }
+    }
+}
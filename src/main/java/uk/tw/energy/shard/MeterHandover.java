@@ -0,0 +1,199 @@
+package uk.tw.energy.shard;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link MeterHistory} as sent to the meter's new owner. Summaries are keyed by the epoch second their hour or
+ * minute starts at and sketches by epoch day.
+ */
+public class MeterHandover {
+
+    private String smartMeterId;
+    private List<ElectricityReading> electricityReadings;
+    private Map<Long, Summary> hourSummaries;
+    private Map<Long, Summary> minuteSummaries;
+    private Map<Long, SketchBins> daySketches;
+    private Instant rawFrom;
+    private Instant minutesFrom;
+
+    public MeterHandover() {
+    }
+
+    public static MeterHandover of(String smartMeterId, MeterHistory history) {
+        MeterHandover handover = new MeterHandover();
+        handover.smartMeterId = smartMeterId;
+        handover.electricityReadings = history.getReadings();
+        handover.hourSummaries = new LinkedHashMap<>();
+        history.getHourSummaries().forEach((start, summary) -> handover.hourSummaries.put(start.getEpochSecond(), Summary.of(summary)));
+        handover.minuteSummaries = new LinkedHashMap<>();
+        history.getMinuteSummaries().forEach((start, summary) -> handover.minuteSummaries.put(start.getEpochSecond(), Summary.of(summary)));
+        handover.daySketches = new LinkedHashMap<>();
+        history.getDaySketches().forEach((day, sketch) -> handover.daySketches.put(day.toEpochDay(), SketchBins.of(sketch)));
+        handover.rawFrom = history.getRawFrom();
+        handover.minutesFrom = history.getMinutesFrom();
+        return handover;
+    }
+
+    public MeterHistory toHistory() {
+        Map<Instant, ReadingsSummary> hours = new LinkedHashMap<>();
+        if (hourSummaries != null) {
+            hourSummaries.forEach((start, summary) -> hours.put(Instant.ofEpochSecond(start), summary.toSummary()));
+        }
+        Map<Instant, ReadingsSummary> minutes = new LinkedHashMap<>();
+        if (minuteSummaries != null) {
+            minuteSummaries.forEach((start, summary) -> minutes.put(Instant.ofEpochSecond(start), summary.toSummary()));
+        }
+        Map<LocalDate, QuantileSketch> days = new LinkedHashMap<>();
+        if (daySketches != null) {
+            daySketches.forEach((day, sketch) -> days.put(LocalDate.ofEpochDay(day), sketch.toSketch()));
+        }
+        return new MeterHistory(electricityReadings == null ? Collections.<ElectricityReading>emptyList() : electricityReadings,
+                hours, minutes, days, rawFrom, minutesFrom);
+    }
+
+    public String getSmartMeterId() {
+        return smartMeterId;
+    }
+
+    public void setSmartMeterId(String smartMeterId) {
+        this.smartMeterId = smartMeterId;
+    }
+
+    public List<ElectricityReading> getElectricityReadings() {
+        return electricityReadings;
+    }
+
+    public void setElectricityReadings(List<ElectricityReading> electricityReadings) {
+        this.electricityReadings = electricityReadings;
+    }
+
+    public Map<Long, Summary> getHourSummaries() {
+        return hourSummaries;
+    }
+
+    public void setHourSummaries(Map<Long, Summary> hourSummaries) {
+        this.hourSummaries = hourSummaries;
+    }
+
+    public Map<Long, Summary> getMinuteSummaries() {
+        return minuteSummaries;
+    }
+
+    public void setMinuteSummaries(Map<Long, Summary> minuteSummaries) {
+        this.minuteSummaries = minuteSummaries;
+    }
+
+    public Map<Long, SketchBins> getDaySketches() {
+        return daySketches;
+    }
+
+    public void setDaySketches(Map<Long, SketchBins> daySketches) {
+        this.daySketches = daySketches;
+    }
+
+    public Instant getRawFrom() {
+        return rawFrom;
+    }
+
+    public void setRawFrom(Instant rawFrom) {
+        this.rawFrom = rawFrom;
+    }
+
+    public Instant getMinutesFrom() {
+        return minutesFrom;
+    }
+
+    public void setMinutesFrom(Instant minutesFrom) {
+        this.minutesFrom = minutesFrom;
+    }
+
+    /**
+     * A {@link ReadingsSummary} as sent between nodes.
+     */
+    public static class Summary {
+
+        private BigDecimal sum;
+        private long count;
+        private Instant first;
+        private Instant last;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        public Summary() {
+        }
+
+        static Summary of(ReadingsSummary readingsSummary) {
+            Summary summary = new Summary();
+            summary.sum = readingsSummary.getSum();
+            summary.count = readingsSummary.getCount();
+            summary.first = readingsSummary.getFirst();
+            summary.last = readingsSummary.getLast();
+            summary.min = readingsSummary.getMin();
+            summary.max = readingsSummary.getMax();
+            return summary;
+        }
+
+        ReadingsSummary toSummary() {
+            return new ReadingsSummary(sum, count, first, last, min, max);
+        }
+
+        public BigDecimal getSum() {
+            return sum;
+        }
+
+        public void setSum(BigDecimal sum) {
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public Instant getFirst() {
+            return first;
+        }
+
+        public void setFirst(Instant first) {
+            this.first = first;
+        }
+
+        public Instant getLast() {
+            return last;
+        }
+
+        public void setLast(Instant last) {
+            this.last = last;
+        }
+
+        public BigDecimal getMin() {
+            return min;
+        }
+
+        public void setMin(BigDecimal min) {
+            this.min = min;
+        }
+
+        public BigDecimal getMax() {
+            return max;
+        }
+
+        public void setMax(BigDecimal max) {
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package uk.tw.energy.shard;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.domain.QuantileSketch;
+import uk.tw.energy.service.FleetDemandService;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Calls other nodes: forwards readings to the node that owns their meter and gathers partial results of fleet-wide
+ * queries from every peer in parallel.
+ */
+@Component
+public class ShardClient {
+
+    /**
+     * Marks a request sent on by another node, which the receiving node must handle itself rather than send on again.
+     */
+    public static final String FORWARDED_HEADER = "X-Shard-Forwarded-By";
+    static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final RestTemplate restTemplate;
+    // a handover carries a meter's whole history, which may take far longer to send and adopt than a batch
+    private final RestTemplate handoverTemplate;
+    private final ExecutorService gatherers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-gather");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ShardClient(RestTemplateBuilder restTemplateBuilder,
+                       @Value("${shard.handover-timeout-seconds:120}") long handoverTimeoutSeconds) {
+        this(restTemplateBuilder.setConnectTimeout(TIMEOUT).setReadTimeout(TIMEOUT).build(),
+                restTemplateBuilder.setConnectTimeout(TIMEOUT).setReadTimeout(Duration.ofSeconds(handoverTimeoutSeconds)).build());
+    }
+
+    public ShardClient(RestTemplate restTemplate) {
+        this(restTemplate, restTemplate);
+    }
+
+    public ShardClient(RestTemplate restTemplate, RestTemplate handoverTemplate) {
+        this.restTemplate = restTemplate;
+        this.handoverTemplate = handoverTemplate;
+    }
+
+    /**
+     * Sends readings to {@code owner} and returns the status it answered with.
+     */
+    public HttpStatus forwardReadings(String owner, String self, MeterReadings meterReadings) {
+        return post(restTemplate, owner, "/readings/store", self, meterReadings);
+    }
+
+    /**
+     * Hands a meter's history over to its new {@code owner} and returns the status it answered with. It goes to
+     * {@code /shard/handover}, which takes it whole rather than applying the limits on readings sent by meters, and
+     * may take up to {@code shard.handover-timeout-seconds} to answer.
+     */
+    public HttpStatus handOver(String owner, String self, MeterHandover meterHandover) {
+        return post(handoverTemplate, owner, "/shard/handover", self, meterHandover);
+    }
+
+    private HttpStatus post(RestTemplate restTemplate, String owner, String path, String self, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(FORWARDED_HEADER, self);
+        try {
+            return restTemplate.exchange(owner + path, HttpMethod.POST,
+                    new HttpEntity<>(body, headers), Void.class).getStatusCode();
+        } catch (HttpStatusCodeException e) {
+            return e.getStatusCode();
+        } catch (RestClientException e) {
+            throw new ShardUnavailableException(owner, e);
+        }
+    }
+
+    /**
+     * Fetches each peer's own fleet load profile, as served by {@code /shard/load-profile}. Fails if any peer does not
+     * answer, since a profile missing a shard's meters would be silently wrong.
+     */
+    public List<QuantileSketch> gatherLoadProfiles(List<String> peers, LocalDate from, LocalDate to, String pricePlanId) {
+        return gather(peers, peer -> {
+            UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(peer).path("/shard/load-profile")
+                    .queryParam("from", from)
+                    .queryParam("to", to);
+            if (pricePlanId != null) {
+                uri.queryParam("pricePlanId", pricePlanId);
+            }
+            return uri.toUriString();
+        }, SketchBins.class, SketchBins::toSketch);
+    }
+
+    /**
+     * Fetches each peer's demand of its own meters, as served by {@code /shard/demand}. Fails if any peer does not
+     * answer, as {@link #gatherLoadProfiles} does.
+     */
+    public List<Map<Instant, Map<String, FleetDemandService.Demand>>> gatherDemand(List<String> peers,
+                                                                                    Instant from, Instant to, Duration bucket) {
+        return gather(peers, peer -> UriComponentsBuilder.fromHttpUrl(peer).path("/shard/demand")
+                .queryParam("from", from)
+                .queryParam("to", to)
+                .queryParam("bucketSeconds", bucket.getSeconds())
+                .toUriString(), DemandTotals.class, DemandTotals::toDemand);
+    }
+
+    private <T, R> List<R> gather(List<String> peers, Function<String, String> urlOf, Class<T> responseType,
+                                  Function<T, R> converter) {
+        List<CompletableFuture<R>> responses = new ArrayList<>(peers.size());
+        for (String peer : peers) {
+            String url = urlOf.apply(peer);
+            responses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return converter.apply(restTemplate.getForObject(url, responseType));
+                } catch (RestClientException e) {
+                    throw new ShardUnavailableException(peer, e);
+                }
+            }, gatherers));
+        }
+        List<R> results = new ArrayList<>(peers.size());
+        for (CompletableFuture<R> response : responses) {
+            try {
+                results.add(response.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof ShardUnavailableException ? (ShardUnavailableException) e.getCause() : e;
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gatherers.shutdownNow();
+    }
+}
@@ -0,0 +1,158 @@
+package uk.tw.energy.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.service.MeterReadingService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a change of shard membership on this node and hands over the meters it no longer owns. Consistent hashing
+ * keeps that to the meters on arcs taken over by a new node - about 1/(n+1) of them when one node joins n.
+ * <p>
+ * A moving meter is served here until its new owner has taken everything held for it, raw readings and compacted
+ * summaries alike, followed by any readings stored here while that was on its way, forwarded as a store would be. Handovers that fail are retried every {@code shard.handover-retry-seconds} until they succeed.
+ */
+@Service
+public class ShardRebalancer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final MeterReadingService meterReadingService;
+    private final ShardRouter shardRouter;
+    private final ShardClient shardClient;
+    private final long retrySeconds;
+    private ScheduledExecutorService retrier;
+
+    public ShardRebalancer(MeterReadingService meterReadingService, ShardRouter shardRouter, ShardClient shardClient) {
+        this(meterReadingService, shardRouter, shardClient, 0);
+    }
+
+    @Autowired
+    public ShardRebalancer(MeterReadingService meterReadingService, ShardRouter shardRouter, ShardClient shardClient,
+                           @Value("${shard.handover-retry-seconds:30}") long retrySeconds) {
+        this.meterReadingService = meterReadingService;
+        this.shardRouter = shardRouter;
+        this.shardClient = shardClient;
+        this.retrySeconds = retrySeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (retrySeconds <= 0) {
+            return;
+        }
+        retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-handover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retrier.scheduleWithFixedDelay(() -> {
+            try {
+                retryHandOvers();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not retry shard handovers", e);
+            }
+        }, retrySeconds, retrySeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (retrier != null) {
+            retrier.shutdownNow();
+        }
+    }
+
+    /**
+     * Switches to {@code nodes}, then sends each meter that now belongs elsewhere to its new owner. Moving meters are
+     * still served here, readings included, until their new owner has them.
+     */
+    public synchronized Map<String, Object> rebalance(List<String> nodes) {
+        shardRouter.updateNodes(nodes, storedMeterIds());
+        return handOverMisplaced();
+    }
+
+    /**
+     * Hands over every meter stored here that belongs elsewhere: those whose handover failed, and any stored here by a
+     * request already on its way when the meter moved.
+     */
+    public synchronized Map<String, Object> retryHandOvers() {
+        if (!shardRouter.isSharded()) {
+            return handOverResult(0, 0);
+        }
+        return handOverMisplaced();
+    }
+
+    private Map<String, Object> handOverMisplaced() {
+        int moved = 0;
+        int failed = 0;
+        for (String smartMeterId : storedMeterIds()) {
+            String owner = shardRouter.ownerOf(smartMeterId);
+            if (owner.equals(shardRouter.getSelf())) {
+                // moved back before it could be handed over
+                shardRouter.release(smartMeterId);
+                continue;
+            }
+            if (meterReadingService.handOff(smartMeterId, history -> handOver(owner, smartMeterId, history),
+                    late -> forward(owner, smartMeterId, late))) {
+                shardRouter.release(smartMeterId);
+                moved++;
+            } else {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            LOGGER.warn("Could not hand over {} meters, they stay here until a retry succeeds", failed);
+        }
+        return handOverResult(moved, failed);
+    }
+
+    private List<String> storedMeterIds() {
+        List<String> smartMeterIds = new ArrayList<>(meterReadingService.getSmartMeterIds());
+        // meters not seeded yet are seeded as they are handed over, so they move with their readings like the rest
+        smartMeterIds.addAll(meterReadingService.getUnseededSmartMeterIds());
+        return smartMeterIds;
+    }
+
+    private Map<String, Object> handOverResult(int moved, int failed) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("nodes", shardRouter.getNodes());
+        result.put("movedMeters", moved);
+        result.put("failedMeters", failed);
+        result.put("pendingMeters", shardRouter.getHeld().size());
+        return result;
+    }
+
+    private boolean handOver(String owner, String smartMeterId, MeterHistory history) {
+        try {
+            HttpStatus status = shardClient.handOver(owner, shardRouter.getSelf(), MeterHandover.of(smartMeterId, history));
+            return status.is2xxSuccessful();
+        } catch (ShardUnavailableException e) {
+            return false;
+        }
+    }
+
+    private boolean forward(String owner, String smartMeterId, List<ElectricityReading> late) {
+        try {
+            HttpStatus status = shardClient.forwardReadings(owner, shardRouter.getSelf(), new MeterReadings(smartMeterId, late));
+            return status.is2xxSuccessful();
+        } catch (ShardUnavailableException e) {
+            return false;
+        }
+    }
+}
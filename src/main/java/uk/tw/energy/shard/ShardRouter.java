@@ -0,0 +1,165 @@
+package uk.tw.energy.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Knows which node owns each smart meter. Nodes are identified by their base URL, e.g. {@code http://localhost:8081},
+ * configured as {@code shard.nodes} (comma separated, the same list on every node) and {@code shard.self}. Without
+ * {@code shard.nodes} the application runs standalone and owns every meter.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardRouter.class);
+    static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final String self;
+    private final int virtualNodes;
+    // meters the ring gives another node that are still served here until they have been handed over
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+    private volatile ConsistentHashRing ring;
+    // what the other nodes' host names resolved to when the nodes were last set
+    private volatile Set<String> peerAddresses = Collections.emptySet();
+
+    @Autowired
+    public ShardRouter(@Value("${shard.self:}") String self,
+                       @Value("${shard.nodes:}") String nodes,
+                       @Value("${shard.virtual-nodes:" + DEFAULT_VIRTUAL_NODES + "}") int virtualNodes) {
+        this.self = normalise(self);
+        this.virtualNodes = virtualNodes;
+        List<String> configuredNodes = parse(nodes);
+        if (!configuredNodes.isEmpty()) {
+            updateNodes(configuredNodes);
+        }
+    }
+
+    public static ShardRouter standalone() {
+        return new ShardRouter("", "", DEFAULT_VIRTUAL_NODES);
+    }
+
+    public boolean isSharded() {
+        return ring != null;
+    }
+
+    /**
+     * Whether this node serves the meter: it owns it, or it is still handing it over to its new owner.
+     */
+    public boolean isLocal(String smartMeterId) {
+        ConsistentHashRing current = ring;
+        return current == null || self.equals(current.ownerOf(smartMeterId)) || held.contains(smartMeterId);
+    }
+
+    /**
+     * The node the meter belongs to, whether or not it has been handed over there yet.
+     */
+    public String ownerOf(String smartMeterId) {
+        ConsistentHashRing current = ring;
+        return current == null ? self : current.ownerOf(smartMeterId);
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getNodes() {
+        ConsistentHashRing current = ring;
+        return current == null ? Collections.emptyList() : current.getNodes();
+    }
+
+    /**
+     * Whether a request from {@code remoteAddress} comes from another node, so that it may speak for the clients whose
+     * readings it forwards. Peers are recognised by the addresses their host names resolved to when the nodes were last
+     * set; a peer whose name did not resolve then is not recognised until they are set again.
+     */
+    public boolean isPeerAddress(String remoteAddress) {
+        return remoteAddress != null && peerAddresses.contains(remoteAddress);
+    }
+
+    public List<String> getPeers() {
+        List<String> peers = new ArrayList<>(getNodes());
+        peers.remove(self);
+        return peers;
+    }
+
+    public void updateNodes(List<String> nodes) {
+        updateNodes(nodes, Collections.<String>emptyList());
+    }
+
+    /**
+     * Switches to a new set of nodes. Those of {@code storedMeters} that now belong to another node stay
+     * {@link #isLocal local} from the same moment until they are {@link #release released}, so that they are served
+     * here until {@link ShardRebalancer} has handed them over, not by a new owner that does not have them yet.
+     */
+    public synchronized void updateNodes(List<String> nodes, Collection<String> storedMeters) {
+        List<String> normalised = nodes.stream().map(ShardRouter::normalise).distinct().collect(Collectors.toList());
+        if (!normalised.contains(self)) {
+            throw new IllegalArgumentException("Shard nodes " + normalised + " must include this node, '" + self + "'");
+        }
+        ConsistentHashRing updated = new ConsistentHashRing(normalised, virtualNodes);
+        for (String smartMeterId : storedMeters) {
+            if (!self.equals(updated.ownerOf(smartMeterId))) {
+                held.add(smartMeterId);
+            }
+        }
+        ring = updated;
+        peerAddresses = resolve(normalised.stream().filter(node -> !node.equals(self)).collect(Collectors.toList()));
+    }
+
+    /**
+     * Stops serving a held meter here, once it has been handed over or belongs to this node again.
+     */
+    public void release(String smartMeterId) {
+        held.remove(smartMeterId);
+    }
+
+    public Set<String> getHeld() {
+        return Collections.unmodifiableSet(held);
+    }
+
+    private static Set<String> resolve(List<String> nodes) {
+        Set<String> addresses = new HashSet<>();
+        for (String node : nodes) {
+            try {
+                String host = URI.create(node).getHost();
+                if (host == null) {
+                    continue;
+                }
+                for (InetAddress address : InetAddress.getAllByName(host)) {
+                    addresses.add(address.getHostAddress());
+                }
+            } catch (IllegalArgumentException | UnknownHostException e) {
+                LOGGER.warn("Could not resolve shard node {}, requests from it will not be trusted as forwarded", node, e);
+            }
+        }
+        return Collections.unmodifiableSet(addresses);
+    }
+
+    private static List<String> parse(String nodes) {
+        return Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    private static String normalise(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,11 @@
+package uk.tw.energy.shard;
+
+/**
+ * Another node could not be reached, so a request that needs it cannot be answered in full.
+ */
+public class ShardUnavailableException extends RuntimeException {
+
+    public ShardUnavailableException(String node, Throwable cause) {
+        super("Shard " + node + " is unavailable", cause);
+    }
+}
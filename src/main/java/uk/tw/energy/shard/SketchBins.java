@@ -0,0 +1,72 @@
+package uk.tw.energy.shard;
+
+import uk.tw.energy.domain.QuantileSketch;
+
+/**
+ * A {@link QuantileSketch} as sent between nodes: exactly its bins, so the receiving node can merge it without loss.
+ */
+public class SketchBins {
+
+    private double relativeAccuracy;
+    private int maxBins;
+    private int binOffset;
+    private long[] bins;
+    private long zeroCount;
+
+    public SketchBins() {
+    }
+
+    public static SketchBins of(QuantileSketch sketch) {
+        SketchBins sketchBins = new SketchBins();
+        sketchBins.relativeAccuracy = sketch.getRelativeAccuracy();
+        sketchBins.maxBins = sketch.getMaxBins();
+        sketchBins.binOffset = sketch.getBinOffset();
+        sketchBins.bins = sketch.getBins();
+        sketchBins.zeroCount = sketch.getZeroCount();
+        return sketchBins;
+    }
+
+    public QuantileSketch toSketch() {
+        return QuantileSketch.fromBins(relativeAccuracy, maxBins, binOffset, bins == null ? new long[0] : bins, zeroCount);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public int getMaxBins() {
+        return maxBins;
+    }
+
+    public void setMaxBins(int maxBins) {
+        this.maxBins = maxBins;
+    }
+
+    public int getBinOffset() {
+        return binOffset;
+    }
+
+    public void setBinOffset(int binOffset) {
+        this.binOffset = binOffset;
+    }
+
+    public long[] getBins() {
+        return bins;
+    }
+
+    public void setBins(long[] bins) {
+        this.bins = bins;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public void setZeroCount(long zeroCount) {
+        this.zeroCount = zeroCount;
+    }
+}
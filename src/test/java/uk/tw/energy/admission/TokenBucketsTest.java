@@ -0,0 +1,86 @@
+package uk.tw.energy.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = -5 * SECOND;
+
+    private final TokenBuckets buckets = new TokenBuckets(2, 3);
+
+    @Test
+    public void shouldAllowABurstThenRefillAtTheRate() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.tryAcquire("smart-meter-0", START)).isEqualTo(0L);
+        }
+
+        assertThat(buckets.tryAcquire("smart-meter-0", START)).isEqualTo(SECOND / 2);
+        assertThat(buckets.tryAcquire("smart-meter-0", START + SECOND / 2)).isEqualTo(0L);
+        assertThat(buckets.tryAcquire("smart-meter-0", START + SECOND / 2)).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    public void shouldKeepEachKeysBucketSeparate() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("smart-meter-0", START);
+        }
+
+        assertThat(buckets.tryAcquire("smart-meter-0", START)).isGreaterThan(0L);
+        assertThat(buckets.tryAcquire("smart-meter-1", START)).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldNotSaveUpMoreThanTheBurst() {
+        buckets.tryAcquire("smart-meter-0", START);
+
+        long later = START + 60 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(buckets.tryAcquire("smart-meter-0", later)).isEqualTo(0L);
+        }
+        assertThat(buckets.tryAcquire("smart-meter-0", later)).isGreaterThan(0L);
+    }
+
+    @Test
+    public void shouldOnlyEvictBucketsThatHaveRefilled() {
+        buckets.tryAcquire("smart-meter-0", START);
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("smart-meter-1", START + SECOND);
+        }
+
+        assertThat(buckets.evictFull(START + SECOND)).isEqualTo(1);
+        assertThat(buckets.size()).isEqualTo(1);
+        assertThat(buckets.evictFull(START + 3 * SECOND)).isEqualTo(1);
+        assertThat(buckets.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenConcurrentCallersShouldNeverHandOutMoreThanTheBurst() throws InterruptedException {
+        TokenBuckets slowBuckets = new TokenBuckets(0.001, 100);
+        long now = System.nanoTime();
+        int[] admitted = new int[8];
+        Thread[] threads = new Thread[admitted.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (slowBuckets.tryAcquire("smart-meter-0", now) == 0) {
+                        admitted[index]++;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total += admitted[t];
+        }
+
+        assertThat(total).isEqualTo(100);
+    }
+}
@@ -0,0 +1,71 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.tw.energy.admission.IngestAdmission;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class IngestAdmissionInterceptorTest {
+
+    private static final ShardRouter SHARD = new ShardRouter("http://10.0.0.9:8080", "http://10.0.0.9:8080,http://10.0.0.1:8081", 128);
+
+    @Test
+    public void givenClientOverItsRateLimitShouldAnswer429BeforeReadingTheBody() {
+        IngestAdmissionInterceptor interceptor = new IngestAdmissionInterceptor(new IngestAdmission(0, 0, 0, 0.1, 1, 0, 60));
+
+        assertThat(interceptor.preHandle(storeRequest("10.0.0.1"), new MockHttpServletResponse(), null)).isTrue();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(storeRequest("10.0.0.1"), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(interceptor.preHandle(storeRequest("10.0.0.2"), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    @Test
+    public void givenReadingsForwardedByAnotherShardShouldNotHoldThemToTheClientLimit() {
+        IngestAdmissionInterceptor interceptor = new IngestAdmissionInterceptor(new IngestAdmission(0, 0, 0, 0.1, 1, 0, 60), SHARD);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = storeRequest("10.0.0.1");
+            request.addHeader(ShardClient.FORWARDED_HEADER, "http://10.0.0.1:8081");
+            assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+        }
+    }
+
+    @Test
+    public void givenClientClaimingToForwardForAnotherShardShouldHoldItToTheClientLimit() {
+        IngestAdmissionInterceptor interceptor = new IngestAdmissionInterceptor(new IngestAdmission(0, 0, 0, 0.1, 1, 0, 60), SHARD);
+        MockHttpServletRequest first = storeRequest("10.0.0.2");
+        first.addHeader(ShardClient.FORWARDED_HEADER, "http://10.0.0.1:8081");
+        MockHttpServletRequest second = storeRequest("10.0.0.2");
+        second.addHeader(ShardClient.FORWARDED_HEADER, "http://10.0.0.1:8081");
+
+        assertThat(interceptor.preHandle(first, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(interceptor.preHandle(second, new MockHttpServletResponse(), null)).isFalse();
+    }
+
+    @Test
+    public void shouldFreeAConcurrencySlotWhenAnAdmittedRequestCompletes() {
+        IngestAdmissionInterceptor interceptor = new IngestAdmissionInterceptor(new IngestAdmission(0, 0, 0, 0, 0, 1, 60));
+        MockHttpServletRequest first = storeRequest("10.0.0.1");
+
+        assertThat(interceptor.preHandle(first, new MockHttpServletResponse(), null)).isTrue();
+        assertThat(interceptor.preHandle(storeRequest("10.0.0.2"), new MockHttpServletResponse(), null)).isFalse();
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), null, null);
+
+        assertThat(interceptor.preHandle(storeRequest("10.0.0.2"), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private static MockHttpServletRequest storeRequest(String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/readings/store");
+        request.setRemoteAddr(client);
+        return request;
+    }
+}
@@ -2,13 +2,19 @@ package uk.tw.energy.controller;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import uk.tw.energy.admission.IngestAdmission;
 import uk.tw.energy.builders.MeterReadingsBuilder;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.MeterReadings;
 import uk.tw.energy.service.MeterReadingService;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -45,6 +51,19 @@ public class MeterReadingControllerTest {
         assertThat(meterReadingController.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @Test
+    public void givenNegativeReadingShouldReturnErrorResponseWithoutStoringAnyOfTheBatch() {
+        MeterReadings meterReadings = new MeterReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(Instant.parse("2024-01-08T00:00:00Z"), BigDecimal.ONE),
+                new ElectricityReading(Instant.parse("2024-01-08T00:01:00Z"), BigDecimal.valueOf(-1))));
+        long version = meterReadingService.getVersion(SMART_METER_ID);
+
+        assertThat(meterReadingController.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        assertThat(meterReadingService.getReadings(SMART_METER_ID)).isNull();
+        assertThat(meterReadingService.getVersion(SMART_METER_ID)).isEqualTo(version);
+    }
+
     @Test
     public void givenMultipleBatchesOfMeterReadingsShouldStore() {
         MeterReadings meterReadings = new MeterReadingsBuilder().setSmartMeterId(SMART_METER_ID)
@@ -86,4 +105,33 @@ public class MeterReadingControllerTest {
         assertThat(meterReadingController.readReadings(SMART_METER_ID).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
 
     }
+
+    @Test
+    public void givenBatchOverTheSizeLimitShouldRefuseItWithoutStoring() {
+        MeterReadingController controller = new MeterReadingController(meterReadingService,
+                new IngestAdmission(5, 0, 0, 0, 0, 0, 60));
+        MeterReadings meterReadings = new MeterReadingsBuilder().setSmartMeterId(SMART_METER_ID)
+                .generateElectricityReadings(6)
+                .build();
+
+        assertThat(controller.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(meterReadingService.getReadings(SMART_METER_ID)).isNull();
+    }
+
+    @Test
+    public void givenMeterOverItsRateLimitShouldAskItToRetryLater() {
+        MeterReadingController controller = new MeterReadingController(meterReadingService,
+                new IngestAdmission(0, 0.1, 2, 0, 0, 0, 60));
+        MeterReadings meterReadings = new MeterReadingsBuilder().setSmartMeterId(SMART_METER_ID)
+                .generateElectricityReadings(1)
+                .build();
+
+        assertThat(controller.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.OK);
+        ResponseEntity throttled = controller.storeReadings(meterReadings);
+
+        assertThat(throttled.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(Long.parseLong(throttled.getHeaders().getFirst(HttpHeaders.RETRY_AFTER))).isBetween(1L, 10L);
+        assertThat(meterReadingService.getReadings(SMART_METER_ID).size()).isEqualTo(2);
+    }
 }
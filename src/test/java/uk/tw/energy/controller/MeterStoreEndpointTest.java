@@ -0,0 +1,35 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class MeterStoreEndpointTest {
+
+    @Test
+    public void shouldReportStoreSizeAndLargestMetersFirst() {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        for (int meter = 0; meter < MeterStoreEndpoint.LARGEST_METERS + 2; meter++) {
+            meterReadingService.storeReadings("meter-" + meter,
+                    new MeterReadingsBuilder().generateElectricityReadings(meter + 1).build().getElectricityReadings());
+        }
+
+        Map<String, Object> store = new MeterStoreEndpoint(meterReadingService).meterStore();
+
+        int meters = MeterStoreEndpoint.LARGEST_METERS + 2;
+        long readings = meters * (meters + 1) / 2;
+        assertThat(store.get("meters")).isEqualTo(meters);
+        assertThat(store.get("readings")).isEqualTo(readings);
+        assertThat((Long) store.get("estimatedBytes")).isGreaterThan(readings * MeterReadingService.ESTIMATED_BYTES_PER_READING);
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> largestMeters = (Map<String, Integer>) store.get("largestMeters");
+        assertThat(largestMeters.size()).isEqualTo(MeterStoreEndpoint.LARGEST_METERS);
+        assertThat(largestMeters.keySet().iterator().next()).isEqualTo("meter-" + (meters - 1));
+        assertThat(largestMeters.get("meter-" + (meters - 1))).isEqualTo(meters);
+    }
+}
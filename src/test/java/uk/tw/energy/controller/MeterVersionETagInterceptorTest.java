@@ -0,0 +1,87 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.PricePlanService;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class MeterVersionETagInterceptorTest {
+
+    private static final String SMART_METER_ID = "smart-meter-id";
+    private static final String READINGS_URI = "/readings/read/" + SMART_METER_ID;
+    private static final String COMPARE_ALL_URI = "/price-plans/compare-all/" + SMART_METER_ID;
+
+    private MeterReadingService meterReadingService;
+    private MeterVersionETagInterceptor interceptor;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        PricePlanService pricePlanService = new PricePlanService(
+                Collections.singletonList(new PricePlan("plan", null, BigDecimal.ONE, null)), meterReadingService);
+        AccountService accountService = new AccountService(Collections.singletonMap(SMART_METER_ID, "plan"));
+        interceptor = new MeterVersionETagInterceptor(meterReadingService, pricePlanService, accountService);
+        storeReadings();
+    }
+
+    @Test
+    public void givenNoConditionalHeaderShouldProceedAndEmitETag() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(get(READINGS_URI, null), response, null)).isTrue();
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNotNull();
+    }
+
+    @Test
+    public void givenMatchingETagShouldAnswerNotModifiedWithoutProceeding() {
+        String eTag = interceptor.eTagFor(COMPARE_ALL_URI, SMART_METER_ID);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(get(COMPARE_ALL_URI, eTag), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    public void givenNewReadingsStoredShouldChangeETag() {
+        String eTag = interceptor.eTagFor(READINGS_URI, SMART_METER_ID);
+
+        storeReadings();
+
+        assertThat(interceptor.eTagFor(READINGS_URI, SMART_METER_ID)).isNotEqualTo(eTag);
+        assertThat(interceptor.preHandle(get(READINGS_URI, eTag), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    @Test
+    public void givenPricePlanResourceShouldNotShareETagWithReadings() {
+        assertThat(interceptor.eTagFor(COMPARE_ALL_URI, SMART_METER_ID))
+                .isNotEqualTo(interceptor.eTagFor(READINGS_URI, SMART_METER_ID));
+    }
+
+    private void storeReadings() {
+        meterReadingService.storeReadings(SMART_METER_ID,
+                new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+    }
+
+    private static MockHttpServletRequest get(String uri, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Collections.singletonMap(MeterVersionETagInterceptor.SMART_METER_ID_VARIABLE, SMART_METER_ID));
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,143 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class NonBlockingUploadFilterTest {
+
+    private static final String BODY = "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":1,\"reading\":0.5}]}";
+
+    private final NonBlockingUploadFilter filter = new NonBlockingUploadFilter(1024, 60_000);
+    private final ArrivingInputStream body = new ArrivingInputStream();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final MockFilterChain chain = new MockFilterChain();
+
+    @Test
+    public void shouldDispatchOnlyOnceTheWholeBodyHasArrived() throws IOException, ServletException {
+        MockHttpServletRequest request = uploadRequest();
+        filter.doFilter(request, response, chain);
+
+        body.arrive(BODY.substring(0, 20));
+        body.arrive(BODY.substring(20));
+        MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+        assertThat(async.getDispatchedPath()).isNull();
+
+        body.finish();
+
+        assertThat(async.getDispatchedPath()).isEqualTo("/readings/store");
+        assertThat(readAll(async.getRequest().getInputStream())).isEqualTo(BODY);
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    public void givenUndeclaredBodyOverTheLimitShouldRejectItWithoutDispatching() throws IOException, ServletException {
+        MockHttpServletRequest request = uploadRequest();
+        filter.doFilter(request, response, chain);
+
+        body.arrive(new String(new char[1025]).replace('\0', 'x'));
+        body.finish();
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath()).isNull();
+    }
+
+    @Test
+    public void givenDeclaredBodyOverTheLimitShouldRejectItBeforeReading() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/readings/store");
+        request.setAsyncSupported(true);
+        request.setContent(new byte[1025]);
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(413);
+        assertThat(request.getAsyncContext()).isNull();
+    }
+
+    @Test
+    public void shouldLeaveRequestsOtherThanUploadsToTheFilterChain() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/readings/read/smart-meter-0");
+        request.setAsyncSupported(true);
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(chain.getRequest()).isEqualTo(request);
+    }
+
+    private MockHttpServletRequest uploadRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/readings/store") {
+            @Override
+            public ServletInputStream getInputStream() {
+                return body;
+            }
+        };
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A body that arrives in pieces, telling its listener as a container would.
+     */
+    private static final class ArrivingInputStream extends ServletInputStream {
+
+        private final Deque<Byte> arrived = new ArrayDeque<>();
+        private ReadListener listener;
+        private boolean finished;
+
+        void arrive(String part) throws IOException {
+            for (byte b : part.getBytes(StandardCharsets.UTF_8)) {
+                arrived.add(b);
+            }
+            listener.onDataAvailable();
+        }
+
+        void finish() throws IOException {
+            finished = true;
+            listener.onAllDataRead();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished && arrived.isEmpty();
+        }
+
+        @Override
+        public boolean isReady() {
+            return !arrived.isEmpty();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            this.listener = readListener;
+        }
+
+        @Override
+        public int read() {
+            Byte next = arrived.poll();
+            return next == null ? -1 : next & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package uk.tw.energy.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.method.HandlerMethod;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.PricePlanService;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class OffloadingHandlerAdapterTest {
+
+    private static final String PRICE_PLAN_1_ID = "test-supplier";
+    private static final String PRICE_PLAN_2_ID = "best-supplier";
+    private static final String SMART_METER_ID = "smart-meter-id";
+
+    private MeterReadingService meterReadingService;
+    private PricePlanComparatorController comparisons;
+    private ExecutorService pricingPool;
+    private OffloadingHandlerAdapter adapter;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        PricePlanService pricePlanService = new PricePlanService(Arrays.asList(
+                new PricePlan(PRICE_PLAN_1_ID, null, BigDecimal.TEN, null),
+                new PricePlan(PRICE_PLAN_2_ID, null, BigDecimal.ONE, null)), meterReadingService);
+        Map<String, String> meterToTariffs = new HashMap<>();
+        meterToTariffs.put(SMART_METER_ID, PRICE_PLAN_1_ID);
+        comparisons = new PricePlanComparatorController(pricePlanService, new AccountService(meterToTariffs));
+        pricingPool = Executors.newSingleThreadExecutor();
+        adapter = new OffloadingHandlerAdapter(pricingPool, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pricingPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldOffloadEveryPricePlanComparison() throws NoSuchMethodException {
+        HandlerMethod compareAll = new HandlerMethod(comparisons,
+                PricePlanComparatorController.class.getMethod("calculatedCostForEachPricePlan", String.class));
+        HandlerMethod readings = new HandlerMethod(new MeterReadingController(meterReadingService),
+                MeterReadingController.class.getMethod("readReadings", String.class));
+
+        assertThat(OffloadingHandlerAdapter.isOffloaded(compareAll)).isTrue();
+        assertThat(OffloadingHandlerAdapter.isOffloaded(readings)).isFalse();
+    }
+
+    @Test
+    public void shouldAnswerWithWhatTheHandlerReturns() throws InterruptedException {
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(Instant.now().minusSeconds(3600), BigDecimal.valueOf(15.0)),
+                new ElectricityReading(Instant.now(), BigDecimal.valueOf(5.0))));
+
+        DeferredResult<Object> result = adapter.offload(() -> comparisons.calculatedCostForEachPricePlan(SMART_METER_ID));
+        pricingPool.shutdown();
+        pricingPool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(result.hasResult()).isTrue();
+        assertThat(((ResponseEntity<?>) result.getResult()).getBody())
+                .isEqualTo(comparisons.calculatedCostForEachPricePlan(SMART_METER_ID).getBody());
+    }
+
+    @Test
+    public void givenUnknownMeterShouldAnswerWithBadRequestFromThePool() throws InterruptedException {
+        DeferredResult<Object> result = adapter.offload(() -> comparisons.recommendCheapestPricePlans("unknown-meter", 1));
+        pricingPool.shutdown();
+        pricingPool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(((ResponseEntity<?>) result.getResult()).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void givenHandlerFailsShouldAnswerWithItsException() throws InterruptedException {
+        IllegalStateException failure = new IllegalStateException("pricing failed");
+
+        DeferredResult<Object> result = adapter.offload(() -> {
+            throw failure;
+        });
+        pricingPool.shutdown();
+        pricingPool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(result.getResult()).isEqualTo(failure);
+    }
+
+    @Test
+    public void givenPricingPoolFullShouldTurnComparisonsAwayWithServiceUnavailable() {
+        pricingPool.shutdown();
+
+        DeferredResult<Object> result = adapter.offload(() -> comparisons.calculatedCostForLastWeek(SMART_METER_ID));
+
+        ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+}
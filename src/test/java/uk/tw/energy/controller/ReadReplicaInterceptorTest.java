@@ -0,0 +1,48 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ReadReplicaInterceptorTest {
+
+    private static final String PRIMARY = "http://localhost:8080";
+
+    @Test
+    public void givenFollowerShouldServeReads() {
+        ReadReplicaInterceptor interceptor = new ReadReplicaInterceptor("follower", PRIMARY);
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("GET", "/readings/read/smart-meter-0"),
+                new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    @Test
+    public void givenFollowerShouldRedirectWritesToPrimary() {
+        ReadReplicaInterceptor interceptor = new ReadReplicaInterceptor("follower", PRIMARY + "/");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("POST", "/readings/store"), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(307);
+        assertThat(response.getHeader(HttpHeaders.LOCATION)).isEqualTo(PRIMARY + "/readings/store");
+    }
+
+    @Test
+    public void givenFollowerWithoutPrimaryUrlShouldRefuseWrites() {
+        ReadReplicaInterceptor interceptor = new ReadReplicaInterceptor("follower", "");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("POST", "/readings/store"), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(405);
+    }
+
+    @Test
+    public void givenPrimaryShouldAcceptWrites() {
+        ReadReplicaInterceptor interceptor = new ReadReplicaInterceptor("primary", "");
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest("POST", "/readings/store"),
+                new MockHttpServletResponse(), null)).isTrue();
+    }
+}
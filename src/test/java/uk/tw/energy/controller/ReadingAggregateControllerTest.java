@@ -0,0 +1,78 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.PricePlanService;
+import uk.tw.energy.service.ReadingAggregationService;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ReadingAggregateControllerTest {
+
+    private static final String SMART_METER_ID = "smart-meter-id";
+    private static final String PRICE_PLAN_ID = "price-plan";
+    private static final Instant MIDNIGHT = Instant.parse("2022-05-02T00:00:00Z");
+    private static final List<String> ALL_FUNCTIONS = Arrays.asList("count", "sum", "cost");
+
+    private ReadingAggregateController controller;
+
+    @BeforeEach
+    public void setUp() {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        PricePlanService pricePlanService = new PricePlanService(
+                Collections.singletonList(new PricePlan(PRICE_PLAN_ID, null, BigDecimal.TEN, null)), meterReadingService);
+        controller = new ReadingAggregateController(new ReadingAggregationService(meterReadingService), pricePlanService);
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(MIDNIGHT.plusSeconds(600), BigDecimal.valueOf(1.0)),
+                new ElectricityReading(MIDNIGHT.plusSeconds(2400), BigDecimal.valueOf(1.0)),
+                new ElectricityReading(MIDNIGHT.plusSeconds(4200), BigDecimal.valueOf(3.0))));
+    }
+
+    @Test
+    public void givenHourlyBucketsShouldAggregateEachHour() {
+        Map<String, Object> response = controller.aggregateReadings(SMART_METER_ID, MIDNIGHT, MIDNIGHT.plusSeconds(7200),
+                "hour", "UTC", ALL_FUNCTIONS, null).getBody();
+
+        List<Map<String, Object>> buckets = (List<Map<String, Object>>) response.get("buckets");
+        assertThat(buckets.size()).isEqualTo(2);
+        assertThat(buckets.get(0).get("count")).isEqualTo(2L);
+        assertThat(buckets.get(0).get("sum")).isEqualTo(BigDecimal.valueOf(2.0));
+        assertThat(buckets.get(0).get("cost")).isEqualTo(Collections.singletonMap(PRICE_PLAN_ID, BigDecimal.valueOf(20.0)));
+        assertThat(buckets.get(1).get("count")).isEqualTo(1L);
+        assertThat(buckets.get(1).get("cost")).isNull();
+    }
+
+    @Test
+    public void givenRangeStartingMidBucketShouldClipFirstBucket() {
+        Map<String, Object> response = controller.aggregateReadings(SMART_METER_ID, MIDNIGHT.plusSeconds(1200),
+                MIDNIGHT.plusSeconds(86400), "day", "UTC", ALL_FUNCTIONS, null).getBody();
+
+        List<Map<String, Object>> buckets = (List<Map<String, Object>>) response.get("buckets");
+        assertThat(buckets.size()).isEqualTo(1);
+        assertThat(buckets.get(0).get("sum")).isEqualTo(BigDecimal.valueOf(4.0));
+    }
+
+    @Test
+    public void givenUnknownBucketShouldReturnBadRequest() {
+        assertThat(controller.aggregateReadings(SMART_METER_ID, MIDNIGHT, MIDNIGHT.plusSeconds(60), "fortnight", null,
+                ALL_FUNCTIONS, null).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void givenNoReadingsInRangeShouldReturnNotFound() {
+        assertThat(controller.aggregateReadings("unknown", MIDNIGHT, MIDNIGHT.plusSeconds(60), "minute", null,
+                ALL_FUNCTIONS, null).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+}
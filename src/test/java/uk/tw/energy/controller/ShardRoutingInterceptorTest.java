@@ -0,0 +1,63 @@
+package uk.tw.energy.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ShardRoutingInterceptorTest {
+
+    private static final String SELF = "http://localhost:8081";
+    private static final String PEER = "http://localhost:8082";
+
+    private final ShardRouter shardRouter = new ShardRouter(SELF, SELF + "," + PEER, 128);
+    private final ShardRoutingInterceptor interceptor = new ShardRoutingInterceptor(shardRouter);
+
+    @Test
+    public void givenLocalMeterShouldProceed() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(get(meterOwnedBy(SELF)), response, null)).isTrue();
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void givenMeterOwnedElsewhereShouldRedirectToOwnerKeepingPathAndQuery() {
+        String smartMeterId = meterOwnedBy(PEER);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(get(smartMeterId), response, null)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(307);
+        assertThat(response.getHeader(HttpHeaders.LOCATION))
+                .isEqualTo(PEER + "/price-plans/recommend/" + smartMeterId + "?limit=2");
+    }
+
+    @Test
+    public void givenStandaloneShouldProceed() {
+        ShardRoutingInterceptor standalone = new ShardRoutingInterceptor(ShardRouter.standalone());
+
+        assertThat(standalone.preHandle(get(meterOwnedBy(PEER)), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private String meterOwnedBy(String node) {
+        for (int meter = 0; ; meter++) {
+            if (shardRouter.ownerOf("smart-meter-" + meter).equals(node)) {
+                return "smart-meter-" + meter;
+            }
+        }
+    }
+
+    private static MockHttpServletRequest get(String smartMeterId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/price-plans/recommend/" + smartMeterId);
+        request.setQueryString("limit=2");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+                Collections.singletonMap(MeterVersionETagInterceptor.SMART_METER_ID_VARIABLE, smartMeterId));
+        return request;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.Month;
 import java.util.Arrays;
 import java.util.List;
@@ -58,4 +59,22 @@ public class PricePlanTest {
 
         assertThat(price).isCloseTo(BigDecimal.TEN, Percentage.withPercentage(1));
     }
+
+    @Test
+    public void shouldOnlyApplyAPeakBandWithinItsTimesOfDay() {
+        PricePlan.PeakTimeMultiplier eveningPeak = new PricePlan.PeakTimeMultiplier(DayOfWeek.WEDNESDAY, LocalTime.of(17, 0), LocalTime.of(21, 0), BigDecimal.TEN);
+        PricePlan pricePlan = new PricePlan(null, null, BigDecimal.ONE, singletonList(eveningPeak));
+
+        assertThat(pricePlan.getPrice(LocalDateTime.of(2017, Month.AUGUST, 30, 17, 0, 0))).isCloseTo(BigDecimal.TEN, Percentage.withPercentage(1));
+        assertThat(pricePlan.getPrice(LocalDateTime.of(2017, Month.AUGUST, 30, 21, 0, 0))).isCloseTo(BigDecimal.ONE, Percentage.withPercentage(1));
+    }
+
+    @Test
+    public void shouldRunAPeakBandPastMidnightIntoTheNextDay() {
+        PricePlan.PeakTimeMultiplier overnight = new PricePlan.PeakTimeMultiplier(DayOfWeek.WEDNESDAY, LocalTime.of(23, 0), LocalTime.of(7, 0), BigDecimal.TEN);
+        PricePlan pricePlan = new PricePlan(null, null, BigDecimal.ONE, singletonList(overnight));
+
+        assertThat(pricePlan.getPrice(LocalDateTime.of(2017, Month.AUGUST, 31, 6, 59, 0))).isCloseTo(BigDecimal.TEN, Percentage.withPercentage(1));
+        assertThat(pricePlan.getPrice(LocalDateTime.of(2017, Month.AUGUST, 30, 6, 59, 0))).isCloseTo(BigDecimal.ONE, Percentage.withPercentage(1));
+    }
 }
@@ -0,0 +1,109 @@
+package uk.tw.energy.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.5, 0.95, 0.99, 1};
+
+    @Test
+    public void shouldEstimateQuantilesWithinRelativeAccuracy() {
+        Random random = new Random(3);
+        double[] values = new double[100_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.abs(random.nextGaussian()) + 0.0001;
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double quantile : QUANTILES) {
+            double expected = values[(int) (quantile * (values.length - 1))];
+            assertThat(Math.abs(sketch.quantile(quantile) - expected) / expected)
+                    .isLessThanOrEqualTo(QuantileSketch.DEFAULT_RELATIVE_ACCURACY + 1e-9);
+        }
+    }
+
+    @Test
+    public void givenMergedSketchesShouldMatchSingleSketchOverAllValues() {
+        Random random = new Random(5);
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch first = new QuantileSketch();
+        QuantileSketch second = new QuantileSketch();
+        for (int i = 0; i < 10_000; i++) {
+            double value = random.nextDouble() * (i % 2 == 0 ? 1 : 100);
+            all.add(value);
+            (i % 2 == 0 ? first : second).add(value);
+        }
+
+        QuantileSketch merged = first.merge(second);
+
+        assertThat(merged.getCount()).isEqualTo(all.getCount());
+        for (double quantile : QUANTILES) {
+            assertThat(merged.quantile(quantile)).isEqualTo(all.quantile(quantile));
+        }
+    }
+
+    @Test
+    public void givenZeroReadingsShouldReportZero() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        sketch.add(0);
+        sketch.add(5);
+
+        assertThat(sketch.quantile(0.5)).isEqualTo(0.0);
+    }
+
+    @Test
+    public void givenValuesBeyondMaxBinsShouldKeepTheHighEndAccurate() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 16);
+        for (int exponent = -6; exponent <= 6; exponent++) {
+            sketch.add(Math.pow(10, exponent));
+        }
+
+        assertThat(Math.abs(sketch.quantile(1) - 1e6) / 1e6).isLessThanOrEqualTo(0.01 + 1e-9);
+        assertThat(sketch.getCount()).isEqualTo(13L);
+    }
+
+    @Test
+    public void givenEmptySketchShouldReturnNaN() {
+        assertThat(Double.isNaN(new QuantileSketch().quantile(0.5))).isTrue();
+    }
+
+    @Test
+    public void givenSketchRebuiltFromItsBinsShouldAnswerTheSameQuantiles() {
+        Random random = new Random(7);
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(Math.abs(random.nextGaussian()) * 3);
+        }
+
+        QuantileSketch rebuilt = QuantileSketch.fromBins(sketch.getRelativeAccuracy(), sketch.getMaxBins(),
+                sketch.getBinOffset(), sketch.getBins(), sketch.getZeroCount());
+
+        assertThat(rebuilt.getCount()).isEqualTo(sketch.getCount());
+        for (double quantile : QUANTILES) {
+            assertThat(rebuilt.quantile(quantile)).isEqualTo(sketch.quantile(quantile));
+        }
+    }
+
+    @Test
+    public void givenMergedBinsBeyondTheRangeOfAnIntShouldKeepCounting() {
+        // a low bin of Integer.MAX_VALUE readings, as a fleet's sketch over a few weeks can reach, and one high reading
+        QuantileSketch sketch = QuantileSketch.fromBins(QuantileSketch.DEFAULT_RELATIVE_ACCURACY,
+                QuantileSketch.DEFAULT_MAX_BINS, 0, new long[]{Integer.MAX_VALUE, 0, 1}, 0);
+
+        sketch.merge(sketch.copy());
+
+        assertThat(sketch.getBins()[0]).isEqualTo(2L * Integer.MAX_VALUE);
+        assertThat(sketch.getCount()).isEqualTo(2L * Integer.MAX_VALUE + 2);
+        assertThat(sketch.quantile(0.5)).isEqualTo(sketch.quantile(0));
+        assertThat(sketch.quantile(1)).isGreaterThan(sketch.quantile(0.5));
+    }
+}
@@ -0,0 +1,193 @@
+package uk.tw.energy.exporter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.ReadingCompactor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BillingExportServiceTest {
+
+    private static final Instant START = Instant.parse("2022-05-01T00:00:00Z");
+
+    private MeterReadingService meterReadingService;
+    private BillingExportService billingExportService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        Map<String, String> accounts = new HashMap<>();
+        accounts.put("smart-meter-0", "price-plan-0");
+        accounts.put("smart-meter-1", "price-plan-1");
+        billingExportService = new BillingExportService(meterReadingService, new AccountService(accounts),
+                Files.createTempDirectory("exports").toString());
+        for (String smartMeterId : accounts.keySet()) {
+            List<ElectricityReading> readings = new ArrayList<>();
+            // stored newest first, to check the export is in time order
+            for (int i = 99; i >= 0; i--) {
+                readings.add(new ElectricityReading(START.plusSeconds(i * 3600L), new BigDecimal("0." + (1000 + i))));
+            }
+            meterReadingService.storeReadings(smartMeterId, readings);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        billingExportService.stop();
+    }
+
+    @Test
+    public void givenRangeShouldExportEveryMeterInTimeOrder() throws Exception {
+        ExportJob job = awaitCompletion(billingExportService.submit(START.plusSeconds(10 * 3600), START.plusSeconds(20 * 3600), null));
+
+        assertThat(job.getStatus()).isEqualTo(ExportJob.Status.COMPLETE);
+        assertThat(job.getMeters()).isEqualTo(2);
+        assertThat(job.getReadings()).isEqualTo(20L);
+        assertThat(job.getBytes()).isEqualTo(Files.size(job.getFile()));
+
+        List<ColumnarReadingsReader.MeterExport> meters = read(job);
+        assertThat(meters.size()).isEqualTo(2);
+        assertThat(meters.get(0).getSmartMeterId()).isEqualTo("smart-meter-0");
+        assertThat(meters.get(0).getPricePlanId()).isEqualTo("price-plan-0");
+        List<String> readings = meters.get(0).getReadings().stream()
+                .map(reading -> reading.getTime() + "=" + reading.getReading())
+                .collect(Collectors.toList());
+        assertThat(readings.size()).isEqualTo(10);
+        assertThat(readings.get(0)).isEqualTo(START.plusSeconds(10 * 3600) + "=0.1010");
+        assertThat(readings.get(9)).isEqualTo(START.plusSeconds(19 * 3600) + "=0.1019");
+    }
+
+    @Test
+    public void givenPricePlanShouldOnlyExportItsMeters() throws Exception {
+        ExportJob job = awaitCompletion(billingExportService.submit(Instant.EPOCH, Instant.MAX, "price-plan-1"));
+
+        List<ColumnarReadingsReader.MeterExport> meters = read(job);
+        assertThat(meters.size()).isEqualTo(1);
+        assertThat(meters.get(0).getSmartMeterId()).isEqualTo("smart-meter-1");
+        assertThat(meters.get(0).getReadings().size()).isEqualTo(100);
+    }
+
+    @Test
+    public void givenCompleteExportShouldDeleteItsFile() throws Exception {
+        ExportJob job = awaitCompletion(billingExportService.submit(Instant.EPOCH, Instant.MAX, null));
+
+        assertThat(billingExportService.delete(job.getId())).isTrue();
+        assertThat(Files.exists(job.getFile())).isFalse();
+        assertThat(billingExportService.getJob(job.getId())).isNull();
+    }
+
+    @Test
+    public void shouldForgetFinishedExportsAndDeleteTheirFilesOnceTheyExpire() throws Exception {
+        ExportJob job = awaitCompletion(billingExportService.submit(Instant.EPOCH, Instant.MAX, null));
+        Path leftOver = job.getFile().resolveSibling("left-over.joie");
+        Files.write(leftOver, new byte[]{1});
+        Files.setLastModifiedTime(leftOver, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        assertThat(billingExportService.expireFinished(Instant.now())).isEqualTo(1);
+        assertThat(Files.exists(leftOver)).isFalse();
+        assertThat(billingExportService.getJob(job.getId())).isNotNull();
+
+        assertThat(billingExportService.expireFinished(Instant.now().plus(Duration.ofHours(25)))).isEqualTo(1);
+        assertThat(billingExportService.getJob(job.getId())).isNull();
+        assertThat(Files.exists(job.getFile())).isFalse();
+    }
+
+    @Test
+    public void shouldKeepLargeValuesAndFractionsOfASecond() throws Exception {
+        Instant time = START.plusMillis(1500).plusNanos(7);
+        BigDecimal large = new BigDecimal("123456789012345678901234.5");
+        meterReadingService.storeReadings("smart-meter-0", Collections.singletonList(new ElectricityReading(time, large)));
+        meterReadingService.storeReadings("smart-meter-0", Collections.singletonList(
+                new ElectricityReading(time.plusSeconds(1), BigDecimal.valueOf(Long.MAX_VALUE, 2))));
+
+        ExportJob job = awaitCompletion(billingExportService.submit(START, START.plusSeconds(3), "price-plan-0"));
+
+        List<ElectricityReading> readings = read(job).get(0).getReadings();
+        assertThat(readings.size()).isEqualTo(3);
+        assertThat(readings.get(1).getTime()).isEqualTo(time);
+        assertThat(readings.get(1).getReading()).isEqualTo(large);
+        assertThat(readings.get(2).getReading()).isEqualTo(BigDecimal.valueOf(Long.MAX_VALUE, 2));
+    }
+
+    @Test
+    public void givenAMeterThatCannotBeWrittenShouldExportTheRest() throws Exception {
+        meterReadingService.storeReadings("smart-meter-0", Collections.singletonList(
+                new ElectricityReading(START.plusSeconds(1), new BigDecimal(BigInteger.ONE, 200))));
+
+        ExportJob job = awaitCompletion(billingExportService.submit(Instant.EPOCH, Instant.MAX, null));
+
+        assertThat(job.getStatus()).isEqualTo(ExportJob.Status.COMPLETE);
+        assertThat(job.getSkippedMeters()).isEqualTo(1);
+        assertThat(job.getWarnings().size()).isEqualTo(1);
+        assertThat(read(job).get(0).getSmartMeterId()).isEqualTo("smart-meter-1");
+    }
+
+    @Test
+    public void givenRetentionShouldRefuseRangesOnlyKeptAsSummaries() throws Exception {
+        billingExportService.stop();
+        billingExportService = new BillingExportService(meterReadingService, new AccountService(new HashMap<>()),
+                new ReadingCompactor(meterReadingService, 1, 2, 300), Files.createTempDirectory("exports").toString());
+
+        assertThrows(IllegalArgumentException.class, () -> billingExportService.submit(Instant.EPOCH, Instant.MAX, null));
+        assertThat(billingExportService.getEarliestFrom().isAfter(Instant.now().minus(Duration.ofDays(1)).minusSeconds(60))).isTrue();
+    }
+
+    @Test
+    public void givenMeterCompactedPastTheStartOfTheRangeShouldCountItAsPartial() throws Exception {
+        Instant now = Instant.now();
+        List<ElectricityReading> recent = new ArrayList<>();
+        for (int minutes = 120; minutes > 0; minutes--) {
+            recent.add(new ElectricityReading(now.minus(Duration.ofMinutes(minutes)), BigDecimal.ONE));
+        }
+        meterReadingService.storeReadings("smart-meter-2", recent);
+        meterReadingService.compact("smart-meter-2", now.minus(Duration.ofMinutes(60)), now.minus(Duration.ofMinutes(60)));
+
+        ExportJob job = awaitCompletion(billingExportService.submit(now.minus(Duration.ofHours(3)), now, null));
+
+        assertThat(job.getStatus()).isEqualTo(ExportJob.Status.COMPLETE);
+        assertThat(job.getPartialMeters()).isEqualTo(1);
+        assertThat(read(job).get(0).getReadings().size()).isLessThan(recent.size());
+    }
+
+    private List<ColumnarReadingsReader.MeterExport> read(ExportJob job) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        billingExportService.transferTo(job, Channels.newChannel(out));
+        List<ColumnarReadingsReader.MeterExport> meters = new ArrayList<>();
+        try (ColumnarReadingsReader reader = new ColumnarReadingsReader(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ColumnarReadingsReader.MeterExport meter = reader.next(); meter != null; meter = reader.next()) {
+                meters.add(meter);
+            }
+        }
+        return meters;
+    }
+
+    private static ExportJob awaitCompletion(ExportJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && job.getStatus() == ExportJob.Status.RUNNING; i++) {
+            Thread.sleep(10);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,82 @@
+package uk.tw.energy.generator;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class FleetGeneratorTest {
+
+    private static final Instant FROM = Instant.parse("2022-05-02T00:00:00Z");
+    private static final Instant TO = FROM.plus(Duration.ofHours(6));
+
+    @Test
+    public void givenSameSeedShouldGenerateSameReadings() {
+        assertThat(readingsOf(generator(42), 3)).isEqualTo(readingsOf(generator(42), 3));
+        assertThat(readingsOf(generator(42), 3)).isNotEqualTo(readingsOf(generator(43), 3));
+    }
+
+    @Test
+    public void givenParallelGenerationShouldMatchGeneratingOneMeterAtATime() {
+        Map<String, List<String>> parallel = new ConcurrentHashMap<>();
+        generator(7).generate((smartMeterId, batch) ->
+                parallel.computeIfAbsent(smartMeterId, id -> new ArrayList<>()).addAll(asStrings(batch)));
+
+        assertThat(parallel.size()).isEqualTo(8);
+        assertThat(parallel.get(FleetGenerator.smartMeterId(5))).isEqualTo(readingsOf(generator(7), 5));
+    }
+
+    @Test
+    public void shouldGenerateReadingsInTimeOrderAtTheInterval() {
+        List<ElectricityReading> readings = new ArrayList<>();
+        generator(1).generateMeter(0, (smartMeterId, batch) -> readings.addAll(batch));
+
+        assertThat(readings.size()).isEqualTo(6 * 360);
+        for (int i = 1; i < readings.size(); i++) {
+            assertThat(Duration.between(readings.get(i - 1).getTime(), readings.get(i).getTime()))
+                    .isEqualTo(Duration.ofSeconds(10));
+            assertThat(readings.get(i).getReading().signum()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void shouldWriteEveryReadingToCsvPartitions() throws IOException {
+        Path directory = Files.createTempDirectory("fleet");
+
+        List<Path> files = generator(1).writeCsv(directory, 3);
+
+        long lines = 0;
+        for (Path file : files) {
+            List<String> content = Files.readAllLines(file);
+            assertThat(content.get(0)).isEqualTo(FleetGenerator.CSV_HEADER);
+            lines += content.size() - 1;
+        }
+        assertThat(lines).isEqualTo(8L * 6 * 360);
+    }
+
+    private static FleetGenerator generator(long seed) {
+        return new FleetGenerator(seed, 8, FROM, TO, Duration.ofSeconds(10), 500, ZoneOffset.UTC);
+    }
+
+    private static List<String> readingsOf(FleetGenerator generator, int meterIndex) {
+        List<String> readings = new ArrayList<>();
+        generator.generateMeter(meterIndex, (smartMeterId, batch) -> readings.addAll(asStrings(batch)));
+        return readings;
+    }
+
+    private static List<String> asStrings(List<ElectricityReading> batch) {
+        return batch.stream().map(reading -> reading.getTime() + "=" + reading.getReading()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,222 @@
+package uk.tw.energy.importer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.generator.FleetGenerator;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkReadingImporterTest {
+
+    private static final Instant FROM = Instant.parse("2022-05-02T00:00:00Z");
+
+    private MeterReadingService meterReadingService;
+    private BulkReadingImporter importer;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        // small chunks, so records are split across many chunks
+        importer = new BulkReadingImporter(meterReadingService, ShardRouter.standalone(), 4096);
+    }
+
+    @Test
+    public void givenGeneratedCsvFleetShouldImportEveryReading() throws IOException {
+        Path directory = Files.createTempDirectory("import");
+        generator().writeCsv(directory, 3);
+
+        ImportSummary summary = importer.importPath(directory);
+
+        assertThat(summary.getFiles()).isEqualTo(3);
+        assertThat(summary.getImported()).isEqualTo(8L * 6 * 360);
+        assertThat(summary.getRejectedLines()).isEqualTo(0L);
+        assertThat(asStrings(meterReadingService.getReadings(FleetGenerator.smartMeterId(5)))).isEqualTo(generated(5));
+    }
+
+    @Test
+    public void givenGeneratedNdjsonFleetShouldImportEveryReading() throws IOException {
+        Path directory = Files.createTempDirectory("import");
+        generator().writeNdjson(directory, 2);
+
+        ImportSummary summary = importer.importPath(directory);
+
+        assertThat(summary.getImported()).isEqualTo(8L * 6 * 360);
+        assertThat(summary.getMeters()).isEqualTo(8);
+        assertThat(asStrings(meterReadingService.getReadings(FleetGenerator.smartMeterId(3)))).isEqualTo(generated(3));
+    }
+
+    @Test
+    public void givenUnsortedAndDuplicateRecordsShouldStoreSortedWithLastReadingForEachTime() throws IOException {
+        Path file = write("readings.csv",
+                "smartMeterId,time,reading",
+                "smart-meter-0,1606636920,0.0222",
+                "smart-meter-0,1606636800,0.0503",
+                "smart-meter-0,1606636860,0.0621",
+                "smart-meter-0,1606636800,0.0600\r");
+
+        ImportSummary summary = importer.importPath(file);
+
+        assertThat(summary.getRecords()).isEqualTo(4L);
+        assertThat(summary.getImported()).isEqualTo(3L);
+        assertThat(summary.getDuplicates()).isEqualTo(1L);
+        assertThat(asStrings(meterReadingService.getReadings("smart-meter-0"))).isEqualTo(Arrays.asList(
+                "2020-11-29T08:00:00Z=0.0600", "2020-11-29T08:01:00Z=0.0621", "2020-11-29T08:02:00Z=0.0222"));
+    }
+
+    @Test
+    public void givenReadingAlreadyStoredShouldKeepStoredReading() throws IOException {
+        meterReadingService.storeReadings("smart-meter-0", Collections.singletonList(
+                new ElectricityReading(Instant.ofEpochSecond(1606636800), new BigDecimal("0.0503"))));
+        Path file = write("readings.ndjson",
+                "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":1606636800,\"reading\":0.9},{\"reading\":0.0621, \"time\":1606636860}]}");
+
+        ImportSummary summary = importer.importPath(file);
+
+        assertThat(summary.getImported()).isEqualTo(1L);
+        assertThat(summary.getDuplicates()).isEqualTo(1L);
+        assertThat(asStrings(meterReadingService.getReadings("smart-meter-0"))).isEqualTo(Arrays.asList(
+                "2020-11-29T08:00:00Z=0.0503", "2020-11-29T08:01:00Z=0.0621"));
+    }
+
+    @Test
+    public void givenReadingsAlreadyCompactedShouldNotCountThemAgain() throws IOException {
+        Instant start = Instant.ofEpochSecond(1606636800);
+        meterReadingService.storeReadings("smart-meter-0", Arrays.asList(
+                new ElectricityReading(start, new BigDecimal("0.0503")),
+                new ElectricityReading(start.plusSeconds(60), new BigDecimal("0.0621"))));
+        meterReadingService.compact("smart-meter-0", start.plusSeconds(120), start);
+        Path file = write("readings.ndjson",
+                "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":1606636800,\"reading\":0.0503},"
+                        + "{\"time\":1606636860,\"reading\":0.0621},{\"time\":1606636920,\"reading\":0.07}]}");
+
+        ImportSummary summary = importer.importPath(file);
+
+        assertThat(summary.getImported()).isEqualTo(1L);
+        assertThat(summary.getDuplicates()).isEqualTo(2L);
+        assertThat(meterReadingService.summarize("smart-meter-0").getCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void givenNdjsonTimesAsIsoStringsShouldImportThemLikeEpochSeconds() throws IOException {
+        Path file = write("readings.ndjson",
+                "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":\"2020-11-29T08:00:00Z\",\"reading\":0.0503},{\"time\":1606636860,\"reading\":0.0621}]}",
+                "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":\"2020-11-29T09:02:00+01:00\",\"reading\":0.0222}]}",
+                "{\"smartMeterId\":\"smart-meter-0\",\"electricityReadings\":[{\"time\":\"yesterday\",\"reading\":0.0191}]}");
+
+        ImportSummary summary = importer.importPath(file);
+
+        assertThat(summary.getImported()).isEqualTo(3L);
+        assertThat(summary.getRejectedLines()).isEqualTo(1L);
+        assertThat(asStrings(meterReadingService.getReadings("smart-meter-0"))).isEqualTo(Arrays.asList(
+                "2020-11-29T08:00:00Z=0.0503", "2020-11-29T08:01:00Z=0.0621", "2020-11-29T08:02:00Z=0.0222"));
+    }
+
+    @Test
+    public void givenSeveralFilesShouldStoreEachBeforeReadingTheNextAndKeepTheFirstReadingForATime() throws IOException {
+        Path directory = Files.createTempDirectory("import");
+        Files.write(directory.resolve("1.csv"), "smart-meter-0,1606636800,0.0503\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("2.csv"), ("smart-meter-0,1606636800,0.9\n"
+                + "smart-meter-0,1606636860,0.0621\n").getBytes(StandardCharsets.UTF_8));
+
+        ImportSummary summary = importer.importPath(directory);
+
+        assertThat(summary.getFiles()).isEqualTo(2);
+        assertThat(summary.getMeters()).isEqualTo(1);
+        assertThat(summary.getImported()).isEqualTo(2L);
+        assertThat(summary.getDuplicates()).isEqualTo(1L);
+        assertThat(asStrings(meterReadingService.getReadings("smart-meter-0"))).isEqualTo(Arrays.asList(
+                "2020-11-29T08:00:00Z=0.0503", "2020-11-29T08:01:00Z=0.0621"));
+    }
+
+    @Test
+    public void givenMalformedLinesShouldRejectThemAndImportTheRest() throws IOException {
+        Path file = write("readings.csv",
+                "smart-meter-0,1606636800,0.0503",
+                "smart-meter-0,yesterday,0.0621",
+                "smart-meter-0,1606636920",
+                "smart-meter-0,1606636980,0.04x",
+                "smart-meter-0,1606637040,0.0191");
+
+        ImportSummary summary = importer.importPath(file);
+
+        assertThat(summary.getImported()).isEqualTo(2L);
+        assertThat(summary.getRejectedLines()).isEqualTo(3L);
+    }
+
+    @Test
+    public void givenNegativeReadingsShouldRejectTheirLines() throws IOException {
+        Path csv = write("readings.csv",
+                "smart-meter-0,1606636800,0.0503",
+                "smart-meter-0,1606636860,-0.0621");
+        Path ndjson = write("readings.ndjson",
+                "{\"smartMeterId\":\"smart-meter-1\",\"electricityReadings\":[{\"time\":1606636800,\"reading\":-0.0503}]}");
+
+        ImportSummary csvSummary = importer.importPath(csv);
+        ImportSummary ndjsonSummary = importer.importPath(ndjson);
+
+        assertThat(csvSummary.getImported()).isEqualTo(1L);
+        assertThat(csvSummary.getRejectedLines()).isEqualTo(1L);
+        assertThat(ndjsonSummary.getImported()).isEqualTo(0L);
+        assertThat(ndjsonSummary.getRejectedLines()).isEqualTo(1L);
+    }
+
+    @Test
+    public void givenShardedNodeShouldOnlyImportMetersItOwns() throws IOException {
+        Path directory = Files.createTempDirectory("import");
+        generator().writeCsv(directory, 1);
+        ShardRouter shardRouter = new ShardRouter("http://localhost:8081", "http://localhost:8081,http://localhost:8082", 128);
+
+        ImportSummary summary = new BulkReadingImporter(meterReadingService, shardRouter, 4096).importPath(directory);
+
+        assertThat(summary.getImported() + summary.getSkipped()).isEqualTo(8L * 6 * 360);
+        for (String smartMeterId : meterReadingService.getSmartMeterIds()) {
+            assertThat(shardRouter.isLocal(smartMeterId)).isTrue();
+        }
+    }
+
+    @Test
+    public void givenUnknownFileTypeShouldRefuse() throws IOException {
+        Path file = write("readings.xml", "<readings/>");
+
+        assertThrows(IllegalArgumentException.class, () -> importer.importPath(file));
+    }
+
+    private static FleetGenerator generator() {
+        return new FleetGenerator(11, 8, FROM, FROM.plus(Duration.ofHours(6)), Duration.ofSeconds(10), 500, ZoneOffset.UTC);
+    }
+
+    private static List<String> generated(int meterIndex) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        generator().generateMeter(meterIndex, (smartMeterId, batch) -> readings.addAll(batch));
+        return asStrings(readings);
+    }
+
+    private static List<String> asStrings(List<ElectricityReading> readings) {
+        return readings.stream().map(reading -> reading.getTime() + "=" + reading.getReading()).collect(Collectors.toList());
+    }
+
+    private static Path write(String name, String... lines) throws IOException {
+        Path file = Files.createTempDirectory("import").resolve(name);
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
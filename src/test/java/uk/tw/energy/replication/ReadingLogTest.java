@@ -0,0 +1,224 @@
+package uk.tw.energy.replication;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.ReadingsSummary;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ReadingLogTest {
+
+    private static final Instant MONDAY = Instant.parse("2024-01-08T00:00:00Z");
+
+    @Test
+    public void givenBatchLineShouldParseBackToSameReadings() {
+        List<ElectricityReading> readings = readings(5);
+
+        ReadingLogFormat.Entry entry = ReadingLogFormat.parse(trimmed(ReadingLogFormat.batch(42L, "smart meter/0", readings)));
+
+        assertThat(entry.isHeader()).isFalse();
+        assertThat(entry.storedAtMillis).isEqualTo(42L);
+        assertThat(entry.smartMeterId).isEqualTo("smart meter/0");
+        assertThat(describe(entry.readings)).isEqualTo(describe(readings));
+    }
+
+    @Test
+    public void givenHeaderLineShouldParseEpoch() {
+        ReadingLogFormat.Entry entry = ReadingLogFormat.parse(trimmed(ReadingLogFormat.header("epoch-1")));
+
+        assertThat(entry.isHeader()).isTrue();
+        assertThat(entry.epoch).isEqualTo("epoch-1");
+    }
+
+    @Test
+    public void givenReadingsStoredOnPrimaryFollowerShouldCatchUpWithSameReadings() throws Exception {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        MeterReadingService primary = new MeterReadingService(new HashMap<>());
+        primary.storeReadings("smart-meter-0", readings(3));
+        ReadingLogWriter writer = new ReadingLogWriter(primary, log.toString());
+        primary.storeReadings("smart-meter-0", readings(2));
+        primary.storeReadings("smart-meter-1", readings(4));
+        writer.shutdown();
+
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        ReadingLogTailer tailer = new ReadingLogTailer(follower, log.toString(), 10);
+
+        assertThat(tailer.tailOnce()).isEqualTo(3);
+        assertThat(describe(follower.getReadings("smart-meter-0"))).isEqualTo(describe(primary.getReadings("smart-meter-0")));
+        assertThat(describe(follower.getReadings("smart-meter-1"))).isEqualTo(describe(primary.getReadings("smart-meter-1")));
+        assertThat(tailer.getLagMillis()).isEqualTo(0L);
+        assertThat(tailer.getLagBytes()).isEqualTo(0L);
+        assertThat(tailer.tailOnce()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenPrimaryRestartedFollowerShouldDropItsReadingsAndReplayNewLog() throws Exception {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        MeterReadingService primary = new MeterReadingService(new HashMap<>());
+        ReadingLogWriter writer = new ReadingLogWriter(primary, log.toString());
+        primary.storeReadings("smart-meter-0", readings(3));
+        writer.shutdown();
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        ReadingLogTailer tailer = new ReadingLogTailer(follower, log.toString(), 10);
+        tailer.tailOnce();
+
+        MeterReadingService restarted = new MeterReadingService(new HashMap<>());
+        restarted.storeReadings("smart-meter-1", readings(2));
+        new ReadingLogWriter(restarted, log.toString()).shutdown();
+
+        assertThat(tailer.tailOnce()).isEqualTo(1);
+        assertThat(follower.getSmartMeterIds().contains("smart-meter-0")).isFalse();
+        assertThat(describe(follower.getReadings("smart-meter-1"))).isEqualTo(describe(restarted.getReadings("smart-meter-1")));
+    }
+
+    @Test
+    public void givenLineStillBeingWrittenShouldLeaveItForNextCall() throws IOException {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        String batch = ReadingLogFormat.batch(42L, "smart-meter-0", readings(2));
+        Files.write(log, (ReadingLogFormat.header("epoch-1") + batch.substring(0, 20)).getBytes("UTF-8"));
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        ReadingLogTailer tailer = new ReadingLogTailer(follower, log.toString(), 10);
+
+        assertThat(tailer.tailOnce()).isEqualTo(0);
+        assertThat(tailer.getLagBytes()).isEqualTo(20L);
+
+        Files.write(log, (ReadingLogFormat.header("epoch-1") + batch).getBytes("UTF-8"));
+
+        assertThat(tailer.tailOnce()).isEqualTo(1);
+        assertThat(follower.getReadings("smart-meter-0").size()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenBatchesDroppedWhileTheWriterWasBehindShouldStartTheLogAfreshWithEveryReading() throws Exception {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        MeterReadingService primary = new MeterReadingService(new HashMap<>());
+        ReadingLogWriter writer = new ReadingLogWriter(primary, log.toString(), 1, 1_000);
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        ReadingLogTailer tailer = new ReadingLogTailer(follower, log.toString(), 10);
+        tailer.tailOnce();
+
+        primary.storeReadings("smart-meter-0", readings(2));
+        primary.storeReadings("smart-meter-0", readings(3));
+
+        assertThat(writer.health().getDetails().get("dropped")).isEqualTo(1L);
+        writer.writePending(0);
+        writer.shutdown();
+        assertThat(tailer.tailOnce()).isEqualTo(1);
+        assertThat(describe(follower.getReadings("smart-meter-0"))).isEqualTo(describe(primary.getReadings("smart-meter-0")));
+    }
+
+    @Test
+    public void givenLogThatCannotBeWrittenShouldReportItAndStartItAfreshOnceItCan() throws Exception {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        MeterReadingService primary = new MeterReadingService(new HashMap<>());
+        ReadingLogWriter writer = new ReadingLogWriter(primary, log.toString(), 1, 1_000);
+        Files.delete(log);
+        Files.createDirectory(log);
+        primary.storeReadings("smart-meter-0", readings(2));
+        primary.storeReadings("smart-meter-1", readings(3));
+
+        assertThat(writer.writePending(0)).isTrue();
+        assertThat(writer.health().getStatus()).isEqualTo(Status.DOWN);
+
+        Files.delete(log);
+        writer.writePending(0);
+        writer.shutdown();
+
+        assertThat(writer.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(writer.health().getDetails().get("failures")).isEqualTo(1L);
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        new ReadingLogTailer(follower, log.toString(), 10).tailOnce();
+        assertThat(describe(follower.getReadings("smart-meter-0"))).isEqualTo(describe(primary.getReadings("smart-meter-0")));
+        assertThat(describe(follower.getReadings("smart-meter-1"))).isEqualTo(describe(primary.getReadings("smart-meter-1")));
+    }
+
+    @Test
+    public void givenMetersCompactedAdoptedAndEvictedOnPrimaryFollowerShouldHoldTheSame() throws Exception {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        MeterReadingService primary = new MeterReadingService(new HashMap<>());
+        ReadingLogWriter writer = new ReadingLogWriter(primary, log.toString());
+        primary.storeReadings("smart-meter-0", everyMinute(MONDAY, 180));
+        primary.compact("smart-meter-0", MONDAY.plusSeconds(7200), MONDAY.plusSeconds(3600));
+        MeterReadingService other = new MeterReadingService(new HashMap<>());
+        other.storeReadings("smart-meter-1", everyMinute(MONDAY, 120));
+        other.compact("smart-meter-1", MONDAY.plusSeconds(7200), MONDAY.plusSeconds(3600));
+        // only summaries, no raw readings
+        primary.adopt("smart-meter-1", other.getCompactedHistory("smart-meter-1"));
+        primary.storeReadings("smart-meter-2", readings(2));
+        primary.evict("smart-meter-2");
+        writer.shutdown();
+
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        assertThat(new ReadingLogTailer(follower, log.toString(), 10).tailOnce()).isEqualTo(5);
+        assertSameMeters(follower, primary);
+
+        // and from the snapshot a restarted log starts with
+        new ReadingLogWriter(primary, log.toString()).shutdown();
+        MeterReadingService restarted = new MeterReadingService(new HashMap<>());
+        assertThat(new ReadingLogTailer(restarted, log.toString(), 10).tailOnce()).isEqualTo(2);
+        assertSameMeters(restarted, primary);
+    }
+
+    @Test
+    public void givenLineThatCannotBeParsedShouldSkipItAndCarryOn() throws IOException {
+        Path log = Files.createTempDirectory("replication").resolve("readings.log");
+        Files.write(log, (ReadingLogFormat.header("epoch-1")
+                + "B\t42\tsmart-meter-0\tnot a reading\n"
+                + ReadingLogFormat.batch(43L, "smart-meter-0", readings(2))).getBytes("UTF-8"));
+        MeterReadingService follower = new MeterReadingService(new HashMap<>());
+        ReadingLogTailer tailer = new ReadingLogTailer(follower, log.toString(), 10);
+
+        assertThat(tailer.tailOnce()).isEqualTo(1);
+        assertThat(tailer.tailOnce()).isEqualTo(0);
+        assertThat(tailer.getLagBytes()).isEqualTo(0L);
+        assertThat(follower.getReadings("smart-meter-0").size()).isEqualTo(2);
+    }
+
+    private static void assertSameMeters(MeterReadingService actual, MeterReadingService expected) {
+        assertThat(actual.getSmartMeterIds()).isEqualTo(expected.getSmartMeterIds());
+        for (String smartMeterId : expected.getSmartMeterIds()) {
+            assertThat(describe(actual.getReadings(smartMeterId))).isEqualTo(describe(expected.getReadings(smartMeterId)));
+            ReadingsSummary actualSummary = actual.summarize(smartMeterId, MONDAY, MONDAY.plusSeconds(3 * 3600));
+            ReadingsSummary expectedSummary = expected.summarize(smartMeterId, MONDAY, MONDAY.plusSeconds(3 * 3600));
+            assertThat(actualSummary.getCount()).isEqualTo(expectedSummary.getCount());
+            assertThat(actualSummary.getSum()).isEqualTo(expectedSummary.getSum());
+            assertThat(actual.getRawFrom(smartMeterId)).isEqualTo(expected.getRawFrom(smartMeterId));
+        }
+    }
+
+    private static List<ElectricityReading> everyMinute(Instant start, int minutes) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int minute = 0; minute < minutes; minute++) {
+            readings.add(new ElectricityReading(start.plusSeconds(60L * minute), BigDecimal.valueOf(minute % 7, 1)));
+        }
+        return readings;
+    }
+
+    private static List<ElectricityReading> readings(int number) {
+        return new MeterReadingsBuilder().generateElectricityReadings(number).build().getElectricityReadings();
+    }
+
+    // ElectricityReading has no equals, and the log keeps the reading's scale
+    private static List<String> describe(List<ElectricityReading> readings) {
+        return readings.stream()
+                .map(reading -> reading.getTime() + "=" + reading.getReading().toPlainString())
+                .collect(Collectors.toList());
+    }
+
+    private static String trimmed(String line) {
+        return line.substring(0, line.length() - 1);
+    }
+}
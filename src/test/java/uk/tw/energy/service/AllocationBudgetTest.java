@@ -0,0 +1,123 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.generator.ElectricityReadingsGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Budgets for the bytes allocated by the hot paths, measured with the JVM's per-thread allocation counter. Pricing
+ * budgets are fixed amounts: they hold for a meter with any number of readings, so a change that allocates per reading
+ * fails here. Budgets are a few times the measured figures, leaving room for JVM differences but not for a new
+ * allocation per reading.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP_OPERATIONS = 2_000;
+    private static final int MEASURED_OPERATIONS = 1_000;
+    private static final String SMART_METER_ID = "smart-meter-0";
+    // a Sunday, so days-of-week covers the whole week
+    private static final LocalDate TODAY = LocalDate.of(2022, 5, 15);
+    private static final Instant LAST_READING = TODAY.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().minusSeconds(10);
+
+    private static final long STORE_BYTES_PER_READING = 512;
+    private static final long COMPARE_ALL_BYTES = 4_096;
+    private static final long LAST_WEEK_BYTES = 32 * 1024;
+    private static final long DAYS_OF_WEEK_BYTES = 128 * 1024;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @BeforeEach
+    public void setUp() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean, "per-thread allocation counters unavailable");
+        threads = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "per-thread allocation counters unavailable");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void storingABatchShouldStayWithinBudgetPerReading() {
+        int batchSize = 100;
+        List<List<ElectricityReading>> batches = new ArrayList<>();
+        ElectricityReadingsGenerator generator = new ElectricityReadingsGenerator(1);
+        for (int i = 0; i < WARMUP_OPERATIONS + MEASURED_OPERATIONS; i++) {
+            batches.add(generator.generate(batchSize, LAST_READING.plusSeconds(10L * batchSize * i)));
+        }
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        int[] next = {0};
+
+        long bytes = bytesPerOperation(() -> meterReadingService.storeReadings(SMART_METER_ID, batches.get(next[0]++)));
+
+        assertThat(bytes / batchSize).isLessThanOrEqualTo(STORE_BYTES_PER_READING);
+    }
+
+    @Test
+    public void compareAllShouldStayWithinBudgetRegardlessOfReadingCount() {
+        for (int readings : new int[]{1_000, 100_000}) {
+            PricePlanService pricePlanService = pricePlanServiceWith(readings);
+
+            long bytes = bytesPerOperation(() -> pricePlanService.getConsumptionCostOfElectricityReadingsForEachPricePlan(SMART_METER_ID));
+
+            assertThat(bytes).isLessThanOrEqualTo(COMPARE_ALL_BYTES);
+        }
+    }
+
+    @Test
+    public void lastWeekShouldStayWithinBudgetRegardlessOfReadingCount() {
+        for (int readings : new int[]{1_000, 100_000}) {
+            PricePlanService pricePlanService = pricePlanServiceWith(readings);
+
+            long bytes = bytesPerOperation(() -> pricePlanService.getConsumptionCostOfElectricityReadingsForLastWeek(SMART_METER_ID, TODAY.plusDays(1)));
+
+            assertThat(bytes).isLessThanOrEqualTo(LAST_WEEK_BYTES);
+        }
+    }
+
+    @Test
+    public void daysOfWeekShouldStayWithinBudgetRegardlessOfReadingCount() {
+        for (int readings : new int[]{1_000, 100_000}) {
+            PricePlanService pricePlanService = pricePlanServiceWith(readings);
+
+            long bytes = bytesPerOperation(() -> pricePlanService.getConsumptionCostOfElectricityReadingsDaysOfWeekForEachPricePlan(SMART_METER_ID, TODAY, 2));
+
+            assertThat(bytes).isLessThanOrEqualTo(DAYS_OF_WEEK_BYTES);
+        }
+    }
+
+    private long bytesPerOperation(Runnable operation) {
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            operation.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+            operation.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_OPERATIONS;
+    }
+
+    private static PricePlanService pricePlanServiceWith(int readings) {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        meterReadingService.storeReadings(SMART_METER_ID, new ElectricityReadingsGenerator(1).generate(readings, LAST_READING));
+        List<PricePlan> pricePlans = new ArrayList<>();
+        pricePlans.add(new PricePlan("price-plan-0", "Dr Evil's Dark Energy", BigDecimal.TEN, emptyList()));
+        pricePlans.add(new PricePlan("price-plan-1", "The Green Eco", BigDecimal.valueOf(2), emptyList()));
+        pricePlans.add(new PricePlan("price-plan-2", "Power for Everyone", BigDecimal.ONE, emptyList()));
+        return new PricePlanService(pricePlans, meterReadingService);
+    }
+}
@@ -0,0 +1,158 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.domain.ReadingAnomaly;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AnomalyDetectorTest {
+
+    private static final String SMART_METER_ID = "smart-meter-0";
+    private static final Instant START = Instant.parse("2022-05-01T00:00:00Z");
+
+    private MeterReadingService meterReadingService;
+    private AnomalyDetector anomalyDetector;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        anomalyDetector = new AnomalyDetector(meterReadingService, 0.1, 6, 0.5, 30, 20, 60, 10);
+    }
+
+    @Test
+    public void givenSteadyNoisyReadingsShouldRaiseNothing() {
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(0, 500));
+
+        assertThat(anomalyDetector.getRecent(null, null, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenReadingFarAboveRecentAverageShouldRaiseOneSpike() {
+        List<ElectricityReading> readings = noisyReadings(0, 100);
+        readings.add(reading(100, 25.0));
+        readings.add(reading(101, 26.0));
+        readings.addAll(noisyReadings(102, 10));
+
+        meterReadingService.storeReadings(SMART_METER_ID, readings);
+
+        List<ReadingAnomaly> anomalies = anomalyDetector.getRecent(SMART_METER_ID, null, 100);
+        assertThat(anomalies.size()).isEqualTo(1);
+        assertThat(anomalies.get(0).getType()).isEqualTo(ReadingAnomaly.Type.SPIKE);
+        assertThat(anomalies.get(0).getTime()).isEqualTo(START.plusSeconds(1000));
+        assertThat(anomalies.get(0).getExpected()).isBetween(1.0, 2.0);
+    }
+
+    @Test
+    public void givenSameReadingRepeatedShouldRaiseStuckOnce() {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            readings.add(reading(i, 0.42));
+        }
+
+        meterReadingService.storeReadings(SMART_METER_ID, readings);
+
+        List<ReadingAnomaly> anomalies = anomalyDetector.getRecent(SMART_METER_ID, ReadingAnomaly.Type.STUCK, 100);
+        assertThat(anomalies.size()).isEqualTo(1);
+        assertThat(anomalies.get(0).getTime()).isEqualTo(START.plusSeconds(190));
+    }
+
+    @Test
+    public void givenMissingReadingsAcrossBatchesShouldRaiseGap() {
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(0, 10));
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(20, 10));
+
+        List<ReadingAnomaly> anomalies = anomalyDetector.getRecent(SMART_METER_ID, ReadingAnomaly.Type.GAP, 100);
+        assertThat(anomalies.size()).isEqualTo(1);
+        assertThat(anomalies.get(0).getDescription()).isEqualTo("No readings for 110s");
+    }
+
+    @Test
+    public void givenLateReadingsShouldNotRaiseGaps() {
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(10, 5));
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(0, 10));
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(15, 5));
+
+        assertThat(anomalyDetector.getRecent(null, ReadingAnomaly.Type.GAP, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldOnlyKeepTheMostRecentAnomaliesNewestFirst() {
+        for (int meter = 0; meter < 15; meter++) {
+            meterReadingService.storeReadings("smart-meter-" + meter, Collections.singletonList(reading(0, 1.0)));
+            meterReadingService.storeReadings("smart-meter-" + meter, Collections.singletonList(reading(100, 1.1)));
+        }
+
+        List<ReadingAnomaly> anomalies = anomalyDetector.getRecent(null, null, 100);
+        assertThat(anomalies.size()).isEqualTo(10);
+        assertThat(anomalies.get(0).getSmartMeterId()).isEqualTo("smart-meter-14");
+        assertThat(anomalies.get(9).getSmartMeterId()).isEqualTo("smart-meter-5");
+        assertThat(anomalyDetector.getRecent(null, null, 3).size()).isEqualTo(3);
+    }
+
+    @Test
+    public void givenSeededReadingsShouldLearnFromThemWithoutRaisingAnything() {
+        List<ElectricityReading> seeded = noisyReadings(0, 100);
+        seeded.add(reading(100, 25.0));
+        seeded.addAll(noisyReadings(110, 10));
+        meterReadingService.seedOnFirstAccess(Collections.singleton(SMART_METER_ID), id -> seeded);
+
+        meterReadingService.storeReadings(SMART_METER_ID, Collections.singletonList(reading(120, 30.0)));
+
+        List<ReadingAnomaly> anomalies = anomalyDetector.getRecent(SMART_METER_ID, null, 100);
+        assertThat(anomalies.size()).isEqualTo(1);
+        assertThat(anomalies.get(0).getType()).isEqualTo(ReadingAnomaly.Type.SPIKE);
+        assertThat(anomalies.get(0).getTime()).isEqualTo(START.plusSeconds(1200));
+    }
+
+    @Test
+    public void givenAdoptedHistoryShouldRaiseNothing() {
+        List<ElectricityReading> handedOver = noisyReadings(0, 50);
+        handedOver.addAll(noisyReadings(100, 50));
+        handedOver.add(reading(150, 25.0));
+
+        meterReadingService.adopt(SMART_METER_ID, new MeterHistory(handedOver, new HashMap<>(), new HashMap<>(),
+                new HashMap<>(), null, null));
+
+        assertThat(anomalyDetector.getRecent(null, null, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenEvictedMeterShouldStartAfreshWhenItReturns() {
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(0, 10));
+        meterReadingService.evict(SMART_METER_ID);
+
+        meterReadingService.storeReadings(SMART_METER_ID, noisyReadings(100, 10));
+
+        assertThat(anomalyDetector.getRecent(null, ReadingAnomaly.Type.GAP, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void givenNoRoomForRecentAnomaliesShouldRefuseToStart() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AnomalyDetector(meterReadingService, 0.1, 6, 0.5, 30, 20, 60, 0));
+    }
+
+    // a 1.5 kW load wobbling by up to 0.1 kW, every 10 seconds
+    private static List<ElectricityReading> noisyReadings(int first, int count) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            readings.add(reading(i, 1.5 + 0.1 * Math.sin(i * 1.3)));
+        }
+        return readings;
+    }
+
+    private static ElectricityReading reading(int index, double kw) {
+        return new ElectricityReading(START.plusSeconds(10L * index), BigDecimal.valueOf(kw));
+    }
+}
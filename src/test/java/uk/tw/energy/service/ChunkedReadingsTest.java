@@ -0,0 +1,112 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChunkedReadingsTest {
+
+    private static final Instant START = Instant.parse("2022-05-01T00:00:00Z");
+
+    private final ChunkedReadings chunkedReadings = new ChunkedReadings();
+
+    @Test
+    public void givenReadingsAppendedAfterSnapshotShouldLeaveSnapshotUnchanged() {
+        chunkedReadings.append(readings(0, 10));
+        List<ElectricityReading> snapshot = chunkedReadings.snapshot();
+
+        chunkedReadings.append(readings(10, 3000));
+
+        assertThat(snapshot.size()).isEqualTo(10);
+        assertThat(snapshot.get(9).getTime()).isEqualTo(START.plusSeconds(9));
+        assertThat(chunkedReadings.snapshot().size()).isEqualTo(3010);
+    }
+
+    @Test
+    public void givenReadingsAcrossManyChunksShouldReadThemBackInOrder() {
+        for (int batch = 0; batch < 50; batch++) {
+            chunkedReadings.append(readings(batch * 100, 100));
+        }
+
+        List<ElectricityReading> snapshot = chunkedReadings.snapshot();
+        assertThat(snapshot.size()).isEqualTo(5000);
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertThat(snapshot.get(i).getTime()).isEqualTo(START.plusSeconds(i));
+        }
+    }
+
+    @Test
+    public void shouldNotAllowSnapshotsToBeModified() {
+        chunkedReadings.append(readings(0, 1));
+        List<ElectricityReading> snapshot = chunkedReadings.snapshot();
+
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(readings(1, 1).get(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1));
+    }
+
+    @Test
+    public void givenOldReadingsRemovedShouldKeepThemInEarlierSnapshots() {
+        chunkedReadings.append(readings(0, 2000));
+        List<ElectricityReading> before = chunkedReadings.snapshot();
+
+        assertThat(chunkedReadings.removeTakenBefore(START.plusSeconds(1500))).isEqualTo(1500);
+
+        assertThat(before.size()).isEqualTo(2000);
+        assertThat(before.get(0).getTime()).isEqualTo(START);
+        assertThat(chunkedReadings.snapshot().size()).isEqualTo(500);
+        assertThat(chunkedReadings.snapshot().get(0).getTime()).isEqualTo(START.plusSeconds(1500));
+        chunkedReadings.append(readings(2000, 1));
+        assertThat(chunkedReadings.snapshot().get(500).getTime()).isEqualTo(START.plusSeconds(2000));
+    }
+
+    @Test
+    public void givenConcurrentWriterEverySnapshotShouldBeACompletePrefix() throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int batch = 0; batch < 2000; batch++) {
+                synchronized (chunkedReadings) {
+                    chunkedReadings.append(readings(batch * 7, 7));
+                }
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        int previousSize = 0;
+        while (!done.get()) {
+            List<ElectricityReading> snapshot = chunkedReadings.snapshot();
+            if (snapshot.size() < previousSize || snapshot.size() % 7 != 0) {
+                errors.add("unexpected size " + snapshot.size());
+            }
+            previousSize = snapshot.size();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (!snapshot.get(i).getTime().equals(START.plusSeconds(i))) {
+                    errors.add("wrong reading at " + i);
+                    break;
+                }
+            }
+        }
+        writer.join();
+
+        assertThat(errors.isEmpty()).isTrue();
+        assertThat(chunkedReadings.snapshot().size()).isEqualTo(14_000);
+    }
+
+    private static List<ElectricityReading> readings(int first, int count) {
+        List<ElectricityReading> readings = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            readings.add(new ElectricityReading(START.plusSeconds(i), BigDecimal.ONE));
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class CostStreamServiceTest {
+
+    private static final String SMART_METER_ID = "smart-meter-id";
+    private static final String PRICE_PLAN_ID = "price-plan";
+
+    private MeterReadingService meterReadingService;
+    private PricePlanService pricePlanService;
+    private CostStreamService costStreamService;
+    private final BlockingQueue<Map<String, BigDecimal>> updates = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        pricePlanService = new PricePlanService(
+                Collections.singletonList(new PricePlan(PRICE_PLAN_ID, null, BigDecimal.TEN, null)), meterReadingService);
+        costStreamService = new CostStreamService(meterReadingService, pricePlanService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        costStreamService.shutdown();
+    }
+
+    @Test
+    public void givenNoReadingsTodayShouldSendEmptyCostsOnSubscription() throws Exception {
+        costStreamService.subscribe(SMART_METER_ID, updates::add);
+
+        assertThat(updates.poll(5, TimeUnit.SECONDS)).isEqualTo(Collections.emptyMap());
+    }
+
+    @Test
+    public void givenReadingsStoredAfterSubscribingShouldSendRunningCost() throws Exception {
+        Instant earlyToday = startOfToday().plusSeconds(3600);
+        meterReadingService.storeReadings(SMART_METER_ID, Collections.singletonList(
+                new ElectricityReading(earlyToday, BigDecimal.valueOf(1.0))));
+        costStreamService.subscribe(SMART_METER_ID, updates::add);
+        updates.poll(5, TimeUnit.SECONDS);
+
+        meterReadingService.storeReadings(SMART_METER_ID, Collections.singletonList(
+                new ElectricityReading(earlyToday.plusSeconds(1800), BigDecimal.valueOf(1.0))));
+
+        assertThat(updates.poll(5, TimeUnit.SECONDS).get(PRICE_PLAN_ID)).isEqualTo(BigDecimal.valueOf(20.0));
+    }
+
+    @Test
+    public void givenCancelledSubscriptionShouldStopSendingUpdates() throws Exception {
+        Runnable unsubscribe = costStreamService.subscribe(SMART_METER_ID, updates::add);
+        updates.poll(5, TimeUnit.SECONDS);
+
+        unsubscribe.run();
+        Instant earlyToday = startOfToday().plusSeconds(3600);
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(earlyToday, BigDecimal.ONE),
+                new ElectricityReading(earlyToday.plusSeconds(1800), BigDecimal.ONE)));
+
+        assertThat(updates.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void shouldSendTheSameCostsAsTodaysCostsSoFar() throws Exception {
+        costStreamService.subscribe(SMART_METER_ID, updates::add);
+        updates.poll(5, TimeUnit.SECONDS);
+        Instant earlyToday = startOfToday().plusSeconds(60);
+
+        // the last reading is ahead of the clock, so neither counts it yet
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(earlyToday, BigDecimal.valueOf(1.0)),
+                new ElectricityReading(earlyToday.plusSeconds(60), BigDecimal.valueOf(2.0)),
+                new ElectricityReading(Instant.now().plusSeconds(600), BigDecimal.valueOf(50.0))));
+
+        assertThat(updates.poll(5, TimeUnit.SECONDS))
+                .isEqualTo(pricePlanService.getConsumptionCostOfElectricityReadingsDayOfWeek(SMART_METER_ID, LocalDate.now()));
+    }
+
+    // readings half an hour before now would fall yesterday just after midnight
+    private static Instant startOfToday() {
+        return LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
+}
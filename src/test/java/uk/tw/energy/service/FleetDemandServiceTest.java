@@ -0,0 +1,210 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterHistory;
+import uk.tw.energy.shard.DemandTotals;
+import uk.tw.energy.shard.ShardClient;
+import uk.tw.energy.shard.ShardRouter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FleetDemandServiceTest {
+
+    private static final String PRICE_PLAN_1_ID = "price-plan-1";
+    private static final String PRICE_PLAN_2_ID = "price-plan-2";
+
+    private MeterReadingService meterReadingService;
+    private FleetDemandService fleetDemandService;
+    private Instant minute;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        Map<String, String> meterToPricePlan = new HashMap<>();
+        meterToPricePlan.put("smart-meter-0", PRICE_PLAN_1_ID);
+        meterToPricePlan.put("smart-meter-1", PRICE_PLAN_1_ID);
+        meterToPricePlan.put("smart-meter-2", PRICE_PLAN_2_ID);
+        fleetDemandService = new FleetDemandService(meterReadingService, new AccountService(meterToPricePlan), Duration.ofHours(1));
+        minute = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(Duration.ofMinutes(10));
+    }
+
+    @Test
+    public void shouldSumMetersInEachTenSecondSlotByPricePlan() {
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 2.0));
+        meterReadingService.storeReadings("smart-meter-1", readings(minute, 0.5, 0.5));
+        meterReadingService.storeReadings("smart-meter-2", readings(minute, 3.25));
+
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand =
+                fleetDemandService.getDemand(minute, minute.plusSeconds(30), Duration.ofSeconds(10));
+
+        assertThat(demand.size()).isEqualTo(3);
+        Map<String, FleetDemandService.Demand> first = demand.get(minute);
+        assertThat(first.get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("1.500"));
+        assertThat(first.get(PRICE_PLAN_1_ID).getReadings()).isEqualTo(2L);
+        assertThat(first.get(PRICE_PLAN_2_ID).getKilowatts()).isEqualTo(new BigDecimal("3.250"));
+        assertThat(demand.get(minute.plusSeconds(10)).get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("2.500"));
+        assertThat(demand.get(minute.plusSeconds(10)).containsKey(PRICE_PLAN_2_ID)).isFalse();
+        assertThat(demand.get(minute.plusSeconds(20)).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldAverageSlotsOverLongerBuckets() {
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1, 2, 3, 4, 5, 6, 7));
+
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand =
+                fleetDemandService.getDemand(minute.plusSeconds(5), minute.plusSeconds(65), Duration.ofMinutes(1));
+
+        assertThat(demand.size()).isEqualTo(2);
+        assertThat(demand.get(minute).get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("3.500"));
+        assertThat(demand.get(minute.plusSeconds(60)).get(PRICE_PLAN_1_ID).getReadings()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldKeepMetersWithoutAPricePlanSeparately() {
+        meterReadingService.storeReadings("unassigned-meter", readings(minute, 2.0));
+
+        assertThat(fleetDemandService.getDemand(minute, minute.plusSeconds(10), Duration.ofSeconds(10)).get(minute)
+                .get(FleetDemandService.NO_PRICE_PLAN).getKilowatts()).isEqualTo(new BigDecimal("2.000"));
+    }
+
+    @Test
+    public void shouldIgnoreReadingsOutsideTheWindow() {
+        Instant twoHoursAgo = minute.minus(Duration.ofHours(2));
+        meterReadingService.storeReadings("smart-meter-0", readings(twoHoursAgo, 5.0));
+        meterReadingService.storeReadings("smart-meter-0", readings(Instant.now().plus(Duration.ofDays(1)), 5.0));
+
+        assertThat(fleetDemandService.getDemand(twoHoursAgo, twoHoursAgo.plusSeconds(10), Duration.ofSeconds(10))
+                .get(twoHoursAgo).isEmpty()).isTrue();
+        assertThat(fleetDemandService.getDemand(minute.minus(Duration.ofMinutes(50)), minute.plus(Duration.ofMinutes(10)),
+                Duration.ofMinutes(1)).values().stream().allMatch(Map::isEmpty)).isTrue();
+    }
+
+    @Test
+    public void shouldNotCountReadingsFromAnEarlierLapOfTheRing() {
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 4.0));
+
+        assertThat(fleetDemandService.getDemand(minute.minus(Duration.ofHours(1)), minute.minus(Duration.ofHours(1)).plusSeconds(10),
+                Duration.ofSeconds(10)).values().iterator().next().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldRefuseBucketsThatAreNotWholeSlots() {
+        assertThrows(IllegalArgumentException.class,
+                () -> fleetDemandService.getDemand(minute, minute.plusSeconds(60), Duration.ofSeconds(15)));
+    }
+
+    @Test
+    public void shouldCountEachMeterOncePerSlot() {
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 2.0));
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 2.0));
+        meterReadingService.storeReadings("smart-meter-0", Collections.singletonList(
+                new ElectricityReading(minute.plusSeconds(15), BigDecimal.TEN)));
+
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand =
+                fleetDemandService.getDemand(minute, minute.plusSeconds(20), Duration.ofSeconds(10));
+
+        assertThat(demand.get(minute).get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("1.000"));
+        assertThat(demand.get(minute.plusSeconds(10)).get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("2.000"));
+        assertThat(demand.get(minute.plusSeconds(10)).get(PRICE_PLAN_1_ID).getReadings()).isEqualTo(1L);
+    }
+
+    @Test
+    public void shouldCountReadingsArrivingOutOfOrderOncePerSlot() {
+        meterReadingService.storeReadings("smart-meter-0", readings(minute.plusSeconds(20), 3.0));
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 2.0));
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 2.0, 3.0));
+
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand =
+                fleetDemandService.getDemand(minute, minute.plusSeconds(30), Duration.ofSeconds(10));
+
+        for (int slot = 0; slot < 3; slot++) {
+            Map<String, FleetDemandService.Demand> counted = demand.get(minute.plusSeconds(10L * slot));
+            assertThat(counted.get(PRICE_PLAN_1_ID).getReadings()).isEqualTo(1L);
+            assertThat(counted.get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal(slot + 1 + ".000"));
+        }
+    }
+
+    @Test
+    public void shouldNotCountReadingsOfAMeterHandedOverFromAnotherNode() {
+        meterReadingService.adopt("smart-meter-0", new MeterHistory(readings(minute, 1.0, 2.0), new HashMap<>(),
+                new HashMap<>(), new HashMap<>(), null, null));
+
+        assertThat(fleetDemandService.getDemand(minute, minute.plusSeconds(20), Duration.ofSeconds(10)).values().stream()
+                .allMatch(Map::isEmpty)).isTrue();
+    }
+
+    @Test
+    public void givenConcurrentIngestShouldCountEachMeterOncePerSlot() throws InterruptedException {
+        // two threads per meter send it the same readings, so every slot is sent twice
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            String smartMeterId = "concurrent-meter-" + t / 2;
+            threads[t] = new Thread(() -> {
+                for (int slot = 0; slot < 30; slot++) {
+                    meterReadingService.storeReadings(smartMeterId, Collections.singletonList(
+                            new ElectricityReading(minute.plusSeconds(10L * slot), BigDecimal.ONE)));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<Instant, Map<String, FleetDemandService.Demand>> demand =
+                fleetDemandService.getDemand(minute, minute.plusSeconds(300), Duration.ofSeconds(10));
+        assertThat(demand.size()).isEqualTo(30);
+        for (Map<String, FleetDemandService.Demand> slot : demand.values()) {
+            assertThat(slot.get(FleetDemandService.NO_PRICE_PLAN).getReadings()).isEqualTo(4L);
+            assertThat(slot.get(FleetDemandService.NO_PRICE_PLAN).getKilowatts()).isEqualTo(new BigDecimal("4.000"));
+        }
+    }
+
+    @Test
+    public void givenShardsShouldAddUpTheDemandOfEveryNode() {
+        MeterReadingService peerReadingService = new MeterReadingService(new HashMap<>());
+        FleetDemandService peerDemandService = new FleetDemandService(peerReadingService,
+                new AccountService(Collections.singletonMap("smart-meter-2", PRICE_PLAN_2_ID)), Duration.ofHours(1));
+        ShardClient shardClient = new ShardClient((RestTemplate) null) {
+            @Override
+            public List<Map<Instant, Map<String, FleetDemandService.Demand>>> gatherDemand(List<String> peers,
+                                                                                            Instant from, Instant to, Duration bucket) {
+                return Collections.singletonList(DemandTotals.of(peerDemandService.getDemand(from, to, bucket), 6).toDemand());
+            }
+        };
+        ShardRouter shardRouter = new ShardRouter("http://localhost:8081", "http://localhost:8081,http://localhost:8082", 128);
+        fleetDemandService = new FleetDemandService(meterReadingService, new AccountService(Collections.singletonMap(
+                "smart-meter-0", PRICE_PLAN_1_ID)), shardRouter, shardClient, Duration.ofHours(1));
+        meterReadingService.storeReadings("smart-meter-0", readings(minute, 1.0, 3.0));
+        peerReadingService.storeReadings("smart-meter-2", readings(minute, 2.0, 2.0, 2.0));
+
+        Map<String, FleetDemandService.Demand> demand =
+                fleetDemandService.getFleetDemand(minute, minute.plusSeconds(60), Duration.ofMinutes(1)).get(minute);
+
+        assertThat(demand.get(PRICE_PLAN_1_ID).getKilowatts()).isEqualTo(new BigDecimal("0.667"));
+        assertThat(demand.get(PRICE_PLAN_2_ID).getKilowatts()).isEqualTo(new BigDecimal("1.000"));
+        assertThat(demand.get(PRICE_PLAN_2_ID).getReadings()).isEqualTo(3L);
+    }
+
+    private static List<ElectricityReading> readings(Instant start, double... kilowatts) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int i = 0; i < kilowatts.length; i++) {
+            readings.add(new ElectricityReading(start.plusSeconds(10L * i), BigDecimal.valueOf(kilowatts[i])));
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,68 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.QuantileSketch;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class LoadProfileServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2022, 5, 2);
+
+    private LoadProfileService loadProfileService;
+
+    @BeforeEach
+    public void setUp() {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        Map<String, String> accounts = new HashMap<>();
+        accounts.put("low-meter", "plan-a");
+        accounts.put("high-meter", "plan-b");
+        loadProfileService = new LoadProfileService(meterReadingService, new AccountService(accounts));
+        meterReadingService.storeReadings("low-meter", readings(1));
+        meterReadingService.storeReadings("high-meter", readings(100));
+    }
+
+    @Test
+    public void givenMeterShouldReturnOneSketchPerDay() {
+        Map<LocalDate, QuantileSketch> profile = loadProfileService.getDailyLoadProfile("low-meter", DAY, DAY.plusDays(1));
+
+        assertThat(profile.size()).isEqualTo(1);
+        assertThat(profile.get(DAY).getCount()).isEqualTo(100L);
+    }
+
+    @Test
+    public void shouldMergeEveryMeterForFleetProfile() {
+        QuantileSketch fleet = loadProfileService.getFleetLoadProfile(DAY, DAY, null);
+
+        assertThat(fleet.getCount()).isEqualTo(200L);
+        assertThat(fleet.quantile(0.99)).isBetween(97.0, 99.0);
+    }
+
+    @Test
+    public void givenPricePlanShouldOnlyMergeItsMeters() {
+        QuantileSketch planA = loadProfileService.getFleetLoadProfile(DAY, DAY, "plan-a");
+
+        assertThat(planA.getCount()).isEqualTo(100L);
+        assertThat(planA.quantile(1)).isLessThan(1.1);
+    }
+
+    private static List<ElectricityReading> readings(int scale) {
+        Instant noon = DAY.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant();
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            readings.add(new ElectricityReading(noon.plusSeconds(i * 10L), BigDecimal.valueOf(i * scale, 2)));
+        }
+        return readings;
+    }
+}
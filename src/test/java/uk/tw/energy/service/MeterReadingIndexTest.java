@@ -0,0 +1,148 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class MeterReadingIndexTest {
+
+    private static final Instant START = Instant.parse("2022-03-27T00:00:00Z");
+
+    private final List<ElectricityReading> readings = new ArrayList<>();
+    private MeterReadingIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        Random random = new Random(7);
+        for (int i = 0; i < 3 * 24 * 360; i++) {
+            readings.add(new ElectricityReading(START.plusSeconds(i * 10L + random.nextInt(10)),
+                    BigDecimal.valueOf(random.nextInt(10_000), 4)));
+        }
+        index = new MeterReadingIndex();
+        index.add(readings);
+    }
+
+    @Test
+    public void givenRangesShouldSummariseTheSameAsScanningEveryReading() {
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            Instant from = START.plusMillis(random.nextInt(3 * 86_400_000));
+            Instant to = from.plusMillis(random.nextInt(86_400_000));
+            assertSameSummary(index.summarize(from, to, readings), scan(from, to));
+        }
+    }
+
+    @Test
+    public void givenReadingsStoredOutOfTimeOrderShouldSummariseTheSameAsScanningEveryReading() {
+        Collections.shuffle(readings, new Random(5));
+        index = new MeterReadingIndex();
+        index.add(readings);
+
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            Instant from = START.plusMillis(random.nextInt(3 * 86_400_000));
+            Instant to = from.plusMillis(random.nextInt(86_400_000));
+            assertSameSummary(index.summarize(from, to, readings), scan(from, to));
+        }
+    }
+
+    @Test
+    public void givenAlignedRangeShouldSummariseWholeHoursAndMinutes() {
+        Instant from = START.plusSeconds(3600);
+        Instant to = START.plusSeconds(5 * 3600 + 17 * 60);
+
+        assertSameSummary(index.summarize(from, to, readings), scan(from, to));
+    }
+
+    @Test
+    public void givenRangeWithinOneMinuteShouldOnlyIncludeReadingsInRange() {
+        Instant from = START.plusSeconds(125);
+        Instant to = START.plusSeconds(150);
+
+        assertSameSummary(index.summarize(from, to, readings), scan(from, to));
+    }
+
+    @Test
+    public void givenEmptyRangeShouldReturnEmptySummary() {
+        assertThat(index.summarize(START, START, readings).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldSummariseEveryReading() {
+        assertSameSummary(index.summarize(), ReadingsSummary.of(readings));
+    }
+
+    @Test
+    public void givenCompactedTiersShouldSummariseRangesAlignedToEachTiersResolutionExactly() {
+        ReadingsSummary total = index.summarize();
+        index.compact(START.plus(2, ChronoUnit.DAYS), START.plus(1, ChronoUnit.DAYS));
+
+        Random random = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            Instant from = alignToTier(START.plusMillis(random.nextInt(3 * 86_400_000)));
+            Instant to = alignToTier(from.plusMillis(random.nextInt(86_400_000)));
+            assertSameSummary(index.summarize(from, to, readings), scan(from, to));
+        }
+        assertSameSummary(index.summarize(), total);
+    }
+
+    @Test
+    public void givenReadingForCompactedHourShouldStillBeSummarised() {
+        index.compact(START.plus(2, ChronoUnit.DAYS), START.plus(1, ChronoUnit.DAYS));
+        ElectricityReading late = new ElectricityReading(START.plusSeconds(3 * 3600 + 5), BigDecimal.valueOf(5));
+        readings.add(late);
+        index.add(Collections.singletonList(late));
+
+        assertSameSummary(index.summarize(START.plusSeconds(3 * 3600), START.plusSeconds(4 * 3600), readings),
+                scan(START.plusSeconds(3 * 3600), START.plusSeconds(4 * 3600)));
+        assertSameSummary(index.summarize(), ReadingsSummary.of(readings));
+    }
+
+    @Test
+    public void givenCutoffMovingBackShouldKeepEarlierCompaction() {
+        index.compact(START.plus(2, ChronoUnit.DAYS), START.plus(1, ChronoUnit.DAYS));
+        index.compact(START, START);
+
+        Instant from = START.plusSeconds(3600 + 30);
+        Instant to = START.plusSeconds(3600 + 45);
+        assertThat(index.summarize(from, to, readings).getCount()).isEqualTo(0L);
+    }
+
+    // hour tier before the first day, minute tier before the second, raw readings after
+    private static Instant alignToTier(Instant time) {
+        if (time.isBefore(START.plus(1, ChronoUnit.DAYS))) {
+            return time.truncatedTo(ChronoUnit.HOURS);
+        }
+        if (time.isBefore(START.plus(2, ChronoUnit.DAYS))) {
+            return time.truncatedTo(ChronoUnit.MINUTES);
+        }
+        return time;
+    }
+
+    private ReadingsSummary scan(Instant from, Instant to) {
+        return ReadingsSummary.of(readings.stream()
+                .filter(reading -> !reading.getTime().isBefore(from) && reading.getTime().isBefore(to))
+                .collect(Collectors.toList()));
+    }
+
+    private static void assertSameSummary(ReadingsSummary actual, ReadingsSummary expected) {
+        assertThat(actual.getCount()).isEqualTo(expected.getCount());
+        assertThat(actual.getSum()).isEqualTo(expected.getSum());
+        assertThat(actual.getFirst()).isEqualTo(expected.getFirst());
+        assertThat(actual.getLast()).isEqualTo(expected.getLast());
+        assertThat(actual.getMin()).isEqualTo(expected.getMin());
+        assertThat(actual.getMax()).isEqualTo(expected.getMax());
+    }
+}
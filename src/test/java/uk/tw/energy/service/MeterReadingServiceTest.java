@@ -2,10 +2,17 @@ package uk.tw.energy.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.ElectricityReading;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -28,4 +35,93 @@ public class MeterReadingServiceTest {
         meterReadingService.storeReadings("random-id", new ArrayList<>());
         assertThat(meterReadingService.getReadings("random-id")).isEqualTo(Optional.of(new ArrayList<>()));
     }
+
+    @Test
+    public void givenReadingsStoredAfterReadShouldNotChangeReadingsAlreadyReturned() {
+        meterReadingService.storeReadings("random-id", new MeterReadingsBuilder().generateElectricityReadings(5).build().getElectricityReadings());
+        List<ElectricityReading> readings = meterReadingService.getReadings("random-id");
+
+        meterReadingService.storeReadings("random-id", new MeterReadingsBuilder().generateElectricityReadings(3).build().getElectricityReadings());
+
+        assertThat(readings.size()).isEqualTo(5);
+        assertThat(meterReadingService.getReadings("random-id").size()).isEqualTo(8);
+    }
+
+    @Test
+    public void givenNegativeReadingStoredDirectlyShouldKeepTheIndexInStepWithTheReadings() {
+        List<ElectricityReading> readings = Arrays.asList(
+                new ElectricityReading(Instant.parse("2024-01-08T00:00:00Z"), BigDecimal.ONE),
+                new ElectricityReading(Instant.parse("2024-01-08T00:01:00Z"), BigDecimal.valueOf(-1)));
+        long version = meterReadingService.getVersion("random-id");
+
+        meterReadingService.storeReadings("random-id", readings);
+
+        assertThat(meterReadingService.getReadings("random-id")).isEqualTo(readings);
+        assertThat(meterReadingService.summarize("random-id").getCount()).isEqualTo(2L);
+        assertThat(meterReadingService.getVersion("random-id")).isGreaterThan(version);
+    }
+
+    @Test
+    public void givenMeterEvictedShouldReturnItsReadingsAndForgetThem() {
+        List<ElectricityReading> readings = new MeterReadingsBuilder().generateElectricityReadings(5).build().getElectricityReadings();
+        meterReadingService.storeReadings("random-id", readings);
+        long version = meterReadingService.getVersion("random-id");
+
+        assertThat(meterReadingService.evict("random-id")).isEqualTo(readings);
+
+        assertThat(meterReadingService.getReadings("random-id")).isNull();
+        assertThat(meterReadingService.getSmartMeterIds().contains("random-id")).isFalse();
+        assertThat(meterReadingService.getStoredReadingsCount()).isEqualTo(0L);
+        assertThat(meterReadingService.getVersion("random-id")).isGreaterThan(version);
+    }
+
+    @Test
+    public void givenMeterSeededOnFirstAccessShouldOnlyGenerateItsReadingsWhenFirstRead() {
+        List<ElectricityReading> seeded = new MeterReadingsBuilder().generateElectricityReadings(5).build().getElectricityReadings();
+        AtomicInteger seedings = new AtomicInteger();
+        meterReadingService.seedOnFirstAccess(Arrays.asList("seeded-id", "other-id"), smartMeterId -> {
+            seedings.incrementAndGet();
+            return seeded;
+        });
+
+        assertThat(seedings.get()).isEqualTo(0);
+        assertThat(meterReadingService.getSmartMeterIds().isEmpty()).isTrue();
+
+        assertThat(meterReadingService.getReadings("seeded-id")).isEqualTo(seeded);
+        assertThat(meterReadingService.getReadings("seeded-id")).isEqualTo(seeded);
+        assertThat(seedings.get()).isEqualTo(1);
+        assertThat(meterReadingService.getSmartMeterIds().contains("seeded-id")).isTrue();
+        assertThat(meterReadingService.getUnseededSmartMeterIds().contains("other-id")).isTrue();
+        assertThat(meterReadingService.getStoredReadingsCount()).isEqualTo(5L);
+    }
+
+    @Test
+    public void givenReadingsStoredForUnseededMeterShouldStoreThemAfterItsSeededReadings() {
+        List<ElectricityReading> seeded = new MeterReadingsBuilder().generateElectricityReadings(5).build().getElectricityReadings();
+        List<ElectricityReading> stored = new MeterReadingsBuilder().generateElectricityReadings(3).build().getElectricityReadings();
+        meterReadingService.seedOnFirstAccess(Arrays.asList("seeded-id"), smartMeterId -> seeded);
+
+        meterReadingService.storeReadings("seeded-id", stored);
+
+        List<ElectricityReading> readings = meterReadingService.getReadings("seeded-id");
+        assertThat(readings.subList(0, 5)).isEqualTo(seeded);
+        assertThat(readings.subList(5, 8)).isEqualTo(stored);
+        assertThat(meterReadingService.seed("seeded-id")).isFalse();
+    }
+
+    @Test
+    public void givenReadingsCompactedShouldEstimateLessMemoryThanWhenRaw() {
+        Instant start = Instant.parse("2024-01-08T00:00:00Z");
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int second = 0; second < 6 * 3600; second += 10) {
+            readings.add(new ElectricityReading(start.plusSeconds(second), BigDecimal.ONE));
+        }
+        meterReadingService.storeReadings("random-id", readings);
+        long raw = meterReadingService.getEstimatedMemoryBytes();
+
+        meterReadingService.compact("random-id", start.plusSeconds(6 * 3600), start.plusSeconds(3 * 3600));
+
+        assertThat(raw).isGreaterThan(readings.size() * MeterReadingService.ESTIMATED_BYTES_PER_READING);
+        assertThat(meterReadingService.getEstimatedMemoryBytes()).isLessThan(raw / 4);
+    }
 }
@@ -0,0 +1,71 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.ReadingsSummary;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReadingCompactorTest {
+
+    private static final Instant START = Instant.parse("2022-03-01T00:00:00Z");
+    private static final Instant NOW = START.plus(3, ChronoUnit.DAYS);
+
+    private MeterReadingService meterReadingService;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (int i = 0; i < 3 * 24 * 360; i++) {
+            readings.add(new ElectricityReading(START.plusSeconds(i * 10L), BigDecimal.valueOf(i % 100, 2)));
+        }
+        meterReadingService.storeReadings("smart-meter-0", readings);
+    }
+
+    @Test
+    public void givenReadingsOlderThanRawRetentionShouldDropThemAndKeepTheirSummaries() {
+        ReadingsSummary before = meterReadingService.summarize("smart-meter-0");
+        ReadingsSummary secondDay = meterReadingService.summarize("smart-meter-0", START.plus(1, ChronoUnit.DAYS), START.plus(2, ChronoUnit.DAYS));
+        long version = meterReadingService.getVersion("smart-meter-0");
+
+        long dropped = new ReadingCompactor(meterReadingService, 1, 2, 300).compactAll(NOW);
+
+        assertThat(dropped).isEqualTo(2 * 24 * 360L);
+        assertThat(meterReadingService.getReadings("smart-meter-0").size()).isEqualTo(24 * 360);
+        assertThat(meterReadingService.getStoredReadingsCount()).isEqualTo(24 * 360L);
+        assertThat(meterReadingService.getVersion("smart-meter-0")).isGreaterThan(version);
+        assertThat(meterReadingService.summarize("smart-meter-0").getSum()).isEqualTo(before.getSum());
+        assertThat(meterReadingService.summarize("smart-meter-0", START.plus(1, ChronoUnit.DAYS), START.plus(2, ChronoUnit.DAYS)).getSum())
+                .isEqualTo(secondDay.getSum());
+    }
+
+    @Test
+    public void givenNothingOlderThanRetentionShouldDropNothing() {
+        ReadingCompactor compactor = new ReadingCompactor(meterReadingService, 1, 2, 300);
+        compactor.compactAll(NOW);
+
+        assertThat(compactor.compactAll(NOW)).isEqualTo(0L);
+        assertThat(meterReadingService.hasReadings("smart-meter-0")).isTrue();
+    }
+
+    @Test
+    public void givenRetentionDisabledShouldKeepEveryReading() {
+        assertThat(new ReadingCompactor(meterReadingService, 0, 30, 300).compactAll(NOW)).isEqualTo(0L);
+        assertThat(meterReadingService.getStoredReadingsCount()).isEqualTo(3 * 24 * 360L);
+    }
+
+    @Test
+    public void givenMinuteTierShorterThanRawTierShouldRefuse() {
+        assertThrows(IllegalArgumentException.class, () -> new ReadingCompactor(meterReadingService, 7, 1, 300));
+    }
+}
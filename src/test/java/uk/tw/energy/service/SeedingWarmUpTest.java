@@ -0,0 +1,83 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class SeedingWarmUpTest {
+
+    @Test
+    public void shouldBeOutOfServiceUntilEveryMeterIsSeeded() throws InterruptedException {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        List<ElectricityReading> seeded = new MeterReadingsBuilder().generateElectricityReadings(2).build().getElectricityReadings();
+        SeedingWarmUp warmUp = new SeedingWarmUp(meterReadingService, smartMeterIds(1000), smartMeterId -> seeded, 4);
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+        assertThat(warmUp.health().getDetails().get("unseeded")).isEqualTo(1000);
+
+        warmUp.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (warmUp.health().getStatus().equals(Status.OUT_OF_SERVICE) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(meterReadingService.getSmartMeterIds().size()).isEqualTo(1000);
+        assertThat(meterReadingService.getStoredReadingsCount()).isEqualTo(2000L);
+    }
+
+    @Test
+    public void shouldReportMetersThatFailedToSeedWithoutStayingOutOfService() throws InterruptedException {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        AtomicBoolean broken = new AtomicBoolean(true);
+        SeedingWarmUp warmUp = new SeedingWarmUp(meterReadingService, smartMeterIds(10), smartMeterId -> {
+            if (smartMeterId.equals("smart-meter-3") && broken.get()) {
+                throw new IllegalStateException("seed store unavailable");
+            }
+            return new ArrayList<>();
+        }, 2);
+
+        warmUp.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (warmUp.health().getStatus().equals(Status.OUT_OF_SERVICE) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmUp.health().getDetails().get("unseeded")).isEqualTo(1);
+        assertThat(warmUp.health().getDetails().get("failed")).isEqualTo(1);
+
+        broken.set(false);
+        meterReadingService.getReadings("smart-meter-3");
+
+        assertThat(warmUp.health().getDetails().get("failed")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldLeaveMetersToFirstAccessWithoutWarmUpThreads() {
+        MeterReadingService meterReadingService = new MeterReadingService(new HashMap<>());
+        SeedingWarmUp warmUp = new SeedingWarmUp(meterReadingService, smartMeterIds(10), smartMeterId -> new ArrayList<>(), 0);
+
+        warmUp.start();
+
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(meterReadingService.getUnseededSmartMeterIds().size()).isEqualTo(10);
+    }
+
+    private static List<String> smartMeterIds(int count) {
+        List<String> smartMeterIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            smartMeterIds.add("smart-meter-" + i);
+        }
+        return smartMeterIds;
+    }
+}
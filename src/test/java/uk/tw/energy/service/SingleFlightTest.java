@@ -0,0 +1,83 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void givenConcurrentCallersForTheSameKeyShouldComputeOnce() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    return singleFlight.execute("meter", () -> {
+                        computations.incrementAndGet();
+                        awaitQuietly(release);
+                        return 42;
+                    });
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(computations.get()).isEqualTo(1);
+        assertThat(singleFlight.inFlightCount()).isEqualTo(0);
+        assertThat(singleFlight.computedCount()).isEqualTo(1L);
+        assertThat(singleFlight.coalescedCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void givenSequentialCallersShouldComputeEachTime() {
+        AtomicInteger computations = new AtomicInteger();
+
+        singleFlight.execute("meter", computations::incrementAndGet);
+        singleFlight.execute("meter", computations::incrementAndGet);
+
+        assertThat(computations.get()).isEqualTo(2);
+        assertThat(singleFlight.computedCount()).isEqualTo(2L);
+        assertThat(singleFlight.coalescedCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void givenFailingComputationShouldPropagateAndForgetKey() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("meter", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertThat(singleFlight.execute("meter", () -> 1)).isEqualTo(1);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
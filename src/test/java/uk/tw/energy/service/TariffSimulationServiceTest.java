@@ -0,0 +1,154 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.LoadShift;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.domain.SimulationScenario;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TariffSimulationServiceTest {
+
+    private static final String FLAT_PRICE_PLAN_ID = "flat";
+    private static final String TIME_OF_USE_PRICE_PLAN_ID = "time-of-use";
+    private static final String SMART_METER_ID = "smart-meter-0";
+    private static final Instant MONDAY = Instant.parse("2024-01-08T00:00:00Z");
+    private static final LoadShift.Band EVENING = new LoadShift.Band(LocalTime.of(17, 0), LocalTime.of(21, 0));
+    private static final LoadShift.Band NIGHT = new LoadShift.Band(LocalTime.MIDNIGHT, LocalTime.of(7, 0));
+
+    private MeterReadingService meterReadingService;
+    private TariffSimulationService tariffSimulationService;
+
+    @BeforeEach
+    public void setUp() {
+        List<PricePlan.PeakTimeMultiplier> multipliers = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            multipliers.add(new PricePlan.PeakTimeMultiplier(day, EVENING.getStart(), EVENING.getEnd(), BigDecimal.valueOf(3)));
+            multipliers.add(new PricePlan.PeakTimeMultiplier(day, NIGHT.getStart(), NIGHT.getEnd(), new BigDecimal("0.5")));
+        }
+        List<PricePlan> pricePlans = Arrays.asList(
+                new PricePlan(FLAT_PRICE_PLAN_ID, null, BigDecimal.ONE, emptyList()),
+                new PricePlan(TIME_OF_USE_PRICE_PLAN_ID, null, BigDecimal.ONE, multipliers));
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        tariffSimulationService = new TariffSimulationService(pricePlans, meterReadingService, ZoneOffset.UTC);
+    }
+
+    @Test
+    public void shouldPriceEachReadingAtTheRateForItsTimeOfDay() {
+        meterReadingService.storeReadings(SMART_METER_ID, everyMinute(MONDAY.plus(Duration.ofHours(17)), Duration.ofHours(4), 1.0));
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID, scenario(null, null));
+
+        assertThat(simulation.getKilowattHours()).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(simulation.getShiftedKilowattHours()).isEqualTo(new BigDecimal("0.0000"));
+        assertThat(simulation.getBaselineCosts().get(FLAT_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(simulation.getBaselineCosts().get(TIME_OF_USE_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("12.0000"));
+        assertThat(simulation.getSimulatedCosts()).isEqualTo(simulation.getBaselineCosts());
+    }
+
+    @Test
+    public void shouldMoveTheShareOfEveningLoadIntoTheFollowingNight() {
+        meterReadingService.storeReadings(SMART_METER_ID, everyMinute(MONDAY.plus(Duration.ofHours(17)), Duration.ofHours(4), 1.0));
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(null, null, new LoadShift(EVENING, NIGHT, BigDecimal.valueOf(50))));
+
+        assertThat(simulation.getShiftedKilowattHours()).isEqualTo(new BigDecimal("2.0000"));
+        assertThat(simulation.getSimulatedCosts().get(FLAT_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(simulation.getSimulatedCosts().get(TIME_OF_USE_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("7.0000"));
+    }
+
+    @Test
+    public void shouldMoveSundayEveningLoadIntoMondayMorning() {
+        Instant sunday = MONDAY.minus(Duration.ofDays(1));
+        meterReadingService.storeReadings(SMART_METER_ID, everyMinute(sunday.plus(Duration.ofHours(17)), Duration.ofHours(4), 1.0));
+        List<PricePlan.PeakTimeMultiplier> mondayNightOnly = singletonList(
+                new PricePlan.PeakTimeMultiplier(DayOfWeek.MONDAY, NIGHT.getStart(), NIGHT.getEnd(), BigDecimal.ZERO));
+        tariffSimulationService = new TariffSimulationService(
+                singletonList(new PricePlan(TIME_OF_USE_PRICE_PLAN_ID, null, BigDecimal.ONE, mondayNightOnly)),
+                meterReadingService, ZoneOffset.UTC);
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(null, null, new LoadShift(EVENING, NIGHT, BigDecimal.valueOf(100))));
+
+        assertThat(simulation.getBaselineCosts().get(TIME_OF_USE_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(simulation.getSimulatedCosts().get(TIME_OF_USE_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("0.0000"));
+    }
+
+    @Test
+    public void shouldOnlyCountReadingsInTheWindow() {
+        meterReadingService.storeReadings(SMART_METER_ID, everyMinute(MONDAY.plus(Duration.ofHours(17)), Duration.ofHours(4), 1.0));
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(MONDAY.plus(Duration.ofHours(18)), MONDAY.plus(Duration.ofHours(19)).plusSeconds(30)));
+
+        assertThat(simulation.getKilowattHours()).isEqualTo(new BigDecimal("1.0083"));
+    }
+
+    @Test
+    public void shouldNotCountEnergyAcrossLongGaps() {
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(MONDAY, BigDecimal.ONE),
+                new ElectricityReading(MONDAY.plus(Duration.ofHours(2)), BigDecimal.ONE),
+                new ElectricityReading(MONDAY.plus(Duration.ofHours(2)).plusSeconds(36), BigDecimal.ONE)));
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID, scenario(null, null));
+
+        assertThat(simulation.getKilowattHours()).isEqualTo(new BigDecimal("0.0100"));
+    }
+
+    @Test
+    public void shouldPriceCompactedPeriodsFromTheirSummaries() {
+        meterReadingService.storeReadings(SMART_METER_ID, everyMinute(MONDAY.plus(Duration.ofHours(17)), Duration.ofHours(4), 1.0));
+        meterReadingService.compact(SMART_METER_ID, MONDAY.plus(Duration.ofHours(19)), MONDAY.plus(Duration.ofHours(18)));
+
+        TariffSimulationService.Simulation simulation = tariffSimulationService.simulate(SMART_METER_ID, scenario(null, null));
+
+        assertThat(simulation.getKilowattHours()).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(simulation.getBaselineCosts().get(TIME_OF_USE_PRICE_PLAN_ID)).isEqualTo(new BigDecimal("12.0000"));
+    }
+
+    @Test
+    public void shouldReturnNullForAnUnknownMeter() {
+        assertThat(tariffSimulationService.simulate(SMART_METER_ID, scenario(null, null))).isNull();
+    }
+
+    @Test
+    public void shouldRejectShiftsOfNoMoreThanNothingOrOverEverything() {
+        assertThrows(IllegalArgumentException.class, () -> tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(null, null, new LoadShift(EVENING, NIGHT, BigDecimal.ZERO))));
+        assertThrows(IllegalArgumentException.class, () -> tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(null, null, new LoadShift(EVENING, NIGHT, BigDecimal.valueOf(101)))));
+        assertThrows(IllegalArgumentException.class, () -> tariffSimulationService.simulate(SMART_METER_ID,
+                scenario(null, null, new LoadShift(EVENING, new LoadShift.Band(NIGHT.getStart(), NIGHT.getStart()), BigDecimal.TEN))));
+    }
+
+    private static SimulationScenario scenario(Instant from, Instant to, LoadShift... shifts) {
+        return new SimulationScenario(from, to, Arrays.asList(shifts));
+    }
+
+    // readings a minute apart from start to start + duration inclusive, so the last one closes the final minute
+    private static List<ElectricityReading> everyMinute(Instant start, Duration duration, double kilowatts) {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (long minute = 0; minute <= duration.toMinutes(); minute++) {
+            readings.add(new ElectricityReading(start.plus(Duration.ofMinutes(minute)), BigDecimal.valueOf(kilowatts)));
+        }
+        return readings;
+    }
+}
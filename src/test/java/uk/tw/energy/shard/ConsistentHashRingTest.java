@@ -0,0 +1,72 @@
+package uk.tw.energy.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConsistentHashRingTest {
+
+    private static final int METERS = 100_000;
+    private static final List<String> NODES = Arrays.asList("http://localhost:8081", "http://localhost:8082", "http://localhost:8083");
+
+    @Test
+    public void shouldAssignMetersTheSameWayWhateverOrderNodesAreListedIn() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing reordered = new ConsistentHashRing(
+                Arrays.asList(NODES.get(2), NODES.get(0), NODES.get(1)), ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        for (int meter = 0; meter < 1_000; meter++) {
+            assertThat(reordered.ownerOf(meterId(meter))).isEqualTo(ring.ownerOf(meterId(meter)));
+        }
+    }
+
+    @Test
+    public void shouldSpreadMetersEvenlyAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        Map<String, Integer> metersPerNode = new HashMap<>();
+        for (int meter = 0; meter < METERS; meter++) {
+            metersPerNode.merge(ring.ownerOf(meterId(meter)), 1, Integer::sum);
+        }
+
+        assertThat(metersPerNode.size()).isEqualTo(NODES.size());
+        for (int meters : metersPerNode.values()) {
+            assertThat(Math.abs(meters - METERS / NODES.size())).isLessThan(METERS / NODES.size() / 5);
+        }
+    }
+
+    @Test
+    public void givenNodeJoinsShouldOnlyMoveItsShareOfMetersAndOnlyToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        String joining = "http://localhost:8084";
+        ConsistentHashRing after = new ConsistentHashRing(
+                Arrays.asList(NODES.get(0), NODES.get(1), NODES.get(2), joining), ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int meter = 0; meter < METERS; meter++) {
+            String owner = after.ownerOf(meterId(meter));
+            if (!owner.equals(before.ownerOf(meterId(meter)))) {
+                assertThat(owner).isEqualTo(joining);
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(METERS / 4 - METERS / 20, METERS / 4 + METERS / 20);
+    }
+
+    @Test
+    public void givenNoNodesShouldRejectRing() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ConsistentHashRing(Arrays.<String>asList(), ShardRouter.DEFAULT_VIRTUAL_NODES));
+    }
+
+    private static String meterId(int meter) {
+        return "smart-meter-" + meter;
+    }
+}
@@ -0,0 +1,171 @@
+package uk.tw.energy.shard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.client.RestTemplate;
+import uk.tw.energy.admission.IngestAdmission;
+import uk.tw.energy.controller.MeterReadingController;
+import uk.tw.energy.controller.ShardController;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.domain.ReadingsSummary;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+public class ShardRebalancerTest {
+
+    private static final String SELF = "http://localhost:8081";
+    private static final String PEER = "http://localhost:8082";
+    private static final List<String> NODES = Arrays.asList(SELF, PEER);
+
+    private MeterReadingService meterReadingService;
+    private MeterReadingService peerReadingService;
+    private ShardRouter shardRouter;
+    private ShardRebalancer shardRebalancer;
+    private boolean peerAvailable = true;
+    private Runnable duringHandOver = () -> { };
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingService = new MeterReadingService(new HashMap<>());
+        peerReadingService = new MeterReadingService(new HashMap<>());
+        ShardRouter peerRouter = new ShardRouter(PEER, SELF + "," + PEER, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        ShardController peerShardController = new ShardController(null, null, peerReadingService, peerRouter, null);
+        MeterReadingController peerReadingController = new MeterReadingController(peerReadingService, peerRouter, null,
+                new IngestAdmission(10_000, 0, 0, 0, 0, 0, 0));
+        // delivers straight to the peer's controllers, as its endpoints would
+        ShardClient shardClient = new ShardClient((RestTemplate) null) {
+            @Override
+            public HttpStatus forwardReadings(String owner, String self, MeterReadings meterReadings) {
+                // from this node's address, which the peer knows as a node of the shard
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/readings/store");
+                request.setRemoteAddr("127.0.0.1");
+                return peerReadingController.storeReadings(meterReadings, self, request).getStatusCode();
+            }
+
+            @Override
+            public HttpStatus handOver(String owner, String self, MeterHandover meterHandover) {
+                if (!peerAvailable) {
+                    throw new ShardUnavailableException(owner, new RuntimeException("Connection refused"));
+                }
+                duringHandOver.run();
+                return peerShardController.handover(meterHandover).getStatusCode();
+            }
+        };
+        shardRouter = new ShardRouter(SELF, SELF, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        shardRebalancer = new ShardRebalancer(meterReadingService, shardRouter, shardClient);
+    }
+
+    @Test
+    public void shouldHandOverAMeterWithMoreReadingsThanAStoreRequestMayCarry() {
+        String smartMeterId = meterOwnedBy(PEER);
+        List<ElectricityReading> readings = everyTenSeconds(25_000);
+        meterReadingService.storeReadings(smartMeterId, readings);
+
+        Map<String, Object> result = shardRebalancer.rebalance(NODES);
+
+        assertThat(result.get("movedMeters")).isEqualTo(1);
+        assertThat(result.get("failedMeters")).isEqualTo(0);
+        assertThat(meterReadingService.getSmartMeterIds().contains(smartMeterId)).isFalse();
+        assertThat(peerReadingService.getReadings(smartMeterId).size()).isEqualTo(readings.size());
+    }
+
+    @Test
+    public void shouldKeepServingAMeterUntilItsHandOverSucceeds() {
+        String smartMeterId = meterOwnedBy(PEER);
+        List<ElectricityReading> readings = everyTenSeconds(100);
+        meterReadingService.storeReadings(smartMeterId, readings);
+        peerAvailable = false;
+
+        Map<String, Object> result = shardRebalancer.rebalance(NODES);
+
+        assertThat(result.get("failedMeters")).isEqualTo(1);
+        assertThat(result.get("pendingMeters")).isEqualTo(1);
+        assertThat(shardRouter.isLocal(smartMeterId)).isTrue();
+        assertThat(meterReadingService.getReadings(smartMeterId).size()).isEqualTo(readings.size());
+
+        peerAvailable = true;
+        result = shardRebalancer.retryHandOvers();
+
+        assertThat(result.get("movedMeters")).isEqualTo(1);
+        assertThat(result.get("pendingMeters")).isEqualTo(0);
+        assertThat(shardRouter.isLocal(smartMeterId)).isFalse();
+        assertThat(peerReadingService.getReadings(smartMeterId).size()).isEqualTo(readings.size());
+    }
+
+    @Test
+    public void shouldStoreReadingsWhileTheirMeterIsHandedOverAndForwardThemAfterIt() {
+        String smartMeterId = meterOwnedBy(PEER);
+        List<ElectricityReading> readings = everyTenSeconds(100);
+        meterReadingService.storeReadings(smartMeterId, readings.subList(0, 90));
+        duringHandOver = () -> {
+            // a store from another thread, which would wait for the whole handover if it held the meter's lock
+            Thread store = new Thread(() -> meterReadingService.storeReadings(smartMeterId, readings.subList(90, 100)));
+            store.start();
+            try {
+                store.join(5_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertThat(store.isAlive()).isFalse();
+        };
+
+        Map<String, Object> result = shardRebalancer.rebalance(NODES);
+
+        assertThat(result.get("movedMeters")).isEqualTo(1);
+        assertThat(meterReadingService.getSmartMeterIds().contains(smartMeterId)).isFalse();
+        assertThat(peerReadingService.getReadings(smartMeterId)).isEqualTo(readings);
+    }
+
+    @Test
+    public void shouldHandOverWhatCompactionLeftOfOlderReadings() {
+        String smartMeterId = meterOwnedBy(PEER);
+        List<ElectricityReading> readings = everyTenSeconds(3 * 8640);
+        meterReadingService.storeReadings(smartMeterId, readings);
+        Instant start = readings.get(0).getTime();
+        meterReadingService.compact(smartMeterId, start.plus(Duration.ofDays(2)), start.plus(Duration.ofDays(1)));
+        ReadingsSummary total = meterReadingService.summarize(smartMeterId);
+        ReadingsSummary secondDay = meterReadingService.summarize(smartMeterId, start.plus(Duration.ofDays(1)), start.plus(Duration.ofDays(2)));
+        long sketchedDays = meterReadingService.getDailySketches(smartMeterId, LocalDate.MIN, LocalDate.MAX).size();
+
+        shardRebalancer.rebalance(NODES);
+
+        assertThat(peerReadingService.getReadings(smartMeterId).size()).isEqualTo(8640);
+        assertThat(peerReadingService.summarize(smartMeterId).getCount()).isEqualTo(total.getCount());
+        assertThat(peerReadingService.summarize(smartMeterId).getSum()).isEqualTo(total.getSum());
+        assertThat(peerReadingService.summarize(smartMeterId, start.plus(Duration.ofDays(1)), start.plus(Duration.ofDays(2))).getCount())
+                .isEqualTo(secondDay.getCount());
+        assertThat((long) peerReadingService.getDailySketches(smartMeterId, LocalDate.MIN, LocalDate.MAX).size()).isEqualTo(sketchedDays);
+    }
+
+    private static String meterOwnedBy(String node) {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        for (int meter = 0; ; meter++) {
+            if (ring.ownerOf("smart-meter-" + meter).equals(node)) {
+                return "smart-meter-" + meter;
+            }
+        }
+    }
+
+    private static List<ElectricityReading> everyTenSeconds(int count) {
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        List<ElectricityReading> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            readings.add(new ElectricityReading(start.plusSeconds(10L * i), BigDecimal.ONE));
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,59 @@
+package uk.tw.energy.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardRouterTest {
+
+    private static final String SELF = "http://localhost:8081";
+    private static final String PEER = "http://localhost:8082";
+
+    @Test
+    public void givenNoNodesShouldOwnEveryMeter() {
+        ShardRouter shardRouter = ShardRouter.standalone();
+
+        assertThat(shardRouter.isSharded()).isFalse();
+        assertThat(shardRouter.isLocal("smart-meter-0")).isTrue();
+        assertThat(shardRouter.getPeers()).isEqualTo(Collections.emptyList());
+    }
+
+    @Test
+    public void givenNodesShouldOwnOnlyMetersHashedToSelf() {
+        ShardRouter shardRouter = new ShardRouter(SELF, SELF + "/, " + PEER, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        ShardRouter peerRouter = new ShardRouter(PEER, SELF + "," + PEER, ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        assertThat(shardRouter.getPeers()).isEqualTo(Collections.singletonList(PEER));
+        for (int meter = 0; meter < 100; meter++) {
+            String smartMeterId = "smart-meter-" + meter;
+            assertThat(shardRouter.isLocal(smartMeterId)).isNotEqualTo(peerRouter.isLocal(smartMeterId));
+            assertThat(shardRouter.ownerOf(smartMeterId)).isEqualTo(peerRouter.ownerOf(smartMeterId));
+        }
+    }
+
+    @Test
+    public void shouldOnlyRecognisePeerAddressesAsOtherNodes() {
+        ShardRouter shardRouter = new ShardRouter("http://10.0.0.1:8080", "http://10.0.0.1:8080,http://10.0.0.2:8080", ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        assertThat(shardRouter.isPeerAddress("10.0.0.2")).isTrue();
+        assertThat(shardRouter.isPeerAddress("10.0.0.3")).isFalse();
+        assertThat(ShardRouter.standalone().isPeerAddress("10.0.0.2")).isFalse();
+
+        shardRouter.updateNodes(Arrays.asList("http://10.0.0.1:8080", "http://10.0.0.3:8080"));
+
+        assertThat(shardRouter.isPeerAddress("10.0.0.2")).isFalse();
+        assertThat(shardRouter.isPeerAddress("10.0.0.3")).isTrue();
+    }
+
+    @Test
+    public void givenNodesWithoutSelfShouldRejectUpdate() {
+        ShardRouter shardRouter = new ShardRouter(SELF, SELF + "," + PEER, ShardRouter.DEFAULT_VIRTUAL_NODES);
+
+        assertThrows(IllegalArgumentException.class, () -> shardRouter.updateNodes(Arrays.asList(PEER, "http://localhost:8083")));
+        assertThat(shardRouter.getNodes()).isEqualTo(Arrays.asList(SELF, PEER));
+    }
+}